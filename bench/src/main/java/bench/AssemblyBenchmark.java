@@ -0,0 +1,156 @@
+package bench;
+
+import data.Fragment;
+import data.FragmentInt;
+import handler.ResultManager;
+import handler.ResultManagerInt;
+import handler.ResultSink;
+import handler.ResultSinkInt;
+import org.openjdk.jmh.annotations.*;
+import protocol.BinaryCodec;
+import protocol.BinaryFrame;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AssemblyBenchmark: Coste de reunir los RESULT de todos los fragmentos en el array final.
+ *
+ * "manager" es el camino anterior (ResultManager: un array por fragmento, mapa con claves
+ * String, ordenación y copia); "sink" decodifica cada trama directamente en su tramo del
+ * array preasignado (ResultSink). Los fragmentos llegan desordenados en ambos casos.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@SuppressWarnings("deprecation")
+public class AssemblyBenchmark {
+
+    static final int FRAGMENTS = 16;
+
+    /** Fragmentos recibidos: índice, inicio y cuerpo little-endian de cada RESULT. */
+    abstract static class Received {
+        int[] order;
+        int[] starts;
+        int[] lengths;
+
+        void cut(int size) {
+            starts = new int[FRAGMENTS];
+            lengths = new int[FRAGMENTS];
+            int base = size / FRAGMENTS;
+            int start = 0;
+            for (int i = 0; i < FRAGMENTS; i++) {
+                lengths[i] = base + (i < size % FRAGMENTS ? 1 : 0);
+                starts[i] = start;
+                start += lengths[i];
+            }
+            List<Integer> shuffled = new ArrayList<>();
+            for (int i = 0; i < FRAGMENTS; i++) {
+                shuffled.add(i);
+            }
+            Collections.shuffle(shuffled, new Random(42));
+            order = shuffled.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Doubles extends Received {
+        @Param({"1000", "100000", "10000000", "100000000"})
+        int size;
+
+        List<Fragment> fragments;
+        BinaryFrame[] frames;
+
+        @Setup
+        public void setUp() {
+            cut(size);
+            Random random = new Random(42);
+            fragments = new ArrayList<>();
+            frames = new BinaryFrame[FRAGMENTS];
+            for (int i = 0; i < FRAGMENTS; i++) {
+                double[] part = new double[lengths[i]];
+                ByteBuffer body = ByteBuffer.allocate(lengths[i] * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (int j = 0; j < part.length; j++) {
+                    part[j] = random.nextDouble();
+                    body.putDouble(part[j]);
+                }
+                body.flip();
+                fragments.add(new Fragment("F" + i, starts[i], part));
+                frames[i] = new BinaryFrame(BinaryCodec.KIND_RESULT, BinaryCodec.DTYPE_FLOAT64,
+                                            Collections.emptyMap(), body);
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Ints extends Received {
+        @Param({"1000", "100000", "10000000", "100000000"})
+        int size;
+
+        List<FragmentInt> fragments;
+        BinaryFrame[] frames;
+
+        @Setup
+        public void setUp() {
+            cut(size);
+            Random random = new Random(42);
+            fragments = new ArrayList<>();
+            frames = new BinaryFrame[FRAGMENTS];
+            for (int i = 0; i < FRAGMENTS; i++) {
+                int[] part = new int[lengths[i]];
+                ByteBuffer body = ByteBuffer.allocate(lengths[i] * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (int j = 0; j < part.length; j++) {
+                    part[j] = random.nextInt();
+                    body.putInt(part[j]);
+                }
+                body.flip();
+                fragments.add(new FragmentInt("F" + i, starts[i], part));
+                frames[i] = new BinaryFrame(BinaryCodec.KIND_RESULT, BinaryCodec.DTYPE_INT32,
+                                            Collections.emptyMap(), body);
+            }
+        }
+    }
+
+    @Benchmark
+    public double[] managerDouble(Doubles s) {
+        ResultManager manager = new ResultManager(FRAGMENTS);
+        for (int i : s.order) {
+            manager.addResult("T" + i, s.fragments.get(i));
+        }
+        return manager.assembleResults();
+    }
+
+    @Benchmark
+    public double[] sinkDouble(Doubles s) {
+        ResultSink sink = new ResultSink(s.size, FRAGMENTS);
+        for (int i : s.order) {
+            sink.accept(i, s.starts[i], s.fragments.get(i).size(), s.frames[i]);
+        }
+        return sink.getResult();
+    }
+
+    @Benchmark
+    public int[] managerInt(Ints s) {
+        ResultManagerInt manager = new ResultManagerInt(FRAGMENTS);
+        for (int i : s.order) {
+            manager.addResult("T" + i, s.fragments.get(i));
+        }
+        return manager.assembleResults();
+    }
+
+    @Benchmark
+    public int[] sinkInt(Ints s) {
+        ResultSinkInt sink = new ResultSinkInt(s.size, FRAGMENTS);
+        for (int i : s.order) {
+            sink.accept(i, s.starts[i], s.fragments.get(i).size(), s.frames[i]);
+        }
+        return sink.getResult();
+    }
+}
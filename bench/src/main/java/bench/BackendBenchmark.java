@@ -0,0 +1,75 @@
+package bench;
+
+import bench.loadgen.FakeWorker;
+import core.DArrayDouble;
+import handler.CostModel;
+import handler.MasterServer;
+import handler.Operation;
+import handler.WorkerConnection;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BackendBenchmark: Un trabajo completo (MasterServer.submit) calculado en el propio maestro
+ * con LocalBackend frente a repartido entre workers de pega por la red local, y lo que
+ * elige CostModel en AUTO. Los workers de pega no cuestan nada por elemento, así que el
+ * camino DISTRIBUTED mide sólo la ida y vuelta, la serialización y el ensamblado.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+@State(Scope.Benchmark)
+public class BackendBenchmark {
+
+    static final int WORKERS = 4;
+
+    @Param({"LOCAL", "DISTRIBUTED", "AUTO"})
+    String backend;
+
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    List<FakeWorker> fakes;
+    List<WorkerConnection> connections;
+    DArrayDouble dArray;
+    MasterServer master;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fakes = new ArrayList<>();
+        connections = new ArrayList<>();
+        for (int i = 0; i < WORKERS; i++) {
+            FakeWorker fake = new FakeWorker("fake" + i, new FakeWorker.Behavior().cores(4));
+            fakes.add(fake);
+            connections.add(new WorkerConnection("worker" + i, "localhost", fake.getPort()));
+        }
+        double[] data = new double[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = i;
+        }
+        dArray = new DArrayDouble(data, WORKERS);
+        master = new MasterServer(dArray, connections);
+        master.setBackend(CostModel.Backend.valueOf(backend));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (WorkerConnection c : connections) {
+            c.close();
+        }
+        for (FakeWorker f : fakes) {
+            f.close();
+        }
+    }
+
+    @Benchmark
+    public double job() {
+        double[] result = master.submit(dArray, Operation.SIN_PLUS_COS_SQUARE_DIV_SQRT).join();
+        return result[result.length - 1];
+    }
+}
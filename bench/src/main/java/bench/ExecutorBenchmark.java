@@ -0,0 +1,94 @@
+package bench;
+
+import bench.loadgen.FakeWorker;
+import data.Fragment;
+import handler.IoExecutors;
+import handler.Operation;
+import handler.WorkerConnection;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExecutorBenchmark: Muchos fragmentos con E/S bloqueante (WorkerConnection.execute) a la
+ * vez según la estrategia de hilos de IoExecutors.
+ *
+ * FIXED reproduce el pool antiguo de un hilo por worker; CACHED crea hilos de plataforma
+ * según la demanda y VIRTUAL usa un hilo virtual por fragmento (en Java &lt; 21 cae a
+ * CACHED y lo avisa por stderr). Los workers de pega tardan 2 ms por fragmento y atienden
+ * hasta 256 a la vez cada uno, así que el límite lo pone el número de fragmentos que el
+ * maestro consigue tener bloqueados en vuelo.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g"})
+@State(Scope.Benchmark)
+public class ExecutorBenchmark {
+
+    static final int WORKERS = 4;
+    static final int ELEMENTS = 64;
+
+    @Param({"FIXED", "CACHED", "VIRTUAL"})
+    String mode;
+
+    @Param({"256", "4096"})
+    int fragments;
+
+    List<FakeWorker> fakes;
+    List<WorkerConnection> connections;
+    ExecutorService executor;
+    Fragment[] parts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fakes = new ArrayList<>();
+        connections = new ArrayList<>();
+        for (int i = 0; i < WORKERS; i++) {
+            FakeWorker fake = new FakeWorker("fake" + i, new FakeWorker.Behavior().cores(256).baseMicros(2000));
+            fakes.add(fake);
+            connections.add(new WorkerConnection("worker" + i, "localhost", fake.getPort()));
+        }
+        executor = IoExecutors.create(IoExecutors.Mode.valueOf(mode), "bench-io", WORKERS);
+        parts = new Fragment[fragments];
+        for (int i = 0; i < fragments; i++) {
+            double[] data = new double[ELEMENTS];
+            for (int j = 0; j < ELEMENTS; j++) {
+                data[j] = i * ELEMENTS + j;
+            }
+            parts[i] = new Fragment("F" + i, i * ELEMENTS, data);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        for (WorkerConnection c : connections) {
+            c.close();
+        }
+        for (FakeWorker f : fakes) {
+            f.close();
+        }
+    }
+
+    @Benchmark
+    public double blockingFragments() throws Exception {
+        List<Future<double[]>> futures = new ArrayList<>(fragments);
+        for (int i = 0; i < fragments; i++) {
+            Fragment part = parts[i];
+            WorkerConnection worker = connections.get(i % WORKERS);
+            String taskId = "T" + i;
+            futures.add(executor.submit(() -> worker.execute(part, taskId, Operation.IDENTITY)));
+        }
+        double checksum = 0;
+        for (Future<double[]> f : futures) {
+            checksum += f.get()[0];
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,66 @@
+package bench;
+
+import handler.Operation;
+import ops.CompiledOperation;
+import ops.Kernels;
+import ops.OperationCompiler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * KernelBenchmark: CompiledOperation.apply() sobre un array completo con el bucle escalar
+ * frente a los núcleos SIMD de la Vector API (ver ops.Kernels), para las operaciones del
+ * catálogo. El fork arranca con --add-modules jdk.incubator.vector; sin él el modo VECTOR
+ * falla en el setUp.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g", "--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class KernelBenchmark {
+
+    @Param({"SCALAR", "VECTOR"})
+    String kernels;
+
+    @Param({Operation.ADD_ONE, Operation.SQUARE, Operation.SQRT, Operation.SIN_PLUS_COS,
+            Operation.SIN_PLUS_COS_SQUARE_DIV_SQRT})
+    String operation;
+
+    @Param({"1000000"})
+    int size;
+
+    CompiledOperation op;
+    double[] doubles;
+    double[] doublesOut;
+    int[] ints;
+    int[] intsOut;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Kernels.configure(Kernels.Mode.valueOf(kernels));
+        op = OperationCompiler.compile(operation);
+        doubles = new double[size];
+        doublesOut = new double[size];
+        ints = new int[size];
+        intsOut = new int[size];
+        for (int i = 0; i < size; i++) {
+            doubles[i] = (i - size / 2) * 0.001;
+            ints[i] = i - size / 2;
+        }
+    }
+
+    @Benchmark
+    public double[] doubles() {
+        op.apply(doubles, 0, doublesOut, 0, size);
+        return doublesOut;
+    }
+
+    @Benchmark
+    public int[] ints() {
+        op.apply(ints, 0, intsOut, 0, size);
+        return intsOut;
+    }
+}
@@ -0,0 +1,72 @@
+package bench;
+
+import core.DArrayDouble;
+import core.DArrayInt;
+import data.Fragment;
+import data.FragmentInt;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PartitionBenchmark: Coste de cortar el array en fragmentos (divideArray), que copia cada
+ * tramo en un array propio del fragmento.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PartitionBenchmark {
+
+    static final int FRAGMENTS = 16;
+
+    @State(Scope.Benchmark)
+    public static class Doubles {
+        @Param({"1000", "100000", "10000000", "100000000"})
+        int size;
+
+        DArrayDouble array;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(42);
+            double[] data = new double[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = random.nextDouble();
+            }
+            // Con un solo fragmento configurado, getFragments(FRAGMENTS) siempre vuelve a dividir
+            array = new DArrayDouble(data, 1);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Ints {
+        @Param({"1000", "100000", "10000000", "100000000"})
+        int size;
+
+        DArrayInt array;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(42);
+            int[] data = new int[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = random.nextInt();
+            }
+            array = new DArrayInt(data, 1);
+        }
+    }
+
+    @Benchmark
+    public List<Fragment> divideDouble(Doubles s) {
+        return s.array.getFragments(FRAGMENTS);
+    }
+
+    @Benchmark
+    public List<FragmentInt> divideInt(Ints s) {
+        return s.array.getFragments(FRAGMENTS);
+    }
+}
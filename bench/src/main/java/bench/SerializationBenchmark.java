@@ -0,0 +1,116 @@
+package bench;
+
+import handler.Operation;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import protocol.BinaryCodec;
+import protocol.ProtocolHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SerializationBenchmark: Coste de serializar una TASK y de parsear un RESULT.
+ *
+ * Compara el camino JSON (ProtocolHandler.toJson / parseDoubleArray / parseIntArray, que
+ * sustituyeron a MasterServer.parseArray) con las tramas binarias de BinaryCodec. El JSON de
+ * 100M elementos no cabe en un String de Java (más de 2^31 caracteres), por eso aquí el
+ * tamaño máximo es 10M; los benchmarks de partición y ensamblado sí llegan a 100M.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class SerializationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Doubles {
+        @Param({"1000", "100000", "1000000", "10000000"})
+        int size;
+
+        double[] data;
+        String json;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(42);
+            data = new double[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = random.nextDouble() * 1000;
+            }
+            json = Arrays.toString(data);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Ints {
+        @Param({"1000", "100000", "1000000", "10000000"})
+        int size;
+
+        int[] data;
+        String json;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(42);
+            data = new int[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = random.nextInt();
+            }
+            json = Arrays.toString(data);
+        }
+    }
+
+    /** Descarta los bytes: mide la codificación, no el crecimiento de un buffer. */
+    static final class NullOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    @Benchmark
+    public String toJsonDouble(Doubles s) {
+        return ProtocolHandler.toJson(ProtocolHandler.createTaskMessage("T0", s.data, Operation.IDENTITY, "localhost:0"));
+    }
+
+    @Benchmark
+    public String toJsonInt(Ints s) {
+        return ProtocolHandler.toJson(ProtocolHandler.createTaskMessage("T0", s.data, Operation.IDENTITY, "localhost:0"));
+    }
+
+    @Benchmark
+    public double[] parseDouble(Doubles s) {
+        return ProtocolHandler.parseDoubleArray(s.json);
+    }
+
+    @Benchmark
+    public int[] parseInt(Ints s) {
+        return ProtocolHandler.parseIntArray(s.json);
+    }
+
+    @Benchmark
+    public void binaryTaskDouble(Doubles s, Blackhole bh) throws IOException {
+        NullOutputStream out = new NullOutputStream();
+        BinaryCodec.writeTask(out, "T0", s.data, Operation.IDENTITY);
+        bh.consume(out.count);
+    }
+
+    @Benchmark
+    public void binaryTaskInt(Ints s, Blackhole bh) throws IOException {
+        NullOutputStream out = new NullOutputStream();
+        BinaryCodec.writeTask(out, "T0", s.data, Operation.IDENTITY);
+        bh.consume(out.count);
+    }
+}
@@ -0,0 +1,394 @@
+package bench.loadgen;
+
+import ops.CompiledOperation;
+import ops.OperationCompiler;
+import protocol.BinaryCodec;
+import protocol.BinaryFrame;
+import protocol.ProtocolHandler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FakeWorker: Worker de pega dentro de la JVM que habla el protocolo TCP real.
+ *
+ * Responde al INIT anunciando sus núcleos y aceptando tramas binarias, y atiende TASK
+ * binarias o JSON aplicando la operación pedida (ver ops.OperationCompiler; con la identidad
+ * los datos vuelven sin recorrerlos) con el mismo request_id, tras simular un coste de cómputo de baseMicros + nanosPerElement·n con una
+ * variación aleatoria de ±jitter. Permite inyectar fallos: responder ERROR o cortar la
+ * conexión con una probabilidad dada. Cuenta los bytes que pasan por el socket.
+ */
+public class FakeWorker implements AutoCloseable {
+
+    /**
+     * Parámetros de comportamiento del worker.
+     */
+    public static final class Behavior {
+        int cores = 1;
+        long baseMicros = 0;
+        long nanosPerElement = 0;
+        double jitter = 0;
+        double errorRate = 0;
+        double dropRate = 0;
+
+        /** Núcleos anunciados en el INIT y tareas que procesa a la vez. */
+        public Behavior cores(int cores) {
+            this.cores = Math.max(1, cores);
+            return this;
+        }
+
+        /** Coste fijo por tarea en microsegundos. */
+        public Behavior baseMicros(long baseMicros) {
+            this.baseMicros = baseMicros;
+            return this;
+        }
+
+        /** Coste por elemento en nanosegundos. */
+        public Behavior nanosPerElement(long nanosPerElement) {
+            this.nanosPerElement = nanosPerElement;
+            return this;
+        }
+
+        /** Variación relativa del coste, p. ej. 0.2 para ±20 %. */
+        public Behavior jitter(double jitter) {
+            this.jitter = jitter;
+            return this;
+        }
+
+        /** Probabilidad de responder ERROR a una tarea. */
+        public Behavior errorRate(double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        /** Probabilidad de cortar la conexión al recibir una tarea. */
+        public Behavior dropRate(double dropRate) {
+            this.dropRate = dropRate;
+            return this;
+        }
+    }
+
+    private final String workerId;
+    private final Behavior behavior;
+    private final ServerSocket server;
+    private final ExecutorService compute;
+    private final ExecutorService connections = Executors.newCachedThreadPool(daemon("fake-worker-conn"));
+
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong tasks = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong drops = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Abre el worker en un puerto libre de localhost y empieza a aceptar conexiones.
+     */
+    public FakeWorker(String workerId, Behavior behavior) throws IOException {
+        this.workerId = workerId;
+        this.behavior = behavior;
+        this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.compute = Executors.newFixedThreadPool(behavior.cores, daemon("fake-worker-" + workerId));
+        connections.execute(this::acceptLoop);
+    }
+
+    public String getWorkerId() {
+        return workerId;
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /** Bytes recibidos del maestro. */
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    /** Bytes enviados al maestro. */
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    /** Tareas recibidas (incluidas las que acabaron en error o corte). */
+    public long getTasks() {
+        return tasks.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public long getDrops() {
+        return drops.get();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("⚠ " + workerId + ": fallo aceptando conexión: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Atiende una conexión persistente: handshake y después tareas hasta que se cierre.
+     */
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(new Counting(s.getInputStream(), bytesIn));
+            OutputStream out = new BufferedOutputStream(new CountingOut(s.getOutputStream(), bytesOut));
+            Connection conn = new Connection(s, out);
+
+            String init = ProtocolHandler.readLine(in);
+            if (init == null) {
+                return;
+            }
+            conn.writeJson(initReply(ProtocolHandler.fromJson(init)));
+
+            while (!closed) {
+                in.mark(1);
+                int first = in.read();
+                if (first < 0) {
+                    return;
+                }
+                in.reset();
+                if (BinaryCodec.isBinaryFrame(first)) {
+                    BinaryFrame frame = BinaryCodec.readFrame(in);
+                    onTask(conn, frame.getHeader().get("request_id"), frame, null);
+                } else {
+                    String line = ProtocolHandler.readLine(in);
+                    if (line == null) {
+                        return;
+                    }
+                    if (!line.trim().isEmpty()) {
+                        Map<String, String> msg = ProtocolHandler.fromJson(line);
+                        onTask(conn, msg.get("request_id"), null, msg);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // conexión cerrada por el maestro o cortada a propósito
+        }
+    }
+
+    private Map<String, Object> initReply(Map<String, String> init) {
+        String encodings = init.get("encodings");
+        boolean binary = encodings != null && encodings.contains(ProtocolHandler.ENCODING_BINARY);
+        Map<String, Object> capabilities = new HashMap<>();
+        capabilities.put("cores", behavior.cores);
+        capabilities.put("language", "java-fake");
+        Map<String, Object> reply = new HashMap<>();
+        reply.put("type", "INIT");
+        reply.put("worker_id", workerId);
+        reply.put("capabilities", capabilities);
+        reply.put("encoding", binary ? ProtocolHandler.ENCODING_BINARY : ProtocolHandler.ENCODING_JSON);
+        return reply;
+    }
+
+    private void onTask(Connection conn, String requestId, BinaryFrame frame, Map<String, String> json) throws IOException {
+        tasks.incrementAndGet();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < behavior.dropRate) {
+            drops.incrementAndGet();
+            conn.socket.close();
+            throw new SocketException("Corte inyectado");
+        }
+        boolean fail = random.nextDouble() < behavior.errorRate;
+        compute.execute(() -> {
+            try {
+                int elements = frame != null ? frame.count() : countJson(json.get("data"));
+                simulateCost(elements);
+                if (fail) {
+                    errors.incrementAndGet();
+                    conn.writeError(requestId, frame != null);
+                } else if (frame != null) {
+                    conn.writeResult(requestId, frame);
+                } else {
+                    conn.writeJsonResult(requestId, json);
+                }
+            } catch (IOException e) {
+                // el maestro cerró la conexión mientras se calculaba
+            }
+        });
+    }
+
+    /**
+     * El coste se simula durmiendo, no calculando: en una sola máquina el worker de pega no
+     * debe quitarle CPU al maestro que se está midiendo.
+     */
+    private void simulateCost(int elements) {
+        long nanos = behavior.baseMicros * 1000 + behavior.nanosPerElement * elements;
+        if (behavior.jitter > 0) {
+            nanos += (long) (nanos * behavior.jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1));
+        }
+        if (nanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static CompiledOperation operation(String text) {
+        return OperationCompiler.compile(text == null ? "x" : text);
+    }
+
+    private static int countJson(String data) {
+        return data == null ? 0 : ProtocolHandler.parseDoubleArray(data).length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        compute.shutdownNow();
+        connections.shutdownNow();
+    }
+
+    /**
+     * Lado de escritura de una conexión: las respuestas salen de varios hilos de cómputo.
+     */
+    private final class Connection {
+        private final Socket socket;
+        private final OutputStream out;
+
+        Connection(Socket socket, OutputStream out) {
+            this.socket = socket;
+            this.out = out;
+        }
+
+        synchronized void writeJson(Map<String, Object> message) throws IOException {
+            out.write((ProtocolHandler.toJson(message) + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+
+        synchronized void writeResult(String requestId, BinaryFrame task) throws IOException {
+            Map<String, Object> header = tag(ProtocolHandler.createResultHeader(task.getHeader().get("task_id"), workerId), requestId);
+            CompiledOperation operation = operation(task.getHeader().get("operation"));
+            if (task.getDtype() == BinaryCodec.DTYPE_INT32) {
+                int[] data = task.toIntArray();
+                if (!operation.isIdentity()) {
+                    operation.apply(data, 0, data, 0, data.length);
+                }
+                BinaryCodec.writeFrame(out, BinaryCodec.KIND_RESULT, header, data, 0, data.length);
+            } else {
+                double[] data = task.toDoubleArray();
+                if (!operation.isIdentity()) {
+                    operation.apply(data, 0, data, 0, data.length);
+                }
+                BinaryCodec.writeFrame(out, BinaryCodec.KIND_RESULT, header, data, 0, data.length);
+            }
+        }
+
+        void writeJsonResult(String requestId, Map<String, String> task) throws IOException {
+            double[] data = ProtocolHandler.parseDoubleArray(task.get("data"));
+            Map<String, Object> reply = ProtocolHandler.createResultMessage(
+                task.get("task_id"), workerId, operation(task.get("operation")).apply(data));
+            reply.put("type", "result");
+            writeJson(tag(reply, requestId));
+        }
+
+        void writeError(String requestId, boolean binary) throws IOException {
+            Map<String, Object> error = new HashMap<>();
+            error.put("type", "error");
+            error.put("message", "Error inyectado por " + workerId);
+            tag(error, requestId);
+            if (binary) {
+                synchronized (this) {
+                    BinaryCodec.writeFrame(out, BinaryCodec.KIND_ERROR, error);
+                }
+            } else {
+                writeJson(error);
+            }
+        }
+    }
+
+    private static Map<String, Object> tag(Map<String, Object> message, String requestId) {
+        if (requestId != null) {
+            message.put("request_id", Integer.parseInt(requestId));
+        }
+        return message;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private static final class Counting extends FilterInputStream {
+        private final AtomicLong counter;
+
+        Counting(InputStream in, AtomicLong counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                counter.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                counter.addAndGet(n);
+            }
+            return n;
+        }
+    }
+
+    private static final class CountingOut extends FilterOutputStream {
+        private final AtomicLong counter;
+
+        CountingOut(OutputStream out, AtomicLong counter) {
+            super(out);
+            this.counter = counter;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            counter.incrementAndGet();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            counter.addAndGet(len);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package bench.loadgen;
+
+import core.DArrayDouble;
+import handler.CostModel;
+import handler.MasterServer;
+import handler.Operation;
+import handler.WorkerConnection;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * LoadGenerator: Prueba de carga extremo a extremo del maestro contra workers de pega.
+ *
+ * Arranca N FakeWorker en localhost (protocolo TCP real), lanza trabajos repetidos de
+ * MasterServer sobre las mismas conexiones persistentes, con varios trabajos a la vez si se
+ * pide, y al final informa de trabajos por segundo, latencia p50/p90/p99 por trabajo y bytes
+ * en el cable en cada sentido. Funciona sin red ni workers Python.
+ *
+ * Uso: java -cp target/benchmarks.jar bench.loadgen.LoadGenerator [--clave=valor ...]
+ * (ver DEFAULTS para las claves y sus valores por defecto).
+ */
+public class LoadGenerator {
+
+    private static final Map<String, String> DEFAULTS = new HashMap<>();
+
+    static {
+        DEFAULTS.put("workers", "4");          // workers de pega
+        DEFAULTS.put("cores", "2");            // núcleos anunciados por cada worker
+        DEFAULTS.put("size", "100000");        // elementos por trabajo
+        DEFAULTS.put("jobs", "200");           // trabajos medidos
+        DEFAULTS.put("warmup", "20");          // trabajos de calentamiento (no se miden)
+        DEFAULTS.put("concurrency", "1");      // trabajos simultáneos
+        DEFAULTS.put("base-us", "200");        // coste fijo por tarea en µs
+        DEFAULTS.put("ns-per-elem", "20");     // coste por elemento en ns
+        DEFAULTS.put("jitter", "0.2");         // variación relativa del coste
+        DEFAULTS.put("error-rate", "0");       // probabilidad de responder ERROR
+        DEFAULTS.put("drop-rate", "0");        // probabilidad de cortar la conexión
+        DEFAULTS.put("slow-workers", "0");     // cuántos workers son más lentos
+        DEFAULTS.put("slow-factor", "4");      // cuánto más lentos
+        DEFAULTS.put("encoding", "binary");    // binary | json
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parse(args);
+        int nWorkers = intOpt(opts, "workers");
+        int size = intOpt(opts, "size");
+        int jobs = intOpt(opts, "jobs");
+        int warmup = intOpt(opts, "warmup");
+        int concurrency = intOpt(opts, "concurrency");
+        int slowWorkers = intOpt(opts, "slow-workers");
+
+        List<FakeWorker> fakes = new ArrayList<>();
+        List<WorkerConnection> connections = new ArrayList<>();
+        for (int i = 0; i < nWorkers; i++) {
+            long slow = i < slowWorkers ? Long.parseLong(opts.get("slow-factor")) : 1;
+            FakeWorker.Behavior behavior = new FakeWorker.Behavior()
+                .cores(intOpt(opts, "cores"))
+                .baseMicros(Long.parseLong(opts.get("base-us")) * slow)
+                .nanosPerElement(Long.parseLong(opts.get("ns-per-elem")) * slow)
+                .jitter(Double.parseDouble(opts.get("jitter")))
+                .errorRate(Double.parseDouble(opts.get("error-rate")))
+                .dropRate(Double.parseDouble(opts.get("drop-rate")));
+            FakeWorker fake = new FakeWorker("fake" + (i + 1), behavior);
+            fakes.add(fake);
+            WorkerConnection conn = new WorkerConnection("worker" + (i + 1), "localhost", fake.getPort());
+            conn.setPreferredEncoding(opts.get("encoding"));
+            connections.add(conn);
+        }
+
+        double[] data = new double[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = i + 1;
+        }
+
+        System.out.println("🚀 Carga: " + opts);
+
+        // MasterServer imprime el resultado de cada trabajo; se descarta durante la medida
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Result result;
+        try {
+            ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+            try {
+                run(pool, warmup, data, connections);
+                long inBefore = sum(fakes, true);
+                long outBefore = sum(fakes, false);
+                long t0 = System.nanoTime();
+                result = run(pool, jobs, data, connections);
+                result.wallNanos = System.nanoTime() - t0;
+                result.bytesToWorkers = sum(fakes, true) - inBefore;
+                result.bytesFromWorkers = sum(fakes, false) - outBefore;
+            } finally {
+                pool.shutdownNow();
+            }
+        } finally {
+            System.setOut(stdout);
+        }
+
+        result.print(jobs, fakes);
+
+        for (WorkerConnection conn : connections) {
+            conn.close();
+        }
+        for (FakeWorker fake : fakes) {
+            fake.close();
+        }
+    }
+
+    /**
+     * Lanza jobs trabajos con el pool dado y recoge su latencia; un trabajo cuenta como
+     * fallido si no termina con el resultado completo y correcto.
+     */
+    private static Result run(ExecutorService pool, int jobs, double[] data,
+                              List<WorkerConnection> connections) throws Exception {
+        List<Future<Long>> futures = new ArrayList<>(jobs);
+        for (int j = 0; j < jobs; j++) {
+            futures.add(pool.submit(() -> {
+                MasterServer master = new MasterServer(new DArrayDouble(data, connections.size()), connections);
+                master.setOperation(Operation.IDENTITY);
+                // Se mide el camino de red aunque CostModel prefiriera calcular en el maestro
+                master.setBackend(CostModel.Backend.DISTRIBUTED);
+                long start = System.nanoTime();
+                master.start();
+                long elapsed = System.nanoTime() - start;
+                return Arrays.equals(master.getFinalResult(), data) ? elapsed : -elapsed;
+            }));
+        }
+        Result result = new Result();
+        for (Future<Long> f : futures) {
+            long nanos = f.get();
+            if (nanos < 0) {
+                result.failed++;
+            }
+            result.latencies.add(Math.abs(nanos));
+        }
+        return result;
+    }
+
+    private static final class Result {
+        final List<Long> latencies = new ArrayList<>();
+        int failed;
+        long wallNanos;
+        long bytesToWorkers;
+        long bytesFromWorkers;
+
+        void print(int jobs, List<FakeWorker> fakes) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            double seconds = wallNanos / 1e9;
+            System.out.println(String.format(Locale.ROOT,
+                "🏁 %d trabajos (%d fallidos) en %.2f s → %.1f trabajos/s",
+                jobs, failed, seconds, jobs / seconds));
+            System.out.println(String.format(Locale.ROOT,
+                "⏱ Latencia por trabajo: p50=%.2f ms  p90=%.2f ms  p99=%.2f ms  max=%.2f ms",
+                millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.90)),
+                millis(percentile(sorted, 0.99)), millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1])));
+            System.out.println(String.format(Locale.ROOT,
+                "📦 Bytes en el cable: maestro→workers %.1f MB, workers→maestro %.1f MB (%.1f KB/trabajo)",
+                bytesToWorkers / 1e6, bytesFromWorkers / 1e6, (bytesToWorkers + bytesFromWorkers) / 1e3 / jobs));
+            for (FakeWorker fake : fakes) {
+                System.out.println("   " + fake.getWorkerId() + ": " + fake.getTasks() + " tareas, "
+                    + fake.getErrors() + " errores, " + fake.getDrops() + " cortes");
+            }
+        }
+    }
+
+    /**
+     * Percentil por el método del rango más cercano.
+     */
+    static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static long sum(List<FakeWorker> fakes, boolean toWorkers) {
+        long total = 0;
+        for (FakeWorker fake : fakes) {
+            total += toWorkers ? fake.getBytesIn() : fake.getBytesOut();
+        }
+        return total;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> opts = new HashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            String key = arg.startsWith("--") && eq > 2 ? arg.substring(2, eq) : null;
+            if (key == null || !DEFAULTS.containsKey(key)) {
+                System.err.println("Opción desconocida: " + arg + ". Opciones válidas: " + DEFAULTS);
+                System.exit(1);
+            }
+            opts.put(key, arg.substring(eq + 1));
+        }
+        return opts;
+    }
+
+    private static int intOpt(Map<String, String> opts, String key) {
+        return Integer.parseInt(opts.get(key));
+    }
+}
@@ -1,21 +1,36 @@
 package core;
 
 import data.Fragment;
+import data.OffHeapStore;
+import data.OffHeapDoubles;
+import ops.CompiledOperation;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.DoublePredicate;
 
 /**
  * fragmentación fija con re-fragmentación obligatoria al modificar los datos.
  * Garantiza consistencia y protección de los fragmentos.
+ *
+ * Los datos en el heap crecen duplicando su capacidad, así que add() cuesta O(1)
+ * amortizado; tras añadir, sólo se reconstruye el último fragmento (ver getFragments()).
+ * Los fragmentos en el heap son tramos del propio array, sin copias: add() sólo escribe
+ * más allá de los elementos ya repartidos.
  */
 public class DArrayDouble {
 
+    /** Mayor array que admiten las JVM habituales. */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
     private double[] data;
+    private OffHeapDoubles storage;
+    private int size;                 // elementos en uso de data (el resto es capacidad libre)
+    private int requestedFragments;
     private int fragmentCount;
     private List<Fragment> fragments;
-    private boolean needsUpdate;
+    private int fragmented;           // elementos cubiertos por fragments
 
     /**
      * Crea una nueva instancia de DArrayDouble con los datos y número de fragmentos especificados.
@@ -34,66 +49,246 @@ public class DArrayDouble {
         }
 
         this.data = Arrays.copyOf(data, data.length);
+        this.size = data.length;
+        this.requestedFragments = fragmentCount;
         this.fragmentCount = Math.min(fragmentCount, data.length);
         this.fragments = new ArrayList<>();
-        this.needsUpdate = true;
+        divideArray();
+    }
+
+    /**
+     * Crea un DArrayDouble respaldado por un almacén fuera del heap (ver OffHeapDoubles). Los fragmentos
+     * son vistas del almacén, sin copias, así que el array puede ser mayor que el heap y
+     * tener más de Integer.MAX_VALUE elementos; ningún fragmento pasa de
+     * OffHeapStore.MAX_FRAGMENT elementos, aunque eso suponga más fragmentos de los pedidos.
+     *
+     * @param storage       Almacén con los datos (no se copia).
+     * @param fragmentCount El número deseado de fragmentos (debe ser positivo).
+     */
+    public DArrayDouble(OffHeapDoubles storage, int fragmentCount) {
+        if (storage == null) {
+            throw new IllegalArgumentException("El almacén no puede ser nulo.");
+        }
+        if (fragmentCount <= 0) {
+            throw new IllegalArgumentException("El número de fragmentos debe ser positivo.");
+        }
+        this.storage = storage;
+        this.requestedFragments = fragmentCount;
+        this.fragmentCount = fragmentsFor(fragmentCount);
+        this.fragments = new ArrayList<>();
         divideArray();
     }
 
     /**
      * Divide el array actual en fragmentos balanceados según el número de fragmentos definido.
-     * Este método se llama automáticamente cuando los datos cambian.
      */
     private void divideArray() {
         fragments.clear();
+        fragments.addAll(divide(fragmentCount));
+        fragmented = size;
+    }
+
+    /**
+     * Pone al día los fragmentos tras añadir elementos sin tocar los ya repartidos: el último
+     * se reconstruye con lo añadido. Sólo se reparte todo de nuevo cuando el último llega al
+     * doble de los demás o faltan fragmentos porque el array tenía menos elementos que los
+     * pedidos; para eso el array ha de crecer en proporción a su tamaño, así que el coste
+     * amortizado por elemento añadido no depende de la longitud del array.
+     */
+    private void refreshFragments() {
+        int last = fragments.size() - 1;
+        Fragment tail = fragments.get(last);
+        int tailStart = tail.getStartIndex();
+        if (redivides()) {
+            fragmentCount = Math.min(requestedFragments, size);
+            divideArray();
+            return;
+        }
+        fragments.set(last, new Fragment(tail.getId(), data, tailStart, size - tailStart));
+        fragmented = size;
+    }
+
+    /**
+     * Indica si poner al día los fragmentos tras añadir obliga a repartir todo de nuevo (ver
+     * refreshFragments()).
+     */
+    private boolean redivides() {
+        int last = fragments.size() - 1;
+        int headSize = last == 0 ? Integer.MAX_VALUE : fragments.get(0).size();
+        return fragments.size() < Math.min(requestedFragments, size)
+                || size - fragments.get(last).getStartIndex() > 2L * headSize;
+    }
+
+    /**
+     * Corta el array en count fragmentos contiguos cuyos tamaños difieren como mucho en uno.
+     */
+    private List<Fragment> divide(int count) {
+        long n = length();
+        int baseSize = (int) (n / count);
+        int remainder = (int) (n % count);
 
-        int n = data.length;
-        int baseSize = n / fragmentCount;
-        int remainder = n % fragmentCount;
+        int[] sizes = new int[count];
+        for (int i = 0; i < count; i++) {
+            sizes[i] = baseSize + ((i < remainder) ? 1 : 0);
+        }
+        return divide(sizes);
+    }
 
-        int start = 0;
+    /**
+     * Corta el array en fragmentos contiguos con los tamaños dados, en orden.
+     */
+    private List<Fragment> divide(int[] sizes) {
+        List<Fragment> result = new ArrayList<>(sizes.length);
 
-        for (int i = 0; i < fragmentCount; i++) {
-            int extra = (i < remainder) ? 1 : 0;
-            int end = start + baseSize + extra;
+        long start = 0;
 
-            double[] fragmentData = Arrays.copyOfRange(data, start, end);
-            fragments.add(new Fragment("F" + i, start, fragmentData));
+        for (int i = 0; i < sizes.length; i++) {
+            if (storage != null) {
+                // Vista del almacén: sin copia
+                result.add(new Fragment("F" + i, start, storage.slice(start, sizes[i])));
+            } else {
+                // Tramo del array: sin copia (add() sólo escribe más allá de size)
+                result.add(new Fragment("F" + i, data, (int) start, sizes[i]));
+            }
 
-            start = end;
+            start += sizes[i];
         }
 
-        needsUpdate = false;
+        return result;
     }
 
     /**
-     * Agrega un nuevo número al array de datos y marca los fragmentos para ser recalculados.
+     * Agrega un nuevo número al final del array en O(1) amortizado. Los fragmentos se ponen
+     * al día en el siguiente getFragments().
      *
      * @param number El número a agregar al array.
+     * @throws UnsupportedOperationException Si el array está fuera del heap.
      */
     public void add(double number) {
-        double[] newArray = Arrays.copyOf(data, data.length + 1);
-        newArray[data.length] = number;
-        this.data = newArray;
-        this.fragmentCount = Math.min(fragmentCount, data.length);
-        this.needsUpdate = true;
+        checkOnHeap();
+        ensureCapacity(size + 1L);
+        data[size++] = number;
     }
 
     /**
-     * Agrega múltiples números al array de datos y marca los fragmentos para ser recalculados.
+     * Agrega múltiples números al final del array en O(numbers.length) amortizado. Los
+     * fragmentos se ponen al día en el siguiente getFragments().
      *
      * @param numbers El array de números a agregar.
+     * @throws UnsupportedOperationException Si el array está fuera del heap.
      */
     public void add(double[] numbers) {
+        checkOnHeap();
         if (numbers == null || numbers.length == 0) {
             return;
         }
 
-        double[] newArray = Arrays.copyOf(data, data.length + numbers.length);
-        System.arraycopy(numbers, 0, newArray, data.length, numbers.length);
-        this.data = newArray;
-        this.fragmentCount = Math.min(fragmentCount, data.length);
-        this.needsUpdate = true;
+        ensureCapacity((long) size + numbers.length);
+        System.arraycopy(numbers, 0, data, size, numbers.length);
+        size += numbers.length;
+    }
+
+    /**
+     * Garantiza capacidad para minCapacity elementos, al menos duplicando la actual.
+     */
+    private void ensureCapacity(long minCapacity) {
+        if (minCapacity <= data.length) {
+            return;
+        }
+        if (minCapacity > MAX_CAPACITY) {
+            throw new OutOfMemoryError("Un DArrayDouble en el heap no puede pasar de " + MAX_CAPACITY
+                    + " elementos; usar un OffHeapDoubles.");
+        }
+        data = Arrays.copyOf(data, (int) Math.max(minCapacity, Math.min(2L * data.length, MAX_CAPACITY)));
+    }
+
+    private void checkOnHeap() {
+        if (storage != null) {
+            throw new UnsupportedOperationException("Un DArrayDouble fuera del heap tiene tamaño fijo.");
+        }
+    }
+
+    /**
+     * Devuelve el número total de elementos del array.
+     */
+    public int size() {
+        return Math.toIntExact(length());
+    }
+
+    /**
+     * Devuelve el número total de elementos como long (un array fuera del heap puede tener
+     * más de Integer.MAX_VALUE).
+     */
+    public long length() {
+        return storage != null ? storage.length() : size;
+    }
+
+    /**
+     * Indica si los datos están en un almacén fuera del heap.
+     */
+    public boolean isOffHeap() {
+        return storage != null;
+    }
+
+    /**
+     * Devuelve el almacén fuera del heap, o null si los datos están en el heap.
+     */
+    public OffHeapDoubles getStorage() {
+        return storage;
+    }
+
+    /**
+     * Empieza una cadena perezosa de operaciones sobre este array (ver DoublePipeline); no calcula
+     * nada hasta DoublePipeline.run().
+     */
+    public DoublePipeline map(String operation) {
+        return new DoublePipeline(this).map(operation);
+    }
+
+    /**
+     * Empieza una cadena perezosa con un filtro (ver DoublePipeline.filter()).
+     */
+    public DoublePipeline filter(DoublePredicate predicate) {
+        return new DoublePipeline(this).filter(predicate);
+    }
+
+    /**
+     * Empieza una cadena perezosa con un filtro de expresión, que calculan los workers (ver
+     * DoublePipeline.filter(String)).
+     */
+    public DoublePipeline filter(String predicate) {
+        return new DoublePipeline(this).filter(predicate);
+    }
+
+    /**
+     * Aplica op a los elementos [from, from + count) y escribe cada resultado en dst a partir
+     * de dstOffset, sin crear fragmentos ni copias intermedias en el heap. Es el camino del
+     * cálculo en el propio maestro (ver handler.LocalBackend); dst puede ser el array de
+     * resultado final.
+     */
+    public void applyTo(long from, int count, CompiledOperation op, double[] dst, int dstOffset) {
+        if (from < 0 || count < 0 || from + count > length()) {
+            throw new IndexOutOfBoundsException("Tramo [" + from + ", " + (from + count) + ") fuera de un array de " + length());
+        }
+        if (storage != null) {
+            storage.get(from, dst, dstOffset, count);
+            op.apply(dst, dstOffset, dst, dstOffset, count);
+        } else {
+            op.apply(data, (int) from, dst, dstOffset, count);
+        }
+    }
+
+    /**
+     * Número de fragmentos a usar: como mucho uno por elemento y, fuera del heap, los
+     * suficientes para que ninguno pase de OffHeapStore.MAX_FRAGMENT elementos.
+     */
+    private int fragmentsFor(int requested) {
+        long n = length();
+        int count = (int) Math.min(requested, n);
+        if (storage != null) {
+            count = (int) Math.max(count, (n + OffHeapStore.MAX_FRAGMENT - 1) / OffHeapStore.MAX_FRAGMENT);
+        }
+        return count;
     }
 
     /**
@@ -103,26 +298,80 @@ public class DArrayDouble {
      * @return Un nuevo array de datos combinado.
      */
     public double[] mergeFragments(List<Fragment> processedFragments) {
-        double[] result = new double[data.length];
+        double[] result = new double[size()];
         for (Fragment frag : processedFragments) {
-            System.arraycopy(frag.getData(), 0, result, frag.getStartIndex(), frag.getData().length);
+            frag.values().get(result, frag.getStartIndex(), frag.size());
         }
         return result;
     }
 
     /**
      * Devuelve los fragmentos actuales de forma inmutable.
-     * Si los fragmentos necesitan actualizarse, se recalculan automáticamente.
+     * Si se añadieron elementos, se actualizan automáticamente: los fragmentos anteriores al
+     * último se conservan (son los mismos objetos) y el último crece con lo añadido.
      *
      * @return Lista inmutable de fragmentos balanceados.
      */
     public List<Fragment> getFragments() {
-        if (needsUpdate) {
-            divideArray();
+        if (fragmented != size) {
+            refreshFragments();
         }
         return List.copyOf(fragments);
     }
 
+    /**
+     * Número de fragmentos que devolvería getFragments(), sin construirlos ni ponerlos al día.
+     */
+    public int getFragmentCount() {
+        return fragmented != size && redivides() ? Math.min(requestedFragments, size) : fragments.size();
+    }
+
+    /**
+     * Devuelve una partición del array en count fragmentos (como máximo uno por elemento),
+     * sin cambiar el número de fragmentos configurado. La usa el planificador para repartir
+     * más fragmentos que workers.
+     *
+     * @param count Número de fragmentos deseado (debe ser positivo).
+     * @return Lista inmutable de fragmentos balanceados.
+     */
+    public List<Fragment> getFragments(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("El número de fragmentos debe ser positivo.");
+        }
+        count = fragmentsFor(count);
+        List<Fragment> current = getFragments();
+        if (count == current.size()) {
+            return current;
+        }
+        return List.copyOf(divide(count));
+    }
+
+    /**
+     * Devuelve una partición del array con los tamaños dados (por ejemplo, proporcionales a
+     * la capacidad de cada worker), sin cambiar el número de fragmentos configurado.
+     *
+     * @param sizes Tamaño de cada fragmento, en orden; todos positivos y sumando size().
+     * @return Lista inmutable de fragmentos.
+     * @throws IllegalArgumentException Si los tamaños no cubren exactamente el array.
+     */
+    public List<Fragment> getFragments(int[] sizes) {
+        checkSizes(sizes, length());
+        return List.copyOf(divide(sizes));
+    }
+
+    static void checkSizes(int[] sizes, long length) {
+        long total = 0;
+        for (int size : sizes) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("Los tamaños de fragmento deben ser positivos.");
+            }
+            total += size;
+        }
+        if (total != length) {
+            throw new IllegalArgumentException("Los tamaños suman " + total + " y el array tiene " + length + " elementos.");
+        }
+    }
+
     /**
      * Imprime los fragmentos actuales en la consola para depuración o verificación.
      */
@@ -1,18 +1,32 @@
 package core;
 
 import data.FragmentInt;
+import data.OffHeapStore;
+import data.OffHeapInts;
+import ops.CompiledOperation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.IntPredicate;
 
 /**
  * DArrayInt: Maneja la segmentación y gestión de arreglos de enteros para procesamiento distribuido.
+ * Admite añadir elementos en O(1) amortizado; tras añadir, sólo se reconstruye el último
+ * fragmento (ver getFragments()).
  */
 public class DArrayInt {
 
+    /** Mayor array que admiten las JVM habituales. */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
     private int[] data;
+    private OffHeapInts storage;
+    private int size;                 // elementos en uso de data (el resto es capacidad libre)
+    private int requestedFragments;
     private int fragmentCount;
     private List<FragmentInt> fragments;
+    private int fragmented;           // elementos cubiertos por fragments
 
     /**
      * Crea un DArrayInt con segmentación automática.
@@ -29,51 +43,293 @@ public class DArrayInt {
         if (fragmentCount <= 0) {
             throw new IllegalArgumentException("Los fragmentos no pueden ser negativos o nulos.");
         }
+        this.size = data.length;
+        this.requestedFragments = fragmentCount;
         this.fragmentCount = Math.min(fragmentCount, data.length);
         this.fragments = new ArrayList<>();
         divideArray();
     }
 
+    /**
+     * Crea un DArrayInt respaldado por un almacén fuera del heap (ver OffHeapInts). Los fragmentos
+     * son vistas del almacén, sin copias, así que el array puede ser mayor que el heap y
+     * tener más de Integer.MAX_VALUE elementos; ningún fragmento pasa de
+     * OffHeapStore.MAX_FRAGMENT elementos, aunque eso suponga más fragmentos de los pedidos.
+     *
+     * @param storage       Almacén con los datos (no se copia).
+     * @param fragmentCount El número deseado de fragmentos (debe ser positivo).
+     */
+    public DArrayInt(OffHeapInts storage, int fragmentCount) {
+        if (storage == null) {
+            throw new IllegalArgumentException("El almacén no puede ser nulo.");
+        }
+        if (fragmentCount <= 0) {
+            throw new IllegalArgumentException("El número de fragmentos debe ser positivo.");
+        }
+        this.storage = storage;
+        this.requestedFragments = fragmentCount;
+        this.fragmentCount = fragmentsFor(fragmentCount);
+        this.fragments = new ArrayList<>();
+        divideArray();
+    }
+
     /**
      * Divide el arreglo en fragmentos balanceados.
      */
     private void divideArray() {
         fragments.clear();
+        fragments.addAll(divide(fragmentCount));
+        fragmented = size;
+    }
+
+    /**
+     * Pone al día los fragmentos tras añadir elementos: el último se reconstruye con lo
+     * añadido y los demás no se tocan. Sólo se reparte todo de nuevo cuando el último llega
+     * al doble de los demás o faltan fragmentos porque el arreglo era más corto que los
+     * pedidos.
+     */
+    private void refreshFragments() {
+        int last = fragments.size() - 1;
+        FragmentInt tail = fragments.get(last);
+        int tailStart = tail.getStartIndex();
+        if (redivides()) {
+            fragmentCount = Math.min(requestedFragments, size);
+            divideArray();
+            return;
+        }
+        fragments.set(last, new FragmentInt(tail.getId(), tailStart, Arrays.copyOfRange(data, tailStart, size)));
+        fragmented = size;
+    }
+
+    /**
+     * Indica si poner al día los fragmentos tras añadir obliga a repartir todo de nuevo (ver
+     * refreshFragments()).
+     */
+    private boolean redivides() {
+        int last = fragments.size() - 1;
+        int headSize = last == 0 ? Integer.MAX_VALUE : fragments.get(0).size();
+        return fragments.size() < Math.min(requestedFragments, size)
+                || size - fragments.get(last).getStartIndex() > 2L * headSize;
+    }
+
+    /**
+     * Agrega un entero al final del arreglo en O(1) amortizado.
+     * @param number Entero a agregar.
+     * @throws UnsupportedOperationException Si el arreglo está fuera del heap.
+     */
+    public void add(int number) {
+        checkOnHeap();
+        ensureCapacity(size + 1L);
+        data[size++] = number;
+    }
+
+    /**
+     * Agrega varios enteros al final del arreglo en O(numbers.length) amortizado.
+     * @param numbers Enteros a agregar.
+     * @throws UnsupportedOperationException Si el arreglo está fuera del heap.
+     */
+    public void add(int[] numbers) {
+        checkOnHeap();
+        if (numbers == null || numbers.length == 0) {
+            return;
+        }
+        ensureCapacity((long) size + numbers.length);
+        System.arraycopy(numbers, 0, data, size, numbers.length);
+        size += numbers.length;
+    }
 
-        int n = data.length;
-        int baseSize = n / fragmentCount;
-        int remainder = n % fragmentCount;
+    /**
+     * Garantiza capacidad para minCapacity elementos, al menos duplicando la actual.
+     */
+    private void ensureCapacity(long minCapacity) {
+        if (minCapacity <= data.length) {
+            return;
+        }
+        if (minCapacity > MAX_CAPACITY) {
+            throw new OutOfMemoryError("Un DArrayInt en el heap no puede pasar de " + MAX_CAPACITY
+                    + " elementos; usar un OffHeapInts.");
+        }
+        data = Arrays.copyOf(data, (int) Math.max(minCapacity, Math.min(2L * data.length, MAX_CAPACITY)));
+    }
 
-        int start = 0;
+    private void checkOnHeap() {
+        if (storage != null) {
+            throw new UnsupportedOperationException("Un DArrayInt fuera del heap tiene tamaño fijo.");
+        }
+    }
 
-        for (int i = 0; i < fragmentCount; i++) {
-            int extra = (i < remainder) ? 1 : 0;
-            int end = start + baseSize + extra;
+    /**
+     * Corta el arreglo en count fragmentos contiguos cuyos tamaños difieren como mucho en uno.
+     * @param count Número de fragmentos.
+     * @return Fragmentos en orden.
+     */
+    private List<FragmentInt> divide(int count) {
+        long n = length();
+        int baseSize = (int) (n / count);
+        int remainder = (int) (n % count);
 
-            int[] fragmentData = new int[end - start];
-            System.arraycopy(data, start, fragmentData, 0, end - start);
+        int[] sizes = new int[count];
+        for (int i = 0; i < count; i++) {
+            sizes[i] = baseSize + ((i < remainder) ? 1 : 0);
+        }
+        return divide(sizes);
+    }
+
+    /**
+     * Corta el arreglo en fragmentos contiguos con los tamaños dados, en orden.
+     * @param sizes Tamaño de cada fragmento.
+     * @return Fragmentos en orden.
+     */
+    private List<FragmentInt> divide(int[] sizes) {
+        List<FragmentInt> result = new ArrayList<>(sizes.length);
+
+        long start = 0;
 
-            fragments.add(new FragmentInt("F" + i, start, fragmentData));
+        for (int i = 0; i < sizes.length; i++) {
+            if (storage != null) {
+                // Vista del almacén: sin copia
+                result.add(new FragmentInt("F" + i, start, storage.slice(start, sizes[i])));
+            } else {
+                int from = (int) start;
+                int[] fragmentData = new int[sizes[i]];
+                System.arraycopy(data, from, fragmentData, 0, sizes[i]);
+                result.add(new FragmentInt("F" + i, from, fragmentData));
+            }
 
-            start = end;
+            start += sizes[i];
         }
+
+        return result;
     }
 
     /**
-     * Devuelve la lista de fragmentos generados.
+     * Devuelve la lista de fragmentos generados. Si se añadieron elementos, los fragmentos
+     * anteriores al último se conservan (son los mismos objetos) y el último crece.
      * @return Lista de fragmentos.
      */
     public List<FragmentInt> getFragments() {
+        if (fragmented != size) {
+            refreshFragments();
+        }
         return List.copyOf(fragments);
     }
 
+    /**
+     * Número de fragmentos que devolvería getFragments(), sin construirlos ni ponerlos al día.
+     */
+    public int getFragmentCount() {
+        return fragmented != size && redivides() ? Math.min(requestedFragments, size) : fragments.size();
+    }
+
+    /**
+     * Devuelve una partición en count fragmentos (como máximo uno por elemento) sin cambiar
+     * el número de fragmentos configurado.
+     * @param count Número de fragmentos deseado (debe ser positivo).
+     * @return Lista de fragmentos.
+     */
+    public List<FragmentInt> getFragments(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Los fragmentos no pueden ser negativos o nulos.");
+        }
+        count = fragmentsFor(count);
+        List<FragmentInt> current = getFragments();
+        if (count == current.size()) {
+            return current;
+        }
+        return List.copyOf(divide(count));
+    }
+
+    /**
+     * Devuelve una partición con los tamaños dados sin cambiar el número de fragmentos configurado.
+     * @param sizes Tamaño de cada fragmento, en orden; todos positivos y sumando size().
+     * @return Lista de fragmentos.
+     */
+    public List<FragmentInt> getFragments(int[] sizes) {
+        DArrayDouble.checkSizes(sizes, length());
+        return List.copyOf(divide(sizes));
+    }
+
+    /**
+     * Devuelve el número total de elementos del arreglo.
+     * @return Longitud del arreglo.
+     */
+    public int size() {
+        return Math.toIntExact(length());
+    }
+
+    /**
+     * Devuelve el número total de elementos como long (un array fuera del heap puede tener
+     * más de Integer.MAX_VALUE).
+     */
+    public long length() {
+        return storage != null ? storage.length() : size;
+    }
+
+    /**
+     * Indica si los datos están en un almacén fuera del heap.
+     */
+    public boolean isOffHeap() {
+        return storage != null;
+    }
+
+    /**
+     * Devuelve el almacén fuera del heap, o null si los datos están en el heap.
+     */
+    public OffHeapInts getStorage() {
+        return storage;
+    }
+
+    /**
+     * Empieza una cadena perezosa de operaciones sobre este array (ver IntPipeline); no calcula
+     * nada hasta IntPipeline.run().
+     */
+    public IntPipeline map(String operation) {
+        return new IntPipeline(this).map(operation);
+    }
+
+    /**
+     * Empieza una cadena perezosa con un filtro (ver IntPipeline.filter()).
+     */
+    public IntPipeline filter(IntPredicate predicate) {
+        return new IntPipeline(this).filter(predicate);
+    }
+
+    /**
+     * Aplica op a los elementos [from, from + count) y escribe cada resultado en dst a partir
+     * de dstOffset, sin copias intermedias (ver DArrayDouble.applyTo()).
+     */
+    public void applyTo(long from, int count, CompiledOperation op, int[] dst, int dstOffset) {
+        if (from < 0 || count < 0 || from + count > length()) {
+            throw new IndexOutOfBoundsException("Tramo [" + from + ", " + (from + count) + ") fuera de un array de " + length());
+        }
+        if (storage != null) {
+            storage.get(from, dst, dstOffset, count);
+            op.apply(dst, dstOffset, dst, dstOffset, count);
+        } else {
+            op.apply(data, (int) from, dst, dstOffset, count);
+        }
+    }
+
+    /**
+     * Número de fragmentos a usar: como mucho uno por elemento y, fuera del heap, los
+     * suficientes para que ninguno pase de OffHeapStore.MAX_FRAGMENT elementos.
+     */
+    private int fragmentsFor(int requested) {
+        long n = length();
+        int count = (int) Math.min(requested, n);
+        if (storage != null) {
+            count = (int) Math.max(count, (n + OffHeapStore.MAX_FRAGMENT - 1) / OffHeapStore.MAX_FRAGMENT);
+        }
+        return count;
+    }
+
     /**
      * Ensambla los resultados de los fragmentos procesados.
      * @param processedFragments Lista de fragmentos procesados.
      * @return Arreglo combinado con los resultados.
      */
     public int[] mergeFragments(List<FragmentInt> processedFragments) {
-        int[] result = new int[data.length];
+        int[] result = new int[size()];
         for (FragmentInt frag : processedFragments) {
             System.arraycopy(frag.getData(), 0, result, frag.getStartIndex(), frag.getData().length);
         }
@@ -84,7 +340,7 @@ public class DArrayInt {
      * Imprime los fragmentos para depuración.
      */
     public void printFragments() {
-        for (FragmentInt f : fragments) {
+        for (FragmentInt f : getFragments()) {
             System.out.println(f);
         }
     }
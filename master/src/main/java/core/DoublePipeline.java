@@ -0,0 +1,210 @@
+package core;
+
+import ops.CompiledOperation;
+import ops.OperationCompiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.DoublePredicate;
+
+/**
+ * DoublePipeline: Cadena perezosa de operaciones sobre un DArrayDouble, p. ej.
+ * {@code dArray.map("sin(x)").map("x * 2").map(Operation.SQRT)}. No calcula nada hasta run().
+ *
+ * Los map() consecutivos se fusionan en una sola expresión (ver OperationCompiler.compose()),
+ * así que cada tramo de operaciones elemento a elemento es un único trabajo: cada fragmento
+ * hace un solo viaje de ida y vuelta por muchas operaciones que se encadenen. Un filtro de
+ * expresión, filter("x &gt; 0.5"), viaja en el mismo trabajo que los map() que lo preceden y
+ * los workers sólo devuelven lo que lo cumple (ver handler.MasterServer.filter()); un
+ * filter() con un predicado de Java se aplica en el maestro sobre el resultado del tramo
+ * anterior. Ambos cierran la fusión: los map() que les sigan forman un trabajo nuevo sobre
+ * los elementos que quedan.
+ *
+ * Es inmutable: cada llamada devuelve una cadena nueva y la original se puede reutilizar.
+ */
+public final class DoublePipeline {
+
+    /**
+     * Ejecuta un tramo fusionado, p. ej. {@code master::submit} de handler.MasterServer.
+     */
+    public interface Runner {
+        CompletableFuture<double[]> run(DArrayDouble dArray, String operation);
+    }
+
+    /**
+     * Ejecuta un tramo fusionado terminado en un filtro de expresión y devuelve sólo los
+     * resultados que lo cumplen, p. ej. {@code master::filter} de handler.MasterServer.
+     */
+    public interface Filter {
+        CompletableFuture<double[]> run(DArrayDouble dArray, String operation, String predicate);
+    }
+
+    /** Longitud a partir de la cual una expresión fusionada se corta en otro trabajo. */
+    static final int MAX_FUSED_LENGTH = 4096;
+
+    private static final CompiledOperation IDENTITY = OperationCompiler.compile("x");
+
+    /**
+     * Un tramo de la cadena: una expresión fusionada (con o sin filtro de expresión detrás)
+     * o un filtro de Java.
+     */
+    private static final class Stage {
+        final String operation;
+        final String predicate;
+        final DoublePredicate filter;
+
+        Stage(String operation, String predicate, DoublePredicate filter) {
+            this.operation = operation;
+            this.predicate = predicate;
+            this.filter = filter;
+        }
+
+        boolean isMap() {
+            return operation != null && predicate == null;
+        }
+    }
+
+    private final DArrayDouble source;
+    private final List<Stage> stages;
+
+    DoublePipeline(DArrayDouble source) {
+        this(source, Collections.emptyList());
+    }
+
+    private DoublePipeline(DArrayDouble source, List<Stage> stages) {
+        this.source = source;
+        this.stages = stages;
+    }
+
+    /**
+     * Añade una operación elemento a elemento; se fusiona con el map() anterior si lo hay.
+     *
+     * @throws IllegalArgumentException Si la operación no es una expresión válida.
+     */
+    public DoublePipeline map(String operation) {
+        OperationCompiler.compile(operation);
+        List<Stage> next = new ArrayList<>(stages);
+        Stage last = next.isEmpty() ? null : next.get(next.size() - 1);
+        if (last != null && last.isMap()) {
+            String fused = OperationCompiler.compose(operation, last.operation);
+            if (fused.length() <= MAX_FUSED_LENGTH) {
+                next.set(next.size() - 1, new Stage(fused, null, null));
+                return new DoublePipeline(source, next);
+            }
+        }
+        next.add(new Stage(operation, null, null));
+        return new DoublePipeline(source, next);
+    }
+
+    /**
+     * Conserva sólo los elementos que cumplen predicate; se evalúa en el maestro.
+     */
+    public DoublePipeline filter(DoublePredicate predicate) {
+        List<Stage> next = new ArrayList<>(stages);
+        next.add(new Stage(null, null, predicate));
+        return new DoublePipeline(source, next);
+    }
+
+    /**
+     * Conserva sólo los elementos v para los que la expresión predicate no da 0 ni NaN (ver
+     * OperationCompiler.isTrue()), p. ej. "x &gt; 0.5" o "(x &gt;= 1) * (x &lt; 5)". Viaja
+     * con los map() anteriores en un solo trabajo.
+     *
+     * @throws IllegalArgumentException Si el predicado no es una expresión válida.
+     */
+    public DoublePipeline filter(String predicate) {
+        OperationCompiler.compile(predicate);
+        List<Stage> next = new ArrayList<>(stages);
+        Stage last = next.isEmpty() ? null : next.get(next.size() - 1);
+        if (last != null && last.isMap()) {
+            next.set(next.size() - 1, new Stage(last.operation, predicate, null));
+        } else {
+            next.add(new Stage("x", predicate, null));
+        }
+        return new DoublePipeline(source, next);
+    }
+
+    /**
+     * Expresiones que se enviarán, una por trabajo, en el orden en que se ejecutarán (la de
+     * un trabajo con filtro de expresión no incluye el predicado).
+     */
+    public List<String> plan() {
+        List<String> jobs = new ArrayList<>();
+        for (Stage stage : stages) {
+            if (stage.operation != null) {
+                jobs.add(stage.operation);
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Ejecuta la cadena con runner; los filtros de expresión se evalúan en el maestro sobre
+     * el resultado de su trabajo.
+     *
+     * @see #run(Runner, Filter)
+     */
+    public CompletableFuture<double[]> run(Runner runner) {
+        return run(runner, null);
+    }
+
+    /**
+     * Ejecuta la cadena: cada tramo fusionado es un trabajo de runner, o de filter si termina
+     * en un filtro de expresión, y los filtros de Java se aplican en el maestro entre trabajo
+     * y trabajo. Los trabajos intermedios se reparten en tantos fragmentos como el array original.
+     *
+     * @param filter Ejecutor de los trabajos con filtro de expresión; null para evaluarlos en el maestro.
+     * @return Futuro con el resultado final (más corto que el original si hubo filtros).
+     */
+    public CompletableFuture<double[]> run(Runner runner, Filter filter) {
+        int fragmentCount = Math.max(1, source.getFragmentCount());
+        CompletableFuture<double[]> result = null;
+        for (Stage stage : stages) {
+            if (result == null && stage.operation != null) {
+                result = job(source, stage, runner, filter);
+            } else if (result == null) {
+                result = CompletableFuture.completedFuture(filter(materialize(source), stage.filter));
+            } else if (stage.operation != null) {
+                result = result.thenCompose(data -> data.length == 0
+                        ? CompletableFuture.completedFuture(data)
+                        : job(new DArrayDouble(data, fragmentCount), stage, runner, filter));
+            } else {
+                DoublePredicate predicate = stage.filter;
+                result = result.thenApply(data -> filter(data, predicate));
+            }
+        }
+        return result != null ? result : CompletableFuture.completedFuture(materialize(source));
+    }
+
+    private static CompletableFuture<double[]> job(DArrayDouble dArray, Stage stage, Runner runner, Filter filter) {
+        if (stage.predicate == null) {
+            return runner.run(dArray, stage.operation);
+        }
+        if (filter != null) {
+            return filter.run(dArray, stage.operation, stage.predicate);
+        }
+        CompiledOperation predicate = OperationCompiler.compile(stage.predicate);
+        return runner.run(dArray, stage.operation)
+                .thenApply(data -> filter(data, v -> OperationCompiler.isTrue(predicate.applyAsDouble(v))));
+    }
+
+    private static double[] materialize(DArrayDouble dArray) {
+        double[] copy = new double[dArray.size()];
+        dArray.applyTo(0, copy.length, IDENTITY, copy, 0);
+        return copy;
+    }
+
+    private static double[] filter(double[] data, DoublePredicate predicate) {
+        double[] kept = new double[data.length];
+        int n = 0;
+        for (double v : data) {
+            if (predicate.test(v)) {
+                kept[n++] = v;
+            }
+        }
+        return n == kept.length ? kept : Arrays.copyOf(kept, n);
+    }
+}
@@ -0,0 +1,143 @@
+package core;
+
+import ops.CompiledOperation;
+import ops.OperationCompiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntPredicate;
+
+/**
+ * IntPipeline: Cadena perezosa de operaciones sobre un DArrayInt (ver DoublePipeline).
+ *
+ * Cada operación sobre enteros se calcula en double y se convierte con (int), así que al
+ * fusionar la anterior se envuelve en int(...): {@code map("x * 1.5").map("x * 2")} se envía
+ * como {@code (int(x * 1.5)) * 2}, que da lo mismo que dos trabajos seguidos.
+ */
+public final class IntPipeline {
+
+    /**
+     * Ejecuta un tramo fusionado, p. ej. {@code new LocalBackend()::map} de handler.LocalBackend.
+     */
+    public interface Runner {
+        CompletableFuture<int[]> run(DArrayInt dArray, String operation);
+    }
+
+    /** Longitud a partir de la cual una expresión fusionada se corta en otro trabajo. */
+    static final int MAX_FUSED_LENGTH = 4096;
+
+    private static final CompiledOperation IDENTITY = OperationCompiler.compile("x");
+
+    /** Un tramo de la cadena: una expresión fusionada o un filtro. */
+    private static final class Stage {
+        final String operation;
+        final IntPredicate filter;
+
+        Stage(String operation, IntPredicate filter) {
+            this.operation = operation;
+            this.filter = filter;
+        }
+    }
+
+    private final DArrayInt source;
+    private final List<Stage> stages;
+
+    IntPipeline(DArrayInt source) {
+        this(source, Collections.emptyList());
+    }
+
+    private IntPipeline(DArrayInt source, List<Stage> stages) {
+        this.source = source;
+        this.stages = stages;
+    }
+
+    /**
+     * Añade una operación elemento a elemento; se fusiona con el map() anterior si lo hay.
+     *
+     * @throws IllegalArgumentException Si la operación no es una expresión válida.
+     */
+    public IntPipeline map(String operation) {
+        OperationCompiler.compile(operation);
+        List<Stage> next = new ArrayList<>(stages);
+        Stage last = next.isEmpty() ? null : next.get(next.size() - 1);
+        if (last != null && last.operation != null) {
+            String fused = OperationCompiler.compose(operation, "int(" + last.operation + ")");
+            if (fused.length() <= MAX_FUSED_LENGTH) {
+                next.set(next.size() - 1, new Stage(fused, null));
+                return new IntPipeline(source, next);
+            }
+        }
+        next.add(new Stage(operation, null));
+        return new IntPipeline(source, next);
+    }
+
+    /**
+     * Conserva sólo los elementos que cumplen predicate; se evalúa en el maestro.
+     */
+    public IntPipeline filter(IntPredicate predicate) {
+        List<Stage> next = new ArrayList<>(stages);
+        next.add(new Stage(null, predicate));
+        return new IntPipeline(source, next);
+    }
+
+    /**
+     * Expresiones que se enviarán, una por trabajo, en el orden en que se ejecutarán.
+     */
+    public List<String> plan() {
+        List<String> jobs = new ArrayList<>();
+        for (Stage stage : stages) {
+            if (stage.operation != null) {
+                jobs.add(stage.operation);
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Ejecuta la cadena: cada tramo fusionado es un trabajo de runner y los filtros se
+     * aplican en el maestro entre trabajo y trabajo. Los trabajos intermedios se reparten
+     * en tantos fragmentos como el array original.
+     *
+     * @return Futuro con el resultado final (más corto que el original si hubo filtros).
+     */
+    public CompletableFuture<int[]> run(Runner runner) {
+        int fragmentCount = Math.max(1, source.getFragmentCount());
+        CompletableFuture<int[]> result = null;
+        for (Stage stage : stages) {
+            if (result == null && stage.operation != null) {
+                result = runner.run(source, stage.operation);
+            } else if (result == null) {
+                result = CompletableFuture.completedFuture(filter(materialize(source), stage.filter));
+            } else if (stage.operation != null) {
+                String operation = stage.operation;
+                result = result.thenCompose(data -> data.length == 0
+                        ? CompletableFuture.completedFuture(data)
+                        : runner.run(new DArrayInt(data, fragmentCount), operation));
+            } else {
+                IntPredicate predicate = stage.filter;
+                result = result.thenApply(data -> filter(data, predicate));
+            }
+        }
+        return result != null ? result : CompletableFuture.completedFuture(materialize(source));
+    }
+
+    private static int[] materialize(DArrayInt dArray) {
+        int[] copy = new int[dArray.size()];
+        dArray.applyTo(0, copy.length, IDENTITY, copy, 0);
+        return copy;
+    }
+
+    private static int[] filter(int[] data, IntPredicate predicate) {
+        int[] kept = new int[data.length];
+        int n = 0;
+        for (int v : data) {
+            if (predicate.test(v)) {
+                kept[n++] = v;
+            }
+        }
+        return n == kept.length ? kept : Arrays.copyOf(kept, n);
+    }
+}
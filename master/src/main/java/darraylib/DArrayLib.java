@@ -28,6 +28,6 @@ public class DArrayLib {
      * @return Instancia de MasterServer.
      */
     public static MasterServer createMasterServer(int port, DArrayDouble dArray) {
-        return new MasterServer(port, dArray, dArray.getFragments().size());
+        return new MasterServer(port, dArray, dArray.getFragmentCount());
     }
 }
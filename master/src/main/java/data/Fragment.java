@@ -1,36 +1,180 @@
 package data;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
 import java.util.Arrays;
 
 /**
  * Representa un fragmento de datos enviado a un worker para procesamiento distribuido.
+ * Puede llevar su propia copia de los datos o ser una vista (sin copia) de un tramo de un
+ * array (ver Fragment(String, double[], int, int)) o de un OffHeapDoubles. Un fragmento
+ * residente (asResident()) se queda en la memoria de los workers que lo reciben y los
+ * trabajos siguientes lo citan por su id y su contenido.
  */
 
 public class Fragment {
     private String id;          // ID único del fragmento
-    private int startIndex;     // Índice de inicio en el array original
-    private double[] data;      // Subarray de datos
+    private long startIndex;    // Índice de inicio en el array original
+    private double[] data;      // Datos, propios o del array original (null si es una vista)
+    private int dataOffset;     // Primer elemento del fragmento en data
+    private int length;         // Elementos del fragmento en data
+    private boolean window;     // data es del array original: getData() siempre copia
+    private ByteBuffer view;    // Tramo little-endian del almacén (null si tiene copia)
+    private boolean resident;   // Los workers lo guardan en memoria con este id
 
     public Fragment(String id, int startIndex, double[] data) {
         this.id = id;
         this.startIndex = startIndex;
         this.data = data;
+        this.length = data.length;
+    }
+
+    /**
+     * Crea un fragmento sobre el tramo [from, from + count) de source, sin copiarlo; from es
+     * también su índice de inicio en el array original. Ese tramo de source no debe cambiar
+     * mientras se use el fragmento.
+     */
+    public Fragment(String id, double[] source, int from, int count) {
+        if (from < 0 || count < 0 || from + count > source.length) {
+            throw new IndexOutOfBoundsException("Tramo [" + from + ", " + (from + count) + ") fuera de un array de " + source.length);
+        }
+        this.id = id;
+        this.startIndex = from;
+        this.data = source;
+        this.dataOffset = from;
+        this.length = count;
+        this.window = true;
+    }
+
+    /**
+     * Crea un fragmento vista sobre un tramo de un almacén fuera del heap.
+     *
+     * @param offset Índice de inicio en el array original (puede superar Integer.MAX_VALUE).
+     * @param view   Tramo little-endian con los datos (ver OffHeapStore.slice()).
+     */
+    public Fragment(String id, long offset, ByteBuffer view) {
+        this.id = id;
+        this.startIndex = offset;
+        this.view = view.duplicate().order(ByteOrder.LITTLE_ENDIAN);
     }
 
     public String getId() {
         return id;
     }
 
+    /**
+     * Mismo fragmento (comparte los datos, sin copiarlos) marcado como residente: los workers
+     * que lo reciben lo guardan en memoria con el id dado y a partir de ahí basta con citarlo
+     * (ver WorkerConnection). El id debe nombrar el mismo tramo del mismo array en todos los
+     * trabajos; si los datos cambian, contentHash() lo detecta y el fragmento viaja de nuevo.
+     */
+    public Fragment asResident(String id) {
+        Fragment copy = view != null ? new Fragment(id, startIndex, view) : new Fragment(id, getStartIndex(), data);
+        copy.dataOffset = dataOffset;
+        copy.length = length;
+        copy.window = window;
+        copy.resident = true;
+        return copy;
+    }
+
+    public boolean isResident() {
+        return resident;
+    }
+
+    /**
+     * Huella de 128 bits del contenido (los bits de cada double, en orden), en hexadecimal:
+     * dos mezclas independientes de 64 bits, así que dos fragmentos distintos no comparten
+     * huella en la práctica. Se recalcula en cada llamada porque una vista puede cambiar con
+     * su almacén.
+     */
+    public String contentHash() {
+        int n = size();
+        long h1 = 0x9E3779B97F4A7C15L ^ n;
+        long h2 = 0xC2B2AE3D27D4EB4FL + n;
+        for (int i = 0; i < n; i++) {
+            long bits = Double.doubleToRawLongBits(get(i));
+            h1 = (h1 ^ bits) * 0x100000001B3L;
+            h1 ^= h1 >>> 29;
+            h2 = Long.rotateLeft(h2 + bits * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B97F4A7C15L;
+        }
+        return hex(mix(h1)) + hex(mix(h2));
+    }
+
+    private static long mix(long h) {
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    private static String hex(long h) {
+        String digits = Long.toHexString(h);
+        return "0000000000000000".substring(digits.length()) + digits;
+    }
+
+    /**
+     * @throws ArithmeticException Si el fragmento empieza más allá de Integer.MAX_VALUE
+     *                             (usar getOffset()).
+     */
     public int getStartIndex() {
+        return Math.toIntExact(startIndex);
+    }
+
+    /**
+     * Índice de inicio en el array original como long.
+     */
+    public long getOffset() {
         return startIndex;
     }
 
+    /**
+     * Devuelve los datos del fragmento. En un fragmento vista o sobre un tramo de un array
+     * cada llamada copia el tramo a un array nuevo, aunque el tramo ocupe el array entero;
+     * para leerlo sin copias se usa values().
+     */
     public double[] getData() {
+        if (view != null) {
+            double[] copy = new double[size()];
+            getView().asDoubleBuffer().get(copy);
+            return copy;
+        }
+        if (window) {
+            return Arrays.copyOfRange(data, dataOffset, dataOffset + length);
+        }
         return data;
     }
 
+    /**
+     * Elementos del fragmento sin copiarlos (posición 0), sea cual sea su origen; si no es una
+     * vista, el buffer está respaldado por un array (array(), arrayOffset()).
+     */
+    public DoubleBuffer values() {
+        return view != null ? getView().asDoubleBuffer() : DoubleBuffer.wrap(data, dataOffset, length).slice();
+    }
+
+    /**
+     * Indica si el fragmento es una vista de un almacén fuera del heap.
+     */
+    public boolean isView() {
+        return view != null;
+    }
+
+    /**
+     * Tramo little-endian con los datos (posición 0), o null si el fragmento no es una vista.
+     */
+    public ByteBuffer getView() {
+        return view == null ? null : view.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Elemento i del fragmento (0..size()-1), sin copiar aunque sea una vista.
+     */
+    public double get(int i) {
+        return view != null ? view.getDouble(view.position() + i * Double.BYTES) : data[dataOffset + i];
+    }
+
     public int size(){
-        return data.length;
+        return view != null ? view.remaining() / Double.BYTES : length;
     }
 
     @Override
@@ -38,7 +182,7 @@ public class Fragment {
         return "Fragment{" +
                 "id='" + id + '\'' +
                 ", startIndex=" + startIndex +
-                ", data=" + Arrays.toString(data) +
+                ", data=" + (view != null ? "vista de " + size() + " elementos" : Arrays.toString(getData())) +
                 '}';
     }
 }
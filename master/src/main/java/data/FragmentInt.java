@@ -1,15 +1,20 @@
 package data;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
 /**
  * FragmentInt: Representa un fragmento de un arreglo de enteros para procesamiento distribuido.
+ * Puede llevar su propia copia de los datos o ser una vista (sin copia) de un tramo de un
+ * OffHeapInts.
  */
 public class FragmentInt {
 
     private final String id;
-    private final int startIndex;
+    private final long startIndex;
     private final int[] data;
+    private final ByteBuffer view;
 
     /**
      * Construye un FragmentInt con identificador, índice de inicio y datos.
@@ -21,6 +26,20 @@ public class FragmentInt {
         this.id = id;
         this.startIndex = startIndex;
         this.data = data;
+        this.view = null;
+    }
+
+    /**
+     * Construye un FragmentInt vista sobre un tramo de un almacén fuera del heap.
+     * @param id Identificador único del fragmento.
+     * @param offset Índice inicial dentro del arreglo original (puede superar Integer.MAX_VALUE).
+     * @param view Tramo little-endian con los datos (ver OffHeapStore.slice()).
+     */
+    public FragmentInt(String id, long offset, ByteBuffer view) {
+        this.id = id;
+        this.startIndex = offset;
+        this.data = null;
+        this.view = view.duplicate().order(ByteOrder.LITTLE_ENDIAN);
     }
 
     /**
@@ -34,25 +53,71 @@ public class FragmentInt {
     /**
      * Obtiene el índice de inicio del fragmento.
      * @return Índice inicial.
+     * @throws ArithmeticException Si el fragmento empieza más allá de Integer.MAX_VALUE (usar getOffset()).
      */
     public int getStartIndex() {
+        return Math.toIntExact(startIndex);
+    }
+
+    /**
+     * Obtiene el índice de inicio del fragmento como long.
+     * @return Índice inicial.
+     */
+    public long getOffset() {
         return startIndex;
     }
 
     /**
      * Obtiene los datos del fragmento.
+     * En un fragmento vista cada llamada copia el tramo a un arreglo nuevo.
      * @return Arreglo de enteros.
      */
     public int[] getData() {
+        if (view != null) {
+            int[] copy = new int[size()];
+            getView().asIntBuffer().get(copy);
+            return copy;
+        }
         return data;
     }
 
+    /**
+     * Obtiene el número de elementos del fragmento.
+     * @return Número de enteros.
+     */
+    /**
+     * Elemento i del fragmento (0..size()-1), sin copiar aunque sea una vista.
+     */
+    public int get(int i) {
+        return view != null ? view.getInt(view.position() + i * Integer.BYTES) : data[i];
+    }
+
+    public int size() {
+        return view != null ? view.remaining() / Integer.BYTES : data.length;
+    }
+
+    /**
+     * Indica si el fragmento es una vista de un almacén fuera del heap.
+     * @return true si es una vista.
+     */
+    public boolean isView() {
+        return view != null;
+    }
+
+    /**
+     * Obtiene el tramo little-endian con los datos (posición 0).
+     * @return Vista de los datos, o null si el fragmento no es una vista.
+     */
+    public ByteBuffer getView() {
+        return view == null ? null : view.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
     @Override
     public String toString() {
         return "FragmentInt{" +
                 "id='" + id + '\'' +
                 ", startIndex=" + startIndex +
-                ", data=" + Arrays.toString(data) +
+                ", data=" + (view != null ? "vista de " + size() + " elementos" : Arrays.toString(data)) +
                 '}';
     }
 }
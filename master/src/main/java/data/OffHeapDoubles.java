@@ -0,0 +1,80 @@
+package data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * OffHeapDoubles: Array de doubles con índices long respaldado por un fichero mapeado (ver
+ * OffHeapStore). Puede ser mayor que el heap y tener más de Integer.MAX_VALUE elementos.
+ */
+public final class OffHeapDoubles extends OffHeapStore {
+
+    private OffHeapDoubles(Path file, long length, int stride, boolean temporary) throws IOException {
+        super(file, length, Double.BYTES, stride, temporary);
+    }
+
+    /**
+     * Mapea (creándolo o ampliándolo si hace falta) un fichero de length doubles.
+     */
+    public static OffHeapDoubles map(Path file, long length) throws IOException {
+        return new OffHeapDoubles(file, length, MAX_SLICE, false);
+    }
+
+    /**
+     * Mapea un fichero existente de doubles little-endian; la longitud sale de su tamaño.
+     */
+    public static OffHeapDoubles open(Path file) throws IOException {
+        return map(file, Files.size(file) / Double.BYTES);
+    }
+
+    /**
+     * Reserva length doubles en un fichero temporal que se borra al cerrar el almacén.
+     */
+    public static OffHeapDoubles allocate(long length) throws IOException {
+        return new OffHeapDoubles(temporaryFile(), length, MAX_SLICE, true);
+    }
+
+    /** Sólo para pruebas: ventanas de stride elementos para cruzarlas con arrays pequeños. */
+    static OffHeapDoubles allocate(long length, int stride) throws IOException {
+        return new OffHeapDoubles(temporaryFile(), length, stride, true);
+    }
+
+    public double get(long index) {
+        checkRange(index, 1);
+        return window(index).getDouble(byteOffset(index));
+    }
+
+    public void set(long index, double value) {
+        checkRange(index, 1);
+        window(index).putDouble(byteOffset(index), value);
+    }
+
+    /**
+     * Copia src[srcOffset, srcOffset + count) en los elementos que empiezan en index.
+     */
+    public void put(long index, double[] src, int srcOffset, int count) {
+        checkRange(index, count);
+        while (count > 0) {
+            int n = Math.min(count, stride());
+            slice(index, n).asDoubleBuffer().put(src, srcOffset, n);
+            index += n;
+            srcOffset += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * Copia los elementos que empiezan en index en dst[dstOffset, dstOffset + count).
+     */
+    public void get(long index, double[] dst, int dstOffset, int count) {
+        checkRange(index, count);
+        while (count > 0) {
+            int n = Math.min(count, stride());
+            slice(index, n).asDoubleBuffer().get(dst, dstOffset, n);
+            index += n;
+            dstOffset += n;
+            count -= n;
+        }
+    }
+}
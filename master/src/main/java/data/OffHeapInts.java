@@ -0,0 +1,80 @@
+package data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * OffHeapInts: Array de ints con índices long respaldado por un fichero mapeado (ver
+ * OffHeapStore). Puede ser mayor que el heap y tener más de Integer.MAX_VALUE elementos.
+ */
+public final class OffHeapInts extends OffHeapStore {
+
+    private OffHeapInts(Path file, long length, int stride, boolean temporary) throws IOException {
+        super(file, length, Integer.BYTES, stride, temporary);
+    }
+
+    /**
+     * Mapea (creándolo o ampliándolo si hace falta) un fichero de length ints.
+     */
+    public static OffHeapInts map(Path file, long length) throws IOException {
+        return new OffHeapInts(file, length, MAX_SLICE, false);
+    }
+
+    /**
+     * Mapea un fichero existente de ints little-endian; la longitud sale de su tamaño.
+     */
+    public static OffHeapInts open(Path file) throws IOException {
+        return map(file, Files.size(file) / Integer.BYTES);
+    }
+
+    /**
+     * Reserva length ints en un fichero temporal que se borra al cerrar el almacén.
+     */
+    public static OffHeapInts allocate(long length) throws IOException {
+        return new OffHeapInts(temporaryFile(), length, MAX_SLICE, true);
+    }
+
+    /** Sólo para pruebas: ventanas de stride elementos para cruzarlas con arrays pequeños. */
+    static OffHeapInts allocate(long length, int stride) throws IOException {
+        return new OffHeapInts(temporaryFile(), length, stride, true);
+    }
+
+    public int get(long index) {
+        checkRange(index, 1);
+        return window(index).getInt(byteOffset(index));
+    }
+
+    public void set(long index, int value) {
+        checkRange(index, 1);
+        window(index).putInt(byteOffset(index), value);
+    }
+
+    /**
+     * Copia src[srcOffset, srcOffset + count) en los elementos que empiezan en index.
+     */
+    public void put(long index, int[] src, int srcOffset, int count) {
+        checkRange(index, count);
+        while (count > 0) {
+            int n = Math.min(count, stride());
+            slice(index, n).asIntBuffer().put(src, srcOffset, n);
+            index += n;
+            srcOffset += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * Copia los elementos que empiezan en index en dst[dstOffset, dstOffset + count).
+     */
+    public void get(long index, int[] dst, int dstOffset, int count) {
+        checkRange(index, count);
+        while (count > 0) {
+            int n = Math.min(count, stride());
+            slice(index, n).asIntBuffer().get(dst, dstOffset, n);
+            index += n;
+            dstOffset += n;
+            count -= n;
+        }
+    }
+}
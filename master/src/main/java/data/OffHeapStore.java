@@ -0,0 +1,167 @@
+package data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * OffHeapStore: Almacén de elementos de tamaño fijo en un fichero mapeado en memoria,
+ * fuera del heap y con índices long.
+ *
+ * Un MappedByteBuffer no puede pasar de 2 GB, así que el fichero se mapea en ventanas que
+ * empiezan cada MAX_SLICE elementos y miden casi el doble: las ventanas consecutivas se
+ * solapan y cualquier tramo de hasta MAX_SLICE elementos cabe entero en una de ellas. Por
+ * eso slice() devuelve siempre una vista contigua (sin copiar) que puede viajar tal cual
+ * como cuerpo de una trama binaria. Los datos se guardan en little-endian, el mismo orden
+ * que el protocolo.
+ */
+public abstract class OffHeapStore implements AutoCloseable {
+
+    /** Elementos máximos de un tramo (1 GB de doubles, 512 MB de ints). */
+    public static final int MAX_SLICE = 1 << 27;
+
+    /**
+     * Elementos máximos de un fragmento cortado de un almacén: el resultado de cada fragmento
+     * en vuelo se recibe en el heap antes de copiarse al destino, así que esto acota el heap
+     * que necesita el maestro. Configurable con -Ddarraylib.offheap.fragment.max=N.
+     */
+    public static final int MAX_FRAGMENT = Math.max(1, Math.min(MAX_SLICE,
+            Integer.getInteger("darraylib.offheap.fragment.max", 1 << 24)));
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long length;
+    private final int elementBytes;
+    private final int stride;
+    private final MappedByteBuffer[] windows;
+    private final boolean temporary;
+
+    /**
+     * @param stride Elementos entre el inicio de dos ventanas (MAX_SLICE salvo en pruebas).
+     */
+    OffHeapStore(Path file, long length, int elementBytes, int stride, boolean temporary) throws IOException {
+        if (length <= 0) {
+            throw new IllegalArgumentException("La longitud debe ser positiva.");
+        }
+        if (stride <= 0 || (2L * stride - 1) * elementBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Ventana de mapeo inválida: " + stride);
+        }
+        this.file = file;
+        this.length = length;
+        this.elementBytes = elementBytes;
+        this.stride = stride;
+        this.temporary = temporary;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long bytes = length * elementBytes;
+            if (channel.size() < bytes) {
+                channel.write(ByteBuffer.wrap(new byte[1]), bytes - 1);   // reserva el tamaño sin escribir todo
+            }
+            int count = (int) ((length + stride - 1) / stride);
+            this.windows = new MappedByteBuffer[count];
+            for (int w = 0; w < count; w++) {
+                long first = (long) w * stride;
+                long elements = Math.min(2L * stride - 1, length - first);
+                windows[w] = channel.map(FileChannel.MapMode.READ_WRITE, first * elementBytes, elements * elementBytes);
+                windows[w].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Crea un fichero temporal para un almacén que se borra al cerrarlo (o al salir de la JVM).
+     */
+    static Path temporaryFile() throws IOException {
+        Path tmp = Files.createTempFile("darraylib-", ".bin");
+        tmp.toFile().deleteOnExit();
+        return tmp;
+    }
+
+    /**
+     * Número de elementos.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Fichero que respalda el almacén.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Vista little-endian (sin copia) de los elementos [offset, offset + count); sus cambios
+     * se reflejan en el almacén.
+     *
+     * @throws IllegalArgumentException Si el tramo se sale del almacén o supera MAX_SLICE.
+     */
+    public ByteBuffer slice(long offset, int count) {
+        if (count < 0 || count > stride) {
+            throw new IllegalArgumentException("Un tramo no puede superar " + stride + " elementos: " + count);
+        }
+        checkRange(offset, count);
+        int w = (int) (offset / stride);
+        int from = (int) (offset - (long) w * stride) * elementBytes;
+        ByteBuffer view = windows[w].duplicate();
+        view.limit(from + count * elementBytes).position(from);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Escribe en disco los cambios pendientes.
+     */
+    public void force() {
+        for (MappedByteBuffer window : windows) {
+            window.force();
+        }
+    }
+
+    /**
+     * Cierra el fichero (los mapeos se liberan cuando el recolector los descarta) y, si era
+     * temporal, lo borra.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+            if (temporary) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Ventana y posición en bytes del elemento index.
+     */
+    final ByteBuffer window(long index) {
+        return windows[(int) (index / stride)];
+    }
+
+    final int byteOffset(long index) {
+        return (int) (index % stride) * elementBytes;
+    }
+
+    final int stride() {
+        return stride;
+    }
+
+    final void checkRange(long offset, long count) {
+        if (offset < 0 || count < 0 || offset + count > length) {
+            throw new IndexOutOfBoundsException("Tramo [" + offset + ", " + (offset + count)
+                    + ") fuera de un almacén de " + length + " elementos");
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package handler;
+
+import ops.CompiledOperation;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CostModel: Decide si un trabajo se calcula en el propio maestro (LocalBackend) o se
+ * reparte entre los workers, comparando dos estimaciones de tiempo:
+ * <ul>
+ *   <li>Local: n · coste por elemento de la operación compilada / hilos locales. El coste se
+ *       mide una vez por operación con una pequeña calibración.</li>
+ *   <li>Distribuido: un coste fijo por trabajo (ida y vuelta, planificación) más, si ya hay
+ *       medidas de los workers (WeightedPartitioner), n / su rendimiento sumado; si no, el
+ *       envío de 16 bytes por elemento más el cálculo repartido entre sus núcleos con un
+ *       factor de lentitud respecto al maestro (los workers Python interpretan).</li>
+ * </ul>
+ * Las constantes se ajustan con -Ddarraylib.cost.rtt.us, -Ddarraylib.cost.ns.per.byte y
+ * -Ddarraylib.cost.remote.slowdown; el modo con -Ddarraylib.backend=auto|local|distributed.
+ */
+public final class CostModel {
+
+    public enum Backend { AUTO, LOCAL, DISTRIBUTED }
+
+    public static final String BACKEND_PROPERTY = "darraylib.backend";
+
+    /** Bytes por elemento en el cable: el fragmento de ida y el resultado de vuelta. */
+    private static final int BYTES_PER_ELEMENT = 2 * Double.BYTES;
+
+    private static final int CALIBRATION_ELEMENTS = 4096;
+
+    private static final Map<CompiledOperation, Double> NANOS_PER_ELEMENT = new ConcurrentHashMap<>();
+
+    private final double roundTripNanos;
+    private final double nanosPerByte;
+    private final double remoteSlowdown;
+    private final int localParallelism;
+
+    /**
+     * Modelo con las constantes de las propiedades del sistema (o sus valores por defecto).
+     */
+    public CostModel(int localParallelism) {
+        this(Double.parseDouble(System.getProperty("darraylib.cost.rtt.us", "2000")) * 1000,
+             Double.parseDouble(System.getProperty("darraylib.cost.ns.per.byte", "1.0")),
+             Double.parseDouble(System.getProperty("darraylib.cost.remote.slowdown", "20")),
+             localParallelism);
+    }
+
+    /**
+     * @param roundTripNanos   Coste fijo de un trabajo distribuido.
+     * @param nanosPerByte     Coste de mover un byte por la red (ida o vuelta).
+     * @param remoteSlowdown   Cuánto más tarda un worker por elemento que el maestro.
+     * @param localParallelism Hilos del backend local.
+     */
+    public CostModel(double roundTripNanos, double nanosPerByte, double remoteSlowdown, int localParallelism) {
+        this.roundTripNanos = roundTripNanos;
+        this.nanosPerByte = nanosPerByte;
+        this.remoteSlowdown = remoteSlowdown;
+        this.localParallelism = Math.max(1, localParallelism);
+    }
+
+    /**
+     * Modo pedido por -Ddarraylib.backend (AUTO si no se indica).
+     */
+    public static Backend configuredBackend() {
+        String value = System.getProperty(BACKEND_PROPERTY, "auto");
+        try {
+            return Backend.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("⚠ " + BACKEND_PROPERTY + "=" + value + " no es válido (auto, local, distributed); se usa auto.");
+            return Backend.AUTO;
+        }
+    }
+
+    /**
+     * Tiempo estimado de calcular n elementos en el maestro.
+     */
+    public double localNanos(long elements, CompiledOperation operation) {
+        return elements * nanosPerElement(operation) / localParallelism;
+    }
+
+    /**
+     * Cota inferior del tiempo de cualquier trabajo distribuido: si el cálculo local ya es
+     * más rápido, no hace falta ni conectar con los workers para decidir.
+     */
+    public double minRemoteNanos() {
+        return roundTripNanos;
+    }
+
+    /**
+     * Tiempo estimado de repartir n elementos entre los workers.
+     *
+     * @param workerCores Núcleos anunciados por todos los workers.
+     * @param throughput  Elementos por segundo medidos sumando todos los workers, o 0 si
+     *                    alguno aún no tiene medidas.
+     */
+    public double remoteNanos(long elements, CompiledOperation operation, int workerCores, double throughput) {
+        if (throughput > 0) {
+            return roundTripNanos + elements / throughput * 1e9;
+        }
+        double transfer = (double) elements * BYTES_PER_ELEMENT * nanosPerByte;
+        double compute = elements * nanosPerElement(operation) * remoteSlowdown / Math.max(1, workerCores);
+        return roundTripNanos + transfer + compute;
+    }
+
+    /**
+     * Elige LOCAL o DISTRIBUTED para un trabajo (nunca AUTO).
+     */
+    public Backend choose(long elements, CompiledOperation operation, int workerCores, double throughput) {
+        if (workerCores <= 0) {
+            return Backend.LOCAL;
+        }
+        return localNanos(elements, operation) <= remoteNanos(elements, operation, workerCores, throughput)
+                ? Backend.LOCAL : Backend.DISTRIBUTED;
+    }
+
+    /**
+     * Coste medido de la operación por elemento en un hilo del maestro, en nanosegundos.
+     * Se calibra la primera vez (la mejor de varias pasadas, para descontar el arranque del
+     * JIT) y se recuerda por operación.
+     */
+    public static double nanosPerElement(CompiledOperation operation) {
+        return NANOS_PER_ELEMENT.computeIfAbsent(operation, CostModel::calibrate);
+    }
+
+    private static double calibrate(CompiledOperation operation) {
+        double[] sample = new double[CALIBRATION_ELEMENTS];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = (i - sample.length / 2) * 0.37;
+        }
+        double[] out = new double[sample.length];
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long t0 = System.nanoTime();
+            operation.apply(sample, 0, out, 0, sample.length);
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+        return Math.max(0.25, (double) best / sample.length);
+    }
+}
@@ -0,0 +1,104 @@
+package handler;
+
+import protocol.BinaryFrame;
+
+import java.util.BitSet;
+
+/**
+ * FilterSink: Recoge los resultados de un trabajo de filtrado, cuyos fragmentos vuelven con
+ * longitudes distintas (sólo los elementos que cumplen el predicado).
+ *
+ * Cada fragmento se guarda tal cual llega (la trama RESULT, sin decodificar, o el array del
+ * camino JSON) junto a su recuento. Cuando están todos, una suma prefija exclusiva de los
+ * recuentos da el inicio de cada fragmento en la salida, que se reserva una sola vez con el
+ * tamaño exacto; cada fragmento se copia en su tramo y se suelta. Como en ResultSink, un
+ * fragmento repetido (copia especulativa o reenvío) no cuenta dos veces.
+ */
+final class FilterSink {
+
+    /** Trama RESULT o double[] de cada fragmento hasta compactar. */
+    private final Object[] parts;
+    private final int[] counts;
+    private final BitSet received;
+    private int receivedCount;
+    private double[] result;
+
+    FilterSink(int fragments) {
+        this.parts = new Object[fragments];
+        this.counts = new int[fragments];
+        this.received = new BitSet(fragments);
+    }
+
+    /**
+     * Guarda la trama RESULT de un fragmento (se decodifica al compactar).
+     *
+     * @return true si con este fragmento el resultado queda completo.
+     */
+    synchronized boolean accept(int fragmentIndex, BinaryFrame frame) {
+        return store(fragmentIndex, frame, frame.count());
+    }
+
+    /**
+     * Guarda los elementos de un fragmento ya decodificados (camino JSON o cálculo local).
+     *
+     * @return true si con este fragmento el resultado queda completo.
+     */
+    synchronized boolean accept(int fragmentIndex, double[] data) {
+        return store(fragmentIndex, data, data.length);
+    }
+
+    private boolean store(int fragmentIndex, Object part, int count) {
+        if (fragmentIndex < 0 || fragmentIndex >= parts.length) {
+            throw new IllegalArgumentException("Fragmento " + fragmentIndex + " fuera de rango (0.." + (parts.length - 1) + ")");
+        }
+        if (!received.get(fragmentIndex)) {
+            received.set(fragmentIndex);
+            receivedCount++;
+            parts[fragmentIndex] = part;
+            counts[fragmentIndex] = count;
+        }
+        return receivedCount == parts.length;
+    }
+
+    /**
+     * Resultado compacto, o null si aún faltan fragmentos. Se construye la primera vez que se
+     * pide y después siempre devuelve el mismo array.
+     *
+     * @throws IllegalStateException Si los elementos que pasan el filtro no caben en un array.
+     */
+    synchronized double[] getResult() {
+        if (result != null || receivedCount != parts.length) {
+            return result;
+        }
+        // Suma prefija exclusiva: offsets[i] = counts[0] + … + counts[i-1]
+        int[] offsets = new int[parts.length];
+        long total = 0;
+        for (int i = 0; i < parts.length; i++) {
+            offsets[i] = (int) total;
+            total += counts[i];
+            if (total > Integer.MAX_VALUE) {
+                throw new IllegalStateException("El filtro deja " + total + " elementos o más; no caben en un double[]");
+            }
+        }
+        double[] output = new double[(int) total];
+        for (int i = 0; i < parts.length; i++) {
+            Object part = parts[i];
+            if (part instanceof BinaryFrame) {
+                ((BinaryFrame) part).copyInto(output, offsets[i]);
+            } else {
+                System.arraycopy((double[]) part, 0, output, offsets[i], counts[i]);
+            }
+            parts[i] = null;
+        }
+        result = output;
+        return result;
+    }
+
+    synchronized int receivedCount() {
+        return receivedCount;
+    }
+
+    synchronized boolean isComplete() {
+        return receivedCount == parts.length;
+    }
+}
@@ -0,0 +1,560 @@
+package handler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * FragmentScheduler: Reparte los fragmentos de un trabajo desde una cola compartida.
+ *
+ * El trabajo se divide en muchos más fragmentos que workers; cada worker tiene hasta
+ * "depth" fragmentos en vuelo y, cada vez que termina uno, toma el siguiente de la cola.
+ * Así los workers rápidos procesan más fragmentos y uno lento sólo retiene los que tiene
+ * en vuelo. Si un worker falla, sus fragmentos vuelven al frente de la cola y el worker
+ * deja de recibir trabajo; ningún fragmento se pierde mientras quede algún worker vivo.
+ *
+ * Con setOwners() cada fragmento puede asignarse de antemano a un worker (por ejemplo,
+ * con tamaños según su capacidad, ver WeightedPartitioner): cada worker consume primero su
+ * propia cola y, cuando se le acaba, toma de la compartida o roba del final de la cola del
+ * worker con más fragmentos pendientes.
+ *
+ * Cuando no quedan fragmentos en cola, los fragmentos que llevan en vuelo más de
+ * speculationFactor veces la mediana de duración del trabajo se lanzan otra vez en un
+ * worker libre o de reserva (ejecución especulativa). Gana el primer resultado; la otra
+ * copia se cancela y, si su respuesta llega igualmente, se ignora.
+ *
+ * @param <W> Tipo de conexión con el worker.
+ */
+public class FragmentScheduler<W> {
+
+    /** Fragmentos por worker al sobreparticionar; configurable con -Ddarraylib.fragments.per.worker=N. */
+    public static final int FRAGMENTS_PER_WORKER = Math.max(1, Integer.getInteger("darraylib.fragments.per.worker", 4));
+
+    /** Fragmentos en vuelo por worker; configurable con -Ddarraylib.scheduler.depth=N. */
+    public static final int DEFAULT_DEPTH = Math.max(1, Integer.getInteger("darraylib.scheduler.depth", 2));
+
+    /** Múltiplo de la mediana a partir del cual un fragmento es rezagado; 0 desactiva la especulación. */
+    public static final double DEFAULT_SPECULATION_FACTOR =
+            Double.parseDouble(System.getProperty("darraylib.speculation.factor", "1.5"));
+
+    /** Tiempo mínimo en vuelo antes de especular, para no duplicar fragmentos triviales. */
+    public static final long DEFAULT_SPECULATION_MIN_MILLIS = Long.getLong("darraylib.speculation.min.millis", 50L);
+
+    /** Duraciones necesarias antes de fiarse de la mediana. */
+    private static final int MIN_SAMPLES = 3;
+    private static final long CHECK_INTERVAL_MILLIS = 25;
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "darraylib-scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Envía un fragmento a un worker.
+     */
+    public interface Dispatcher<W> {
+        /**
+         * @return Futuro que se completa cuando el resultado del fragmento ya está guardado.
+         *         Si se cancela, el resultado no debe guardarse.
+         */
+        CompletableFuture<?> dispatch(W worker, int fragmentIndex);
+    }
+
+    /**
+     * Recibe cada fragmento terminado.
+     */
+    public interface Listener<W> {
+        /**
+         * Se invoca una sola vez por fragmento (aunque haya copias especulativas), fuera del
+         * cerrojo y desde el hilo que recibió la respuesta.
+         *
+         * @param worker    Worker cuyo resultado se aceptó.
+         * @param completed Fragmentos terminados hasta ahora, incluido éste.
+         */
+        void onFragmentDone(int fragmentIndex, W worker, int completed);
+    }
+
+    /** Un envío de un fragmento a un worker. */
+    private static final class Attempt<W> {
+        final W worker;
+        final int index;
+        final boolean speculative;
+        long startNanos = System.nanoTime();
+        CompletableFuture<?> future;
+
+        Attempt(W worker, int index, boolean speculative) {
+            this.worker = worker;
+            this.index = index;
+            this.speculative = speculative;
+        }
+    }
+
+    private final int fragmentCount;
+    private final int depth;
+    private final Dispatcher<W> dispatcher;
+    private final Function<W, String> names;
+    private double speculationFactor = DEFAULT_SPECULATION_FACTOR;
+    private long speculationMinNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SPECULATION_MIN_MILLIS);
+
+    private final Deque<Integer> queue = new ArrayDeque<>();
+    /** Colas propias de cada worker (sólo con setOwners()). */
+    private final Map<W, Deque<Integer>> owned = new HashMap<>();
+    private final BitSet queued;
+    private final BitSet done;
+    private int doneCount;
+    /** Workers vivos y sus envíos en vuelo. */
+    private final Map<W, List<Attempt<W>>> running = new LinkedHashMap<>();
+    /** Workers de reserva: sólo reciben copias especulativas. */
+    private final Set<W> spares = new LinkedHashSet<>();
+    /** Envíos en vuelo de cada fragmento (más de uno si hay copia especulativa). */
+    private final Map<Integer, List<Attempt<W>>> attempts = new HashMap<>();
+    private final Map<W, Integer> completedBy = new LinkedHashMap<>();
+
+    /** Mediana de duraciones con dos montículos: lower (máximo arriba) y upper (mínimo arriba). */
+    private final PriorityQueue<Long> lower = new PriorityQueue<>(Collections.reverseOrder());
+    private final PriorityQueue<Long> upper = new PriorityQueue<>();
+
+    private int speculativeLaunches;
+    private int speculativeWins;
+
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private ScheduledFuture<?> checker;
+    private Listener<W> listener;
+
+    /**
+     * @param fragmentCount Número de fragmentos del trabajo.
+     * @param depth         Fragmentos en vuelo por worker.
+     * @param dispatcher    Envía un fragmento a un worker.
+     * @param names         Nombre de cada worker para los mensajes.
+     */
+    public FragmentScheduler(int fragmentCount, int depth, Dispatcher<W> dispatcher, Function<W, String> names) {
+        if (depth <= 0) {
+            throw new IllegalArgumentException("La profundidad debe ser positiva.");
+        }
+        this.fragmentCount = fragmentCount;
+        this.depth = depth;
+        this.dispatcher = dispatcher;
+        this.names = names;
+        this.queued = new BitSet(fragmentCount);
+        this.done = new BitSet(fragmentCount);
+        for (int i = 0; i < fragmentCount; i++) {
+            queue.add(i);
+        }
+        queued.set(0, fragmentCount);
+    }
+
+    /**
+     * Ajusta la ejecución especulativa (antes de start()).
+     *
+     * @param factor    Múltiplo de la mediana a partir del cual se especula; 0 la desactiva.
+     * @param minMillis Tiempo mínimo en vuelo antes de especular.
+     */
+    public synchronized void setSpeculation(double factor, long minMillis) {
+        this.speculationFactor = factor;
+        this.speculationMinNanos = TimeUnit.MILLISECONDS.toNanos(minMillis);
+    }
+
+    /**
+     * Registra quién recibe los fragmentos terminados (antes de start()).
+     */
+    public synchronized void setListener(Listener<W> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Asigna de antemano cada fragmento a un worker (antes de start()). Los fragmentos con
+     * dueño null van a la cola compartida.
+     *
+     * @param owners Worker preferido de cada fragmento, en orden.
+     */
+    public synchronized void setOwners(List<W> owners) {
+        if (owners.size() != fragmentCount) {
+            throw new IllegalArgumentException("Se esperaban " + fragmentCount + " dueños y hay " + owners.size());
+        }
+        queue.clear();
+        owned.clear();
+        for (int i = 0; i < fragmentCount; i++) {
+            W owner = owners.get(i);
+            if (owner == null) {
+                queue.add(i);
+            } else {
+                owned.computeIfAbsent(owner, k -> new ArrayDeque<>()).add(i);
+            }
+        }
+    }
+
+    /**
+     * Empieza a repartir entre los workers dados.
+     *
+     * @return Futuro que se completa cuando todos los fragmentos tienen resultado, o falla
+     *         si no quedan workers vivos con fragmentos pendientes.
+     */
+    public CompletableFuture<Void> start(Collection<W> workers) {
+        synchronized (this) {
+            if (fragmentCount == 0) {
+                completion.complete(null);
+                return completion;
+            }
+            for (W worker : workers) {
+                running.putIfAbsent(worker, new ArrayList<>());
+            }
+            if (speculationFactor > 0) {
+                checker = TIMER.scheduleWithFixedDelay(this::pumpAll,
+                        CHECK_INTERVAL_MILLIS, CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                completion.whenComplete((r, e) -> checker.cancel(false));
+            }
+        }
+        failIfStuck();
+        pumpAll();
+        return completion;
+    }
+
+    /**
+     * Incorpora un worker (por ejemplo, uno de respaldo) que empieza a tomar fragmentos.
+     * Si era de reserva, pasa a tomar también fragmentos de la cola.
+     */
+    public void addWorker(W worker) {
+        synchronized (this) {
+            spares.remove(worker);
+            running.putIfAbsent(worker, new ArrayList<>());
+        }
+        pump(worker);
+    }
+
+    /**
+     * Añade un worker de reserva, que sólo recibe copias especulativas de fragmentos
+     * rezagados mientras haya workers normales vivos.
+     */
+    public void addSpare(W worker) {
+        synchronized (this) {
+            if (running.containsKey(worker)) {
+                return;
+            }
+            spares.add(worker);
+            running.put(worker, new ArrayList<>());
+        }
+    }
+
+    /**
+     * Retira un worker caído: sus fragmentos en vuelo vuelven a la cola. Si más tarde llega
+     * alguno de sus resultados, se acepta igualmente.
+     */
+    public void removeWorker(W worker) {
+        synchronized (this) {
+            retire(worker);
+        }
+        failIfStuck();
+        pumpAll();
+    }
+
+    /**
+     * Fragmentos terminados por cada worker (incluidos los retirados).
+     */
+    public synchronized Map<W, Integer> getCompletedBy() {
+        return new LinkedHashMap<>(completedBy);
+    }
+
+    /**
+     * Número de fragmentos que ya tienen resultado.
+     */
+    public synchronized int getDoneCount() {
+        return doneCount;
+    }
+
+    /**
+     * Copias especulativas lanzadas.
+     */
+    public synchronized int getSpeculativeLaunches() {
+        return speculativeLaunches;
+    }
+
+    /**
+     * Copias especulativas cuyo resultado llegó antes que el original.
+     */
+    public synchronized int getSpeculativeWins() {
+        return speculativeWins;
+    }
+
+    /**
+     * Asigna al worker fragmentos de la cola hasta llenar sus huecos en vuelo y, con la cola
+     * vacía, copias de fragmentos rezagados. Los envíos se hacen fuera del cerrojo porque un
+     * fallo inmediato vuelve a entrar en el planificador.
+     */
+    private void pump(W worker) {
+        List<Attempt<W>> assigned = new ArrayList<>();
+        synchronized (this) {
+            List<Attempt<W>> inFlight = running.get(worker);
+            if (inFlight == null || completion.isDone()) {
+                return;
+            }
+            while (inFlight.size() < depth && !spares.contains(worker)) {
+                Integer index = nextFor(worker);
+                if (index == null) {
+                    break;
+                }
+                queued.clear(index);
+                if (done.get(index)) {
+                    continue;
+                }
+                assigned.add(track(new Attempt<>(worker, index, false)));
+            }
+            while (inFlight.size() < depth) {
+                Integer straggler = pickStraggler(worker);
+                if (straggler == null) {
+                    break;
+                }
+                speculativeLaunches++;
+                System.out.println("🐢 Fragmento " + straggler + " rezagado; copia especulativa en " + names.apply(worker));
+                assigned.add(track(new Attempt<>(worker, straggler, true)));
+            }
+        }
+        for (Attempt<W> attempt : assigned) {
+            CompletableFuture<?> f;
+            try {
+                f = dispatcher.dispatch(worker, attempt.index);
+            } catch (RuntimeException e) {
+                onFinished(attempt, e);
+                continue;
+            }
+            synchronized (this) {
+                attempt.future = f;
+                attempt.startNanos = System.nanoTime();   // sin contar la conexión/handshake inicial
+            }
+            f.whenComplete((r, error) -> onFinished(attempt, error));
+        }
+    }
+
+    private void pumpAll() {
+        List<W> live;
+        synchronized (this) {
+            live = new ArrayList<>(running.keySet());
+        }
+        for (W worker : live) {
+            pump(worker);
+        }
+    }
+
+    /**
+     * Siguiente fragmento para el worker: de su propia cola, de la compartida o robado del
+     * final de la cola propia más larga de otro worker vivo. Debe llamarse con el cerrojo tomado.
+     */
+    private Integer nextFor(W worker) {
+        Deque<Integer> own = owned.get(worker);
+        if (own != null && !own.isEmpty()) {
+            return own.pollFirst();
+        }
+        if (!queue.isEmpty()) {
+            return queue.pollFirst();
+        }
+        Deque<Integer> victim = null;
+        for (Map.Entry<W, Deque<Integer>> e : owned.entrySet()) {
+            if (running.containsKey(e.getKey()) && (victim == null || e.getValue().size() > victim.size())) {
+                victim = e.getValue();
+            }
+        }
+        return victim == null || victim.isEmpty() ? null : victim.pollLast();
+    }
+
+    /** Debe llamarse con el cerrojo tomado. */
+    private Attempt<W> track(Attempt<W> attempt) {
+        running.get(attempt.worker).add(attempt);
+        attempts.computeIfAbsent(attempt.index, k -> new ArrayList<>(2)).add(attempt);
+        return attempt;
+    }
+
+    /** Debe llamarse con el cerrojo tomado. */
+    private void untrack(Attempt<W> attempt) {
+        List<Attempt<W>> inFlight = running.get(attempt.worker);
+        if (inFlight != null) {
+            inFlight.remove(attempt);
+        }
+        List<Attempt<W>> sameIndex = attempts.get(attempt.index);
+        if (sameIndex != null) {
+            sameIndex.remove(attempt);
+            if (sameIndex.isEmpty()) {
+                attempts.remove(attempt.index);
+            }
+        }
+    }
+
+    /**
+     * Elige el fragmento que más tiempo lleva en vuelo por encima del umbral, sin copia
+     * especulativa todavía y que no esté ya en este worker. Debe llamarse con el cerrojo tomado.
+     */
+    private Integer pickStraggler(W worker) {
+        if (speculationFactor <= 0 || !queued.isEmpty() || lower.size() + upper.size() < MIN_SAMPLES) {
+            return null;
+        }
+        long threshold = Math.max(speculationMinNanos, (long) (speculationFactor * median()));
+        long now = System.nanoTime();
+        Integer best = null;
+        long bestElapsed = threshold;
+        for (Map.Entry<Integer, List<Attempt<W>>> e : attempts.entrySet()) {
+            List<Attempt<W>> list = e.getValue();
+            if (list.size() != 1 || list.get(0).worker.equals(worker)) {
+                continue;
+            }
+            long elapsed = now - list.get(0).startNanos;
+            if (elapsed > bestElapsed) {
+                best = e.getKey();
+                bestElapsed = elapsed;
+            }
+        }
+        return best;
+    }
+
+    private void onFinished(Attempt<W> attempt, Throwable error) {
+        boolean finished = false;
+        boolean retired = false;
+        int completed = 0;
+        Listener<W> toNotify = null;
+        List<Attempt<W>> losers = new ArrayList<>();
+        synchronized (this) {
+            boolean live = running.containsKey(attempt.worker);
+            untrack(attempt);
+
+            if (done.get(attempt.index)) {
+                // Copia perdedora (o cancelada): se ignora y su hueco queda libre
+            } else if (error == null) {
+                done.set(attempt.index);
+                doneCount++;
+                completed = doneCount;
+                toNotify = listener;
+                completedBy.merge(attempt.worker, 1, Integer::sum);
+                recordDuration(System.nanoTime() - attempt.startNanos);
+                if (attempt.speculative) {
+                    speculativeWins++;
+                }
+                List<Attempt<W>> others = attempts.remove(attempt.index);
+                if (others != null) {
+                    for (Attempt<W> other : others) {
+                        List<Attempt<W>> inFlight = running.get(other.worker);
+                        if (inFlight != null) {
+                            inFlight.remove(other);
+                        }
+                        losers.add(other);
+                    }
+                }
+                finished = doneCount == fragmentCount;
+            } else if (live) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                System.err.println("⚠ Fragmento " + attempt.index + " falló en " + names.apply(attempt.worker) + " ("
+                        + cause.getMessage() + "); se reencola y el worker deja de recibir trabajo.");
+                retire(attempt.worker);
+                requeue(attempt.index);
+                retired = true;
+            } else {
+                requeue(attempt.index);
+            }
+        }
+
+        for (Attempt<W> loser : losers) {
+            if (loser.future != null) {
+                loser.future.cancel(false);
+            }
+        }
+        if (toNotify != null) {
+            try {
+                toNotify.onFragmentDone(attempt.index, attempt.worker, completed);
+            } catch (RuntimeException e) {
+                System.err.println("⚠ El listener falló con el fragmento " + attempt.index + ": " + e.getMessage());
+            }
+        }
+        if (finished) {
+            completion.complete(null);
+        } else if (retired) {
+            failIfStuck();
+            pumpAll();
+        } else if (!losers.isEmpty()) {
+            pumpAll();
+        } else {
+            pump(attempt.worker);
+        }
+    }
+
+    /** Debe llamarse con el cerrojo tomado. */
+    private void retire(W worker) {
+        spares.remove(worker);
+        Deque<Integer> own = owned.remove(worker);
+        if (own != null) {
+            queue.addAll(own);
+        }
+        List<Attempt<W>> inFlight = running.remove(worker);
+        if (inFlight == null) {
+            return;
+        }
+        for (Attempt<W> a : new ArrayList<>(inFlight)) {
+            untrack(a);
+            requeue(a.index);
+        }
+    }
+
+    /**
+     * Devuelve el fragmento a la cola si no tiene resultado ni otro envío en vuelo.
+     * Debe llamarse con el cerrojo tomado.
+     */
+    private void requeue(int index) {
+        if (!done.get(index) && !queued.get(index) && !attempts.containsKey(index)) {
+            queue.addFirst(index);
+            queued.set(index);
+        }
+    }
+
+    /** Debe llamarse con el cerrojo tomado. */
+    private void recordDuration(long nanos) {
+        if (lower.isEmpty() || nanos <= lower.peek()) {
+            lower.add(nanos);
+        } else {
+            upper.add(nanos);
+        }
+        if (lower.size() > upper.size() + 1) {
+            upper.add(lower.poll());
+        } else if (upper.size() > lower.size()) {
+            lower.add(upper.poll());
+        }
+    }
+
+    /** Debe llamarse con el cerrojo tomado. */
+    private long median() {
+        if (lower.size() > upper.size()) {
+            return lower.peek();
+        }
+        return (lower.peek() + upper.peek()) / 2;
+    }
+
+    /**
+     * Si sólo quedan workers de reserva, pasan a tomar fragmentos de la cola; si no queda
+     * ninguno, el trabajo falla.
+     */
+    private void failIfStuck() {
+        synchronized (this) {
+            if (doneCount == fragmentCount || running.size() > spares.size()) {
+                return;
+            }
+            if (!spares.isEmpty()) {
+                System.out.println("🔄 Sin workers normales; los de reserva toman los fragmentos pendientes.");
+                spares.clear();
+                return;
+            }
+        }
+        completion.completeExceptionally(new IllegalStateException(
+                "No quedan workers disponibles para los fragmentos pendientes"));
+    }
+}
@@ -0,0 +1,449 @@
+package handler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * FragmentStep: Paso final que cada worker aplica a su fragmento ya calculado (campo "post"
+ * de la TASK) y que el maestro completa sobre el resultado ensamblado. Es lo que convierte un
+ * trabajo elemento a elemento en una ordenación (MasterServer.sort(), MasterServerInt.sort())
+ * o en una suma prefija (MasterServer.scan(), MasterServerInt.scan()) de todo el array.
+ *
+ * El resultado llega a un ResultSink (o ResultSinkInt) normal, así que cada fragmento ocupa
+ * su tramo; los inicios de los tramos (fragmentStarts()) son los que usa combine(). Con int
+ * la suma prefija desborda como la aritmética int de Java.
+ */
+enum FragmentStep {
+
+    /**
+     * Cada fragmento se ordena en su worker (Arrays.sort: -0.0 antes que 0.0 y los NaN al
+     * final) y el maestro mezcla los tramos ordenados.
+     */
+    SORT("sort") {
+        @Override
+        void apply(double[] data, int from, int to) {
+            Arrays.sort(data, from, to);
+        }
+
+        @Override
+        void verify(int fragmentIndex, IntToDoubleFunction result, int count) {
+            for (int i = 1; i < count; i++) {
+                if (Double.compare(result.applyAsDouble(i - 1), result.applyAsDouble(i)) > 0) {
+                    throw new IllegalStateException("El fragmento " + fragmentIndex
+                        + " no llegó ordenado (posición " + i + ")");
+                }
+            }
+        }
+
+        @Override
+        void combine(double[] data, long[] starts, ForkJoinPool pool) {
+            merge(data, bounds(data.length, starts), pool);
+        }
+
+        @Override
+        void apply(int[] data, int from, int to) {
+            Arrays.sort(data, from, to);
+        }
+
+        @Override
+        void verifyInts(int fragmentIndex, IntUnaryOperator result, int count) {
+            for (int i = 1; i < count; i++) {
+                if (result.applyAsInt(i - 1) > result.applyAsInt(i)) {
+                    throw new IllegalStateException("El fragmento " + fragmentIndex
+                        + " no llegó ordenado (posición " + i + ")");
+                }
+            }
+        }
+
+        @Override
+        void combine(int[] data, long[] starts, ForkJoinPool pool) {
+            merge(data, bounds(data.length, starts), pool);
+        }
+    },
+
+    /**
+     * Cada fragmento se sustituye en su worker por sus sumas prefijas inclusivas y el maestro
+     * suma a cada tramo el total de los anteriores (segunda pasada).
+     */
+    SCAN("scan") {
+        @Override
+        void apply(double[] data, int from, int to) {
+            for (int i = from + 1; i < to; i++) {
+                data[i] += data[i - 1];
+            }
+        }
+
+        @Override
+        void combine(double[] data, long[] starts, ForkJoinPool pool) {
+            int[] bounds = bounds(data.length, starts);
+            int runs = bounds.length - 1;
+            // Acarreo de cada tramo: suma de los totales locales (su último elemento) de los anteriores
+            double[] carries = new double[runs];
+            for (int r = 1; r < runs; r++) {
+                carries[r] = bounds[r] > bounds[r - 1] ? carries[r - 1] + data[bounds[r] - 1] : carries[r - 1];
+            }
+            parallel(pool, runs, r -> {
+                double carry = carries[r];
+                if (carry != 0) {
+                    for (int i = bounds[r]; i < bounds[r + 1]; i++) {
+                        data[i] += carry;
+                    }
+                }
+            });
+        }
+
+        @Override
+        void apply(int[] data, int from, int to) {
+            for (int i = from + 1; i < to; i++) {
+                data[i] += data[i - 1];
+            }
+        }
+
+        @Override
+        void combine(int[] data, long[] starts, ForkJoinPool pool) {
+            int[] bounds = bounds(data.length, starts);
+            int runs = bounds.length - 1;
+            int[] carries = new int[runs];
+            for (int r = 1; r < runs; r++) {
+                carries[r] = bounds[r] > bounds[r - 1] ? carries[r - 1] + data[bounds[r] - 1] : carries[r - 1];
+            }
+            parallel(pool, runs, r -> {
+                int carry = carries[r];
+                if (carry != 0) {
+                    for (int i = bounds[r]; i < bounds[r + 1]; i++) {
+                        data[i] += carry;
+                    }
+                }
+            });
+        }
+    };
+
+    /** Elementos por cubo por debajo de los cuales la mezcla no se reparte entre hilos. */
+    private static final int MIN_BUCKET = 1 << 14;
+
+    private final String wireName;
+
+    FragmentStep(String wireName) {
+        this.wireName = wireName;
+    }
+
+    /** Valor del campo "post" de la TASK (ver shared/communication_protocol.md). */
+    String wireName() {
+        return wireName;
+    }
+
+    /**
+     * Aplica el paso a data[from, to) como lo haría un worker (ver LocalBackend).
+     */
+    abstract void apply(double[] data, int from, int to);
+
+    /**
+     * Comprueba el resultado de un fragmento antes de guardarlo (ver ResultSink.Check).
+     *
+     * @throws IllegalStateException Si el worker no aplicó el paso.
+     */
+    void verify(int fragmentIndex, IntToDoubleFunction result, int count) {
+    }
+
+    /**
+     * Completa en su sitio un resultado cuyos tramos ya tienen el paso aplicado.
+     *
+     * @param starts Inicio de cada tramo, en orden creciente.
+     */
+    abstract void combine(double[] data, long[] starts, ForkJoinPool pool);
+
+    /**
+     * Versión int de apply(double[], int, int).
+     */
+    abstract void apply(int[] data, int from, int to);
+
+    /**
+     * Versión int de verify(int, IntToDoubleFunction, int) (ver ResultSinkInt.Check).
+     */
+    void verifyInts(int fragmentIndex, IntUnaryOperator result, int count) {
+    }
+
+    /**
+     * Versión int de combine(double[], long[], ForkJoinPool).
+     */
+    abstract void combine(int[] data, long[] starts, ForkJoinPool pool);
+
+    /**
+     * Límites de los tramos: los inicios más el final del array.
+     */
+    private static int[] bounds(int length, long[] starts) {
+        int[] bounds = new int[starts.length + 1];
+        for (int i = 0; i < starts.length; i++) {
+            bounds[i] = (int) starts[i];
+        }
+        bounds[starts.length] = length;
+        return bounds;
+    }
+
+    /**
+     * Mezcla los tramos ordenados como en una ordenación por muestreo: de cada tramo se toman
+     * muestras regulares, de todas ellas salen los separadores de los cubos y cada tramo se
+     * corta por los separadores con una búsqueda binaria. Cada cubo junta los trozos de todos
+     * los tramos con una mezcla de k vías (montículo por el elemento actual de cada trozo) y
+     * escribe en su sitio del resultado, que es la suma prefija de los tamaños de los cubos
+     * anteriores; los cubos se mezclan en paralelo.
+     */
+    private static void merge(double[] data, int[] bounds, ForkJoinPool pool) {
+        int runs = bounds.length - 1;
+        if (runs < 2) {
+            return;
+        }
+        double[] source = data.clone();
+        int buckets = (int) Math.max(1, Math.min(pool.getParallelism() * 2L, data.length / MIN_BUCKET));
+
+        // Separadores: buckets-1 muestras regulares de cada tramo, ordenadas y vueltas a muestrear
+        double[] splitters = new double[buckets - 1];
+        if (buckets > 1) {
+            double[] samples = new double[runs * (buckets - 1)];
+            int n = 0;
+            for (int r = 0; r < runs; r++) {
+                int size = bounds[r + 1] - bounds[r];
+                for (int j = 1; j < buckets; j++) {
+                    samples[n++] = size == 0 ? Double.NaN : source[bounds[r] + (int) ((long) size * j / buckets)];
+                }
+            }
+            Arrays.sort(samples);
+            for (int j = 1; j < buckets; j++) {
+                splitters[j - 1] = samples[(int) ((long) samples.length * j / buckets)];
+            }
+        }
+
+        // cuts[r][j]: primer elemento del tramo r que va al cubo j (el cubo j acaba en cuts[r][j+1])
+        int[][] cuts = new int[runs][buckets + 1];
+        int[] offsets = new int[buckets + 1];
+        for (int r = 0; r < runs; r++) {
+            cuts[r][0] = bounds[r];
+            cuts[r][buckets] = bounds[r + 1];
+            for (int j = 1; j < buckets; j++) {
+                cuts[r][j] = lowerBound(source, cuts[r][j - 1], bounds[r + 1], splitters[j - 1]);
+            }
+            for (int j = 0; j < buckets; j++) {
+                offsets[j + 1] += cuts[r][j + 1] - cuts[r][j];
+            }
+        }
+        for (int j = 0; j < buckets; j++) {
+            offsets[j + 1] += offsets[j];
+        }
+
+        parallel(pool, buckets, j -> {
+            int[] pos = new int[runs];
+            int[] end = new int[runs];
+            for (int r = 0; r < runs; r++) {
+                pos[r] = cuts[r][j];
+                end[r] = cuts[r][j + 1];
+            }
+            kWayMerge(source, pos, end, data, offsets[j]);
+        });
+    }
+
+    /**
+     * Primer índice de a[from, to) cuyo elemento no es menor que key (orden de Double.compare).
+     */
+    private static int lowerBound(double[] a, int from, int to, double key) {
+        int lo = from;
+        int hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Double.compare(a[mid], key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Mezcla los trozos ordenados source[pos[r], end[r]) en out a partir de offset con un
+     * montículo de los trozos que aún tienen elementos, ordenado por su elemento actual.
+     */
+    private static void kWayMerge(double[] source, int[] pos, int[] end, double[] out, int offset) {
+        int[] heap = new int[pos.length];
+        int size = 0;
+        for (int r = 0; r < pos.length; r++) {
+            if (pos[r] < end[r]) {
+                heap[size++] = r;
+            }
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(source, pos, heap, size, i);
+        }
+        int o = offset;
+        while (size > 0) {
+            int r = heap[0];
+            out[o++] = source[pos[r]++];
+            if (pos[r] == end[r]) {
+                heap[0] = heap[--size];
+            }
+            if (size > 0) {
+                siftDown(source, pos, heap, size, 0);
+            }
+        }
+    }
+
+    private static void siftDown(double[] source, int[] pos, int[] heap, int size, int i) {
+        int r = heap[i];
+        double key = source[pos[r]];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && Double.compare(source[pos[heap[child + 1]]], source[pos[heap[child]]]) < 0) {
+                child++;
+            }
+            if (Double.compare(source[pos[heap[child]]], key) >= 0) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = r;
+    }
+
+    /**
+     * Versión int de merge(double[], int[], ForkJoinPool).
+     */
+    private static void merge(int[] data, int[] bounds, ForkJoinPool pool) {
+        int runs = bounds.length - 1;
+        if (runs < 2) {
+            return;
+        }
+        int[] source = data.clone();
+        int buckets = (int) Math.max(1, Math.min(pool.getParallelism() * 2L, data.length / MIN_BUCKET));
+
+        // Separadores como en la versión double; los tramos vacíos no aportan muestras
+        int[] splitters = new int[buckets - 1];
+        if (buckets > 1) {
+            int[] samples = new int[runs * (buckets - 1)];
+            int n = 0;
+            for (int r = 0; r < runs; r++) {
+                int size = bounds[r + 1] - bounds[r];
+                for (int j = 1; j < buckets && size > 0; j++) {
+                    samples[n++] = source[bounds[r] + (int) ((long) size * j / buckets)];
+                }
+            }
+            Arrays.sort(samples, 0, n);
+            for (int j = 1; j < buckets; j++) {
+                splitters[j - 1] = n == 0 ? 0 : samples[(int) ((long) n * j / buckets)];
+            }
+        }
+
+        int[][] cuts = new int[runs][buckets + 1];
+        int[] offsets = new int[buckets + 1];
+        for (int r = 0; r < runs; r++) {
+            cuts[r][0] = bounds[r];
+            cuts[r][buckets] = bounds[r + 1];
+            for (int j = 1; j < buckets; j++) {
+                cuts[r][j] = lowerBound(source, cuts[r][j - 1], bounds[r + 1], splitters[j - 1]);
+            }
+            for (int j = 0; j < buckets; j++) {
+                offsets[j + 1] += cuts[r][j + 1] - cuts[r][j];
+            }
+        }
+        for (int j = 0; j < buckets; j++) {
+            offsets[j + 1] += offsets[j];
+        }
+
+        parallel(pool, buckets, j -> {
+            int[] pos = new int[runs];
+            int[] end = new int[runs];
+            for (int r = 0; r < runs; r++) {
+                pos[r] = cuts[r][j];
+                end[r] = cuts[r][j + 1];
+            }
+            kWayMerge(source, pos, end, data, offsets[j]);
+        });
+    }
+
+    private static int lowerBound(int[] a, int from, int to, int key) {
+        int lo = from;
+        int hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static void kWayMerge(int[] source, int[] pos, int[] end, int[] out, int offset) {
+        int[] heap = new int[pos.length];
+        int size = 0;
+        for (int r = 0; r < pos.length; r++) {
+            if (pos[r] < end[r]) {
+                heap[size++] = r;
+            }
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(source, pos, heap, size, i);
+        }
+        int o = offset;
+        while (size > 0) {
+            int r = heap[0];
+            out[o++] = source[pos[r]++];
+            if (pos[r] == end[r]) {
+                heap[0] = heap[--size];
+            }
+            if (size > 0) {
+                siftDown(source, pos, heap, size, 0);
+            }
+        }
+    }
+
+    private static void siftDown(int[] source, int[] pos, int[] heap, int size, int i) {
+        int r = heap[i];
+        int key = source[pos[r]];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && source[pos[heap[child + 1]]] < source[pos[heap[child]]]) {
+                child++;
+            }
+            if (source[pos[heap[child]]] >= key) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = r;
+    }
+
+    /**
+     * Ejecuta body(0) … body(tasks - 1) en paralelo en pool y espera a que terminen.
+     */
+    private static void parallel(ForkJoinPool pool, int tasks, IntConsumer body) {
+        List<RecursiveAction> actions = new ArrayList<>(tasks);
+        for (int t = 0; t < tasks; t++) {
+            int task = t;
+            actions.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    body.accept(task);
+                }
+            });
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(actions);
+            }
+        });
+    }
+}
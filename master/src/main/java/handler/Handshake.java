@@ -0,0 +1,115 @@
+package handler;
+
+import protocol.ProtocolHandler;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Handshake: Resultado del intercambio INIT con un worker (codificación acordada, capacidades
+ * y codecs de compresión aceptados).
+ */
+class Handshake {
+
+    private final String encoding;
+    private final int cores;
+    private final long fragmentCache;
+    private final Set<String> compression;
+    private final int streamChunk;
+
+    /**
+     * Interpreta el INIT del worker.
+     *
+     * @param reply  Mensaje INIT recibido, o null si la conexión se cerró antes de responder.
+     * @param codecs Codecs de compresión ofrecidos; sólo se aceptan los que el worker repita.
+     */
+    Handshake(Map<String, String> reply, String[] codecs) {
+        JSONObject caps = reply == null || reply.get("capabilities") == null
+            ? new JSONObject() : new JSONObject(reply.get("capabilities"));
+        Set<String> accepted = new HashSet<>();
+        if (reply != null && reply.get("compression") != null && codecs.length > 0) {
+            // Sólo cuentan los codecs que se ofrecieron
+            JSONArray chosen = new JSONArray(reply.get("compression"));
+            for (String codec : codecs) {
+                for (int i = 0; i < chosen.length(); i++) {
+                    if (codec.equals(chosen.optString(i))) {
+                        accepted.add(codec);
+                    }
+                }
+            }
+        }
+        this.encoding = ProtocolHandler.negotiatedEncoding(reply);
+        this.cores = Math.max(1, caps.optInt("cores", 1));
+        this.fragmentCache = Math.max(0, caps.optLong("fragment_cache", 0));
+        this.compression = accepted;
+        this.streamChunk = Math.max(0, caps.optInt("stream_chunk", 0));
+    }
+
+    String getEncoding() {
+        return encoding;
+    }
+
+    int getCores() {
+        return cores;
+    }
+
+    /**
+     * Bytes que el worker guarda de fragmentos residentes (capabilities.fragment_cache), o 0
+     * si no sabe guardarlos.
+     */
+    long getFragmentCache() {
+        return fragmentCache;
+    }
+
+    /**
+     * Elementos por trozo que prefiere el worker en modo streaming (capabilities.stream_chunk),
+     * o 0 si no lo anunció.
+     */
+    int getStreamChunk() {
+        return streamChunk;
+    }
+
+    /**
+     * Indica si el worker aceptó el codec de compresión (campo "compression" de su INIT).
+     */
+    boolean accepts(String codec) {
+        return compression.contains(codec);
+    }
+
+    /**
+     * Anuncia las codificaciones del maestro sobre una conexión recién abierta y lee el INIT del worker.
+     *
+     * @param in        Flujo de entrada de la conexión.
+     * @param out       Flujo de salida de la conexión.
+     * @param encodings Codificaciones ofrecidas en orden de preferencia.
+     * @return Codificación acordada, núcleos anunciados y caché de fragmentos.
+     * @throws IOException Si la conexión se cierra durante el intercambio.
+     */
+    static Handshake perform(InputStream in, OutputStream out, String... encodings) throws IOException {
+        return perform(in, out, new String[0], encodings);
+    }
+
+    /**
+     * Como perform(InputStream, OutputStream, String...), ofreciendo además codecs de
+     * compresión; el worker responde con los que acepta.
+     *
+     * @param codecs Codecs de compresión ofrecidos (ver protocol.Compression).
+     */
+    static Handshake perform(InputStream in, OutputStream out, String[] codecs, String... encodings) throws IOException {
+        String init = ProtocolHandler.toJson(ProtocolHandler.createInitMessage(codecs, encodings)) + "\n";
+        out.write(init.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+
+        String line = ProtocolHandler.readLine(in);
+        Map<String, String> reply = line == null ? null : ProtocolHandler.fromJson(line);
+        return new Handshake(reply, codecs);
+    }
+}
@@ -0,0 +1,159 @@
+package handler;
+
+import java.util.Arrays;
+
+/**
+ * Histogram: Resultado de la reducción Reducer.histogram(): cuántos elementos caen en cada uno
+ * de bins intervalos iguales de [low, high], más los que quedan por debajo y por encima.
+ *
+ * El valor high cuenta en el último intervalo y los NaN no cuentan. El índice de un valor se
+ * calcula igual en el maestro y en los workers Python (reductions.py), así que los contadores
+ * no dependen de dónde se calculó cada fragmento. Es inmutable.
+ */
+public final class Histogram {
+
+    private final double low;
+    private final double high;
+    private final long underflow;
+    private final long[] counts;
+    private final long overflow;
+
+    private Histogram(double low, double high, long underflow, long[] counts, long overflow) {
+        this.low = low;
+        this.high = high;
+        this.underflow = underflow;
+        this.counts = counts;
+        this.overflow = overflow;
+    }
+
+    static Histogram empty(int bins, double low, double high) {
+        return new Histogram(low, high, 0, new long[bins], 0);
+    }
+
+    /**
+     * Cuenta values[offset, offset + count).
+     */
+    static Histogram of(double[] values, int offset, int count, int bins, double low, double high) {
+        long[] counts = new long[bins];
+        long under = 0;
+        long over = 0;
+        double scale = bins / (high - low);
+        for (int i = offset; i < offset + count; i++) {
+            double v = values[i];
+            if (v < low) {
+                under++;
+            } else if (v > high) {
+                over++;
+            } else if (v == v) {
+                counts[Math.min((int) ((v - low) * scale), bins - 1)]++;
+            }
+        }
+        return new Histogram(low, high, under, counts, over);
+    }
+
+    /**
+     * Estado parcial recibido de un worker: [por debajo, c0 .. c(bins-1), por encima].
+     *
+     * @throws IllegalStateException Si no tiene la forma esperada.
+     */
+    static Histogram fromWire(double[] wire, int bins, double low, double high) {
+        if (wire.length != bins + 2) {
+            throw new IllegalStateException("Estado parcial de histogram inválido: " + wire.length
+                + " elementos para " + bins + " intervalos");
+        }
+        long[] counts = new long[bins];
+        for (int i = 0; i < bins; i++) {
+            counts[i] = toCount(wire[i + 1]);
+        }
+        return new Histogram(low, high, toCount(wire[0]), counts, toCount(wire[bins + 1]));
+    }
+
+    private static long toCount(double value) {
+        if (value < 0 || value != Math.rint(value)) {
+            throw new IllegalStateException("Contador de histogram inválido: " + value);
+        }
+        return (long) value;
+    }
+
+    double[] toWire() {
+        double[] wire = new double[counts.length + 2];
+        wire[0] = underflow;
+        for (int i = 0; i < counts.length; i++) {
+            wire[i + 1] = counts[i];
+        }
+        wire[counts.length + 1] = overflow;
+        return wire;
+    }
+
+    /**
+     * Suma dos histogramas de los mismos intervalos.
+     */
+    Histogram combine(Histogram other) {
+        long[] sum = counts.clone();
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += other.counts[i];
+        }
+        return new Histogram(low, high, underflow + other.underflow, sum, overflow + other.overflow);
+    }
+
+    public int getBins() {
+        return counts.length;
+    }
+
+    public double getLow() {
+        return low;
+    }
+
+    public double getHigh() {
+        return high;
+    }
+
+    /**
+     * Límite inferior del intervalo bin.
+     */
+    public double binStart(int bin) {
+        return low + (high - low) * bin / counts.length;
+    }
+
+    public long getCount(int bin) {
+        return counts[bin];
+    }
+
+    /**
+     * Copia de los contadores de los bins intervalos.
+     */
+    public long[] getCounts() {
+        return counts.clone();
+    }
+
+    /**
+     * Elementos menores que low.
+     */
+    public long getUnderflow() {
+        return underflow;
+    }
+
+    /**
+     * Elementos mayores que high.
+     */
+    public long getOverflow() {
+        return overflow;
+    }
+
+    /**
+     * Elementos contados, dentro y fuera del rango (sin los NaN).
+     */
+    public long getTotal() {
+        long total = underflow + overflow;
+        for (long c : counts) {
+            total += c;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram{[" + low + ", " + high + "], underflow=" + underflow
+            + ", counts=" + Arrays.toString(counts) + ", overflow=" + overflow + "}";
+    }
+}
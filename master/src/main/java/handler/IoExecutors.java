@@ -0,0 +1,183 @@
+package handler;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * IoExecutors: Estrategia de hilos para el trabajo bloqueante del maestro (camino JSON de
+ * WorkerConnection, conexión y preparación de trabajos, recuperaciones) y para entregar las
+ * respuestas de los workers fuera de los loops NIO (ver completions()).
+ *
+ * Modos:
+ * <ul>
+ *   <li>FIXED: pool de tamaño fijo (el comportamiento antiguo, un hilo por worker).</li>
+ *   <li>CACHED: pool que crea hilos de plataforma según la demanda y libera los ociosos.</li>
+ *   <li>VIRTUAL: un hilo virtual por tarea; miles de fragmentos bloqueados en E/S no
+ *       ocupan hilos del sistema. Requiere Java 21+; en versiones anteriores se detecta por
+ *       reflexión y se usa CACHED en su lugar.</li>
+ * </ul>
+ * El modo se elige con -Ddarraylib.io.executor=fixed|cached|virtual (cached por defecto)
+ * o con configure() antes de lanzar trabajos.
+ */
+public final class IoExecutors {
+
+    public enum Mode { FIXED, CACHED, VIRTUAL }
+
+    public static final String MODE_PROPERTY = "darraylib.io.executor";
+
+    /** Hilos del modo FIXED; configurable con -Ddarraylib.io.threads=N. */
+    public static final int FIXED_THREADS = Math.max(1, Integer.getInteger("darraylib.io.threads",
+            Runtime.getRuntime().availableProcessors()));
+
+    /** Thread.ofVirtual(), Thread.Builder.name(String, long), Thread.Builder.factory() y
+     *  Executors.newThreadPerTaskExecutor(ThreadFactory); null si la JVM no los tiene. */
+    private static final Method[] VIRTUAL = findVirtualThreadApi();
+
+    private static Mode mode;
+    private static ExecutorService shared;
+    private static ExecutorService completions;
+
+    private IoExecutors() {
+        throw new UnsupportedOperationException("IoExecutors es una clase de utilidades y no debe ser instanciada.");
+    }
+
+    /**
+     * Indica si la JVM tiene hilos virtuales (Java 21+).
+     */
+    public static boolean virtualThreadsAvailable() {
+        return VIRTUAL != null;
+    }
+
+    /**
+     * Crea un executor del modo dado. Los hilos de plataforma son daemon y llevan el nombre
+     * indicado; si se pide VIRTUAL sin soporte se crea uno CACHED.
+     *
+     * @param threads Tamaño del pool en modo FIXED (se ignora en los demás).
+     */
+    public static ExecutorService create(Mode mode, String name, int threads) {
+        switch (effective(mode)) {
+            case FIXED:
+                return Executors.newFixedThreadPool(Math.max(1, threads), daemon(name));
+            case VIRTUAL:
+                return virtualPerTask(name);
+            default:
+                return Executors.newCachedThreadPool(daemon(name));
+        }
+    }
+
+    /**
+     * Executor compartido para E/S bloqueante, creado en el primer uso con el modo configurado.
+     */
+    public static synchronized ExecutorService blockingIo() {
+        if (shared == null) {
+            shared = create(mode(), "darraylib-io", FIXED_THREADS);
+        }
+        return shared;
+    }
+
+    /**
+     * Executor compartido en el que se entregan las respuestas de los workers (ver
+     * WorkerChannel), aparte de blockingIo() porque sus tareas pueden estar esperando justo
+     * esas respuestas. En modo FIXED es CACHED: una continuación que bloquea no debe retrasar
+     * las demás respuestas.
+     */
+    public static synchronized ExecutorService completions() {
+        if (completions == null) {
+            completions = create(mode() == Mode.FIXED ? Mode.CACHED : mode(), "darraylib-completion", FIXED_THREADS);
+        }
+        return completions;
+    }
+
+    /**
+     * Cambia el modo del executor compartido. Las tareas ya enviadas al anterior terminan
+     * en él; las nuevas van al nuevo.
+     */
+    public static synchronized void configure(Mode newMode) {
+        Mode resolved = effective(newMode);
+        if (resolved == mode && shared != null) {
+            return;
+        }
+        ExecutorService previous = shared;
+        ExecutorService previousCompletions = completions;
+        mode = resolved;
+        shared = create(resolved, "darraylib-io", FIXED_THREADS);
+        completions = null;
+        if (previous != null) {
+            previous.shutdown();
+        }
+        if (previousCompletions != null) {
+            previousCompletions.shutdown();
+        }
+    }
+
+    /**
+     * Modo en uso (ya resuelto: nunca VIRTUAL si la JVM no lo soporta).
+     */
+    public static synchronized Mode mode() {
+        if (mode == null) {
+            mode = effective(parse(System.getProperty(MODE_PROPERTY, "cached")));
+        }
+        return mode;
+    }
+
+    private static Mode parse(String value) {
+        try {
+            return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("⚠ " + MODE_PROPERTY + "=" + value + " no es válido (fixed, cached, virtual); se usa cached.");
+            return Mode.CACHED;
+        }
+    }
+
+    private static Mode effective(Mode requested) {
+        if (requested == Mode.VIRTUAL && !virtualThreadsAvailable()) {
+            System.err.println("⚠ Hilos virtuales no disponibles en Java "
+                    + System.getProperty("java.specification.version") + "; se usa el modo cached.");
+            return Mode.CACHED;
+        }
+        return requested;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory()),
+     * invocado por reflexión para compilar y ejecutar también en Java 17.
+     */
+    private static ExecutorService virtualPerTask(String name) {
+        try {
+            Object builder = VIRTUAL[1].invoke(VIRTUAL[0].invoke(null), name + "-", 0L);
+            return (ExecutorService) VIRTUAL[3].invoke(null, VIRTUAL[2].invoke(builder));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No se pudo crear el executor de hilos virtuales", e);
+        }
+    }
+
+    private static Method[] findVirtualThreadApi() {
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Method[] api = {
+                Thread.class.getMethod("ofVirtual"),
+                builder.getMethod("name", String.class, long.class),
+                builder.getMethod("factory"),
+                Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+            };
+            // En Java 19/20 existen pero fallan si la vista previa no está activada
+            api[2].invoke(api[1].invoke(api[0].invoke(null), "probe-", 0L));
+            return api;
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package handler;
+
+import core.DArrayDouble;
+import core.DArrayInt;
+import ops.CompiledOperation;
+import ops.OperationCompiler;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * LocalBackend: Calcula un trabajo en el propio maestro, sin pasar por la red, con un
+ * ForkJoinPool. Para arrays de unos pocos millones de elementos la ida y vuelta por TCP
+ * cuesta mucho más que la operación; CostModel decide cuándo compensa.
+ *
+ * El array se corta en tramos de GRAIN elementos que hacen de fragmentos del sink: cada
+ * tramo se calcula leyendo directamente del DArray (DArrayDouble.applyTo(), con los núcleos
+ * SIMD de ops.Kernels si la operación es del catálogo) y escribiendo en su sitio del array
+ * de resultado, y cuenta como un fragmento recibido para el progreso.
+ * Las tareas se dividen por la mitad hasta llegar a un tramo, así que el robo de trabajo del
+ * pool reparte la carga entre sus hilos.
+ */
+public final class LocalBackend {
+
+    /** Elementos por tramo; configurable con -Ddarraylib.local.grain=N. */
+    public static final int GRAIN = Math.max(1, Integer.getInteger("darraylib.local.grain", 1 << 15));
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Backend sobre el pool común de la JVM.
+     */
+    public LocalBackend() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public LocalBackend(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Hilos con los que calcula el backend.
+     */
+    public int parallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Número de tramos (fragmentos del sink) en que se calcula un array de n elementos.
+     */
+    public static int fragments(long elements) {
+        return (int) Math.max(1, (elements + GRAIN - 1) / GRAIN);
+    }
+
+    /**
+     * Calcula operation sobre todo dArray y lo guarda en sink, que debe esperar
+     * fragments(dArray.length()) fragmentos.
+     *
+     * @param onFragment Recibe el índice de cada tramo terminado; puede ser null.
+     * @return Futuro que termina cuando el sink está completo.
+     */
+    public CompletableFuture<Void> run(DArrayDouble dArray, CompiledOperation operation, ResultSink sink,
+                                       IntConsumer onFragment) {
+        return run(dArray, operation, null, sink, onFragment);
+    }
+
+    /**
+     * Como run(DArrayDouble, CompiledOperation, ResultSink, IntConsumer), aplicando además
+     * step a cada tramo como haría un worker (ver FragmentStep); puede ser null.
+     */
+    CompletableFuture<Void> run(DArrayDouble dArray, CompiledOperation operation, FragmentStep step,
+                                ResultSink sink, IntConsumer onFragment) {
+        return submit(dArray.length(), onFragment, (index, start, count) ->
+            sink.fill(index, start, count, (dst, offset, len) -> {
+                dArray.applyTo(start, len, operation, dst, offset);
+                if (step != null) {
+                    step.apply(dst, offset, offset + len);
+                }
+            }));
+    }
+
+    /**
+     * Completa con step.combine() un resultado cuyos tramos ya tienen step aplicado, en el
+     * pool del backend.
+     *
+     * @return Futuro con el array del sink, ya completo.
+     */
+    CompletableFuture<double[]> combine(FragmentStep step, ResultSink sink) {
+        return CompletableFuture.supplyAsync(() -> {
+            double[] data = sink.getResult();
+            step.combine(data, sink.fragmentStarts(), pool);
+            return data;
+        }, pool);
+    }
+
+    /**
+     * Versión entera de run(); los resultados se convierten como el (int) de Java.
+     */
+    public CompletableFuture<Void> run(DArrayInt dArray, CompiledOperation operation, ResultSinkInt sink,
+                                       IntConsumer onFragment) {
+        return run(dArray, operation, null, sink, onFragment);
+    }
+
+    /**
+     * Versión entera de run(DArrayDouble, CompiledOperation, FragmentStep, ResultSink, IntConsumer).
+     */
+    CompletableFuture<Void> run(DArrayInt dArray, CompiledOperation operation, FragmentStep step,
+                                ResultSinkInt sink, IntConsumer onFragment) {
+        return submit(dArray.length(), onFragment, (index, start, count) ->
+            sink.fill(index, start, count, (dst, offset, len) -> {
+                dArray.applyTo(start, len, operation, dst, offset);
+                if (step != null) {
+                    step.apply(dst, offset, offset + len);
+                }
+            }));
+    }
+
+    /**
+     * Versión entera de combine(FragmentStep, ResultSink).
+     */
+    CompletableFuture<int[]> combine(FragmentStep step, ResultSinkInt sink) {
+        return CompletableFuture.supplyAsync(() -> {
+            int[] data = sink.getResult();
+            step.combine(data, sink.fragmentStarts(), pool);
+            return data;
+        }, pool);
+    }
+
+    /**
+     * Calcula operation sobre un array del heap y devuelve el resultado en un array nuevo.
+     * Sirve de ejecutor de DoublePipeline sin workers: {@code pipeline.run(backend::map)}.
+     *
+     * @throws IllegalArgumentException Si la operación no es una expresión válida.
+     */
+    public CompletableFuture<double[]> map(DArrayDouble dArray, String operation) {
+        CompiledOperation compiled = OperationCompiler.compile(operation);
+        ResultSink sink = new ResultSink(dArray.size(), fragments(dArray.length()));
+        return run(dArray, compiled, sink, null).thenApply(ignored -> sink.getResult());
+    }
+
+    /**
+     * Versión entera de map(); sirve de ejecutor de IntPipeline.
+     */
+    public CompletableFuture<int[]> map(DArrayInt dArray, String operation) {
+        CompiledOperation compiled = OperationCompiler.compile(operation);
+        ResultSinkInt sink = new ResultSinkInt(dArray.size(), fragments(dArray.length()));
+        return run(dArray, compiled, sink, null).thenApply(ignored -> sink.getResult());
+    }
+
+    /**
+     * Reduce operation aplicada a todo dArray: cada tramo se calcula en un array temporal,
+     * se resume con reducer y su estado parcial se combina en sink, que debe esperar
+     * fragments(dArray.length()) fragmentos.
+     *
+     * @param onFragment Recibe el índice de cada tramo terminado; puede ser null.
+     * @return Futuro que termina cuando el sink está completo.
+     */
+    <R> CompletableFuture<Void> reduce(DArrayDouble dArray, CompiledOperation operation, Reducer<R> reducer,
+                                       ReduceSink<R> sink, IntConsumer onFragment) {
+        return submit(dArray.length(), onFragment, (index, start, count) -> {
+            double[] chunk = new double[count];
+            dArray.applyTo(start, count, operation, chunk, 0);
+            sink.accept(index, reducer.partial(chunk, 0, count));
+        });
+    }
+
+    /**
+     * Versión entera de reduce(): cada tramo se calcula con la conversión a int y se amplía
+     * a double para resumirlo, como hace el worker con una TASK int32.
+     */
+    <R> CompletableFuture<Void> reduce(DArrayInt dArray, CompiledOperation operation, Reducer<R> reducer,
+                                       ReduceSink<R> sink, IntConsumer onFragment) {
+        return submit(dArray.length(), onFragment, (index, start, count) -> {
+            int[] chunk = new int[count];
+            dArray.applyTo(start, count, operation, chunk, 0);
+            double[] widened = new double[count];
+            for (int i = 0; i < count; i++) {
+                widened[i] = chunk[i];
+            }
+            sink.accept(index, reducer.partial(widened, 0, count));
+        });
+    }
+
+    /**
+     * Filtra operation aplicada a todo dArray: cada tramo se calcula en un array temporal,
+     * se compacta en su sitio con los resultados que cumplen predicate y se guarda en sink,
+     * que debe esperar fragments(dArray.length()) fragmentos.
+     *
+     * @param onFragment Recibe el índice de cada tramo terminado; puede ser null.
+     * @return Futuro que termina cuando el sink está completo.
+     */
+    CompletableFuture<Void> filter(DArrayDouble dArray, CompiledOperation operation, CompiledOperation predicate,
+                                   FilterSink sink, IntConsumer onFragment) {
+        return submit(dArray.length(), onFragment, (index, start, count) -> {
+            double[] chunk = new double[count];
+            dArray.applyTo(start, count, operation, chunk, 0);
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                if (OperationCompiler.isTrue(predicate.applyAsDouble(chunk[i]))) {
+                    chunk[kept++] = chunk[i];
+                }
+            }
+            sink.accept(index, kept == count ? chunk : Arrays.copyOf(chunk, kept));
+        });
+    }
+
+    /**
+     * Versión de filter() que sirve de ejecutor de los filtros de DoublePipeline sin workers:
+     * {@code pipeline.run(backend::map, backend::filter)}.
+     *
+     * @throws IllegalArgumentException Si la operación o el predicado no son expresiones válidas.
+     */
+    public CompletableFuture<double[]> filter(DArrayDouble dArray, String operation, String predicate) {
+        CompiledOperation compiled = OperationCompiler.compile(operation);
+        CompiledOperation condition = OperationCompiler.compile(predicate);
+        FilterSink sink = new FilterSink(fragments(dArray.length()));
+        return filter(dArray, compiled, condition, sink, null).thenApply(ignored -> sink.getResult());
+    }
+
+    private CompletableFuture<Void> submit(long elements, IntConsumer onFragment, Kernel kernel) {
+        Range root = new Range(kernel, onFragment, elements, 0, fragments(elements));
+        return CompletableFuture.runAsync(() -> pool.invoke(root), pool);
+    }
+
+    /** Cálculo de un tramo. */
+    private interface Kernel {
+        void compute(int index, long start, int count);
+    }
+
+    /**
+     * Tramos [from, to) de un trabajo: se parte por la mitad hasta quedar uno solo.
+     */
+    private static final class Range extends RecursiveAction {
+        private final Kernel kernel;
+        private final IntConsumer onFragment;
+        private final long elements;
+        private final int from;
+        private final int to;
+
+        Range(Kernel kernel, IntConsumer onFragment, long elements, int from, int to) {
+            this.kernel = kernel;
+            this.onFragment = onFragment;
+            this.elements = elements;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Range(kernel, onFragment, elements, from, mid),
+                          new Range(kernel, onFragment, elements, mid, to));
+                return;
+            }
+            long start = (long) from * GRAIN;
+            kernel.compute(from, start, (int) Math.min(GRAIN, elements - start));
+            if (onFragment != null) {
+                onFragment.accept(from);
+            }
+        }
+    }
+}
@@ -1,21 +1,97 @@
 package handler;
 
 import core.DArrayDouble;
+import core.DoublePipeline;
 import data.Fragment;
+import data.OffHeapDoubles;
+import data.OffHeapStore;
+import ops.CompiledOperation;
+import ops.OperationCompiler;
+import protocol.Precision;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 
 /**
- * MasterServer: distribuye fragmentos a múltiples workers en paralelo
- * y recoge los resultados en un solo round-trip por worker.
+ * MasterServer: distribuye fragmentos a múltiples workers en paralelo.
+ * El array se sobreparticiona y los workers toman fragmentos de una cola compartida
+ * (ver FragmentScheduler), de modo que el ritmo lo marcan los workers más rápidos.
+ * Los trabajos pequeños se calculan en el propio maestro (ver LocalBackend y CostModel).
  */
 public class MasterServer {
 
+    /**
+     * Recibe el avance de un trabajo lanzado con submit().
+     */
+    public interface ProgressListener {
+        /**
+         * Un fragmento del trabajo ya tiene resultado. Se invoca una sola vez por fragmento,
+         * desde el hilo que recibió la respuesta, así que no debe bloquear.
+         *
+         * @param completed Fragmentos terminados hasta ahora, incluido éste.
+         * @param total     Fragmentos del trabajo.
+         */
+        void onFragment(int fragmentIndex, String workerId, int completed, int total);
+    }
+
+    /** Estado de un trabajo en curso. */
+    private static final class Job {
+        final FragmentScheduler<WorkerConnection> scheduler;
+        final ResultSink sink;
+        final int fragmentCount;
+        final Precision precision;
+
+        Job(FragmentScheduler<WorkerConnection> scheduler, ResultSink sink, int fragmentCount, Precision precision) {
+            this.scheduler = scheduler;
+            this.sink = sink;
+            this.fragmentCount = fragmentCount;
+            this.precision = precision;
+        }
+    }
+
+    /** Identificador con el que se notifican al ProgressListener los tramos calculados en el maestro. */
+    public static final String LOCAL_WORKER_ID = "local";
+
+    /** Identificador con el que se notifican al ProgressListener los fragmentos servidos por la caché de resultados. */
+    public static final String CACHE_WORKER_ID = "cache";
+
     private final DArrayDouble dArray;
     private final List<WorkerConnection> workers;
-    private final ResultManager resultManager;
+    private final WeightedPartitioner<WorkerConnection> partitioner = new WeightedPartitioner<>(WorkerConnection::getCores);
+    private volatile ResultSink resultSink;
+    private volatile int speculativeLaunches;
+    private volatile int speculativeWins;
     private String operation = Operation.IDENTITY;
+    private volatile int validationSamples;
+    private final LocalBackend local = new LocalBackend();
+    private final CostModel costModel = new CostModel(local.parallelism());
+    private volatile CostModel.Backend backend = CostModel.configuredBackend();
+    private volatile CostModel.Backend lastBackend;
+    private volatile boolean residentData;
+    private volatile ResultCache resultCache;
+    private volatile Precision transportPrecision = Precision.FLOAT64;
+    private volatile double lastInputError;
+    private volatile double lastResultError;
+    /** Reparto fijado de cada array en modo residente o con caché (ver setResidentData()). */
+    private final Map<DArrayDouble, Layout> layouts = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /** Reparto de un array entre los workers que se repite en todos sus trabajos. */
+    private static final class Layout {
+        final String prefix;
+        final long length;
+        final Set<WorkerConnection> workers;
+        final WeightedPartitioner.Plan<WorkerConnection> plan;
+
+        Layout(String prefix, long length, Set<WorkerConnection> workers, WeightedPartitioner.Plan<WorkerConnection> plan) {
+            this.prefix = prefix;
+            this.length = length;
+            this.workers = workers;
+            this.plan = plan;
+        }
+    }
 
     /**
      * Constructor principal.
@@ -26,7 +102,6 @@ public class MasterServer {
     public MasterServer(DArrayDouble dArray, List<WorkerConnection> workers) {
         this.dArray        = dArray;
         this.workers       = new ArrayList<>(workers);
-        this.resultManager = new ResultManager(dArray.getFragments().size());
     }
 
     /**
@@ -48,6 +123,109 @@ public class MasterServer {
         this.operation = operation;
     }
 
+    /**
+     * Activa la comprobación de resultados: de cada fragmento recibido el maestro recalcula
+     * samples elementos al azar con la operación compilada (ver ops.OperationCompiler). Un
+     * fragmento que no cuadra se reencola y su worker deja de recibir trabajo.
+     *
+     * @param samples Elementos por fragmento; 0 (por defecto) la desactiva.
+     */
+    public void setValidationSamples(int samples) {
+        if (samples < 0) {
+            throw new IllegalArgumentException("Las muestras no pueden ser negativas.");
+        }
+        this.validationSamples = samples;
+    }
+
+    /**
+     * Fija dónde se calculan los trabajos: LOCAL en el propio maestro (ver LocalBackend),
+     * DISTRIBUTED en los workers o AUTO (por defecto, o -Ddarraylib.backend) para que lo
+     * decida CostModel según el tamaño del array, el coste de la operación y los workers.
+     */
+    public void setBackend(CostModel.Backend backend) {
+        this.backend = Objects.requireNonNull(backend);
+    }
+
+    /**
+     * Modo "cargar una vez, calcular muchas": los fragmentos de cada array se quedan en la
+     * memoria de los workers que los reciben (los que anuncian capabilities.fragment_cache) y
+     * los trabajos siguientes sobre el mismo array sólo los citan por id y huella, así que
+     * tras la primera pasada por la red sólo viajan los resultados. Para que los ids se
+     * repitan, el reparto de cada array entre los workers se fija en su primer trabajo (deja
+     * de ajustarse al rendimiento medido) y sólo se rehace si cambian su longitud o los
+     * workers. Si los datos cambian, la huella ya no coincide y el fragmento viaja de nuevo.
+     */
+    public void setResidentData(boolean residentData) {
+        this.residentData = residentData;
+        if (!residentData && resultCache == null) {
+            layouts.clear();
+        }
+    }
+
+    /**
+     * Instala una caché de resultados delante del envío a los workers (ver ResultCache): en
+     * los trabajos distribuidos de submit() cada fragmento se busca por su contenido y la
+     * operación normalizada; los que están se copian directamente en el resultado y no
+     * salen del maestro, y los demás se guardan al llegar. Puede compartirse entre varios
+     * MasterServer. Los trabajos sort(), scan(), reduce() y filter() no la usan. Como los
+     * fragmentos se buscan por contenido, con caché el reparto de cada array se fija igual
+     * que en modo residente (ver setResidentData()): si se ajustara al rendimiento medido en
+     * el trabajo anterior, los cortes cambiarían y un trabajo repetido no encontraría nada.
+     *
+     * @param cache Caché a usar, o null (por defecto) para no usar ninguna.
+     */
+    public void setResultCache(ResultCache cache) {
+        this.resultCache = cache;
+        if (cache == null && !residentData) {
+            layouts.clear();
+        }
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Precisión con la que viajan los datos y resultados de los trabajos distribuidos de
+     * submit(), sort() y scan() (ver protocol.Precision). FLOAT32 o BFLOAT16 reducen a la
+     * mitad o a la cuarta parte los bytes en la red a cambio de redondear cada elemento; el
+     * resultado se amplía de nuevo a double al guardarlo. El error de cada trabajo queda en
+     * getLastInputError() y getLastResultError(). Los cálculos locales son siempre exactos.
+     *
+     * @param precision FLOAT64 (por defecto) para viajar sin pérdidas.
+     */
+    public void setTransportPrecision(Precision precision) {
+        this.transportPrecision = Objects.requireNonNull(precision);
+    }
+
+    public Precision getTransportPrecision() {
+        return transportPrecision;
+    }
+
+    /**
+     * Error absoluto máximo al redondear los datos enviados en el último trabajo (0 si viajaron
+     * en FLOAT64). Es el error de la entrada de la operación, no su efecto en el resultado.
+     */
+    public double getLastInputError() {
+        return lastInputError;
+    }
+
+    /**
+     * Error absoluto máximo al redondear los resultados devueltos en el último trabajo, según
+     * lo midieron los workers frente a lo que calcularon (0 si viajaron en FLOAT64).
+     */
+    public double getLastResultError() {
+        return lastResultError;
+    }
+
+    /**
+     * Dónde se calculó el último trabajo lanzado (LOCAL o DISTRIBUTED), o null si aún no se
+     * lanzó ninguno.
+     */
+    public CostModel.Backend getLastBackend() {
+        return lastBackend;
+    }
+
     /**
      * Registra los workers que se emplearán para procesar (para el constructor de compatibilidad).
      */
@@ -60,83 +238,480 @@ public class MasterServer {
      */
     public void start() {
         System.out.println("✅ MasterServer arrancando tareas…");
+        try {
+            if (dArray.isOffHeap()) {
+                OffHeapDoubles result = submit(dArray, operation, OffHeapDoubles.allocate(dArray.length()), null).join();
+                System.out.println("✅ Resultado final: " + result.length() + " elementos en " + result.getFile());
+            } else {
+                double[] result = submit(dArray, operation).join();
+                System.out.println("✅ Resultado final: " + Arrays.toString(result));
+            }
+        } catch (CompletionException e) {
+            System.err.println("❌ " + e.getCause().getMessage());
+        } catch (IOException e) {
+            System.err.println("❌ No se pudo reservar el resultado fuera del heap: " + e.getMessage());
+        }
+    }
 
-        List<Fragment> fragments = dArray.getFragments();
-        int nTasks = Math.min(fragments.size(), workers.size());
+    /**
+     * Lanza un trabajo sin bloquear al llamador.
+     *
+     * @see #submit(DArrayDouble, String, ProgressListener)
+     */
+    public CompletableFuture<double[]> submit(DArrayDouble dArray, String operation) {
+        return submit(dArray, operation, null);
+    }
 
-        ExecutorService exec = Executors.newFixedThreadPool(nTasks);
-        List<Future<Map<String,String>>> futures = new ArrayList<>();
+    /**
+     * Lanza un trabajo sin bloquear al llamador: la conexión con los workers y el corte del
+     * array se hacen en el executor de E/S (ver IoExecutors) y, a partir de ahí, los
+     * fragmentos avanzan con las respuestas de los workers sin ningún hilo esperando. Pueden
+     * lanzarse varios trabajos a la vez sobre los mismos workers. Si sale más barato (o no
+     * hay workers), el trabajo se calcula en el maestro (ver setBackend()).
+     *
+     * @param progress Recibe cada fragmento terminado; puede ser null.
+     * @return Futuro con el resultado completo, o que falla si la operación no es válida
+     *         (IllegalArgumentException) o si no quedan workers vivos con fragmentos pendientes.
+     */
+    public CompletableFuture<double[]> submit(DArrayDouble dArray, String operation, ProgressListener progress) {
+        int size = dArray.size();
+        return run(dArray, operation, null, progress, fragments -> new ResultSink(size, fragments))
+            .thenApply(ResultSink::getResult);
+    }
 
-        // 1) Enviar cada fragmento en paralelo
-        for (int i = 0; i < nTasks; i++) {
-            final int idx = i;
-            Fragment frag       = fragments.get(idx);
-            WorkerConnection wc = workers.get(idx);
-            String taskId       = "T" + idx;
+    /**
+     * Ejecuta una cadena de operaciones (ver DoublePipeline): cada tramo de map() fusionados
+     * es un solo trabajo, así que cada fragmento viaja una vez por tramo y no una por operación.
+     * Un filter(String) viaja en el mismo trabajo que los map() que lo preceden (ver filter()).
+     *
+     * @return Futuro con el resultado final.
+     */
+    public CompletableFuture<double[]> submit(DoublePipeline pipeline) {
+        return pipeline.run(this::submit, this::filter);
+    }
 
-            futures.add(exec.submit(() ->
-                wc.sendTaskAndGetResult(frag, taskId, operation)
-            ));
+    /**
+     * Como submit(DArrayDouble, String, ProgressListener), pero escribe el resultado en un
+     * almacén fuera del heap: cada fragmento se copia a su tramo de output en cuanto llega,
+     * así que el maestro sólo retiene en el heap los fragmentos en vuelo. Es la forma de
+     * procesar arrays de más de Integer.MAX_VALUE elementos o más grandes que el heap.
+     *
+     * @param output Destino; debe tener la misma longitud que dArray (puede ser su propio
+     *               almacén para trabajar in situ).
+     * @return Futuro con output, ya relleno.
+     */
+    public CompletableFuture<OffHeapDoubles> submit(DArrayDouble dArray, String operation, OffHeapDoubles output,
+                                                    ProgressListener progress) {
+        if (output.length() != dArray.length()) {
+            throw new IllegalArgumentException("El destino tiene " + output.length()
+                + " elementos y el array " + dArray.length());
         }
+        return run(dArray, operation, null, progress, fragments -> new ResultSink(output, fragments))
+            .thenApply(ResultSink::getStorage);
+    }
+
+    /**
+     * Ordena un trabajo sin bloquear al llamador: aplica operation a cada elemento de dArray
+     * y devuelve los resultados en orden ascendente (el de Arrays.sort: -0.0 antes que 0.0 y
+     * los NaN al final). Es una ordenación por muestreo: cada worker ordena su fragmento y el
+     * maestro mezcla los tramos ordenados en paralelo, por cubos delimitados con muestras
+     * regulares de los tramos (ver FragmentStep.SORT). Un fragmento que no llega ordenado se
+     * reencola y su worker deja de recibir trabajo. Como submit(), el trabajo se calcula en
+     * el maestro si sale más barato. setValidationSamples() no se aplica.
+     *
+     * @return Futuro con los resultados ordenados, o que falla como submit().
+     */
+    public CompletableFuture<double[]> sort(DArrayDouble dArray, String operation) {
+        return runStep(dArray, operation, FragmentStep.SORT);
+    }
 
-        // 2) Recolectar cada respuesta
-        for (int i = 0; i < futures.size(); i++) {
-            try {
-                Map<String,String> resp = futures.get(i).get();
-                String type = resp.get("type");
-                if (!"result".equals(type)) {
-                    System.err.println("⚠ Worker " + i + " devolvió error: " + resp.get("message"));
+    /**
+     * Suma prefija de un trabajo sin bloquear al llamador: aplica operation a cada elemento
+     * de dArray y devuelve r con r[i] = op(x[0]) + … + op(x[i]). Se hace en dos pasadas: cada
+     * worker devuelve las sumas prefijas de su fragmento y el maestro, con los totales de los
+     * fragmentos, suma a cada tramo el acarreo de los anteriores (ver FragmentStep.SCAN). Con
+     * double el redondeo puede diferir en los últimos bits de una suma secuencial. Como
+     * submit(), el trabajo se calcula en el maestro si sale más barato.
+     * setValidationSamples() no se aplica.
+     *
+     * @return Futuro con las sumas prefijas, o que falla como submit().
+     */
+    public CompletableFuture<double[]> scan(DArrayDouble dArray, String operation) {
+        return runStep(dArray, operation, FragmentStep.SCAN);
+    }
+
+    private CompletableFuture<double[]> runStep(DArrayDouble dArray, String operation, FragmentStep step) {
+        int size = dArray.size();
+        return run(dArray, operation, step, null, fragments -> new ResultSink(size, fragments))
+            .thenCompose(sink -> local.combine(step, sink));
+    }
+
+    /**
+     * @param step Paso final de cada fragmento (ver FragmentStep), o null para un trabajo
+     *             elemento a elemento.
+     */
+    private CompletableFuture<ResultSink> run(DArrayDouble dArray, String operation, FragmentStep step,
+                                              ProgressListener progress, IntFunction<ResultSink> sinks) {
+        List<WorkerConnection> snapshot = new ArrayList<>(workers);
+        // Una operación mal escrita falla aquí, antes de calcular o enviar nada
+        return CompletableFuture.supplyAsync(() -> OperationCompiler.compile(operation), IoExecutors.blockingIo())
+            .thenComposeAsync(compiled -> chooseBackend(dArray, compiled, snapshot) == CostModel.Backend.LOCAL
+                ? runLocally(dArray, compiled, step, progress, sinks)
+                : runDistributed(dArray, operation, compiled, step, snapshot, progress, sinks),
+                IoExecutors.blockingIo());
+    }
+
+    /**
+     * Decide dónde se calcula un trabajo: el modo fijado con setBackend() o, en AUTO, lo
+     * que estime más rápido CostModel. Sólo conecta con los workers si el cálculo local no
+     * gana ya contra el coste fijo de cualquier trabajo distribuido.
+     */
+    private CostModel.Backend chooseBackend(DArrayDouble dArray, CompiledOperation compiled,
+                                            List<WorkerConnection> workers) {
+        CostModel.Backend mode = backend;
+        if (mode == CostModel.Backend.AUTO) {
+            long n = dArray.length();
+            if (workers.isEmpty() || costModel.localNanos(n, compiled) <= costModel.minRemoteNanos()) {
+                mode = CostModel.Backend.LOCAL;
+            } else {
+                int cores = 0;
+                double throughput = 0;
+                for (WorkerConnection worker : workers) {
+                    worker.negotiate();
+                    cores += worker.getCores();
+                    double measured = partitioner.getThroughput(worker);
+                    throughput = measured > 0 && throughput >= 0 ? throughput + measured : -1;
+                }
+                mode = costModel.choose(n, compiled, cores, Math.max(0, throughput));
+            }
+        }
+        this.lastBackend = mode;
+        return mode;
+    }
+
+    /**
+     * Calcula el trabajo en el maestro con LocalBackend: cada tramo se escribe directamente
+     * en su sitio del resultado y se notifica como un fragmento del worker "local".
+     */
+    private CompletableFuture<ResultSink> runLocally(DArrayDouble dArray, CompiledOperation compiled, FragmentStep step,
+                                                     ProgressListener progress, IntFunction<ResultSink> sinks) {
+        int total = LocalBackend.fragments(dArray.length());
+        ResultSink sink = sinks.apply(total);
+        this.resultSink = sink;
+        this.speculativeLaunches = 0;
+        this.speculativeWins = 0;
+        this.lastInputError = 0;
+        this.lastResultError = 0;
+        AtomicInteger completed = new AtomicInteger();
+        return local.run(dArray, compiled, step, sink, progress == null ? null
+                : index -> progress.onFragment(index, LOCAL_WORKER_ID, completed.incrementAndGet(), total))
+            .thenApply(ignored -> sink);
+    }
+
+    private CompletableFuture<ResultSink> runDistributed(DArrayDouble dArray, String operation, CompiledOperation compiled,
+                                                         FragmentStep step, List<WorkerConnection> snapshot,
+                                                         ProgressListener progress, IntFunction<ResultSink> sinks) {
+        Job job = prepare(dArray, operation, compiled, step, snapshot, progress, sinks);
+        return job.scheduler.start(snapshot).handle((ignored, error) -> {
+            this.lastInputError = job.sink.getMaxInputError();
+            this.lastResultError = job.sink.getMaxResultError();
+            if (job.precision != Precision.FLOAT64) {
+                System.out.println("🎯 Transporte " + job.precision.wireName() + ": error máximo "
+                    + lastInputError + " en los datos y " + lastResultError + " en los resultados");
+            }
+            finish(job.scheduler, error, job.sink.isComplete(), job.sink.receivedCount(), job.fragmentCount);
+            return job.sink;
+        });
+    }
+
+    /**
+     * Cierra un trabajo distribuido: anota las copias especulativas y, si faltan fragmentos,
+     * lanza el error con el que falla su futuro.
+     */
+    private void finish(FragmentScheduler<WorkerConnection> scheduler, Throwable error, boolean complete,
+                        int received, int total) {
+        if (scheduler.getSpeculativeLaunches() > 0) {
+            System.out.println("🐢 Copias especulativas: " + scheduler.getSpeculativeLaunches()
+                + " lanzadas, " + scheduler.getSpeculativeWins() + " ganadas");
+        }
+        this.speculativeLaunches = scheduler.getSpeculativeLaunches();
+        this.speculativeWins = scheduler.getSpeculativeWins();
+
+        if (error != null || !complete) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+            throw new CompletionException(new IllegalStateException("Resultado incompleto: "
+                + received + "/" + total + " fragmentos recibidos"
+                + (cause == null ? "" : " (" + cause.getMessage() + ")"), cause));
+        }
+    }
+
+    /**
+     * Conecta con los workers, corta el array y prepara el planificador de un trabajo.
+     */
+    private Job prepare(DArrayDouble dArray, String operation, CompiledOperation compiled, FragmentStep step,
+                        List<WorkerConnection> workers, ProgressListener progress, IntFunction<ResultSink> sinks) {
+        int samples = validationSamples;
+        Precision precision = transportPrecision;
+
+        // 1) y 2) Conectar y sobreparticionar (ver partition())
+        WeightedPartitioner.Plan<WorkerConnection> plan = partition(dArray, workers);
+        List<Fragment> fragments = fragments(dArray, plan);
+        ResultSink sink = sinks.apply(fragments.size());
+        if (step != null) {
+            // Tras el paso los elementos ya no corresponden uno a uno con el fragmento
+            sink.setCheck(step::verify);
+        } else if (samples > 0) {
+            sink.setCheck((index, result, count) ->
+                ResultValidator.check(compiled, fragments.get(index), result, count, samples, index, precision));
+        }
+        this.resultSink = sink;
+
+        // Los fragmentos que ya están en la caché de resultados se copian a su tramo sin salir del maestro
+        ResultCache cache = step == null ? resultCache : null;
+        String[] keys = new String[fragments.size()];
+        List<Integer> pending = new ArrayList<>(fragments.size());
+        int total = fragments.size();
+        if (cache != null) {
+            // Un resultado redondeado no sirve para un trabajo con otra precisión
+            String normalized = OperationCompiler.normalize(operation)
+                + (precision == Precision.FLOAT64 ? "" : "@" + precision.wireName());
+            for (int i = 0; i < total; i++) {
+                Fragment fragment = fragments.get(i);
+                keys[i] = ResultCache.key(fragment.contentHash(), fragment.size(), normalized);
+                double[] hit = cache.get(keys[i]);
+                if (hit == null) {
+                    pending.add(i);
                     continue;
                 }
+                sink.fill(i, fragment.getOffset(), hit.length, (dst, offset, count) -> System.arraycopy(hit, 0, dst, offset, count));
+                if (progress != null) {
+                    progress.onFragment(i, CACHE_WORKER_ID, i + 1 - pending.size(), total);
+                }
+            }
+        } else {
+            for (int i = 0; i < total; i++) {
+                pending.add(i);
+            }
+        }
+        int cached = total - pending.size();
+        List<Fragment> toSend = new ArrayList<>(pending.size());
+        List<WorkerConnection> owners = new ArrayList<>(pending.size());
+        for (int i : pending) {
+            toSend.add(fragments.get(i));
+            owners.add(plan.getOwners().get(i));
+        }
+
+        // 3) Cada worker consume sus fragmentos y, al acabarlos, roba de los demás; cada
+        //    resultado se decodifica directamente en su tramo del array final
+        FragmentScheduler<WorkerConnection> scheduler = schedule(toSend, owners, (worker, fragment, j) -> {
+            int i = pending.get(j);
+            CompletableFuture<Boolean> sent = worker.submit(fragment, i, "T" + i, operation, step, precision, sink);
+            return cache == null ? sent : sent.thenApply(complete -> {
+                cache.put(keys[i], sink.copyOf(fragment.getOffset(), fragment.size()));
+                return complete;
+            });
+        });
+        if (progress != null) {
+            scheduler.setListener((j, worker, completed) ->
+                progress.onFragment(pending.get(j), worker.getWorkerId(), cached + completed, total));
+        }
+        return new Job(scheduler, sink, total, precision);
+    }
+
+    /** Envío de un fragmento de un trabajo a un worker. */
+    private interface FragmentTask {
+        /**
+         * @return Futuro que se completa cuando la respuesta ya está guardada en el sink del trabajo.
+         */
+        CompletableFuture<?> send(WorkerConnection worker, Fragment fragment, int fragmentIndex);
+    }
 
-                String taskId   = resp.get("task_id");
-                String resultJs = resp.get("result");
-                double[] result = parseArray(resultJs);
-
-                Fragment frag = fragments.get(i);
-                resultManager.addResult(
-                    taskId,
-                    new Fragment(workers.get(i).getWorkerId(),
-                                 frag.getStartIndex(),
-                                 result)
-                );
-            } catch (InterruptedException|ExecutionException e) {
-                System.err.println("❌ Error procesando fragmento " + i + ": " + e.getMessage());
+    /**
+     * Planificador de los fragmentos de un trabajo: cada fragmento empieza en su dueño (owners,
+     * del plan de partition()), se envía con task y se mide el rendimiento de cada worker para
+     * el reparto de los siguientes trabajos.
+     */
+    private FragmentScheduler<WorkerConnection> schedule(List<Fragment> fragments, List<WorkerConnection> owners,
+                                                         FragmentTask task) {
+        FragmentScheduler<WorkerConnection> scheduler = new FragmentScheduler<>(
+            fragments.size(),
+            FragmentScheduler.DEFAULT_DEPTH,
+            (worker, i) -> {
+                Fragment fragment = fragments.get(i);
+                long t0 = System.nanoTime();
+                return task.send(worker, fragment, i).whenComplete((ok, error) -> {
+                    if (error == null) {
+                        partitioner.record(worker, fragment.size(), System.nanoTime() - t0);
+                    }
+                });
+            },
+            WorkerConnection::getWorkerId);
+        scheduler.setOwners(owners);
+        return scheduler;
+    }
+
+    /**
+     * Conecta primero con los workers para conocer los núcleos que anuncia cada uno en su INIT
+     * y sobreparticiona: varios fragmentos por worker, con tamaños proporcionales a sus
+     * núcleos o, cuando ya hay medidas, a su rendimiento observado. Fuera del heap los
+     * fragmentos son vistas del almacén y se acotan para no retener demasiado en vuelo. En
+     * modo residente o con caché de resultados el reparto de cada array se fija en su primer
+     * trabajo.
+     */
+    private WeightedPartitioner.Plan<WorkerConnection> partition(DArrayDouble dArray, List<WorkerConnection> workers) {
+        for (WorkerConnection worker : workers) {
+            worker.negotiate();
+        }
+        boolean fixed = residentData || resultCache != null;
+        if (fixed) {
+            Layout layout = layouts.get(dArray);
+            if (layout != null && layout.length == dArray.length() && layout.workers.equals(new HashSet<>(workers))) {
+                return layout.plan;
             }
         }
+        WeightedPartitioner.Plan<WorkerConnection> plan = partitioner.plan(
+            dArray.length(), workers, FragmentScheduler.FRAGMENTS_PER_WORKER, dArray.getFragmentCount(),
+            dArray.isOffHeap() ? OffHeapStore.MAX_FRAGMENT : Integer.MAX_VALUE);
+        if (fixed) {
+            Layout previous = layouts.get(dArray);
+            String prefix = previous != null ? previous.prefix : UUID.randomUUID().toString();
+            layouts.put(dArray, new Layout(prefix, dArray.length(), new HashSet<>(workers), plan));
+        }
+        return plan;
+    }
 
-        exec.shutdown();
+    /**
+     * Corta dArray según plan; en modo residente cada fragmento se marca como residente con
+     * un id que nombra su tramo (ver setResidentData()).
+     */
+    private List<Fragment> fragments(DArrayDouble dArray, WeightedPartitioner.Plan<WorkerConnection> plan) {
+        List<Fragment> fragments = dArray.getFragments(plan.getSizes());
+        Layout layout = residentData ? layouts.get(dArray) : null;
+        if (layout == null) {
+            return fragments;
+        }
+        List<Fragment> resident = new ArrayList<>(fragments.size());
+        for (Fragment fragment : fragments) {
+            resident.add(fragment.asResident(layout.prefix + ":" + fragment.getOffset() + "+" + fragment.size()));
+        }
+        return resident;
+    }
 
-        // 3) Ensamblar y mostrar resultado final
-        double[] finalRes = resultManager.assembleResults();
-        System.out.println("✅ Resultado final: " + Arrays.toString(finalRes));
+    /**
+     * Reduce un trabajo sin bloquear al llamador: aplica operation a cada elemento de dArray
+     * y resume el resultado con reducer (Reducer.stats(), Reducer.histogram()). Cada worker
+     * responde con el estado parcial de sus fragmentos en lugar de los fragmentos
+     * transformados y el maestro los combina en árbol según llegan (ver ReduceSink), así que
+     * la vuelta ocupa unos bytes por fragmento y el resultado está listo en cuanto llega el
+     * último. Como submit(), el trabajo se calcula en el maestro si sale más barato.
+     * setValidationSamples() no se aplica: un estado parcial no se puede comprobar por muestreo.
+     *
+     * @return Futuro con la reducción, o que falla como submit().
+     */
+    public <R> CompletableFuture<R> reduce(DArrayDouble dArray, String operation, Reducer<R> reducer) {
+        Objects.requireNonNull(reducer);
+        List<WorkerConnection> snapshot = new ArrayList<>(workers);
+        return CompletableFuture.supplyAsync(() -> OperationCompiler.compile(operation), IoExecutors.blockingIo())
+            .thenComposeAsync(compiled -> chooseBackend(dArray, compiled, snapshot) == CostModel.Backend.LOCAL
+                ? reduceLocally(dArray, compiled, reducer)
+                : reduceDistributed(dArray, operation, snapshot, reducer), IoExecutors.blockingIo());
+    }
+
+    private <R> CompletableFuture<R> reduceLocally(DArrayDouble dArray, CompiledOperation compiled, Reducer<R> reducer) {
+        ReduceSink<R> sink = new ReduceSink<>(reducer, LocalBackend.fragments(dArray.length()));
+        this.speculativeLaunches = 0;
+        this.speculativeWins = 0;
+        return local.reduce(dArray, compiled, reducer, sink, null).thenApply(ignored -> sink.getResult());
+    }
+
+    private <R> CompletableFuture<R> reduceDistributed(DArrayDouble dArray, String operation,
+                                                       List<WorkerConnection> snapshot, Reducer<R> reducer) {
+        WeightedPartitioner.Plan<WorkerConnection> plan = partition(dArray, snapshot);
+        List<Fragment> fragments = fragments(dArray, plan);
+        ReduceSink<R> sink = new ReduceSink<>(reducer, fragments.size());
+        FragmentScheduler<WorkerConnection> scheduler = schedule(fragments, plan.getOwners(), (worker, fragment, i) ->
+            worker.reduce(fragment, "T" + i, operation, reducer).thenApply(partial -> sink.accept(i, partial)));
+        return scheduler.start(snapshot).handle((ignored, error) -> {
+            finish(scheduler, error, sink.isComplete(), sink.receivedCount(), fragments.size());
+            return sink.getResult();
+        });
+    }
+
+    /**
+     * Filtra un trabajo sin bloquear al llamador: aplica operation a cada elemento de dArray
+     * y se queda, en orden, con los resultados v para los que predicate(v) se cumple (ver
+     * OperationCompiler.isTrue(); p. ej. "x &gt; 0.5"). Con operation "x" es una selección
+     * de los elementos originales. Cada worker devuelve sólo los resultados que pasan el
+     * filtro de cada fragmento y el maestro los compacta con una suma prefija exclusiva de
+     * los recuentos (ver FilterSink): ni la red ni la memoria cargan con los descartados.
+     * Como submit(), el trabajo se calcula en el maestro si sale más barato.
+     * setValidationSamples() no se aplica.
+     *
+     * @return Futuro con los resultados que cumplen el predicado, o que falla como submit()
+     *         (también si predicate no es una expresión válida).
+     */
+    public CompletableFuture<double[]> filter(DArrayDouble dArray, String operation, String predicate) {
+        List<WorkerConnection> snapshot = new ArrayList<>(workers);
+        return CompletableFuture.supplyAsync(() -> {
+                OperationCompiler.compile(predicate);
+                return OperationCompiler.compile(operation);
+            }, IoExecutors.blockingIo())
+            .thenComposeAsync(compiled -> chooseBackend(dArray, compiled, snapshot) == CostModel.Backend.LOCAL
+                ? filterLocally(dArray, compiled, OperationCompiler.compile(predicate))
+                : filterDistributed(dArray, operation, predicate, snapshot), IoExecutors.blockingIo());
+    }
+
+    private CompletableFuture<double[]> filterLocally(DArrayDouble dArray, CompiledOperation compiled,
+                                                      CompiledOperation predicate) {
+        FilterSink sink = new FilterSink(LocalBackend.fragments(dArray.length()));
+        this.speculativeLaunches = 0;
+        this.speculativeWins = 0;
+        return local.filter(dArray, compiled, predicate, sink, null).thenApply(ignored -> sink.getResult());
+    }
+
+    private CompletableFuture<double[]> filterDistributed(DArrayDouble dArray, String operation, String predicate,
+                                                          List<WorkerConnection> snapshot) {
+        WeightedPartitioner.Plan<WorkerConnection> plan = partition(dArray, snapshot);
+        List<Fragment> fragments = fragments(dArray, plan);
+        FilterSink sink = new FilterSink(fragments.size());
+        FragmentScheduler<WorkerConnection> scheduler = schedule(fragments, plan.getOwners(), (worker, fragment, i) ->
+            worker.filter(fragment, i, "T" + i, operation, predicate, sink));
+        return scheduler.start(snapshot).handle((ignored, error) -> {
+            finish(scheduler, error, sink.isComplete(), sink.receivedCount(), fragments.size());
+            return sink.getResult();
+        });
     }
 
     /**
-     * Devuelve el resultado final ensamblado o null si aún no está listo.
+     * Devuelve el resultado del último trabajo lanzado o null si aún no está listo. No copia
+     * ni reensambla: siempre devuelve el mismo array.
      */
     public double[] getFinalResult() {
-        return resultManager.isComplete()
-             ? resultManager.assembleResults()
-             : null;
+        ResultSink sink = resultSink;
+        return sink == null ? null : sink.getResult();
     }
 
     /**
-     * Parsea la representación JSON de array ("[1.0,2.0]") a double[].
+     * Almacén de destino del último trabajo lanzado fuera del heap, o null.
      */
-    private double[] parseArray(String arrayStr) {
-        String s = (arrayStr == null ? "" : arrayStr.trim());
-        if (s.startsWith("[")) s = s.substring(1);
-        if (s.endsWith("]"))   s = s.substring(0, s.length()-1);
+    public OffHeapDoubles getFinalStorage() {
+        ResultSink sink = resultSink;
+        return sink == null ? null : sink.getStorage();
+    }
 
-        if (s.isEmpty()) return new double[0];
+    /**
+     * Copias especulativas de fragmentos rezagados lanzadas en el último trabajo terminado.
+     */
+    public int getSpeculativeLaunches() {
+        return speculativeLaunches;
+    }
 
-        String[] parts = s.split(",");
-        double[] res = new double[parts.length];
-        for (int i = 0; i < parts.length; i++) {
-            res[i] = Double.parseDouble(parts[i].trim());
-        }
-        return res;
+    /**
+     * Copias especulativas cuyo resultado llegó antes que el original en el último trabajo terminado.
+     */
+    public int getSpeculativeWins() {
+        return speculativeWins;
     }
 
     /**
@@ -166,15 +741,13 @@ public class MasterServer {
             workers.add(new WorkerConnection("worker" + (i+1),"localhost", port));
         }
 
-        // Arranca el Master
+        // Arranca el Master y espera al resultado
         MasterServer master = new MasterServer(dArray, workers);
-        master.setOperation(Operation.SIN_PLUS_COS_SQUARE_DIV_SQRT);
-        master.start();
-
-        // Opcional: espera un instante y muestra el resultado final
-        Thread.sleep(1000);
-        System.out.println("🔍 Resultado final: " +
-            Arrays.toString(master.getFinalResult()));
+        double[] result = master.submit(dArray, Operation.SIN_PLUS_COS_SQUARE_DIV_SQRT,
+            (index, workerId, completed, total) ->
+                System.out.println("📥 Fragmento " + index + " de " + workerId + " (" + completed + "/" + total + ")"))
+            .join();
+        System.out.println("🔍 Resultado final: " + Arrays.toString(result));
     }
 
 }
@@ -2,35 +2,51 @@ package handler;
 
 import core.DArrayInt;
 import data.FragmentInt;
+import data.OffHeapInts;
+import data.OffHeapStore;
+import ops.CompiledOperation;
+import ops.OperationCompiler;
 import protocol.*;
 
-import java.io.*;
-import java.net.*;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.*;
 import java.util.concurrent.*;
 
 /**
  * MasterServerInt: Versión para arrays de enteros con resiliencia y gestión de workers.
+ * Además del trabajo de start(), ordena (sort()), calcula sumas prefijas (scan()) y reduce
+ * (reduce()) su array sin bloquear, como MasterServer.
  */
 public class MasterServerInt implements RecoveryCapable {
 
     private final int port;
-    private final ResultManagerInt resultManager;
+    private volatile ResultSinkInt resultSink;
     private final DArrayInt dArray;
+    private volatile List<FragmentInt> fragments;
+    private final Map<String, Integer> taskToFragment;
     private final List<WorkerConnectionInt> workers;
     private final List<WorkerConnectionInt> backupWorkers;
-    private final Map<String, FragmentInt> workerToFragment;
+    private final WeightedPartitioner<WorkerConnectionInt> partitioner = new WeightedPartitioner<>(WorkerConnectionInt::getCores);
+    private volatile FragmentScheduler<WorkerConnectionInt> scheduler;
     private String operation = "x";
-    private int[] finalResult;
+    private volatile int validationSamples;
+    private final LocalBackend local = new LocalBackend();
+    private final CostModel costModel = new CostModel(local.parallelism());
+    private volatile CostModel.Backend backend = CostModel.configuredBackend();
+    private volatile int[] finalResult;
+    private boolean finished;
+    private ServerSocketChannel serverChannel;
     private final WorkerHealthManager healthManager;
 
     public MasterServerInt(int port, DArrayInt dArray, int expectedFragments) {
         this.port = port;
         this.dArray = dArray;
-        this.resultManager = new ResultManagerInt(expectedFragments);
-        this.workers = new ArrayList<>();
+        this.taskToFragment = new ConcurrentHashMap<>();
+        this.workers = new CopyOnWriteArrayList<>();
         this.backupWorkers = new ArrayList<>();
-        this.workerToFragment = new ConcurrentHashMap<>();
         this.healthManager = new WorkerHealthManager(this, 5000);
     }
 
@@ -38,6 +54,25 @@ public class MasterServerInt implements RecoveryCapable {
         this.operation = operation;
     }
 
+    /**
+     * Activa la comprobación por muestreo de los resultados (ver MasterServer.setValidationSamples()).
+     *
+     * @param samples Elementos por fragmento; 0 (por defecto) la desactiva.
+     */
+    public void setValidationSamples(int samples) {
+        if (samples < 0) {
+            throw new IllegalArgumentException("Las muestras no pueden ser negativas.");
+        }
+        this.validationSamples = samples;
+    }
+
+    /**
+     * Fija dónde se calculan los fragmentos (ver MasterServer.setBackend()).
+     */
+    public void setBackend(CostModel.Backend backend) {
+        this.backend = Objects.requireNonNull(backend);
+    }
+
     public void registerWorkers(List<WorkerConnectionInt> workerConnections) {
         workers.addAll(workerConnections);
     }
@@ -46,109 +81,434 @@ public class MasterServerInt implements RecoveryCapable {
         backupWorkers.addAll(backups);
     }
 
+    /**
+     * Abre el puerto del maestro en el loop NIO compartido (para INIT/HEARTBEAT) y distribuye
+     * los fragmentos. No bloquea: el resultado queda en getFinalResult() al completarse.
+     */
     public void start() {
-        new Thread(() -> {
-            try (ServerSocket serverSocket = new ServerSocket(port)) {
-                System.out.println("✅ MasterServerInt escuchando en puerto " + port);
-
-                distributeFragments();
-
-                while (!resultManager.isComplete()) {
-                    Socket clientSocket = serverSocket.accept();
-                    new Thread(() -> handleWorker(clientSocket)).start();
-                }
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            NioEventLoop loop = NioEventLoop.shared();
+            loop.listen(serverChannel, channel -> accept(channel, loop));
+            System.out.println("✅ MasterServerInt escuchando en puerto " + port);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
 
-                this.finalResult = resultManager.assembleResults();
+        distributeFragments();
+    }
 
-                System.out.println("✅ Resultado final: " + Arrays.toString(finalResult));
+    private synchronized void finishIfComplete() {
+        if (finished || resultSink == null || !resultSink.isComplete()) {
+            return;
+        }
+        finished = true;
+        OffHeapInts storage = resultSink.getStorage();
+        if (storage != null) {
+            System.out.println("✅ Resultado final: " + storage.length() + " elementos en " + storage.getFile());
+        } else {
+            this.finalResult = resultSink.getResult();
+            System.out.println("✅ Resultado final: " + Arrays.toString(finalResult));
+        }
+        healthManager.close();
 
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }).start();
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            System.err.println("⚠ No se pudo cerrar el puerto del maestro: " + e.getMessage());
+        }
     }
 
     public int[] getFinalResult() {
         return finalResult;
     }
 
+    /**
+     * Almacén con el resultado cuando el array está fuera del heap (ver DArrayInt.isOffHeap()),
+     * o null. Lo crea el maestro en un fichero temporal; quien lo use debe cerrarlo.
+     */
+    public OffHeapInts getFinalStorage() {
+        ResultSinkInt sink = resultSink;
+        return sink == null ? null : sink.getStorage();
+    }
+
+    /**
+     * Sobreparticiona el array con fragmentos proporcionales a la capacidad de cada worker
+     * (ver WeightedPartitioner) y los reparte con FragmentScheduler: cada worker consume los
+     * suyos y roba de los demás al acabar; ningún fragmento se queda sin enviar aunque haya
+     * más fragmentos que workers. Con un array fuera del heap el resultado va también a un
+     * almacén fuera del heap. Si CostModel estima que sale más barato, el array se calcula
+     * en el propio maestro con LocalBackend y no se envía nada.
+     */
     private void distributeFragments() {
-        List<FragmentInt> fragments = dArray.getFragments();
-
-        for (int i = 0; i < fragments.size(); i++) {
-            if (i < workers.size()) {
-                WorkerConnectionInt worker = workers.get(i);
-                FragmentInt fragment = fragments.get(i);
-                worker.sendTask(fragment, "T1", operation);
-                workerToFragment.put(worker.getWorkerId(), fragment);
-            } else {
-                System.err.println("⚠ No hay suficientes workers para el fragmento " + i);
+        CompiledOperation compiled;
+        try {
+            compiled = OperationCompiler.compile(operation);
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ " + e.getMessage());
+            return;
+        }
+        if (chooseBackend(compiled) == CostModel.Backend.LOCAL) {
+            computeLocally(compiled);
+            return;
+        }
+        for (WorkerConnectionInt worker : workers) {
+            worker.connect();
+        }
+        WeightedPartitioner.Plan<WorkerConnectionInt> plan = partitioner.plan(
+                dArray.length(), new ArrayList<>(workers), FragmentScheduler.FRAGMENTS_PER_WORKER,
+                dArray.getFragmentCount(), dArray.isOffHeap() ? OffHeapStore.MAX_FRAGMENT : Integer.MAX_VALUE);
+        List<FragmentInt> parts = dArray.getFragments(plan.getSizes());
+        for (int i = 0; i < parts.size(); i++) {
+            taskToFragment.put(taskId(parts.get(i)), i);
+        }
+        this.fragments = parts;
+        this.resultSink = allocateSink(parts.size());
+        if (resultSink == null) {
+            return;
+        }
+        int samples = validationSamples;
+        if (samples > 0) {
+            resultSink.setCheck((index, result, count) ->
+                    ResultValidator.check(compiled, parts.get(index), result, count, samples, index));
+        }
+
+        FragmentScheduler<WorkerConnectionInt> current = new FragmentScheduler<>(parts.size(),
+                FragmentScheduler.DEFAULT_DEPTH, this::dispatch, WorkerConnectionInt::getWorkerId);
+        // Los workers de respaldo reciben copias especulativas de los fragmentos rezagados
+        current.setOwners(plan.getOwners());
+        backupWorkers.forEach(current::addSpare);
+        scheduler = current;
+        current.start(workers).whenComplete((ok, error) -> {
+            if (error != null) {
+                System.err.println("❌ " + error.getMessage());
+                return;
+            }
+            if (current.getSpeculativeLaunches() > 0) {
+                System.out.println("🐢 Copias especulativas: " + current.getSpeculativeLaunches()
+                        + " lanzadas, " + current.getSpeculativeWins() + " ganadas");
             }
+            finishIfComplete();
+        });
+    }
+
+    /**
+     * Ordena un trabajo sin bloquear al llamador: aplica operation a cada elemento del array
+     * y devuelve los resultados en orden ascendente. Cada worker ordena su fragmento y el
+     * maestro mezcla los tramos ordenados (ver FragmentStep.SORT y MasterServer.sort()).
+     * setValidationSamples() no se aplica.
+     *
+     * @return Futuro con los resultados ordenados, o que falla con IllegalArgumentException si
+     *         la operación no es válida o con IllegalStateException si faltan fragmentos.
+     */
+    public CompletableFuture<int[]> sort(String operation) {
+        return runStep(operation, FragmentStep.SORT);
+    }
+
+    /**
+     * Suma prefija de un trabajo sin bloquear al llamador: r[i] = op(x[0]) + … + op(x[i]), con
+     * el desbordamiento de la aritmética int de Java. Cada worker devuelve las sumas prefijas
+     * de su fragmento y el maestro les suma el acarreo de los anteriores (ver FragmentStep.SCAN).
+     * setValidationSamples() no se aplica.
+     *
+     * @return Futuro con las sumas prefijas, o que falla como sort().
+     */
+    public CompletableFuture<int[]> scan(String operation) {
+        return runStep(operation, FragmentStep.SCAN);
+    }
+
+    /**
+     * Reduce un trabajo sin bloquear al llamador: aplica operation a cada elemento del array,
+     * con la conversión a int de start(), y resume el resultado con reducer (ver
+     * MasterServer.reduce()). El worker amplía los resultados a double para resumirlos, así
+     * que el estado parcial viaja en double aunque el array sea de enteros.
+     * setValidationSamples() no se aplica.
+     *
+     * @return Futuro con la reducción, o que falla como sort().
+     */
+    public <R> CompletableFuture<R> reduce(String operation, Reducer<R> reducer) {
+        Objects.requireNonNull(reducer);
+        List<WorkerConnectionInt> snapshot = new ArrayList<>(workers);
+        return CompletableFuture.supplyAsync(() -> OperationCompiler.compile(operation), IoExecutors.blockingIo())
+                .thenComposeAsync(compiled -> {
+                    if (chooseBackend(compiled) == CostModel.Backend.LOCAL) {
+                        ReduceSink<R> sink = new ReduceSink<>(reducer, LocalBackend.fragments(dArray.length()));
+                        return local.reduce(dArray, compiled, reducer, sink, null).thenApply(ignored -> sink.getResult());
+                    }
+                    return reduceDistributed(operation, reducer, snapshot);
+                }, IoExecutors.blockingIo());
+    }
+
+    private <R> CompletableFuture<R> reduceDistributed(String operation, Reducer<R> reducer,
+                                                       List<WorkerConnectionInt> snapshot) {
+        WeightedPartitioner.Plan<WorkerConnectionInt> plan = partition(snapshot);
+        List<FragmentInt> parts = dArray.getFragments(plan.getSizes());
+        ReduceSink<R> sink = new ReduceSink<>(reducer, parts.size());
+
+        FragmentScheduler<WorkerConnectionInt> job = new FragmentScheduler<>(parts.size(),
+                FragmentScheduler.DEFAULT_DEPTH, (worker, i) -> {
+                    FragmentInt fragment = parts.get(i);
+                    long t0 = System.nanoTime();
+                    return worker.reduce(fragment, "T-reduce-" + i, operation, reducer).thenApply(partial -> {
+                        partitioner.record(worker, fragment.size(), System.nanoTime() - t0);
+                        return sink.accept(i, partial);
+                    });
+                }, WorkerConnectionInt::getWorkerId);
+        job.setOwners(plan.getOwners());
+        backupWorkers.forEach(job::addSpare);
+        return job.start(snapshot).handle((ignored, error) -> {
+            checkComplete(job, error, sink.isComplete(), sink.receivedCount(), parts.size());
+            return sink.getResult();
+        });
+    }
+
+    private CompletableFuture<int[]> runStep(String operation, FragmentStep step) {
+        List<WorkerConnectionInt> snapshot = new ArrayList<>(workers);
+        int size = dArray.size();
+        return CompletableFuture.supplyAsync(() -> OperationCompiler.compile(operation), IoExecutors.blockingIo())
+                .thenComposeAsync(compiled -> {
+                    if (chooseBackend(compiled) == CostModel.Backend.LOCAL) {
+                        ResultSinkInt sink = new ResultSinkInt(size, LocalBackend.fragments(size));
+                        return local.run(dArray, compiled, step, sink, null).thenApply(ignored -> sink);
+                    }
+                    return runStepDistributed(operation, step, snapshot);
+                }, IoExecutors.blockingIo())
+                .thenCompose(sink -> local.combine(step, sink));
+    }
+
+    /**
+     * Reparte el trabajo de sort() o scan() como distributeFragments(), en un sink propio:
+     * no toca el estado del trabajo de start().
+     */
+    private CompletableFuture<ResultSinkInt> runStepDistributed(String operation, FragmentStep step,
+                                                                List<WorkerConnectionInt> snapshot) {
+        WeightedPartitioner.Plan<WorkerConnectionInt> plan = partition(snapshot);
+        List<FragmentInt> parts = dArray.getFragments(plan.getSizes());
+        ResultSinkInt sink = new ResultSinkInt(dArray.size(), parts.size());
+        sink.setCheck(step::verifyInts);
+
+        FragmentScheduler<WorkerConnectionInt> job = new FragmentScheduler<>(parts.size(),
+                FragmentScheduler.DEFAULT_DEPTH,
+                (worker, i) -> send(worker, parts.get(i), i, "T-" + step.wireName() + "-" + i, operation, step, sink),
+                WorkerConnectionInt::getWorkerId);
+        job.setOwners(plan.getOwners());
+        backupWorkers.forEach(job::addSpare);
+        return job.start(snapshot).handle((ignored, error) -> {
+            checkComplete(job, error, sink.isComplete(), sink.receivedCount(), parts.size());
+            return sink;
+        });
+    }
+
+    /**
+     * Conecta con los workers de un trabajo de sort(), scan() o reduce() y reparte el array
+     * entre ellos según su capacidad.
+     */
+    private WeightedPartitioner.Plan<WorkerConnectionInt> partition(List<WorkerConnectionInt> snapshot) {
+        for (WorkerConnectionInt worker : snapshot) {
+            worker.connect();
         }
+        return partitioner.plan(dArray.length(), snapshot, FragmentScheduler.FRAGMENTS_PER_WORKER,
+                dArray.getFragmentCount(), Integer.MAX_VALUE);
     }
 
-    private void handleWorker(Socket clientSocket) {
-        try (
-            BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-            PrintWriter writer = new PrintWriter(clientSocket.getOutputStream(), true)
-        ) {
-            String line = in.readLine();
-            Map<String, String> message = ProtocolHandler.fromJson(line);
+    /**
+     * Cierra un trabajo de sort(), scan() o reduce(): anota las copias especulativas y, si faltan
+     * fragmentos, lanza el error con el que falla su futuro.
+     */
+    private static void checkComplete(FragmentScheduler<WorkerConnectionInt> job, Throwable error, boolean complete,
+                                      int received, int total) {
+        if (job.getSpeculativeLaunches() > 0) {
+            System.out.println("🐢 Copias especulativas: " + job.getSpeculativeLaunches()
+                    + " lanzadas, " + job.getSpeculativeWins() + " ganadas");
+        }
+        if (error != null || !complete) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            throw new CompletionException(new IllegalStateException("Resultado incompleto: "
+                    + received + "/" + total + " fragmentos recibidos"
+                    + (cause == null ? "" : " (" + cause.getMessage() + ")"), cause));
+        }
+    }
 
-            String type = message.get("type");
+    /**
+     * El modo fijado con setBackend() o, en AUTO, el que estime más rápido CostModel. Sólo
+     * conecta con los workers si el cálculo local no gana ya contra el coste fijo de
+     * cualquier trabajo distribuido.
+     */
+    private CostModel.Backend chooseBackend(CompiledOperation compiled) {
+        CostModel.Backend mode = backend;
+        if (mode != CostModel.Backend.AUTO) {
+            return mode;
+        }
+        long n = dArray.length();
+        if (workers.isEmpty() || costModel.localNanos(n, compiled) <= costModel.minRemoteNanos()) {
+            return CostModel.Backend.LOCAL;
+        }
+        int cores = 0;
+        double throughput = 0;
+        for (WorkerConnectionInt worker : workers) {
+            worker.connect();
+            cores += worker.getCores();
+            double measured = partitioner.getThroughput(worker);
+            throughput = measured > 0 && throughput >= 0 ? throughput + measured : -1;
+        }
+        return costModel.choose(n, compiled, cores, Math.max(0, throughput));
+    }
 
-            if ("INIT".equals(type)) {
-                writer.println(ProtocolHandler.toJson(ProtocolHandler.createDoneMessage()));
+    private void computeLocally(CompiledOperation compiled) {
+        this.resultSink = allocateSink(LocalBackend.fragments(dArray.length()));
+        if (resultSink == null) {
+            return;
+        }
+        System.out.println("✅ Calculando " + dArray.length() + " elementos en el maestro");
+        local.run(dArray, compiled, resultSink, null).whenComplete((ok, error) -> {
+            if (error != null) {
+                System.err.println("❌ " + error.getMessage());
+                return;
+            }
+            finishIfComplete();
+        });
+    }
+
+    /**
+     * Destino del resultado: un array o, con el array fuera del heap, un almacén fuera del
+     * heap. Devuelve null si no se pudo reservar.
+     */
+    private ResultSinkInt allocateSink(int fragmentCount) {
+        if (!dArray.isOffHeap()) {
+            return new ResultSinkInt(dArray.size(), fragmentCount);
+        }
+        try {
+            return new ResultSinkInt(OffHeapInts.allocate(dArray.length()), fragmentCount);
+        } catch (IOException e) {
+            System.err.println("❌ No se pudo reservar el resultado fuera del heap: " + e.getMessage());
+            return null;
+        }
+    }
 
-            } else if ("RESULT".equals(type)) {
-                String taskId = message.get("task_id");
-                String workerId = message.get("worker_id");
-                String resultArray = message.get("result");
+    private static String taskId(FragmentInt fragment) {
+        return "T-" + fragment.getId();
+    }
 
-                int[] parsedResult = parseArray(resultArray);
-                FragmentInt fragment = new FragmentInt(workerId, 0, parsedResult);
-                resultManager.addResult(taskId, fragment);
+    /**
+     * Envía un fragmento; su resultado se decodifica directamente en su tramo del resultado
+     * final. Un reenvío de recuperación sobrescribe (y no duplica) el resultado original.
+     */
+    private CompletableFuture<Boolean> dispatch(WorkerConnectionInt worker, int index) {
+        FragmentInt fragment = fragments.get(index);
+        return send(worker, fragment, index, taskId(fragment), operation, null, resultSink).whenComplete((complete, error) -> {
+            if (error == null && complete) {
+                finishIfComplete();
+            }
+        });
+    }
 
-            } else if ("HEARTBEAT".equals(type)) {
-                String workerId = message.get("worker_id");
-                healthManager.updateHeartbeat(workerId);
+    /**
+     * Envía un fragmento a su tramo del sink y mide el rendimiento del worker para el reparto
+     * de los siguientes trabajos.
+     */
+    private CompletableFuture<Boolean> send(WorkerConnectionInt worker, FragmentInt fragment, int index, String taskId,
+                                            String operation, FragmentStep step, ResultSinkInt sink) {
+        long t0 = System.nanoTime();
+        return worker.sendTask(fragment, index, taskId, operation, step, sink).whenComplete((complete, error) -> {
+            if (error == null) {
+                partitioner.record(worker, fragment.size(), System.nanoTime() - t0);
             }
+        });
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * Registra un RESULT que el worker envió por el puerto del maestro.
+     */
+    private void acceptPushed(String taskId, BinaryFrame frame, int[] result) {
+        Integer index = taskId == null ? null : taskToFragment.get(taskId);
+        if (index == null) {
+            System.err.println("⚠ Resultado para una tarea desconocida: " + taskId);
+            return;
+        }
+        long start = fragments.get(index).getOffset();
+        int count = fragments.get(index).size();
+        boolean complete;
+        try {
+            complete = frame != null
+                    ? resultSink.accept(index, start, count, frame)
+                    : resultSink.accept(index, start, count, result);
+        } catch (IllegalStateException e) {
+            System.err.println("⚠ Se descarta un resultado recibido por el puerto del maestro: " + e.getMessage());
+            return;
+        }
+        if (complete) {
+            finishIfComplete();
         }
     }
 
-    private int[] parseArray(String arrayStr) {
-        arrayStr = arrayStr.replace("[", "").replace("]", "");
-        String[] parts = arrayStr.split(",");
-        int[] result = new int[parts.length];
+    /**
+     * Atiende una conexión entrante de un worker en el loop NIO; la conexión se mantiene
+     * abierta mientras el worker siga enviando mensajes.
+     */
+    private void accept(SocketChannel channel, NioEventLoop loop) {
+        NioConnection[] self = new NioConnection[1];
+        self[0] = new NioConnection(channel, loop,
+                message -> handleMessage(self[0], message),
+                cause -> { /* el worker cerró su conexión */ });
+    }
 
-        for (int i = 0; i < parts.length; i++) {
-            result[i] = Integer.parseInt(parts[i].trim());
+    @SuppressWarnings("unchecked")
+    private void handleMessage(NioConnection connection, Object received) throws IOException {
+        if (received instanceof BinaryFrame) {
+            BinaryFrame frame = (BinaryFrame) received;
+            if (frame.getKind() == BinaryCodec.KIND_RESULT) {
+                acceptPushed(frame.getHeader().get("task_id"), frame, null);
+            }
+            return;
         }
 
-        return result;
+        Map<String, String> message = (Map<String, String>) received;
+        String type = message.get("type");
+
+        if ("INIT".equals(type)) {
+            connection.send(OutboundFrame.jsonLine(ProtocolHandler.toJson(ProtocolHandler.createDoneMessage())));
+
+        } else if ("RESULT".equals(type)) {
+            String taskId = message.get("task_id");
+            String resultArray = message.get("result");
+
+            acceptPushed(taskId, null, ProtocolHandler.parseIntArray(resultArray));
+
+        } else if ("HEARTBEAT".equals(type)) {
+            String workerId = message.get("worker_id");
+            healthManager.updateHeartbeat(workerId);
+        }
     }
 
     @Override
     public void triggerRecoveryForWorker(String failedWorkerId) {
-        FragmentInt fragment = workerToFragment.get(failedWorkerId);
+        FragmentScheduler<WorkerConnectionInt> current = scheduler;
+        WorkerConnectionInt failed = workers.stream()
+                .filter(w -> w.getWorkerId().equals(failedWorkerId))
+                .findFirst()
+                .orElse(null);
 
-        if (fragment == null) {
+        if (current == null || failed == null) {
             System.err.println("⚠ No se encontró fragmento para " + failedWorkerId);
             return;
         }
 
+        // Sus fragmentos en vuelo vuelven a la cola y los toman los demás workers
+        workers.remove(failed);
+        current.removeWorker(failed);
+
         if (backupWorkers.isEmpty()) {
             System.err.println("🚨 No hay workers de respaldo disponibles.");
             return;
         }
 
         WorkerConnectionInt backup = backupWorkers.remove(0);
-        System.out.println("🔄 Reenviando fragmento a " + backup.getWorkerId());
+        System.out.println("🔄 Reenviando fragmentos a " + backup.getWorkerId());
 
-        backup.sendTask(fragment, "T1", operation);
-        workerToFragment.put(backup.getWorkerId(), fragment);
+        workers.add(backup);
+        current.addWorker(backup);
     }
 }
\ No newline at end of file
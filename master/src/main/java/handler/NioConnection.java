@@ -0,0 +1,228 @@
+package handler;
+
+import protocol.MessageDecoder;
+import protocol.OutboundFrame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * NioConnection: Estado de un socket no bloqueante atendido por un NioEventLoop.
+ *
+ * Los mensajes salientes se encolan desde cualquier hilo y el loop los codifica por bloques
+ * en un buffer directo a medida que el socket acepta bytes; si el socket se llena, se activa
+ * OP_WRITE y se continúa cuando vuelva a haber espacio. Quien envía desde fuera del loop
+ * espera (contrapresión) mientras haya más de HIGH_WATERMARK bytes sin escribir.
+ */
+class NioConnection {
+
+    static final long HIGH_WATERMARK = 8L * 1024 * 1024;
+    static final long LOW_WATERMARK = 2L * 1024 * 1024;
+    private static final int WRITE_BUFFER_BYTES = 256 * 1024;
+
+    private final SocketChannel channel;
+    private final NioEventLoop loop;
+    private final MessageDecoder decoder = new MessageDecoder();
+    private final MessageDecoder.Listener listener;
+    private final Consumer<IOException> onClose;
+
+    private final Queue<OutboundFrame> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private OutboundFrame current;
+    private SelectionKey key;
+    private volatile boolean closed;
+
+    /**
+     * @param channel  Socket ya conectado y en modo no bloqueante.
+     * @param loop     Loop que atenderá el socket.
+     * @param listener Receptor de los mensajes completos (se invoca en el hilo del loop).
+     * @param onClose  Se invoca una vez al cerrarse la conexión, con la causa.
+     */
+    NioConnection(SocketChannel channel, NioEventLoop loop,
+                  MessageDecoder.Listener listener, Consumer<IOException> onClose) {
+        this.channel = channel;
+        this.loop = loop;
+        this.listener = listener;
+        this.onClose = onClose;
+        writeBuffer.flip();   // vacío: listo para drenar
+        loop.register(channel, this);
+    }
+
+    void attach(SelectionKey key) {
+        this.key = key;
+        flush();
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Encola un mensaje para enviarlo; puede llamarse desde cualquier hilo.
+     * Fuera de los loops, bloquea mientras la cola supere HIGH_WATERMARK; en el hilo de un
+     * loop (el suyo u otro) nunca bloquea.
+     *
+     * @throws IOException Si la conexión está cerrada.
+     */
+    void send(OutboundFrame frame) throws IOException {
+        if (closed) {
+            throw new IOException("Conexión cerrada");
+        }
+        if (!NioEventLoop.inAnyLoop()) {
+            awaitWritable();
+        }
+        queuedBytes.addAndGet(frame.size());
+        outbound.add(frame);
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(this::flush);
+        }
+    }
+
+    /**
+     * Bytes encolados que aún no se han escrito en el socket.
+     */
+    long queuedBytes() {
+        return queuedBytes.get();
+    }
+
+    private void awaitWritable() throws IOException {
+        if (queuedBytes.get() <= HIGH_WATERMARK) {
+            return;
+        }
+        synchronized (this) {
+            while (!closed && queuedBytes.get() > LOW_WATERMARK) {
+                try {
+                    wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrumpido esperando espacio de escritura", e);
+                }
+            }
+        }
+        if (closed) {
+            throw new IOException("Conexión cerrada");
+        }
+    }
+
+    void onReadable(ByteBuffer readBuffer) {
+        try {
+            while (true) {
+                readBuffer.clear();
+                int n = channel.read(readBuffer);
+                if (n < 0) {
+                    close(new IOException("El peer cerró la conexión"));
+                    return;
+                }
+                if (n == 0) {
+                    return;
+                }
+                readBuffer.flip();
+                decoder.feed(readBuffer, listener);
+            }
+        } catch (IOException e) {
+            close(e);
+        } catch (RuntimeException e) {
+            close(new IOException("Error procesando mensaje entrante", e));
+        }
+    }
+
+    void onWritable() {
+        flush();
+    }
+
+    /**
+     * Escribe todo lo posible sin bloquear; sólo se ejecuta en el hilo del loop.
+     */
+    private void flush() {
+        flushScheduled.set(false);
+        if (key == null || closed) {
+            return;   // attach() volverá a llamar cuando el canal quede registrado
+        }
+        try {
+            while (true) {
+                if (!writeBuffer.hasRemaining()) {
+                    if (!refill()) {
+                        break;
+                    }
+                }
+                int before = writeBuffer.remaining();
+                channel.write(writeBuffer);
+                int written = before - writeBuffer.remaining();
+                release(written);
+                if (writeBuffer.hasRemaining()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            close(e);
+        }
+    }
+
+    /**
+     * Codifica en writeBuffer el siguiente bloque de la cola.
+     *
+     * @return false si no queda nada por enviar.
+     */
+    private boolean refill() {
+        writeBuffer.clear();
+        while (writeBuffer.hasRemaining()) {
+            if (current == null) {
+                current = outbound.poll();
+                if (current == null) {
+                    break;
+                }
+            }
+            int before = writeBuffer.position();
+            if (current.fill(writeBuffer)) {
+                current = null;
+            } else if (writeBuffer.position() == before) {
+                break;   // no cabe ni un elemento más: enviar lo que hay
+            }
+        }
+        writeBuffer.flip();
+        return writeBuffer.hasRemaining();
+    }
+
+    private void release(int written) {
+        long left = queuedBytes.addAndGet(-written);
+        if (left <= LOW_WATERMARK && left + written > LOW_WATERMARK) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Cierra el socket y notifica la causa una sola vez.
+     */
+    void close(IOException cause) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // ya estaba cerrado
+        }
+        synchronized (this) {
+            notifyAll();
+        }
+        onClose.accept(cause);
+    }
+}
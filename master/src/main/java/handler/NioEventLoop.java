@@ -0,0 +1,184 @@
+package handler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * NioEventLoop: Hilo con un Selector que atiende todos los sockets que se le registran.
+ *
+ * Un puñado de estos hilos (ver shared()) maneja todas las conexiones con workers del
+ * maestro, en lugar de un hilo bloqueado por socket. Las operaciones sobre los canales se
+ * encolan con execute() y siempre se ejecutan dentro del propio hilo del loop.
+ */
+final class NioEventLoop {
+
+    /** Número de loops compartidos; configurable con -Ddarraylib.nio.threads=N. */
+    private static final int SHARED_LOOPS = Math.max(1, Integer.getInteger("darraylib.nio.threads",
+            Math.min(2, Runtime.getRuntime().availableProcessors())));
+
+    private static NioEventLoop[] shared;
+    private static final AtomicInteger nextShared = new AtomicInteger();
+    /** Marca los hilos de cualquier loop (ver inAnyLoop()). */
+    private static final ThreadLocal<Boolean> LOOP_THREAD = ThreadLocal.withInitial(() -> false);
+
+    /** Buffer de lectura directo compartido por todas las conexiones del loop. */
+    private static final int READ_BUFFER_BYTES = 256 * 1024;
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+    private final Thread thread;
+
+    NioEventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Devuelve uno de los loops compartidos por todo el maestro (reparto round-robin).
+     */
+    static NioEventLoop shared() {
+        synchronized (NioEventLoop.class) {
+            if (shared == null) {
+                shared = new NioEventLoop[SHARED_LOOPS];
+                for (int i = 0; i < SHARED_LOOPS; i++) {
+                    try {
+                        shared[i] = new NioEventLoop("darraylib-nio-" + i);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("No se pudo abrir el Selector", e);
+                    }
+                }
+            }
+        }
+        return shared[Math.floorMod(nextShared.getAndIncrement(), shared.length)];
+    }
+
+    /**
+     * Indica si el hilo actual es el de este loop.
+     */
+    boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Indica si el hilo actual es el de algún loop: ahí no se puede bloquear, porque el loop
+     * que debería desbloquearlo podría estar a su vez esperando a éste.
+     */
+    static boolean inAnyLoop() {
+        return LOOP_THREAD.get();
+    }
+
+    /**
+     * Ejecuta la acción dentro del hilo del loop (inmediatamente si ya estamos en él).
+     */
+    void execute(Runnable task) {
+        if (inLoop()) {
+            task.run();
+            return;
+        }
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Registra un socket no bloqueante para que el loop atienda sus lecturas y escrituras.
+     */
+    void register(SocketChannel channel, NioConnection connection) {
+        execute(() -> {
+            try {
+                connection.attach(channel.register(selector, SelectionKey.OP_READ, connection));
+            } catch (ClosedChannelException e) {
+                connection.close(e);
+            }
+        });
+    }
+
+    /**
+     * Acepta conexiones entrantes en el canal dado y entrega cada socket aceptado (ya en modo
+     * no bloqueante) a onAccept, dentro del hilo del loop.
+     */
+    void listen(ServerSocketChannel server, Consumer<SocketChannel> onAccept) throws IOException {
+        server.configureBlocking(false);
+        execute(() -> {
+            try {
+                server.register(selector, SelectionKey.OP_ACCEPT, onAccept);
+            } catch (ClosedChannelException e) {
+                System.err.println("⚠ Canal de escucha cerrado antes de registrarse: " + e.getMessage());
+            }
+        });
+    }
+
+    private void run() {
+        LOOP_THREAD.set(true);
+        while (true) {
+            try {
+                selector.select();
+                runTasks();
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    process(key);
+                }
+            } catch (IOException e) {
+                System.err.println("❌ Error en el loop NIO " + thread.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("❌ Tarea del loop NIO falló: " + e);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void process(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        Object attachment = key.attachment();
+
+        if (key.isAcceptable()) {
+            try {
+                SocketChannel accepted = ((ServerSocketChannel) key.channel()).accept();
+                if (accepted != null) {
+                    accepted.configureBlocking(false);
+                    accepted.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    ((Consumer<SocketChannel>) attachment).accept(accepted);
+                }
+            } catch (IOException e) {
+                System.err.println("⚠ accept() falló: " + e.getMessage());
+            }
+            return;
+        }
+
+        NioConnection connection = (NioConnection) attachment;
+        if (key.isReadable()) {
+            connection.onReadable(readBuffer);
+        }
+        if (key.isValid() && key.isWritable()) {
+            connection.onWritable();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package handler;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * ReduceSink: Combina los estados parciales de un trabajo de reducción según llegan.
+ *
+ * Los parciales se acumulan como un contador binario: levels[k] guarda, si lo hay, el
+ * combinado de 2^k fragmentos; un parcial nuevo se combina con el nivel 0 y el "acarreo"
+ * sube mientras encuentre niveles ocupados. Es la misma reducción en árbol equilibrado que
+ * se haría esperando a todos, pero sin guardar más de log2(fragmentos) estados y con el
+ * resultado listo en cuanto llega el último. Como ResultSink, un fragmento repetido (copia
+ * especulativa o reenvío) no cuenta dos veces.
+ */
+final class ReduceSink<R> {
+
+    private final Reducer<R> reducer;
+    private final int fragments;
+    private final BitSet received;
+    private final List<R> levels = new ArrayList<>();
+    private int receivedCount;
+
+    ReduceSink(Reducer<R> reducer, int fragments) {
+        this.reducer = reducer;
+        this.fragments = fragments;
+        this.received = new BitSet(fragments);
+    }
+
+    /**
+     * Combina el estado parcial de un fragmento.
+     *
+     * @return true si con este fragmento la reducción queda completa.
+     */
+    synchronized boolean accept(int fragmentIndex, R partial) {
+        if (fragmentIndex < 0 || fragmentIndex >= fragments) {
+            throw new IllegalArgumentException("Fragmento " + fragmentIndex + " fuera de rango (0.." + (fragments - 1) + ")");
+        }
+        if (received.get(fragmentIndex)) {
+            return receivedCount == fragments;
+        }
+        received.set(fragmentIndex);
+        receivedCount++;
+
+        R carry = partial;
+        int k = 0;
+        for (; k < levels.size() && levels.get(k) != null; k++) {
+            carry = reducer.combine(levels.get(k), carry);
+            levels.set(k, null);
+        }
+        if (k == levels.size()) {
+            levels.add(carry);
+        } else {
+            levels.set(k, carry);
+        }
+        return receivedCount == fragments;
+    }
+
+    /**
+     * Combinación de todo lo recibido hasta ahora (el resultado final si isComplete()).
+     */
+    synchronized R getResult() {
+        R result = reducer.empty();
+        for (int k = levels.size() - 1; k >= 0; k--) {
+            if (levels.get(k) != null) {
+                result = reducer.combine(result, levels.get(k));
+            }
+        }
+        return result;
+    }
+
+    synchronized int receivedCount() {
+        return receivedCount;
+    }
+
+    synchronized boolean isComplete() {
+        return receivedCount == fragments;
+    }
+}
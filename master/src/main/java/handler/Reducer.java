@@ -0,0 +1,140 @@
+package handler;
+
+import java.util.Map;
+
+/**
+ * Reducer: Reducción de un trabajo a un valor pequeño (ver MasterServer.reduce()).
+ *
+ * En lugar de devolver el fragmento transformado, cada worker aplica la operación y responde
+ * con un estado parcial de unos pocos double (campo "reduce" de la TASK, ver
+ * shared/communication_protocol.md); el maestro los combina según llegan (ReduceSink). La red
+ * transporta O(fragmentos) bytes de vuelta en lugar de O(N).
+ *
+ * Las reducciones se crean con stats() y histogram(); no se pueden definir otras fuera del
+ * paquete porque los workers tienen que saber calcularlas.
+ *
+ * @param <R> Tipo del resultado (y de cada estado parcial).
+ */
+public abstract class Reducer<R> {
+
+    private Reducer() {
+    }
+
+    /**
+     * Número de elementos, suma, mínimo, máximo, media y varianza (ver Stats).
+     */
+    public static Reducer<Stats> stats() {
+        return STATS;
+    }
+
+    /**
+     * Histograma de bins intervalos iguales entre low y high (ver Histogram).
+     *
+     * @throws IllegalArgumentException Si bins < 1 o el rango no es finito y creciente.
+     */
+    public static Reducer<Histogram> histogram(int bins, double low, double high) {
+        if (bins < 1) {
+            throw new IllegalArgumentException("El histograma necesita al menos un intervalo.");
+        }
+        if (!(low < high) || Double.isInfinite(low) || Double.isInfinite(high)) {
+            throw new IllegalArgumentException("Rango de histograma inválido: [" + low + ", " + high + "]");
+        }
+        return new HistogramReducer(bins, low, high);
+    }
+
+    /** Añade a la cabecera de la TASK los campos que describen la reducción. */
+    abstract void describe(Map<String, Object> header);
+
+    /** Resultado de no reducir nada (elemento neutro de combine()). */
+    abstract R empty();
+
+    /** Estado parcial de values[offset, offset + count), calculado en el maestro. */
+    abstract R partial(double[] values, int offset, int count);
+
+    /**
+     * Estado parcial recibido de un worker.
+     *
+     * @throws IllegalStateException Si no tiene la forma esperada.
+     */
+    abstract R decode(double[] wire);
+
+    /** Combina los estados de dos conjuntos disjuntos de fragmentos. */
+    abstract R combine(R a, R b);
+
+    private static final Reducer<Stats> STATS = new Reducer<Stats>() {
+        @Override
+        void describe(Map<String, Object> header) {
+            header.put("reduce", "stats");
+        }
+
+        @Override
+        Stats empty() {
+            return Stats.EMPTY;
+        }
+
+        @Override
+        Stats partial(double[] values, int offset, int count) {
+            return Stats.of(values, offset, count);
+        }
+
+        @Override
+        Stats decode(double[] wire) {
+            return Stats.fromWire(wire);
+        }
+
+        @Override
+        Stats combine(Stats a, Stats b) {
+            return a.combine(b);
+        }
+
+        @Override
+        public String toString() {
+            return "stats";
+        }
+    };
+
+    private static final class HistogramReducer extends Reducer<Histogram> {
+        private final int bins;
+        private final double low;
+        private final double high;
+
+        HistogramReducer(int bins, double low, double high) {
+            this.bins = bins;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        void describe(Map<String, Object> header) {
+            header.put("reduce", "histogram");
+            header.put("bins", bins);
+            header.put("lo", low);
+            header.put("hi", high);
+        }
+
+        @Override
+        Histogram empty() {
+            return Histogram.empty(bins, low, high);
+        }
+
+        @Override
+        Histogram partial(double[] values, int offset, int count) {
+            return Histogram.of(values, offset, count, bins, low, high);
+        }
+
+        @Override
+        Histogram decode(double[] wire) {
+            return Histogram.fromWire(wire, bins, low, high);
+        }
+
+        @Override
+        Histogram combine(Histogram a, Histogram b) {
+            return a.combine(b);
+        }
+
+        @Override
+        public String toString() {
+            return "histogram(" + bins + ", " + low + ", " + high + ")";
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package handler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ResultCache: Resultados de fragmentos ya calculados, en el maestro, por contenido: la clave
+ * es la huella del fragmento (Fragment.contentHash()), su tamaño y la operación normalizada
+ * (OperationCompiler.normalize()). Si se repite un trabajo con los mismos datos y la misma
+ * operación, los fragmentos que están aquí se copian directamente en el resultado y no salen
+ * del maestro (ver MasterServer.setResultCache()).
+ *
+ * La capacidad se mide en bytes de resultados guardados. Se expulsan los menos usados
+ * recientemente (LRU), pero un resultado nuevo sólo entra si se ha pedido más veces que los
+ * que tendría que expulsar (admisión TinyLFU): las frecuencias se estiman con un count-min
+ * sketch de contadores de 4 bits que se dividen por dos cada cierto número de accesos, así
+ * que una ráfaga de trabajos que no se repiten no vacía la caché de los que sí.
+ */
+public final class ResultCache {
+
+    /** Filas del sketch de frecuencias. */
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, double[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final byte[][] sketch;
+    private final int mask;
+    private final int resetAfter;
+    private int accesses;
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+
+    /**
+     * @param maxBytes Bytes de resultados que se pueden guardar.
+     */
+    public ResultCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("La capacidad de la caché debe ser positiva.");
+        }
+        this.maxBytes = maxBytes;
+        // Un contador por cada fragmento de 4 KiB que quepa, entre 2^8 y 2^16 por fila
+        int width = Integer.highestOneBit((int) Math.max(256, Math.min(1 << 16, maxBytes >> 12)));
+        this.sketch = new byte[DEPTH][width];
+        this.mask = width - 1;
+        this.resetAfter = 10 * width;
+    }
+
+    /**
+     * Clave de un fragmento para una operación ya normalizada.
+     */
+    static String key(String contentHash, int size, String normalizedOperation) {
+        return contentHash + ':' + size + ':' + normalizedOperation;
+    }
+
+    /**
+     * Resultado guardado para la clave, o null. El array es el de la caché: no se debe modificar.
+     */
+    synchronized double[] get(String key) {
+        record(key);
+        double[] result = entries.get(key);
+        if (result == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return result;
+    }
+
+    /**
+     * Guarda el resultado de una clave si cabe: cuando hay que expulsar a otros, sólo si la
+     * clave es más frecuente que todos ellos. El array pasa a ser de la caché.
+     *
+     * @return true si quedó guardado.
+     */
+    synchronized boolean put(String key, double[] result) {
+        long size = (long) result.length * Double.BYTES;
+        double[] previous = entries.remove(key);
+        if (previous != null) {
+            bytes -= (long) previous.length * Double.BYTES;
+        }
+        if (size > maxBytes) {
+            return false;
+        }
+
+        // Víctimas necesarias, de la menos usada recientemente en adelante
+        List<String> victims = new ArrayList<>();
+        long freed = 0;
+        int strongest = 0;
+        for (Iterator<Map.Entry<String, double[]>> it = entries.entrySet().iterator();
+             bytes - freed + size > maxBytes && it.hasNext(); ) {
+            Map.Entry<String, double[]> eldest = it.next();
+            victims.add(eldest.getKey());
+            freed += (long) eldest.getValue().length * Double.BYTES;
+            strongest = Math.max(strongest, frequency(eldest.getKey()));
+        }
+        if (!victims.isEmpty() && frequency(key) <= strongest) {
+            rejections++;
+            return false;
+        }
+        for (String victim : victims) {
+            entries.remove(victim);
+            evictions++;
+        }
+        bytes -= freed;
+        entries.put(key, result);
+        bytes += size;
+        return true;
+    }
+
+    // --- Sketch de frecuencias ---
+
+    private void record(String key) {
+        int h = spread(key.hashCode());
+        for (int row = 0; row < DEPTH; row++) {
+            int i = index(h, row);
+            if (sketch[row][i] < MAX_COUNT) {
+                sketch[row][i]++;
+            }
+        }
+        if (++accesses >= resetAfter) {
+            // Envejecimiento: los contadores se dividen por dos
+            for (byte[] counters : sketch) {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] >>= 1;
+                }
+            }
+            accesses /= 2;
+        }
+    }
+
+    private int frequency(String key) {
+        int h = spread(key.hashCode());
+        int min = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, sketch[row][index(h, row)]);
+        }
+        return min;
+    }
+
+    private int index(int h, int row) {
+        int x = (h + row * 0x9E3779B9) * 0x85EBCA6B;
+        return (x ^ (x >>> 15)) & mask;
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x7FEB352D;
+        return h ^ (h >>> 15);
+    }
+
+    // --- Consulta ---
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Bytes de resultados guardados ahora.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Resultados guardados ahora.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Fragmentos que se sirvieron desde la caché.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Fragmentos buscados que no estaban y hubo que calcular.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Resultados expulsados para hacer sitio a otros.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Resultados que no entraron por ser menos frecuentes que los que habrían expulsado.
+     */
+    public synchronized long getRejections() {
+        return rejections;
+    }
+
+    /**
+     * Vacía la caché (los contadores se conservan).
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ResultCache{" + entries.size() + " resultados, " + bytes + "/" + maxBytes + " bytes, hits=" + hits
+            + ", misses=" + misses + ", evictions=" + evictions + ", rejections=" + rejections + "}";
+    }
+}
@@ -8,7 +8,11 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ResultManager: Almacena resultados parciales de los workers y los ensambla en orden correcto.
+ *
+ * @deprecated Copia cada fragmento y reordena en cada ensamblado; usar ResultSink, que decodifica
+ * los resultados directamente en el array final.
  */
+@Deprecated
 public class ResultManager {
 
     private final ConcurrentHashMap<String, Fragment> resultMap;
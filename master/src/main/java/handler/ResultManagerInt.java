@@ -9,7 +9,11 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ResultManagerInt: Almacena resultados parciales de los workers (int) y los ensambla en orden correcto.
+ *
+ * @deprecated Copia cada fragmento y reordena en cada ensamblado; usar ResultSinkInt, que decodifica
+ * los resultados directamente en el array final.
  */
+@Deprecated
 public class ResultManagerInt {
 
     private final ConcurrentHashMap<String, FragmentInt> resultMap;
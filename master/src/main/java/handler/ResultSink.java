@@ -0,0 +1,356 @@
+package handler;
+
+import data.OffHeapDoubles;
+import protocol.BinaryCodec;
+import protocol.BinaryFrame;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * ResultSink: Destino preasignado para los resultados de un trabajo con datos double.
+ *
+ * El array de salida se reserva una sola vez con la longitud total y cada RESULT se
+ * decodifica directamente en su tramo [startIndex, startIndex + len), sin arrays por
+ * fragmento ni ordenación final. Los fragmentos recibidos se marcan en un BitSet; el primer
+ * resultado de cada fragmento gana y los que llegan después (una copia especulativa perdedora
+ * o un reenvío) se ignoran sin tocar su tramo, ni siquiera con el resultado ya entregado.
+ *
+ * Para resultados mayores que el heap (o de más de Integer.MAX_VALUE elementos) el destino
+ * puede ser un OffHeapDoubles: cada cuerpo se copia byte a byte en su tramo del fichero mapeado.
+ */
+public class ResultSink {
+
+    private final double[] output;
+    private final OffHeapDoubles storage;
+    private final long length;
+    private final int fragments;
+    private final BitSet received;
+    private final long[] starts;
+    private int receivedCount;
+    private volatile Check check;
+    private double maxInputError;
+    private double maxResultError;
+
+    /**
+     * Comprueba el resultado de un fragmento antes de guardarlo (ver ResultValidator).
+     */
+    interface Check {
+        /**
+         * @param result Elemento i del resultado recibido.
+         * @throws IllegalStateException Si el resultado no es válido; entonces no se guarda.
+         */
+        void verify(int fragmentIndex, IntToDoubleFunction result, int count);
+    }
+
+    /**
+     * Calcula en el propio maestro el tramo de un fragmento (ver LocalBackend).
+     */
+    interface Filler {
+        /**
+         * Escribe los count resultados del fragmento en dst a partir de dstOffset.
+         */
+        void fill(double[] dst, int dstOffset, int count);
+    }
+
+    /**
+     * @param length    Longitud total del resultado.
+     * @param fragments Número de fragmentos que deben llegar para completarlo.
+     */
+    public ResultSink(int length, int fragments) {
+        this.output = new double[length];
+        this.storage = null;
+        this.length = length;
+        this.fragments = fragments;
+        this.received = new BitSet(fragments);
+        this.starts = new long[fragments];
+    }
+
+    /**
+     * @param storage   Destino fuera del heap; su longitud es la del resultado.
+     * @param fragments Número de fragmentos que deben llegar para completarlo.
+     */
+    public ResultSink(OffHeapDoubles storage, int fragments) {
+        this.output = null;
+        this.storage = storage;
+        this.length = storage.length();
+        this.fragments = fragments;
+        this.received = new BitSet(fragments);
+        this.starts = new long[fragments];
+    }
+
+    /**
+     * Decodifica el cuerpo de una trama RESULT directamente en su tramo del resultado.
+     *
+     * @param fragmentIndex Posición del fragmento (0..fragments-1).
+     * @param startIndex    Índice de inicio del fragmento en el array original.
+     * @param count         Elementos del fragmento, que debe traer la trama.
+     * @param frame         Trama RESULT recibida.
+     * @return true si con este fragmento el resultado queda completo.
+     * @throws IllegalStateException Si la trama no trae count elementos; entonces no se guarda.
+     */
+    public boolean accept(int fragmentIndex, long startIndex, int count, BinaryFrame frame) {
+        checkSlice(fragmentIndex, startIndex, count);
+        checkCount(fragmentIndex, count, frame.count());
+        Check c = check;
+        if (c != null) {
+            c.verify(fragmentIndex, frame::getDouble, frame.count());
+        }
+        return store(fragmentIndex, startIndex, () -> {
+            if (storage != null) {
+                copyInto(storage.slice(startIndex, frame.count()), frame);
+            } else {
+                frame.copyInto(output, (int) startIndex);
+            }
+        });
+    }
+
+    /**
+     * Decodifica un trozo del resultado de un fragmento en su tramo sin darlo aún por recibido
+     * (modo streaming, ver WorkerConnection.setStreaming()); el fragmento cuenta al llamar a
+     * complete(). Se ignora si el fragmento ya se recibió, p. ej. un trozo que llega tarde de
+     * un worker ya retirado.
+     *
+     * @param startIndex Índice de inicio del trozo en el array original.
+     * @param count      Elementos que debe traer el trozo.
+     * @throws IllegalStateException Si la trama no trae count elementos.
+     */
+    void write(int fragmentIndex, long startIndex, int count, BinaryFrame frame) {
+        checkSlice(fragmentIndex, startIndex, count);
+        checkCount(fragmentIndex, count, frame.count());
+        synchronized (this) {
+            if (received.get(fragmentIndex)) {
+                return;
+            }
+            if (storage != null) {
+                copyInto(storage.slice(startIndex, count), frame);
+            } else {
+                frame.copyInto(output, (int) startIndex);
+            }
+        }
+    }
+
+    /**
+     * Da por recibido un fragmento cuyos trozos ya se escribieron con write(). La
+     * comprobación de setCheck() se aplica aquí al fragmento ya ensamblado: si falla, el
+     * fragmento no cuenta y su reenvío sobrescribe el tramo.
+     *
+     * @return true si con este fragmento el resultado queda completo.
+     */
+    boolean complete(int fragmentIndex, long startIndex, int count) {
+        checkSlice(fragmentIndex, startIndex, count);
+        Check c = check;
+        if (c != null) {
+            c.verify(fragmentIndex, i -> storage != null ? storage.get(startIndex + i) : output[(int) startIndex + i], count);
+        }
+        return markReceived(fragmentIndex, startIndex);
+    }
+
+    /**
+     * Copia un resultado ya decodificado (camino JSON) en su tramo del resultado.
+     *
+     * @param count Elementos del fragmento, que debe traer data.
+     * @return true si con este fragmento el resultado queda completo.
+     * @throws IllegalStateException Si data no trae count elementos; entonces no se guarda.
+     */
+    public boolean accept(int fragmentIndex, long startIndex, int count, double[] data) {
+        checkSlice(fragmentIndex, startIndex, count);
+        checkCount(fragmentIndex, count, data.length);
+        Check c = check;
+        if (c != null) {
+            c.verify(fragmentIndex, i -> data[i], data.length);
+        }
+        return store(fragmentIndex, startIndex, () -> {
+            if (storage != null) {
+                storage.put(startIndex, data, 0, data.length);
+            } else {
+                System.arraycopy(data, 0, output, (int) startIndex, data.length);
+            }
+        });
+    }
+
+    /**
+     * Guarda un fragmento calculado en el propio maestro: en el heap, filler escribe
+     * directamente en su tramo del array de salida; fuera del heap, en un array temporal del
+     * tamaño del fragmento que luego se copia al almacén. No pasa por setCheck(), que
+     * comprueba resultados de workers. Como accept(), no escribe en el tramo de un fragmento ya
+     * recibido.
+     *
+     * @return true si con este fragmento el resultado queda completo.
+     */
+    boolean fill(int fragmentIndex, long startIndex, int count, Filler filler) {
+        checkSlice(fragmentIndex, startIndex, count);
+        if (isReceived(fragmentIndex)) {
+            return isComplete();
+        }
+        if (storage != null) {
+            double[] chunk = new double[count];
+            filler.fill(chunk, 0, count);
+            storage.put(startIndex, chunk, 0, count);
+        } else {
+            filler.fill(output, (int) startIndex, count);
+        }
+        return markReceived(fragmentIndex, startIndex);
+    }
+
+    /**
+     * Copia del tramo [startIndex, startIndex + count) del resultado, ya recibido (p. ej. para
+     * guardarlo en ResultCache).
+     */
+    double[] copyOf(long startIndex, int count) {
+        if (storage != null) {
+            double[] copy = new double[count];
+            storage.get(startIndex, copy, 0, count);
+            return copy;
+        }
+        return Arrays.copyOfRange(output, (int) startIndex, (int) startIndex + count);
+    }
+
+    /**
+     * Anota el redondeo de un fragmento que viajó con precisión reducida (ver
+     * MasterServer.setTransportPrecision()).
+     *
+     * @param inputError  Error absoluto máximo de sus datos al enviarlos.
+     * @param resultError Error absoluto máximo de su resultado, según el worker.
+     */
+    synchronized void recordPrecisionError(double inputError, double resultError) {
+        maxInputError = Math.max(maxInputError, inputError);
+        maxResultError = Math.max(maxResultError, resultError);
+    }
+
+    synchronized double getMaxInputError() {
+        return maxInputError;
+    }
+
+    synchronized double getMaxResultError() {
+        return maxResultError;
+    }
+
+    /**
+     * Devuelve true si han llegado todos los fragmentos.
+     */
+    public synchronized boolean isComplete() {
+        return receivedCount == fragments;
+    }
+
+    /**
+     * Número de fragmentos distintos recibidos hasta ahora.
+     */
+    public synchronized int receivedCount() {
+        return receivedCount;
+    }
+
+    /**
+     * Devuelve si el fragmento indicado ya se recibió.
+     */
+    public synchronized boolean isReceived(int fragmentIndex) {
+        return received.get(fragmentIndex);
+    }
+
+    /**
+     * Devuelve el array de salida (el mismo en cada llamada, sin copiar) o null si aún
+     * faltan fragmentos o el destino está fuera del heap (ver getStorage()).
+     */
+    public double[] getResult() {
+        return isComplete() ? output : null;
+    }
+
+    /**
+     * Devuelve el destino fuera del heap o null si aún faltan fragmentos o el destino es
+     * un array.
+     */
+    public OffHeapDoubles getStorage() {
+        return isComplete() ? storage : null;
+    }
+
+    /**
+     * Índices de inicio de los fragmentos recibidos, en orden creciente; con todos
+     * recibidos delimitan los tramos del resultado (ver FragmentStep).
+     */
+    synchronized long[] fragmentStarts() {
+        long[] sorted = new long[receivedCount];
+        int n = 0;
+        for (int i = received.nextSetBit(0); i >= 0; i = received.nextSetBit(i + 1)) {
+            sorted[n++] = starts[i];
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Instala una comprobación que se aplica a cada resultado antes de copiarlo: uno
+     * inválido no llega a escribirse, ni siquiera si llega tarde de un worker ya retirado.
+     * Los fragmentos que llegan por trozos se comprueban ya escritos (ver complete()).
+     */
+    void setCheck(Check check) {
+        this.check = check;
+    }
+
+    /**
+     * Un worker que responde con menos (o más) elementos de los del fragmento dejaría ceros en
+     * su tramo, o pisaría el siguiente, sin que nadie lo notara.
+     */
+    private static void checkCount(int fragmentIndex, int expected, int actual) {
+        if (actual != expected) {
+            throw new IllegalStateException("Resultado del fragmento " + fragmentIndex + " con "
+                    + actual + " elementos en lugar de " + expected);
+        }
+    }
+
+    private void checkSlice(int fragmentIndex, long startIndex, int count) {
+        if (fragmentIndex < 0 || fragmentIndex >= fragments) {
+            throw new IllegalArgumentException("Fragmento fuera de rango: " + fragmentIndex);
+        }
+        if (startIndex < 0 || count < 0 || startIndex + count > length) {
+            throw new IllegalArgumentException("Resultado fuera de rango: [" + startIndex + ", "
+                    + (startIndex + count) + ") en un array de " + length);
+        }
+    }
+
+    /**
+     * Copia el cuerpo de la trama en un tramo del almacén: los FLOAT64 byte a byte y el resto
+     * (INT32, FLOAT32, BFLOAT16) ampliados a double.
+     */
+    private static void copyInto(ByteBuffer dest, BinaryFrame frame) {
+        ByteBuffer body = frame.getBody();
+        if (frame.getDtype() == BinaryCodec.DTYPE_FLOAT64) {
+            dest.put(body);
+        } else if (frame.getDtype() == BinaryCodec.DTYPE_INT32) {
+            while (body.hasRemaining()) {
+                dest.putDouble(body.getInt());
+            }
+        } else {
+            int n = frame.count();
+            for (int i = 0; i < n; i++) {
+                dest.putDouble(frame.getDouble(i));
+            }
+        }
+    }
+
+    /**
+     * Copia el resultado de un fragmento y lo marca como recibido con el cerrojo tomado, salvo
+     * que ya se hubiera recibido: así una respuesta tardía no sobrescribe un tramo aceptado.
+     *
+     * @return true si el resultado está completo.
+     */
+    private synchronized boolean store(int fragmentIndex, long startIndex, Runnable copy) {
+        if (!received.get(fragmentIndex)) {
+            copy.run();
+        }
+        return markReceived(fragmentIndex, startIndex);
+    }
+
+    /*
+     * La sincronización publica los datos copiados a quien lea isComplete().
+     */
+    private synchronized boolean markReceived(int fragmentIndex, long startIndex) {
+        if (!received.get(fragmentIndex)) {
+            received.set(fragmentIndex);
+            starts[fragmentIndex] = startIndex;
+            receivedCount++;
+        }
+        return receivedCount == fragments;
+    }
+}
@@ -0,0 +1,271 @@
+package handler;
+
+import data.OffHeapInts;
+import protocol.BinaryCodec;
+import protocol.BinaryFrame;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * ResultSinkInt: Destino preasignado para los resultados de un trabajo con datos int.
+ *
+ * El array de salida se reserva una sola vez con la longitud total y cada RESULT se
+ * decodifica directamente en su tramo [startIndex, startIndex + len), sin arrays por
+ * fragmento ni ordenación final. Los fragmentos recibidos se marcan en un BitSet; el primer
+ * resultado de cada fragmento gana y los que llegan después (una copia especulativa perdedora
+ * o un reenvío) se ignoran sin tocar su tramo, ni siquiera con el resultado ya entregado.
+ *
+ * Para resultados mayores que el heap (o de más de Integer.MAX_VALUE elementos) el destino
+ * puede ser un OffHeapInts: cada cuerpo se copia byte a byte en su tramo del fichero mapeado.
+ */
+public class ResultSinkInt {
+
+    private final int[] output;
+    private final OffHeapInts storage;
+    private final long length;
+    private final int fragments;
+    private final BitSet received;
+    private final long[] starts;
+    private int receivedCount;
+    private volatile Check check;
+
+    /**
+     * Comprueba el resultado de un fragmento antes de guardarlo (ver ResultValidator).
+     */
+    interface Check {
+        /**
+         * @param result Elemento i del resultado recibido.
+         * @throws IllegalStateException Si el resultado no es válido; entonces no se guarda.
+         */
+        void verify(int fragmentIndex, IntUnaryOperator result, int count);
+    }
+
+    /**
+     * Calcula en el propio maestro el tramo de un fragmento (ver LocalBackend).
+     */
+    interface Filler {
+        /**
+         * Escribe los count resultados del fragmento en dst a partir de dstOffset.
+         */
+        void fill(int[] dst, int dstOffset, int count);
+    }
+
+    /**
+     * @param length    Longitud total del resultado.
+     * @param fragments Número de fragmentos que deben llegar para completarlo.
+     */
+    public ResultSinkInt(int length, int fragments) {
+        this.output = new int[length];
+        this.storage = null;
+        this.length = length;
+        this.fragments = fragments;
+        this.received = new BitSet(fragments);
+        this.starts = new long[fragments];
+    }
+
+    /**
+     * @param storage   Destino fuera del heap; su longitud es la del resultado.
+     * @param fragments Número de fragmentos que deben llegar para completarlo.
+     */
+    public ResultSinkInt(OffHeapInts storage, int fragments) {
+        this.output = null;
+        this.storage = storage;
+        this.length = storage.length();
+        this.fragments = fragments;
+        this.received = new BitSet(fragments);
+        this.starts = new long[fragments];
+    }
+
+    /**
+     * Decodifica el cuerpo de una trama RESULT directamente en su tramo del resultado.
+     *
+     * @param fragmentIndex Posición del fragmento (0..fragments-1).
+     * @param startIndex    Índice de inicio del fragmento en el array original.
+     * @param count         Elementos del fragmento, que debe traer la trama.
+     * @param frame         Trama RESULT recibida.
+     * @return true si con este fragmento el resultado queda completo.
+     * @throws IllegalStateException Si la trama no trae count elementos; entonces no se guarda.
+     */
+    public boolean accept(int fragmentIndex, long startIndex, int count, BinaryFrame frame) {
+        checkSlice(fragmentIndex, startIndex, count);
+        checkCount(fragmentIndex, count, frame.count());
+        Check c = check;
+        if (c != null) {
+            c.verify(fragmentIndex, frame::getInt, frame.count());
+        }
+        return store(fragmentIndex, startIndex, () -> {
+            if (storage != null) {
+                copyInto(storage.slice(startIndex, frame.count()), frame);
+            } else {
+                frame.copyInto(output, (int) startIndex);
+            }
+        });
+    }
+
+    /**
+     * Copia un resultado ya decodificado (camino JSON) en su tramo del resultado.
+     *
+     * @param count Elementos del fragmento, que debe traer data.
+     * @return true si con este fragmento el resultado queda completo.
+     * @throws IllegalStateException Si data no trae count elementos; entonces no se guarda.
+     */
+    public boolean accept(int fragmentIndex, long startIndex, int count, int[] data) {
+        checkSlice(fragmentIndex, startIndex, count);
+        checkCount(fragmentIndex, count, data.length);
+        Check c = check;
+        if (c != null) {
+            c.verify(fragmentIndex, i -> data[i], data.length);
+        }
+        return store(fragmentIndex, startIndex, () -> {
+            if (storage != null) {
+                storage.put(startIndex, data, 0, data.length);
+            } else {
+                System.arraycopy(data, 0, output, (int) startIndex, data.length);
+            }
+        });
+    }
+
+    /**
+     * Guarda un fragmento calculado en el propio maestro: en el heap, filler escribe
+     * directamente en su tramo del array de salida; fuera del heap, en un array temporal del
+     * tamaño del fragmento que luego se copia al almacén. No pasa por setCheck(), que
+     * comprueba resultados de workers. Como accept(), no escribe en el tramo de un fragmento ya
+     * recibido.
+     *
+     * @return true si con este fragmento el resultado queda completo.
+     */
+    boolean fill(int fragmentIndex, long startIndex, int count, Filler filler) {
+        checkSlice(fragmentIndex, startIndex, count);
+        if (isReceived(fragmentIndex)) {
+            return isComplete();
+        }
+        if (storage != null) {
+            int[] chunk = new int[count];
+            filler.fill(chunk, 0, count);
+            storage.put(startIndex, chunk, 0, count);
+        } else {
+            filler.fill(output, (int) startIndex, count);
+        }
+        return markReceived(fragmentIndex, startIndex);
+    }
+
+    /**
+     * Devuelve true si han llegado todos los fragmentos.
+     */
+    public synchronized boolean isComplete() {
+        return receivedCount == fragments;
+    }
+
+    /**
+     * Número de fragmentos distintos recibidos hasta ahora.
+     */
+    public synchronized int receivedCount() {
+        return receivedCount;
+    }
+
+    /**
+     * Devuelve si el fragmento indicado ya se recibió.
+     */
+    public synchronized boolean isReceived(int fragmentIndex) {
+        return received.get(fragmentIndex);
+    }
+
+    /**
+     * Índices de inicio de los fragmentos recibidos, en orden creciente; con todos
+     * recibidos delimitan los tramos del resultado (ver FragmentStep).
+     */
+    synchronized long[] fragmentStarts() {
+        long[] sorted = new long[receivedCount];
+        int n = 0;
+        for (int i = received.nextSetBit(0); i >= 0; i = received.nextSetBit(i + 1)) {
+            sorted[n++] = starts[i];
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Devuelve el array de salida (el mismo en cada llamada, sin copiar) o null si aún
+     * faltan fragmentos o el destino está fuera del heap (ver getStorage()).
+     */
+    public int[] getResult() {
+        return isComplete() ? output : null;
+    }
+
+    /**
+     * Devuelve el destino fuera del heap o null si aún faltan fragmentos o el destino es
+     * un array.
+     */
+    public OffHeapInts getStorage() {
+        return isComplete() ? storage : null;
+    }
+
+    /**
+     * Instala una comprobación que se aplica a cada resultado antes de copiarlo: uno
+     * inválido no llega a escribirse, ni siquiera si llega tarde de un worker ya retirado.
+     */
+    void setCheck(Check check) {
+        this.check = check;
+    }
+
+    /**
+     * Un worker que responde con menos (o más) elementos de los del fragmento dejaría ceros en
+     * su tramo, o pisaría el siguiente, sin que nadie lo notara.
+     */
+    private static void checkCount(int fragmentIndex, int expected, int actual) {
+        if (actual != expected) {
+            throw new IllegalStateException("Resultado del fragmento " + fragmentIndex + " con "
+                    + actual + " elementos en lugar de " + expected);
+        }
+    }
+
+    private void checkSlice(int fragmentIndex, long startIndex, int count) {
+        if (fragmentIndex < 0 || fragmentIndex >= fragments) {
+            throw new IllegalArgumentException("Fragmento fuera de rango: " + fragmentIndex);
+        }
+        if (startIndex < 0 || count < 0 || startIndex + count > length) {
+            throw new IllegalArgumentException("Resultado fuera de rango: [" + startIndex + ", "
+                    + (startIndex + count) + ") en un array de " + length);
+        }
+    }
+
+    /**
+     * Copia byte a byte un cuerpo INT32 en un tramo del almacén.
+     *
+     * @throws IllegalStateException Si el cuerpo no es INT32.
+     */
+    private static void copyInto(ByteBuffer dest, BinaryFrame frame) {
+        if (frame.getDtype() != BinaryCodec.DTYPE_INT32) {
+            throw new IllegalStateException("El cuerpo de la trama no es INT32 (dtype=" + frame.getDtype() + ")");
+        }
+        dest.put(frame.getBody());
+    }
+
+    /**
+     * Copia el resultado de un fragmento y lo marca como recibido con el cerrojo tomado, salvo
+     * que ya se hubiera recibido: así una respuesta tardía no sobrescribe un tramo aceptado.
+     *
+     * @return true si el resultado está completo.
+     */
+    private synchronized boolean store(int fragmentIndex, long startIndex, Runnable copy) {
+        if (!received.get(fragmentIndex)) {
+            copy.run();
+        }
+        return markReceived(fragmentIndex, startIndex);
+    }
+
+    /*
+     * La sincronización publica los datos copiados a quien lea isComplete().
+     */
+    private synchronized boolean markReceived(int fragmentIndex, long startIndex) {
+        if (!received.get(fragmentIndex)) {
+            received.set(fragmentIndex);
+            starts[fragmentIndex] = startIndex;
+            receivedCount++;
+        }
+        return receivedCount == fragments;
+    }
+}
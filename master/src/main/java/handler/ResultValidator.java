@@ -0,0 +1,118 @@
+package handler;
+
+import data.Fragment;
+import data.FragmentInt;
+import ops.CompiledOperation;
+import protocol.Precision;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * ResultValidator: Comprueba por muestreo el resultado de un fragmento recalculando en el
+ * maestro algunos elementos con la operación compilada (ver ops.OperationCompiler).
+ *
+ * Se instala en el sink (ResultSink.setCheck()) para que un resultado inválido no llegue a
+ * escribirse. El fallo se lanza como IllegalStateException; dentro del despachador de
+ * FragmentScheduler eso hace que el fragmento se reencole y el worker que lo calculó deje
+ * de recibir trabajo.
+ */
+final class ResultValidator {
+
+    /** Distancia, en ulp, a la que dos bibliotecas pueden dejar un mismo resultado. */
+    private static final int BOUNDARY_ULPS = 4;
+
+    private ResultValidator() {
+        throw new UnsupportedOperationException("ResultValidator es una clase de utilidades y no debe ser instanciada.");
+    }
+
+    /**
+     * @param samples Elementos a comprobar (todos si el fragmento es más corto).
+     */
+    static void check(CompiledOperation operation, Fragment fragment, IntToDoubleFunction result, int count,
+                      int samples, int fragmentIndex) {
+        checkCount(fragment.size(), count, fragmentIndex);
+        for (int k = 0; k < Math.min(samples, count); k++) {
+            int i = samples >= count ? k : ThreadLocalRandom.current().nextInt(count);
+            double input = fragment.get(i);
+            double expected = operation.applyAsDouble(input);
+            double actual = result.applyAsDouble(i);
+            if (!CompiledOperation.matches(expected, actual)) {
+                throw mismatch(fragmentIndex, operation, input, expected, actual);
+            }
+        }
+    }
+
+    /**
+     * Como check(CompiledOperation, Fragment, IntToDoubleFunction, int, int, int) para un
+     * fragmento que viajó con precisión reducida: el worker calculó sobre los datos ya
+     * redondeados y su resultado se redondeó otra vez, así que se admite hasta una unidad
+     * de esa precisión respecto al valor calculado sobre la entrada redondeada.
+     */
+    static void check(CompiledOperation operation, Fragment fragment, IntToDoubleFunction result, int count,
+                      int samples, int fragmentIndex, Precision precision) {
+        if (precision == Precision.FLOAT64) {
+            check(operation, fragment, result, count, samples, fragmentIndex);
+            return;
+        }
+        checkCount(fragment.size(), count, fragmentIndex);
+        for (int k = 0; k < Math.min(samples, count); k++) {
+            int i = samples >= count ? k : ThreadLocalRandom.current().nextInt(count);
+            double input = precision.round(fragment.get(i));
+            double expected = operation.applyAsDouble(input);
+            double actual = result.applyAsDouble(i);
+            if (!CompiledOperation.matches(precision.round(expected), actual)
+                    && !(Math.abs(expected - actual) <= precision.ulp(expected))) {
+                throw mismatch(fragmentIndex, operation, input, expected, actual);
+            }
+        }
+    }
+
+    /**
+     * Versión para enteros: el resultado tiene que ser exactamente el (int) del valor en
+     * double, salvo cuando ese valor queda a unos pocos ulp de un entero sin serlo, donde otra
+     * biblioteca matemática puede truncar al otro lado (ver truncatesAcross()).
+     */
+    static void check(CompiledOperation operation, FragmentInt fragment, IntUnaryOperator result, int count,
+                      int samples, int fragmentIndex) {
+        checkCount(fragment.size(), count, fragmentIndex);
+        for (int k = 0; k < Math.min(samples, count); k++) {
+            int i = samples >= count ? k : ThreadLocalRandom.current().nextInt(count);
+            int input = fragment.get(i);
+            double exact = operation.applyAsDouble(input);
+            int expected = (int) exact;
+            int actual = result.applyAsInt(i);
+            if (actual != expected && !truncatesAcross(exact, actual)) {
+                throw mismatch(fragmentIndex, operation, input, expected, actual);
+            }
+        }
+    }
+
+    /**
+     * Indica si actual es el truncado de un valor al otro lado del entero más cercano a
+     * exact, y exact está tan cerca de él que el último bit de otra biblioteca lo cruzaría.
+     * Un exact entero no cuenta: la aritmética del catálogo es exacta en cualquier worker.
+     */
+    private static boolean truncatesAcross(double exact, int actual) {
+        double nearest = Math.rint(exact);
+        if (nearest == exact || Math.abs(exact - nearest) > BOUNDARY_ULPS * Math.ulp(exact)) {
+            return false;
+        }
+        double across = exact < nearest ? Math.nextUp(nearest) : Math.nextDown(nearest);
+        return actual == (int) across;
+    }
+
+    private static void checkCount(int expected, int count, int fragmentIndex) {
+        if (expected != count) {
+            throw new IllegalStateException("Resultado inválido en el fragmento " + fragmentIndex + ": "
+                    + count + " elementos y se esperaban " + expected);
+        }
+    }
+
+    private static IllegalStateException mismatch(int fragmentIndex, CompiledOperation operation,
+                                                  Object input, Object expected, Object actual) {
+        return new IllegalStateException("Resultado inválido en el fragmento " + fragmentIndex + ": "
+                + operation.getExpression() + " con x=" + input + " da " + expected + " y se recibió " + actual);
+    }
+}
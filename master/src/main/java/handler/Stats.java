@@ -0,0 +1,149 @@
+package handler;
+
+/**
+ * Stats: Resultado de la reducción Reducer.stats(): número de elementos, suma, mínimo, máximo,
+ * media y varianza.
+ *
+ * Cada fragmento se resume en (count, sum, m2, min, max), con m2 la suma de los cuadrados de
+ * las desviaciones respecto a su propia media, y dos resúmenes se combinan con la fórmula de
+ * Chan et al. En lugar de sumar cuadrados (sumSq - sum²/n), que cancela cifras cuando la
+ * media es grande frente a la dispersión, la varianza se mantiene estable.
+ * Los NaN no cuentan. Es inmutable.
+ */
+public final class Stats {
+
+    /** Elementos del estado parcial en el cuerpo de un RESULT. */
+    static final int WIRE_LENGTH = 5;
+
+    static final Stats EMPTY = new Stats(0, 0, 0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY);
+
+    private final long count;
+    private final double sum;
+    private final double m2;
+    private final double min;
+    private final double max;
+
+    private Stats(long count, double sum, double m2, double min, double max) {
+        this.count = count;
+        this.sum = sum;
+        this.m2 = m2;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Resume values[offset, offset + count) en dos pasadas (la media primero).
+     */
+    static Stats of(double[] values, int offset, int count) {
+        long n = 0;
+        double sum = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = offset; i < offset + count; i++) {
+            double v = values[i];
+            if (v == v) {
+                n++;
+                sum += v;
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+        }
+        if (n == 0) {
+            return EMPTY;
+        }
+        double mean = sum / n;
+        double m2 = 0;
+        for (int i = offset; i < offset + count; i++) {
+            double v = values[i];
+            if (v == v) {
+                m2 += (v - mean) * (v - mean);
+            }
+        }
+        return new Stats(n, sum, m2, min, max);
+    }
+
+    /**
+     * Estado parcial recibido de un worker: [count, sum, m2, min, max].
+     *
+     * @throws IllegalStateException Si no tiene la forma esperada.
+     */
+    static Stats fromWire(double[] wire) {
+        if (wire.length != WIRE_LENGTH || wire[0] < 0 || wire[0] != Math.rint(wire[0])) {
+            throw new IllegalStateException("Estado parcial de stats inválido: " + wire.length + " elementos");
+        }
+        return wire[0] == 0 ? EMPTY : new Stats((long) wire[0], wire[1], wire[2], wire[3], wire[4]);
+    }
+
+    double[] toWire() {
+        return new double[]{count, sum, m2, min, max};
+    }
+
+    /**
+     * Combina dos resúmenes de tramos disjuntos.
+     */
+    Stats combine(Stats other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            return other;
+        }
+        long n = count + other.count;
+        double delta = other.sum / other.count - sum / count;
+        double m2 = this.m2 + other.m2 + delta * delta * ((double) count * other.count / n);
+        return new Stats(n, sum + other.sum, m2, Math.min(min, other.min), Math.max(max, other.max));
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * Mínimo, o +Infinity si no hay elementos.
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Máximo, o -Infinity si no hay elementos.
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Media, o NaN si no hay elementos.
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * Varianza poblacional (dividida por n), o NaN si no hay elementos.
+     */
+    public double getVariance() {
+        return count == 0 ? Double.NaN : m2 / count;
+    }
+
+    /**
+     * Varianza muestral (dividida por n - 1), o NaN con menos de dos elementos.
+     */
+    public double getSampleVariance() {
+        return count < 2 ? Double.NaN : m2 / (count - 1);
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    @Override
+    public String toString() {
+        return "Stats{count=" + count + ", sum=" + sum + ", min=" + min + ", max=" + max
+            + ", mean=" + getMean() + ", variance=" + getVariance() + "}";
+    }
+}
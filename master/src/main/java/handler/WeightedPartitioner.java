@@ -0,0 +1,204 @@
+package handler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * WeightedPartitioner: Dimensiona los fragmentos de cada worker según su capacidad.
+ *
+ * Al principio el peso de un worker son los núcleos que anunció en su INIT
+ * (capabilities.cores). En cuanto termina fragmentos, el peso pasa a ser su rendimiento
+ * medido en elementos por segundo (media móvil exponencial), de modo que en los trabajos
+ * siguientes todos los workers tarden aproximadamente lo mismo. A los workers aún sin medir
+ * se les estima el rendimiento por núcleo de los ya medidos.
+ *
+ * @param <W> Tipo de conexión con el worker.
+ */
+public class WeightedPartitioner<W> {
+
+    /** Peso de cada medida nueva en la media móvil; configurable con -Ddarraylib.throughput.alpha. */
+    public static final double DEFAULT_ALPHA =
+            Double.parseDouble(System.getProperty("darraylib.throughput.alpha", "0.3"));
+
+    /**
+     * Reparto resultante: tamaño de cada fragmento (en orden) y worker al que se asigna.
+     */
+    public static final class Plan<W> {
+        private final int[] sizes;
+        private final List<W> owners;
+
+        Plan(int[] sizes, List<W> owners) {
+            this.sizes = sizes;
+            this.owners = Collections.unmodifiableList(owners);
+        }
+
+        public int[] getSizes() {
+            return sizes.clone();
+        }
+
+        public List<W> getOwners() {
+            return owners;
+        }
+
+        public int size() {
+            return sizes.length;
+        }
+    }
+
+    private final ToIntFunction<W> cores;
+    private final double alpha;
+    private final Map<W, Double> throughput = new ConcurrentHashMap<>();
+
+    /**
+     * @param cores Núcleos anunciados por cada worker.
+     */
+    public WeightedPartitioner(ToIntFunction<W> cores) {
+        this(cores, DEFAULT_ALPHA);
+    }
+
+    public WeightedPartitioner(ToIntFunction<W> cores, double alpha) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("alpha debe estar en (0, 1]");
+        }
+        this.cores = cores;
+        this.alpha = alpha;
+    }
+
+    /**
+     * Registra que el worker procesó elements elementos en nanos nanosegundos.
+     */
+    public void record(W worker, int elements, long nanos) {
+        if (elements <= 0 || nanos <= 0) {
+            return;
+        }
+        double sample = elements * 1e9 / nanos;
+        throughput.merge(worker, sample, (old, s) -> old + alpha * (s - old));
+    }
+
+    /**
+     * Rendimiento medido del worker en elementos por segundo, o 0 si aún no hay medidas.
+     */
+    public double getThroughput(W worker) {
+        return throughput.getOrDefault(worker, 0.0);
+    }
+
+    /**
+     * Peso relativo del worker: su rendimiento medido o, si no lo hay, sus núcleos por el
+     * rendimiento medio por núcleo de los workers ya medidos.
+     */
+    public double weight(W worker, List<W> workers) {
+        Double measured = throughput.get(worker);
+        if (measured != null) {
+            return measured;
+        }
+        double perCore = 0;
+        int measuredWorkers = 0;
+        for (W other : workers) {
+            Double t = throughput.get(other);
+            if (t != null) {
+                perCore += t / coresOf(other);
+                measuredWorkers++;
+            }
+        }
+        double unit = measuredWorkers == 0 ? 1.0 : perCore / measuredWorkers;
+        return coresOf(worker) * unit;
+    }
+
+    /**
+     * Reparte elements elementos entre los workers en proporción a su peso; la parte de cada
+     * worker se corta en fragmentsPerWorker fragmentos (más si hace falta para llegar a
+     * minFragments), nunca vacíos.
+     */
+    public Plan<W> plan(int elements, List<W> workers, int fragmentsPerWorker, int minFragments) {
+        return plan((long) elements, workers, fragmentsPerWorker, minFragments, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Como plan(int, ...), para arrays que pueden pasar de Integer.MAX_VALUE elementos: la
+     * parte de cada worker se corta además en los fragmentos necesarios para que ninguno
+     * supere maxFragment elementos.
+     */
+    public Plan<W> plan(long elements, List<W> workers, int fragmentsPerWorker, int minFragments, int maxFragment) {
+        if (workers.isEmpty()) {
+            List<Integer> sizes = new ArrayList<>();
+            cut(elements, Math.max(1, pieces(elements, 1, maxFragment)), sizes);
+            return new Plan<>(sizes.stream().mapToInt(Integer::intValue).toArray(),
+                              Collections.nCopies(sizes.size(), null));
+        }
+        int n = workers.size();
+        double[] weights = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            weights[i] = Math.max(weight(workers.get(i), workers), 0);
+            total += weights[i];
+        }
+        if (total <= 0) {
+            Arrays.fill(weights, 1.0);
+            total = n;
+        }
+
+        // Parte de cada worker por el método del mayor resto
+        long[] shares = new long[n];
+        double[] remainders = new double[n];
+        long assigned = 0;
+        for (int i = 0; i < n; i++) {
+            double exact = elements * weights[i] / total;
+            shares[i] = Math.min((long) Math.floor(exact), elements - assigned);
+            remainders[i] = exact - shares[i];
+            assigned += shares[i];
+        }
+        for (long left = elements - assigned; left > 0; ) {
+            int best = 0;
+            for (int i = 1; i < n; i++) {
+                if (remainders[i] > remainders[best]) {
+                    best = i;
+                }
+            }
+            // Normalmente sobra menos de un elemento por worker; con arrays enormes el
+            // redondeo en double puede dejar más y se reparten en bloques
+            long extra = (left + n - 1) / n;
+            shares[best] += extra;
+            left -= extra;
+            remainders[best] -= 1;
+        }
+
+        int perWorker = Math.max(fragmentsPerWorker, (minFragments + n - 1) / n);
+        List<Integer> sizes = new ArrayList<>();
+        List<W> owners = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int pieces = pieces(shares[i], perWorker, maxFragment);
+            cut(shares[i], pieces, sizes);
+            for (int p = 0; p < pieces; p++) {
+                owners.add(workers.get(i));
+            }
+        }
+        return new Plan<>(sizes.stream().mapToInt(Integer::intValue).toArray(), owners);
+    }
+
+    /**
+     * Fragmentos en que se corta una parte: los pedidos, sin fragmentos vacíos ni mayores
+     * que maxFragment.
+     */
+    private static int pieces(long share, int wanted, int maxFragment) {
+        long pieces = Math.max(Math.min(wanted, share), (share + maxFragment - 1) / maxFragment);
+        return Math.toIntExact(pieces);
+    }
+
+    /**
+     * Corta share elementos en pieces tamaños que difieren como mucho en uno.
+     */
+    private static void cut(long share, int pieces, List<Integer> sizes) {
+        for (int p = 0; p < pieces; p++) {
+            sizes.add((int) (share / pieces + (p < share % pieces ? 1 : 0)));
+        }
+    }
+
+    private int coresOf(W worker) {
+        return Math.max(1, cores.applyAsInt(worker));
+    }
+}
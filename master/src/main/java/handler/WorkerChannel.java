@@ -0,0 +1,215 @@
+package handler;
+
+import protocol.BinaryFrame;
+import protocol.OutboundFrame;
+import protocol.ProtocolHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WorkerChannel: Conexión TCP persistente y multiplexada con un worker.
+ *
+ * Cada petición lleva un "request_id" y queda pendiente hasta que llega la respuesta con el
+ * mismo identificador, de modo que varias tareas pueden viajar a la vez por el mismo socket
+ * y los resultados pueden llegar en cualquier orden. El handshake INIT se hace en modo
+ * bloqueante al conectar; después el socket pasa a un NioEventLoop compartido, que atiende
+ * lecturas y escrituras de todos los workers sin un hilo por conexión. Si el socket se cae,
+ * las peticiones pendientes fallan y la siguiente petición reconecta.
+ *
+ * Las respuestas se entregan en IoExecutors.completions() y no en el hilo del loop: quien
+ * las espera suele enviar el siguiente fragmento en la misma continuación, lo que puede
+ * reconectar, repetir el handshake o esperar a que otro loop vacíe su cola.
+ */
+class WorkerChannel {
+
+    private final String workerId;
+    private final String host;
+    private final int port;
+
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+    private final Map<Integer, CompletableFuture<Object>> pending = new ConcurrentHashMap<>();
+
+    private NioConnection connection;
+    private Handshake handshake;
+    private volatile String[] codecs = new String[0];
+
+    WorkerChannel(String workerId, String host, int port) {
+        this.workerId = workerId;
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Codecs de compresión que se ofrecerán al worker (ver protocol.Compression). Se aplica
+     * en el próximo handshake.
+     */
+    void offerCompression(String... codecs) {
+        this.codecs = codecs.clone();
+    }
+
+    /**
+     * Abre la conexión si no está abierta y devuelve el resultado del handshake.
+     *
+     * @param encodings Codificaciones ofrecidas al worker en orden de preferencia.
+     */
+    synchronized Handshake open(String... encodings) throws IOException {
+        if (connection != null && !connection.isClosed()) {
+            return handshake;
+        }
+
+        SocketChannel ch = SocketChannel.open();
+        try {
+            ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            ch.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+            ch.connect(new InetSocketAddress(host, port));
+
+            // Handshake bloqueante sin buffers intermedios: no se lee ningún byte de más.
+            InputStream in = Channels.newInputStream(ch);
+            OutputStream out = Channels.newOutputStream(ch);
+            handshake = Handshake.perform(in, out, codecs, encodings);
+
+            ch.configureBlocking(false);
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+
+        connection = new NioConnection(ch, NioEventLoop.shared(), this::onMessage, this::onClosed);
+        return handshake;
+    }
+
+    /**
+     * Envía una trama binaria con cuerpo double[] y devuelve la trama de respuesta.
+     */
+    CompletableFuture<BinaryFrame> sendFrame(int kind, Map<String, Object> header,
+                                             double[] data, int offset, int length) {
+        int requestId = nextRequestId.incrementAndGet();
+        CompletableFuture<Object> response = register(requestId);
+        send(requestId, OutboundFrame.frame(kind, tag(header, requestId), data, offset, length));
+        return response.thenApply(BinaryFrame.class::cast);
+    }
+
+    /**
+     * Envía una trama binaria con cuerpo int[] y devuelve la trama de respuesta.
+     */
+    CompletableFuture<BinaryFrame> sendFrame(int kind, Map<String, Object> header,
+                                             int[] data, int offset, int length) {
+        int requestId = nextRequestId.incrementAndGet();
+        CompletableFuture<Object> response = register(requestId);
+        send(requestId, OutboundFrame.frame(kind, tag(header, requestId), data, offset, length));
+        return response.thenApply(BinaryFrame.class::cast);
+    }
+
+    /**
+     * Envía una trama binaria cuyo cuerpo son los bytes little-endian restantes de body
+     * (una vista fuera del heap) y devuelve la trama de respuesta.
+     */
+    CompletableFuture<BinaryFrame> sendFrame(int kind, Map<String, Object> header, int dtype, ByteBuffer body) {
+        int requestId = nextRequestId.incrementAndGet();
+        CompletableFuture<Object> response = register(requestId);
+        send(requestId, OutboundFrame.frame(kind, tag(header, requestId), dtype, body));
+        return response.thenApply(BinaryFrame.class::cast);
+    }
+
+    /**
+     * Envía un mensaje JSON y devuelve la respuesta JSON parseada.
+     */
+    @SuppressWarnings("unchecked")
+    CompletableFuture<Map<String, String>> sendJson(Map<String, Object> message) {
+        int requestId = nextRequestId.incrementAndGet();
+        CompletableFuture<Object> response = register(requestId);
+        send(requestId, OutboundFrame.jsonLine(ProtocolHandler.toJson(tag(message, requestId))));
+        return response.thenApply(r -> (Map<String, String>) r);
+    }
+
+    /**
+     * Número de peticiones enviadas que aún esperan respuesta.
+     */
+    int inFlight() {
+        return pending.size();
+    }
+
+    /**
+     * Cierra la conexión; las peticiones pendientes fallan.
+     */
+    synchronized void close() {
+        if (connection != null) {
+            connection.close(new IOException("Conexión con " + workerId + " cerrada por el maestro"));
+        }
+    }
+
+    private static Map<String, Object> tag(Map<String, Object> message, int requestId) {
+        Map<String, Object> tagged = new HashMap<>(message);
+        tagged.put("request_id", requestId);
+        return tagged;
+    }
+
+    private CompletableFuture<Object> register(int requestId) {
+        CompletableFuture<Object> response = new CompletableFuture<>();
+        pending.put(requestId, response);
+        return response;
+    }
+
+    private void send(int requestId, OutboundFrame frame) {
+        try {
+            NioConnection c;
+            synchronized (this) {
+                c = connection;
+            }
+            if (c == null) {
+                throw new IOException("Conexión con " + workerId + " no está abierta");
+            }
+            c.send(frame);
+        } catch (IOException e) {
+            fail(requestId, e);
+        }
+    }
+
+    private void fail(int requestId, IOException e) {
+        CompletableFuture<Object> f = pending.remove(requestId);
+        if (f != null) {
+            IoExecutors.completions().execute(() -> f.completeExceptionally(e));
+        }
+    }
+
+    private void onMessage(Object message) {
+        Map<String, String> fields = message instanceof BinaryFrame
+                ? ((BinaryFrame) message).getHeader()
+                : castFields(message);
+        String requestId = fields.get("request_id");
+        CompletableFuture<Object> f = requestId == null ? null : pending.remove(Integer.parseInt(requestId));
+        if (f == null) {
+            System.err.println("⚠ Respuesta sin petición pendiente de " + workerId + " (request_id=" + requestId + ")");
+            return;
+        }
+        IoExecutors.completions().execute(() -> f.complete(message));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, String> castFields(Object message) {
+        return (Map<String, String>) message;
+    }
+
+    private void onClosed(IOException cause) {
+        synchronized (this) {
+            if (connection != null && connection.isClosed()) {
+                connection = null;
+            }
+        }
+        for (Integer id : pending.keySet()) {
+            fail(id, cause);
+        }
+    }
+}
@@ -1,69 +1,552 @@
 package handler;
 
 import data.Fragment;
+import protocol.BinaryCodec;
+import protocol.BinaryFrame;
+import protocol.Compression;
+import protocol.Precision;
 import protocol.ProtocolHandler;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.net.Socket;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * WorkerConnection: Conexión persistente hacia un worker remoto para datos double.
+ * Todas las tareas comparten un único socket multiplexado (ver WorkerChannel) atendido
+ * por el loop NIO del maestro.
+ *
+ * Los fragmentos residentes (Fragment.asResident()) viajan con datos sólo la primera vez:
+ * la conexión recuerda qué ids y huellas tiene ya el worker, con su misma política LRU y su
+ * capacidad anunciada, y las tareas siguientes sólo los citan. Si el worker ya no lo tiene
+ * (lo expulsó o se reinició) responde fragment_missing y el fragmento se reenvía entero.
+ *
+ * Con la compresión activada (setCompression()) se ofrece el codec "xor" en el INIT; si el
+ * worker lo acepta, los cuerpos TASK y RESULT de fragmentos grandes viajan comprimidos cuando
+ * compensa (ver protocol.Compression).
+ *
+ * Con el streaming activado (setStreaming()) un fragmento mayor que un trozo viaja como varias
+ * TASK de trozo seguidas por el mismo socket: el worker calcula y responde cada una en cuanto
+ * la recibe, mientras aún llegan las siguientes, y cada RESULT se escribe en el sink al llegar,
+ * así que el envío, el cálculo y la recepción se solapan en lugar de turnarse.
+ */
 public class WorkerConnection {
 
+    /** Código de ERROR con el que el worker indica que no tiene el fragmento citado. */
+    static final String FRAGMENT_MISSING = "fragment_missing";
+
+    /** Elementos por trozo en modo streaming si el worker no anuncia los suyos. */
+    static final int STREAM_CHUNK = 65536;
+
     private final String workerId;
     private final String host;
     private final int port;
+    private final WorkerChannel channel;
+
+    private volatile String preferredEncoding = ProtocolHandler.ENCODING_BINARY;
+    private volatile int cores = 1;
+    private volatile long fragmentCache;
+    private volatile boolean compression = Boolean.getBoolean("darraylib.compression");
+    private volatile boolean compressed;
+    private final AtomicInteger compressedTasks = new AtomicInteger();
+    private volatile boolean streaming = Boolean.getBoolean("darraylib.streaming");
+    private volatile int streamChunk = STREAM_CHUNK;
+    private final AtomicInteger streamedTasks = new AtomicInteger();
+
+    /** Fragmentos residentes que debería tener el worker: id → huella, en orden de uso. */
+    private final LinkedHashMap<String, String> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> residentBytes = new HashMap<>();
+    private long residentTotal;
+    private final AtomicInteger residentHits = new AtomicInteger();
 
     public WorkerConnection(String workerId, String host, int port) {
         this.workerId = workerId;
         this.host     = host;
         this.port     = port;
+        this.channel  = new WorkerChannel(workerId, host, port);
     }
 
     public String getWorkerId() {
         return workerId;
     }
 
+    /**
+     * Define la codificación preferida para las tareas (binary por defecto, json como respaldo).
+     * Se aplica en el próximo handshake.
+     */
+    public void setPreferredEncoding(String preferredEncoding) {
+        this.preferredEncoding = preferredEncoding;
+    }
+
+    /**
+     * Activa o desactiva la compresión de los cuerpos binarios (por defecto la de la propiedad
+     * darraylib.compression, desactivada). Se aplica en el próximo handshake.
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Tareas cuyos datos viajaron comprimidos.
+     */
+    public int getCompressedTasks() {
+        return compressedTasks.get();
+    }
+
+    /**
+     * Activa o desactiva el envío por trozos de los fragmentos grandes (por defecto el de la
+     * propiedad darraylib.streaming, desactivado). El tamaño del trozo es el que anuncia el
+     * worker en su INIT (capabilities.stream_chunk) o STREAM_CHUNK.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Tareas cuyos datos viajaron por trozos.
+     */
+    public int getStreamedTasks() {
+        return streamedTasks.get();
+    }
+
+    /**
+     * Núcleos anunciados por el worker en su INIT (1 si no los anunció).
+     */
+    public int getCores() {
+        return cores;
+    }
+
+    /**
+     * Tareas de fragmentos residentes que viajaron sin datos porque el worker ya los tenía.
+     */
+    public int getResidentHits() {
+        return residentHits.get();
+    }
+
+    /**
+     * Número de tareas enviadas por esta conexión que aún esperan respuesta.
+     */
+    public int getInFlight() {
+        return channel.inFlight();
+    }
+
+    /**
+     * Envía un fragmento al worker y devuelve el resultado ya decodificado.
+     * Usa tramas binarias si el worker las aceptó en el INIT y JSON en caso contrario.
+     *
+     * @throws RuntimeException Si la comunicación falla o el worker responde con error.
+     */
+    public double[] execute(Fragment fragment, String taskId, String operation) {
+        if (!ProtocolHandler.ENCODING_BINARY.equals(negotiate())) {
+            return resultOf(sendTaskAndGetResult(fragment, taskId, operation));
+        }
+
+        try {
+            return executeAsync(fragment, taskId, operation).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException
+                ? (RuntimeException) e.getCause()
+                : new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Envía un fragmento sin bloquear al llamador. Con codificación binaria la tarea viaja
+     * por el loop NIO; en modo JSON la llamada bloqueante se delega al executor de E/S (ver IoExecutors).
+     *
+     * @return Futuro con el resultado decodificado.
+     */
+    public CompletableFuture<double[]> submit(Fragment fragment, String taskId, String operation) {
+        if (ProtocolHandler.ENCODING_BINARY.equals(negotiate())) {
+            return executeAsync(fragment, taskId, operation);
+        }
+        return CompletableFuture.supplyAsync(() -> execute(fragment, taskId, operation), IoExecutors.blockingIo());
+    }
+
+    /**
+     * Envía un fragmento y decodifica su resultado directamente en el tramo que le corresponde
+     * del sink, sin arrays intermedios en el camino binario. Con el streaming activado, un
+     * fragmento mayor que un trozo que no se cita como residente viaja por trozos.
+     *
+     * @param fragmentIndex Posición del fragmento dentro del trabajo.
+     * @return Futuro que indica si con este fragmento el resultado quedó completo.
+     */
+    public CompletableFuture<Boolean> submit(Fragment fragment, int fragmentIndex, String taskId,
+                                             String operation, ResultSink sink) {
+        if (ProtocolHandler.ENCODING_BINARY.equals(negotiate())) {
+            if (streaming && fragment.size() > streamChunk && !(fragment.isResident() && fragmentCache > 0)) {
+                return stream(fragment, fragmentIndex, taskId, operation, sink);
+            }
+            return sendBinary(fragment, taskId, operation)
+                .thenApply(frame -> sink.accept(fragmentIndex, fragment.getOffset(), fragment.size(), frame));
+        }
+        return CompletableFuture.supplyAsync(
+            () -> sink.accept(fragmentIndex, fragment.getOffset(), fragment.size(), execute(fragment, taskId, operation)),
+            IoExecutors.blockingIo());
+    }
+
+    /**
+     * Envía el fragmento como TASK de trozo consecutivas (campos "chunk" y "chunks") sin
+     * esperar respuestas; cada RESULT se escribe en su tramo del sink en cuanto llega y el
+     * fragmento cuenta como recibido con el último. Si falla un trozo falla el fragmento entero.
+     */
+    private CompletableFuture<Boolean> stream(Fragment fragment, int fragmentIndex, String taskId,
+                                              String operation, ResultSink sink) {
+        int size = fragment.size();
+        int chunk = streamChunk;
+        int chunks = (size - 1) / chunk + 1;
+        CompletableFuture<?>[] parts = new CompletableFuture<?>[chunks];
+        for (int k = 0; k < chunks; k++) {
+            int from = k * chunk;
+            int count = Math.min(chunk, size - from);
+            long start = fragment.getOffset() + from;
+            Map<String, Object> header = ProtocolHandler.createTaskHeader(taskId, operation);
+            header.put("chunk", k);
+            header.put("chunks", chunks);
+            parts[k] = checked(sendChunk(fragment, from, count, header))
+                .thenAccept(frame -> sink.write(fragmentIndex, start, count, frame));
+        }
+        streamedTasks.incrementAndGet();
+        return CompletableFuture.allOf(parts)
+            .thenApply(done -> sink.complete(fragmentIndex, fragment.getOffset(), size));
+    }
+
+    /**
+     * Envía los count elementos del fragmento desde from, sin copiarlos (comprimidos si compensa).
+     */
+    private CompletableFuture<BinaryFrame> sendChunk(Fragment fragment, int from, int count,
+                                                     Map<String, Object> header) {
+        ByteBuffer packed = compressed && count >= Compression.MIN_ELEMENTS
+            ? Compression.compress((DoubleBuffer) fragment.values().limit(from + count).position(from), header) : null;
+        if (packed != null) {
+            compressedTasks.incrementAndGet();
+            return channel.sendFrame(BinaryCodec.KIND_TASK, header, BinaryCodec.DTYPE_FLOAT64, packed);
+        }
+        if (fragment.isView()) {
+            ByteBuffer view = fragment.getView();
+            view.limit((from + count) * Double.BYTES).position(from * Double.BYTES);
+            return channel.sendFrame(BinaryCodec.KIND_TASK, header, BinaryCodec.DTYPE_FLOAT64, view);
+        }
+        DoubleBuffer values = fragment.values();
+        return channel.sendFrame(BinaryCodec.KIND_TASK, header, values.array(), values.arrayOffset() + from, count);
+    }
+
+    /**
+     * Como submit(Fragment, int, String, String, ResultSink), pidiendo además al worker que
+     * aplique step a su fragmento (campo "post", ver FragmentStep); step puede ser null.
+     */
+    CompletableFuture<Boolean> submit(Fragment fragment, int fragmentIndex, String taskId,
+                                      String operation, FragmentStep step, ResultSink sink) {
+        if (step == null) {
+            return submit(fragment, fragmentIndex, taskId, operation, sink);
+        }
+        Map<String, Object> fields = Collections.singletonMap("post", step.wireName());
+        if (ProtocolHandler.ENCODING_BINARY.equals(negotiate())) {
+            return sendBinary(fragment, taskId, operation, fields)
+                .thenApply(frame -> sink.accept(fragmentIndex, fragment.getOffset(), fragment.size(), frame));
+        }
+        return CompletableFuture.supplyAsync(
+            () -> sink.accept(fragmentIndex, fragment.getOffset(), fragment.size(),
+                resultOf(sendTaskAndGetResult(fragment, taskId, operation, fields))),
+            IoExecutors.blockingIo());
+    }
+
+    /**
+     * Como submit(Fragment, int, String, String, FragmentStep, ResultSink), enviando los datos
+     * y pidiendo el resultado con precision (ver protocol.Precision); el redondeo de ambos se
+     * anota en el sink. Con precisión reducida el fragmento viaja siempre entero (no se cita
+     * como residente, porque el worker lo guarda en float64) y, si el worker sólo acepta
+     * JSON, se envía en float64.
+     */
+    CompletableFuture<Boolean> submit(Fragment fragment, int fragmentIndex, String taskId, String operation,
+                                      FragmentStep step, Precision precision, ResultSink sink) {
+        if (precision == Precision.FLOAT64 || !ProtocolHandler.ENCODING_BINARY.equals(negotiate())) {
+            return submit(fragment, fragmentIndex, taskId, operation, step, sink);
+        }
+        Map<String, Object> header = ProtocolHandler.createTaskHeader(taskId, operation);
+        if (step != null) {
+            header.put("post", step.wireName());
+        }
+        ByteBuffer body = ByteBuffer.allocate(fragment.size() * precision.width()).order(ByteOrder.LITTLE_ENDIAN);
+        double inputError = precision.encode(fragment.values(), body);
+        body.flip();
+        return checked(channel.sendFrame(BinaryCodec.KIND_TASK, header, precision.dtype(), body))
+            .thenApply(frame -> {
+                String resultError = frame.getHeader().get("max_error");
+                sink.recordPrecisionError(inputError, resultError == null ? 0 : Double.parseDouble(resultError));
+                return sink.accept(fragmentIndex, fragment.getOffset(), fragment.size(), frame);
+            });
+    }
+
+    /**
+     * Envía un fragmento como trama binaria sin bloquear; varias llamadas pueden estar en
+     * vuelo a la vez sobre la misma conexión.
+     *
+     * @return Futuro con el resultado decodificado.
+     */
+    public CompletableFuture<double[]> executeAsync(Fragment fragment, String taskId, String operation) {
+        return sendBinary(fragment, taskId, operation).thenApply(BinaryFrame::toDoubleArray);
+    }
+
+    /**
+     * Envía un fragmento pidiendo una reducción: el worker aplica la operación y responde
+     * sólo con su estado parcial (unos pocos double) en lugar del fragmento transformado.
+     *
+     * @return Futuro con el estado parcial del fragmento; falla con IllegalStateException
+     *         si el worker respondió algo que no es un estado parcial válido.
+     */
+    public <R> CompletableFuture<R> reduce(Fragment fragment, String taskId, String operation, Reducer<R> reducer) {
+        Map<String, Object> fields = new HashMap<>();
+        reducer.describe(fields);
+        if (ProtocolHandler.ENCODING_BINARY.equals(negotiate())) {
+            return sendBinary(fragment, taskId, operation, fields)
+                .thenApply(frame -> reducer.decode(frame.toDoubleArray()));
+        }
+        return CompletableFuture.supplyAsync(
+            () -> reducer.decode(resultOf(sendTaskAndGetResult(fragment, taskId, operation, fields))),
+            IoExecutors.blockingIo());
+    }
+
+    /**
+     * Envía un fragmento pidiendo un filtro: el worker aplica la operación y responde sólo
+     * con los resultados que cumplen predicate, que se guardan en el sink sin decodificar.
+     *
+     * @param fragmentIndex Posición del fragmento dentro del trabajo.
+     * @return Futuro que indica si con este fragmento el resultado quedó completo.
+     */
+    CompletableFuture<Boolean> filter(Fragment fragment, int fragmentIndex, String taskId,
+                                      String operation, String predicate, FilterSink sink) {
+        Map<String, Object> fields = Collections.singletonMap("filter", predicate);
+        if (ProtocolHandler.ENCODING_BINARY.equals(negotiate())) {
+            return sendBinary(fragment, taskId, operation, fields)
+                .thenApply(frame -> sink.accept(fragmentIndex, frame));
+        }
+        return CompletableFuture.supplyAsync(
+            () -> sink.accept(fragmentIndex, resultOf(sendTaskAndGetResult(fragment, taskId, operation, fields))),
+            IoExecutors.blockingIo());
+    }
+
+    private CompletableFuture<BinaryFrame> sendBinary(Fragment fragment, String taskId, String operation) {
+        return sendBinary(fragment, taskId, operation, Collections.emptyMap());
+    }
+
+    /**
+     * Envía la trama TASK y devuelve la trama RESULT, fallando si el worker respondió con error.
+     * Un fragmento vista viaja directamente desde su almacén fuera del heap; un fragmento
+     * residente que el worker ya tiene viaja sin datos.
+     *
+     * @param fields Campos adicionales de la cabecera (p. ej. la reducción pedida).
+     */
+    private CompletableFuture<BinaryFrame> sendBinary(Fragment fragment, String taskId, String operation,
+                                                      Map<String, Object> fields) {
+        Map<String, Object> header = ProtocolHandler.createTaskHeader(taskId, operation);
+        header.putAll(fields);
+        CompletableFuture<BinaryFrame> sent;
+        if (fragment.isResident() && fragmentCache > 0) {
+            String hash = fragment.contentHash();
+            header.put("fragment_id", fragment.getId());
+            header.put("hash", hash);
+            if (isResident(fragment.getId(), hash)) {
+                Map<String, Object> cited = new HashMap<>(header);
+                cited.put("cached", 1);
+                sent = channel.sendFrame(BinaryCodec.KIND_TASK, cited, new double[0], 0, 0)
+                    .thenCompose(frame -> {
+                        if (!isMissing(frame)) {
+                            residentHits.incrementAndGet();
+                            return CompletableFuture.completedFuture(frame);
+                        }
+                        forgetResident(fragment.getId());
+                        return sendWithData(fragment, header);
+                    });
+            } else {
+                sent = sendWithData(fragment, header);
+            }
+        } else {
+            sent = sendWithData(fragment, header);
+        }
+        return checked(sent);
+    }
+
+    /**
+     * La trama RESULT de sent, o un fallo si la comunicación falló o el worker respondió con error.
+     */
+    private CompletableFuture<BinaryFrame> checked(CompletableFuture<BinaryFrame> sent) {
+        return sent
+            .handle((frame, error) -> {
+                if (error != null) {
+                    throw new RuntimeException(
+                        "Error en comunicación con " + workerId + "@" + host + ":" + port, unwrap(error));
+                }
+                if (frame.getKind() != BinaryCodec.KIND_RESULT) {
+                    throw new RuntimeException("Worker " + workerId + " devolvió error: " + frame.getHeader().get("message"));
+                }
+                return frame;
+            });
+    }
+
+    /**
+     * Envía la TASK con los datos del fragmento; si es residente y el worker responde bien,
+     * lo anota como guardado en el worker.
+     */
+    private CompletableFuture<BinaryFrame> sendWithData(Fragment fragment, Map<String, Object> header) {
+        CompletableFuture<BinaryFrame> sent;
+        ByteBuffer packed = compressed ? compress(fragment, header) : null;
+        if (packed != null) {
+            compressedTasks.incrementAndGet();
+            sent = channel.sendFrame(BinaryCodec.KIND_TASK, header, BinaryCodec.DTYPE_FLOAT64, packed);
+        } else if (fragment.isView()) {
+            sent = channel.sendFrame(BinaryCodec.KIND_TASK, header, BinaryCodec.DTYPE_FLOAT64, fragment.getView());
+        } else {
+            DoubleBuffer values = fragment.values();
+            sent = channel.sendFrame(BinaryCodec.KIND_TASK, header, values.array(), values.arrayOffset(), values.remaining());
+        }
+        if (!header.containsKey("fragment_id")) {
+            return sent;
+        }
+        return sent.thenApply(frame -> {
+            if (frame.getKind() == BinaryCodec.KIND_RESULT) {
+                rememberResident(fragment.getId(), (String) header.get("hash"), (long) fragment.size() * Double.BYTES);
+            }
+            return frame;
+        });
+    }
+
+    /**
+     * Cuerpo comprimido del fragmento (anotando el codec en header), o null si no compensa.
+     */
+    private static ByteBuffer compress(Fragment fragment, Map<String, Object> header) {
+        if (fragment.size() < Compression.MIN_ELEMENTS) {
+            return null;
+        }
+        return Compression.compress(fragment.values(), header);
+    }
+
+    private static boolean isMissing(BinaryFrame frame) {
+        return frame.getKind() == BinaryCodec.KIND_ERROR && FRAGMENT_MISSING.equals(frame.getHeader().get("code"));
+    }
+
+    private synchronized boolean isResident(String id, String hash) {
+        return hash.equals(resident.get(id));
+    }
+
+    /**
+     * Anota un fragmento guardado en el worker y, como hace él, expulsa los usados hace más
+     * tiempo hasta caber en su capacidad anunciada.
+     */
+    private synchronized void rememberResident(String id, String hash, long bytes) {
+        forgetResident(id);
+        if (bytes > fragmentCache) {
+            return;
+        }
+        resident.put(id, hash);
+        residentBytes.put(id, bytes);
+        residentTotal += bytes;
+        Iterator<String> eldest = resident.keySet().iterator();
+        while (residentTotal > fragmentCache && eldest.hasNext()) {
+            String victim = eldest.next();
+            residentTotal -= residentBytes.remove(victim);
+            eldest.remove();
+        }
+    }
+
+    private synchronized void forgetResident(String id) {
+        if (resident.remove(id) != null) {
+            residentTotal -= residentBytes.remove(id);
+        }
+    }
+
+    /**
+     * Abre (o reutiliza) la conexión persistente y devuelve la codificación acordada.
+     * Si el worker no es alcanzable se usa JSON para esta llamada.
+     *
+     * @return Codificación a usar.
+     */
+    String negotiate() {
+        String[] offered = ProtocolHandler.ENCODING_JSON.equals(preferredEncoding)
+            ? new String[]{ProtocolHandler.ENCODING_JSON}
+            : new String[]{ProtocolHandler.ENCODING_BINARY, ProtocolHandler.ENCODING_JSON};
+        channel.offerCompression(compression ? new String[]{Compression.XOR} : new String[0]);
+        try {
+            Handshake hs = channel.open(offered);
+            cores = hs.getCores();
+            fragmentCache = hs.getFragmentCache();
+            compressed = hs.accepts(Compression.XOR);
+            streamChunk = hs.getStreamChunk() > 0 ? hs.getStreamChunk() : STREAM_CHUNK;
+            return hs.getEncoding();
+        } catch (IOException e) {
+            System.err.println("⚠ Handshake con " + workerId + " falló (" + e.getMessage() + "), se usa JSON.");
+            return ProtocolHandler.ENCODING_JSON;
+        }
+    }
+
     /**
      * Envía un fragmento al worker y devuelve el Map con el JSON de respuesta.
      */
     public Map<String, String> sendTaskAndGetResult(Fragment fragment,
                                                     String taskId,
                                                     String operation) {
-        try (Socket socket = new Socket(host, port);
-             PrintWriter out = new PrintWriter(
-                 new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8),
-                 true);
-             BufferedReader in = new BufferedReader(
-                 new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))
-        ) {
-            // 1) Preparar mensaje TASK
-            String jsonReq = ProtocolHandler.toJson(
-                ProtocolHandler.createTaskMessage(
-                    taskId,
-                    fragment.getData(),
-                    operation,
-                    host + ":" + port
-                )
-            );
-            System.out.println("Enviado a " + workerId + " -> " + jsonReq);
+        return sendTaskAndGetResult(fragment, taskId, operation, Collections.emptyMap());
+    }
 
-            // 2) Enviar
-            out.println(jsonReq);
+    /**
+     * Como sendTaskAndGetResult(Fragment, String, String), con campos adicionales en la TASK
+     * (p. ej. la reducción pedida).
+     */
+    public Map<String, String> sendTaskAndGetResult(Fragment fragment,
+                                                    String taskId,
+                                                    String operation,
+                                                    Map<String, Object> fields) {
+        try {
+            channel.open(ProtocolHandler.ENCODING_JSON);
 
-            // 3) Leer respuesta (bloquea hasta '\n')
-            String line = in.readLine();
-            System.out.println("Respuesta de " + workerId + " <- " + line);
+            // 1) Preparar mensaje TASK
+            double[] data = fragment.getData();
+            Map<String, Object> request = ProtocolHandler.createTaskMessage(
+                taskId,
+                data,
+                operation,
+                host + ":" + port
+            );
+            request.putAll(fields);
+            System.out.println("Enviado a " + workerId + " -> TASK " + taskId
+                + " (" + data.length + " elementos, JSON)");
 
-            // 4) Parsear y devolver
-            return ProtocolHandler.fromJson(line);
+            // 2) Enviar y esperar la respuesta con el mismo request_id
+            return channel.sendJson(request).join();
 
         } catch (Exception e) {
             throw new RuntimeException(
-              "Error en comunicación con " + workerId + "@" + host + ":" + port, e);
+              "Error en comunicación con " + workerId + "@" + host + ":" + port, unwrap(e));
+        }
+    }
+
+    /**
+     * Cierra la conexión persistente con el worker.
+     */
+    public void close() {
+        channel.close();
+    }
+
+    /**
+     * Array "result" de una respuesta JSON, o RuntimeException si el worker respondió con error.
+     */
+    private double[] resultOf(Map<String, String> resp) {
+        if (!"result".equals(resp.get("type"))) {
+            throw new RuntimeException("Worker " + workerId + " devolvió error: " + resp.get("message"));
         }
+        return ProtocolHandler.parseDoubleArray(resp.get("result"));
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        return (t instanceof CompletionException && t.getCause() != null) ? t.getCause() : t;
     }
 }
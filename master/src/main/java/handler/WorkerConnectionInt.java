@@ -1,20 +1,34 @@
 package handler;
 
 import data.FragmentInt;
+import protocol.BinaryCodec;
+import protocol.BinaryFrame;
+import protocol.Compression;
 import protocol.ProtocolHandler;
 
-import java.io.PrintWriter;
-import java.net.Socket;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 /**
  * WorkerConnectionInt: Representa una conexión hacia un worker remoto para datos int.
- * Se encarga de enviar tareas (fragmentos) de enteros.
+ * Se encarga de enviar tareas (fragmentos) de enteros por una conexión persistente;
+ * el resultado vuelve por el mismo socket. Con la compresión activada (setCompression())
+ * se ofrece el codec "delta" para los cuerpos INT32.
  */
 public class WorkerConnectionInt {
 
     private final String workerId;
     private final String host;
     private final int port;
+    private final WorkerChannel channel;
+    private volatile int cores = 1;
+    private volatile boolean compression = Boolean.getBoolean("darraylib.compression");
 
     /**
      * Crea una nueva conexión a un worker.
@@ -27,6 +41,7 @@ public class WorkerConnectionInt {
         this.workerId = workerId;
         this.host = host;
         this.port = port;
+        this.channel = new WorkerChannel(workerId, host, port);
     }
 
     /**
@@ -37,31 +52,157 @@ public class WorkerConnectionInt {
         return workerId;
     }
 
+    /**
+     * Núcleos anunciados por el worker en su INIT (1 si no los anunció o aún no se conectó).
+     * @return Núcleos del worker.
+     */
+    public int getCores() {
+        return cores;
+    }
+
+    /**
+     * Activa o desactiva la compresión de los cuerpos binarios (por defecto la de la propiedad
+     * darraylib.compression, desactivada). Se aplica en el próximo handshake.
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Abre (o reutiliza) la conexión para conocer las capacidades del worker antes de repartir.
+     * @return true si el worker respondió al handshake.
+     */
+    boolean connect() {
+        try {
+            cores = open().getCores();
+            return true;
+        } catch (IOException e) {
+            System.err.println("⚠ Handshake con " + workerId + " falló: " + e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Envía un fragmento de enteros al worker junto con la tarea y operación.
      *
      * @param fragment Fragmento de datos int a procesar.
      * @param taskId ID único de la tarea.
      * @param operation Operación matemática a realizar.
+     * @return Futuro con el resultado del worker.
+     */
+    public CompletableFuture<int[]> sendTask(FragmentInt fragment, String taskId, String operation) {
+        return send(fragment, taskId, operation, Collections.emptyMap(), BinaryFrame::toIntArray,
+                    ProtocolHandler::parseIntArray);
+    }
+
+    /**
+     * Envía un fragmento y decodifica su resultado directamente en su tramo del sink.
+     *
+     * @param fragmentIndex Posición del fragmento dentro del trabajo.
+     * @return Futuro que indica si con este fragmento el resultado quedó completo.
      */
-    public void sendTask(FragmentInt fragment, String taskId, String operation) {
-        try (Socket socket = new Socket(host, port);
-             PrintWriter out = new PrintWriter(socket.getOutputStream(), true)) {
-
-            String json = ProtocolHandler.toJson(
-                ProtocolHandler.createTaskMessage(
-                    taskId,
-                    fragment.getData(),
-                    operation,
-                    host + ":" + port
-                )
-            );
-
-            out.println(json);
-            System.out.println("Enviado a " + workerId + " -> " + json);
-
-        } catch (Exception e) {
+    public CompletableFuture<Boolean> sendTask(FragmentInt fragment, int fragmentIndex, String taskId,
+                                               String operation, ResultSinkInt sink) {
+        return sendTask(fragment, fragmentIndex, taskId, operation, null, sink);
+    }
+
+    /**
+     * Como sendTask(FragmentInt, int, String, String, ResultSinkInt), pidiendo además al
+     * worker que aplique step a su fragmento (campo "post", ver FragmentStep); step puede ser null.
+     */
+    CompletableFuture<Boolean> sendTask(FragmentInt fragment, int fragmentIndex, String taskId,
+                                        String operation, FragmentStep step, ResultSinkInt sink) {
+        long start = fragment.getOffset();
+        Map<String, Object> fields = step == null
+                ? Collections.emptyMap() : Collections.singletonMap("post", step.wireName());
+        return send(fragment, taskId, operation, fields,
+                    frame -> sink.accept(fragmentIndex, start, fragment.size(), frame),
+                    result -> sink.accept(fragmentIndex, start, fragment.size(), ProtocolHandler.parseIntArray(result)));
+    }
+
+    /**
+     * Envía un fragmento pidiendo una reducción (ver WorkerConnection.reduce()): el worker
+     * aplica la operación con la conversión a int y responde con el estado parcial en double.
+     *
+     * @return Futuro con el estado parcial del fragmento; falla con IllegalStateException
+     *         si el worker respondió algo que no es un estado parcial válido.
+     */
+    public <R> CompletableFuture<R> reduce(FragmentInt fragment, String taskId, String operation, Reducer<R> reducer) {
+        Map<String, Object> fields = new HashMap<>();
+        reducer.describe(fields);
+        return send(fragment, taskId, operation, fields,
+                    frame -> reducer.decode(frame.toDoubleArray()),
+                    result -> reducer.decode(ProtocolHandler.parseDoubleArray(result)));
+    }
+
+    private Handshake open() throws IOException {
+        channel.offerCompression(compression ? new String[]{Compression.DELTA} : new String[0]);
+        return channel.open(ProtocolHandler.ENCODING_BINARY, ProtocolHandler.ENCODING_JSON);
+    }
+
+    /**
+     * @param fields Campos adicionales de la TASK (p. ej. el paso final o la reducción pedidos).
+     * @param onJson Recibe el campo "result" de una respuesta JSON, sin decodificar.
+     */
+    private <T> CompletableFuture<T> send(FragmentInt fragment, String taskId, String operation,
+                                          Map<String, Object> fields,
+                                          Function<BinaryFrame, T> onFrame, Function<String, T> onJson) {
+        try {
+            Handshake hs = open();
+            cores = hs.getCores();
+            if (ProtocolHandler.ENCODING_BINARY.equals(hs.getEncoding())) {
+                System.out.println("Enviado a " + workerId + " -> trama binaria " + taskId
+                        + " (" + fragment.size() + " enteros)");
+                Map<String, Object> header = ProtocolHandler.createTaskHeader(taskId, operation);
+                header.putAll(fields);
+                CompletableFuture<BinaryFrame> sent;
+                ByteBuffer packed = hs.accepts(Compression.DELTA) && fragment.size() >= Compression.MIN_ELEMENTS
+                        ? Compression.compress(fragment.isView() ? fragment.getView().asIntBuffer()
+                                                                 : IntBuffer.wrap(fragment.getData()), header)
+                        : null;
+                if (packed != null) {
+                    sent = channel.sendFrame(BinaryCodec.KIND_TASK, header, BinaryCodec.DTYPE_INT32, packed);
+                } else if (fragment.isView()) {
+                    // Vista fuera del heap: viaja tal cual, sin copiarla a un int[]
+                    sent = channel.sendFrame(BinaryCodec.KIND_TASK, header, BinaryCodec.DTYPE_INT32, fragment.getView());
+                } else {
+                    int[] data = fragment.getData();
+                    sent = channel.sendFrame(BinaryCodec.KIND_TASK, header, data, 0, data.length);
+                }
+                return sent
+                    .thenApply(frame -> {
+                        if (frame.getKind() != BinaryCodec.KIND_RESULT) {
+                            throw new RuntimeException("Worker " + workerId + " devolvió error: "
+                                    + frame.getHeader().get("message"));
+                        }
+                        return onFrame.apply(frame);
+                    });
+            }
+
+            int[] data = fragment.getData();
+            System.out.println("Enviado a " + workerId + " -> TASK " + taskId + " (" + data.length + " enteros, JSON)");
+            Map<String, Object> request = ProtocolHandler.createTaskMessage(taskId, data, operation, host + ":" + port);
+            request.putAll(fields);
+            return channel.sendJson(request)
+                .thenApply(resp -> {
+                    if (!"result".equals(resp.get("type"))) {
+                        throw new RuntimeException("Worker " + workerId + " devolvió error: " + resp.get("message"));
+                    }
+                    return onJson.apply(resp.get("result"));
+                });
+
+        } catch (IOException e) {
             System.err.println("Error al enviar tarea a " + workerId + ": " + e.getMessage());
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
         }
     }
+
+    /**
+     * Cierra la conexión persistente con el worker.
+     */
+    public void close() {
+        channel.close();
+    }
 }
@@ -2,48 +2,65 @@ package handler;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * WorkerHealthManager: Supervisa la salud de los workers mediante heartbeats.
+ *
+ * Todas las instancias comparten un único hilo daemon que revisa los heartbeats cada
+ * segundo; la recuperación de un worker caído, que puede bloquear al reconectar, se delega
+ * al executor de E/S (ver IoExecutors) para no retrasar las demás revisiones.
  */
-public class WorkerHealthManager {
+public class WorkerHealthManager implements AutoCloseable {
+
+    private static final long CHECK_INTERVAL_MILLIS = 1000;
+
+    private static final ScheduledExecutorService MONITOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "darraylib-health");
+        t.setDaemon(true);
+        return t;
+    });
 
     private final RecoveryCapable master;
     private final int timeoutMillis;
     private final Map<String, Long> heartbeats;
+    private final ScheduledFuture<?> monitoring;
 
     public WorkerHealthManager(RecoveryCapable master, int timeoutMillis) {
         this.master = master;
         this.timeoutMillis = timeoutMillis;
         this.heartbeats = new ConcurrentHashMap<>();
 
-        startMonitoring();
+        this.monitoring = MONITOR.scheduleWithFixedDelay(this::checkHeartbeats,
+                CHECK_INTERVAL_MILLIS, CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
     }
 
     public void updateHeartbeat(String workerId) {
         heartbeats.put(workerId, System.currentTimeMillis());
     }
 
-    private void startMonitoring() {
-        new Thread(() -> {
-            while (true) {
-                long now = System.currentTimeMillis();
-
-                for (String workerId : heartbeats.keySet()) {
-                    long lastSeen = heartbeats.getOrDefault(workerId, 0L);
-                    if (now - lastSeen > timeoutMillis) {
-                        System.err.println("❌ Nodo " + workerId + " no responde. Activando recuperación.");
-                        master.triggerRecoveryForWorker(workerId);
-                        heartbeats.remove(workerId);
-                    }
-                }
-
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
+    /**
+     * Deja de supervisar los heartbeats de este maestro.
+     */
+    @Override
+    public void close() {
+        monitoring.cancel(false);
+        heartbeats.clear();
+    }
+
+    private void checkHeartbeats() {
+        long now = System.currentTimeMillis();
+
+        for (String workerId : heartbeats.keySet()) {
+            long lastSeen = heartbeats.getOrDefault(workerId, 0L);
+            if (now - lastSeen > timeoutMillis) {
+                System.err.println("❌ Nodo " + workerId + " no responde. Activando recuperación.");
+                heartbeats.remove(workerId);
+                IoExecutors.blockingIo().execute(() -> master.triggerRecoveryForWorker(workerId));
             }
-        }).start();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,14 @@
+package ops;
+
+/**
+ * BulkKernel: Versión de una operación que trabaja sobre tramos de array completos en vez de
+ * elemento a elemento (p. ej. con instrucciones SIMD, ver Kernels). Debe dar lo mismo que
+ * CompiledOperation.applyAsDouble() salvo el redondeo de las funciones trascendentes, y en
+ * enteros convertir como el (int) de Java.
+ */
+interface BulkKernel {
+
+    void apply(double[] src, int srcOffset, double[] dst, int dstOffset, int count);
+
+    void apply(int[] src, int srcOffset, int[] dst, int dstOffset, int count);
+}
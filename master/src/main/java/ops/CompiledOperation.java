@@ -0,0 +1,138 @@
+package ops;
+
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * CompiledOperation: Una operación de Operation (p. ej. "((sin(x) + cos(x))^2) / (sqrt(abs(x)) + 1)")
+ * ya compilada a un árbol de DoubleUnaryOperator primitivos, sin cajas ni interpretación por
+ * elemento. Se obtiene con OperationCompiler.compile(), que la reutiliza para el mismo texto.
+ *
+ * La versión entera evalúa en double y convierte con (int): trunca hacia cero, satura en
+ * los límites de int y da 0 con NaN. Los workers siguen la misma regla.
+ *
+ * Las operaciones del catálogo llevan además un núcleo SIMD que los apply() sobre arrays
+ * usan cuando Kernels lo permite; con él las funciones trascendentes pueden diferir del
+ * camino escalar en el último bit (matches() lo admite).
+ */
+public final class CompiledOperation implements DoubleUnaryOperator {
+
+    private final String expression;
+    private final DoubleUnaryOperator function;
+    private final boolean identity;
+    private final BulkKernel vector;
+
+    /**
+     * @param vector Núcleo vectorial de la operación, o null si no lo tiene.
+     */
+    CompiledOperation(String expression, DoubleUnaryOperator function, boolean identity, BulkKernel vector) {
+        this.expression = expression;
+        this.function = function;
+        this.identity = identity;
+        this.vector = vector;
+    }
+
+    /**
+     * Texto de la operación tal como se pidió.
+     */
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * Indica si la operación devuelve cada elemento sin cambios ("x").
+     */
+    public boolean isIdentity() {
+        return identity;
+    }
+
+    /**
+     * Indica si los apply() sobre arrays van ahora mismo por el núcleo vectorial.
+     */
+    public boolean isVectorized() {
+        return vector != null && Kernels.useVector();
+    }
+
+    @Override
+    public double applyAsDouble(double x) {
+        return function.applyAsDouble(x);
+    }
+
+    public int applyAsInt(int x) {
+        return (int) function.applyAsDouble(x);
+    }
+
+    /**
+     * Versión para enteros (ver la nota de la clase sobre la conversión).
+     */
+    public IntUnaryOperator asIntOperator() {
+        return this::applyAsInt;
+    }
+
+    /**
+     * Aplica la operación a src[srcOffset, srcOffset + count) y deja el resultado en
+     * dst[dstOffset, ...). src y dst pueden ser el mismo array.
+     */
+    public void apply(double[] src, int srcOffset, double[] dst, int dstOffset, int count) {
+        if (isVectorized()) {
+            vector.apply(src, srcOffset, dst, dstOffset, count);
+            return;
+        }
+        DoubleUnaryOperator f = function;
+        for (int i = 0; i < count; i++) {
+            dst[dstOffset + i] = f.applyAsDouble(src[srcOffset + i]);
+        }
+    }
+
+    /**
+     * Como apply(double[], ...), para enteros.
+     */
+    public void apply(int[] src, int srcOffset, int[] dst, int dstOffset, int count) {
+        if (isVectorized()) {
+            vector.apply(src, srcOffset, dst, dstOffset, count);
+            return;
+        }
+        DoubleUnaryOperator f = function;
+        for (int i = 0; i < count; i++) {
+            dst[dstOffset + i] = (int) f.applyAsDouble(src[srcOffset + i]);
+        }
+    }
+
+    /**
+     * Devuelve un array nuevo con la operación aplicada a cada elemento.
+     */
+    public double[] apply(double[] src) {
+        double[] out = new double[src.length];
+        apply(src, 0, out, 0, src.length);
+        return out;
+    }
+
+    /**
+     * Devuelve un array nuevo con la operación aplicada a cada elemento.
+     */
+    public int[] apply(int[] src) {
+        int[] out = new int[src.length];
+        apply(src, 0, out, 0, src.length);
+        return out;
+    }
+
+    /**
+     * Compara un resultado recibido con el esperado admitiendo las diferencias de redondeo
+     * entre bibliotecas matemáticas (p. ej. la de Python frente a la de Java).
+     */
+    public static boolean matches(double expected, double actual) {
+        if (Double.isNaN(expected) || Double.isNaN(actual)) {
+            return Double.isNaN(expected) && Double.isNaN(actual);
+        }
+        if (expected == actual) {
+            return true;   // también infinitos iguales
+        }
+        double diff = Math.abs(expected - actual);
+        return diff <= 1e-12 || diff <= 1e-9 * Math.max(Math.abs(expected), Math.abs(actual));
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledOperation{" + expression + '}';
+    }
+}
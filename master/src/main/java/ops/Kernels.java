@@ -0,0 +1,104 @@
+package ops;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Kernels: Elige cómo se aplican en bloque las operaciones predefinidas (ver handler.Operation)
+ * en el maestro y en los workers Java: con un bucle escalar o con núcleos SIMD de la Vector
+ * API (ops.VectorKernels, DoubleVector/IntVector).
+ *
+ * La Vector API sigue incubada en Java 17, así que los núcleos vectoriales se compilan aparte
+ * (perfil "vector" del pom) y sólo se cargan si la JVM arrancó con
+ * --add-modules jdk.incubator.vector; si no, todo sigue por el camino escalar. El modo se
+ * elige con -Ddarraylib.kernels=auto|scalar|vector o con configure(): AUTO usa los
+ * vectoriales cuando están disponibles. Las operaciones que no son del catálogo siempre van
+ * por el camino escalar.
+ */
+public final class Kernels {
+
+    public enum Mode { AUTO, SCALAR, VECTOR }
+
+    public static final String MODE_PROPERTY = "darraylib.kernels";
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    /** Núcleo vectorial de cada operación del catálogo por su texto sin espacios; vacío si no hay Vector API. */
+    private static final Map<String, BulkKernel> VECTOR = loadVectorKernels();
+
+    private static volatile Mode mode = parse(System.getProperty(MODE_PROPERTY, "auto"));
+
+    private Kernels() {
+        throw new UnsupportedOperationException("Kernels es una clase de utilidades y no debe ser instanciada.");
+    }
+
+    /**
+     * Indica si los núcleos vectoriales están cargados (la JVM tiene la Vector API).
+     */
+    public static boolean vectorAvailable() {
+        return !VECTOR.isEmpty();
+    }
+
+    /**
+     * Cambia el modo para las siguientes llamadas; se puede cambiar en cualquier momento.
+     *
+     * @throws IllegalStateException Si se pide VECTOR y la Vector API no está disponible.
+     */
+    public static void configure(Mode newMode) {
+        if (newMode == Mode.VECTOR && !vectorAvailable()) {
+            throw new IllegalStateException("La Vector API no está disponible: arranca la JVM con --add-modules "
+                    + VECTOR_MODULE + " (Java 17+).");
+        }
+        mode = newMode;
+    }
+
+    public static Mode mode() {
+        return mode;
+    }
+
+    /**
+     * Indica si, con el modo actual, se usan los núcleos vectoriales.
+     */
+    static boolean useVector() {
+        return mode != Mode.SCALAR && vectorAvailable();
+    }
+
+    /**
+     * Núcleo vectorial de la expresión si es una operación del catálogo (se ignoran los
+     * espacios), o null.
+     */
+    static BulkKernel vector(String expression) {
+        return VECTOR.isEmpty() ? null : VECTOR.get(normalize(expression));
+    }
+
+    static String normalize(String expression) {
+        return expression.replaceAll("\\s+", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static Mode parse(String value) {
+        try {
+            Mode parsed = Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            if (parsed == Mode.VECTOR && !vectorAvailable()) {
+                System.err.println("⚠ " + MODE_PROPERTY + "=vector sin la Vector API (--add-modules "
+                        + VECTOR_MODULE + "); se usa el camino escalar.");
+            }
+            return parsed;
+        } catch (IllegalArgumentException e) {
+            System.err.println("⚠ " + MODE_PROPERTY + "=" + value + " no es válido (auto, scalar, vector); se usa auto.");
+            return Mode.AUTO;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, BulkKernel> loadVectorKernels() {
+        if (!ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            return Map.of();
+        }
+        try {
+            return (Map<String, BulkKernel>) Class.forName("ops.VectorKernels").getMethod("catalog").invoke(null);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Compilado sin el perfil "vector" o JVM sin soporte
+            return Map.of();
+        }
+    }
+}
@@ -0,0 +1,544 @@
+package ops;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * OperationCompiler: Compila el texto de una operación (ver handler.Operation) a un
+ * CompiledOperation y lo guarda por texto, así que cada expresión se analiza una sola vez.
+ *
+ * Gramática (la misma que entienden los workers Python, ver workers/Python/operations.py):
+ * <pre>
+ *   cond    := expr (('&lt;' | '&lt;=' | '&gt;' | '&gt;=' | '==' | '!=') expr)?
+ *   expr    := term (('+' | '-') term)*
+ *   term    := unary (('*' | '/' | '%') unary)*
+ *   unary   := ('-' | '+') unary | power
+ *   power   := primary ('^' unary)?              (asociativo por la derecha: -x^2 = -(x^2))
+ *   primary := número | 'x' | 'pi' | 'e' | '(' cond ')' | función '(' cond (',' cond)? ')'
+ * </pre>
+ * Una comparación vale 1 si se cumple y 0 si no (con NaN sólo se cumple '!='), así que una
+ * condición como "x &gt; 0.5" sirve de predicado para los filtros (ver isTrue()).
+ * Funciones de un argumento: sin, cos, tan, asin, acos, atan, sinh, cosh, tanh, exp, log,
+ * log10, sqrt, abs, floor, ceil e int (el (int) de Java: trunca, satura y da 0 con NaN). De
+ * dos: pow, min, max, atan2. '%' es el resto de Java
+ * (signo del dividendo) y toda la aritmética es IEEE 754: dividir por cero da infinito o NaN.
+ *
+ * Las subexpresiones constantes se evalúan al compilar y los cuadrados (^2, ^3) se hacen
+ * con multiplicaciones. Las operaciones del catálogo reciben además su núcleo SIMD (ver Kernels).
+ */
+public final class OperationCompiler {
+
+    /** Expresiones distintas que se guardan antes de vaciar la caché. */
+    private static final int CACHE_LIMIT = 1024;
+
+    private static final Map<String, CompiledOperation> CACHE = new ConcurrentHashMap<>();
+
+    private OperationCompiler() {
+        throw new UnsupportedOperationException("OperationCompiler es una clase de utilidades y no debe ser instanciada.");
+    }
+
+    /**
+     * Devuelve la operación compilada, analizándola sólo la primera vez que se pide el texto.
+     *
+     * @throws IllegalArgumentException Si el texto no es una expresión válida; el mensaje
+     *                                  indica la posición del error.
+     */
+    public static CompiledOperation compile(String expression) {
+        if (expression == null) {
+            throw new IllegalArgumentException("La operación no puede ser nula.");
+        }
+        CompiledOperation cached = CACHE.get(expression);
+        if (cached != null) {
+            return cached;
+        }
+        Node root = new Parser(expression).parse();
+        CompiledOperation compiled = new CompiledOperation(expression, root.function(), root.isVariable(),
+                Kernels.vector(expression));
+        if (CACHE.size() >= CACHE_LIMIT) {
+            CACHE.clear();
+        }
+        CompiledOperation previous = CACHE.putIfAbsent(expression, compiled);
+        return previous != null ? previous : compiled;
+    }
+
+    /**
+     * Criterio de los filtros: un predicado se cumple si su valor no es 0 ni NaN.
+     */
+    public static boolean isTrue(double value) {
+        return value != 0 && value == value;
+    }
+
+    /**
+     * Forma normalizada de una operación, para reconocer el mismo texto escrito de otra
+     * manera (p. ej. en la clave de handler.ResultCache): sin espacios, con los nombres en
+     * minúsculas y cada número escrito como Double.toString() ("2", "2.0" y "2e0" son "2.0").
+     * No reordena ni simplifica: "x*2" y "2*x" siguen siendo distintas.
+     *
+     * @throws IllegalArgumentException Si el texto no es una expresión válida.
+     */
+    public static String normalize(String expression) {
+        compile(expression);
+        StringBuilder normal = new StringBuilder(expression.length());
+        int pos = 0;
+        while (pos < expression.length()) {
+            char c = expression.charAt(pos);
+            int start = pos;
+            if (Character.isDigit(c) || c == '.') {
+                pos = new Parser(expression).skipNumber(pos);
+                normal.append(Double.parseDouble(expression.substring(start, pos)));
+            } else if (Character.isLetter(c)) {
+                while (pos < expression.length() && Character.isLetterOrDigit(expression.charAt(pos))) {
+                    pos++;
+                }
+                normal.append(expression.substring(start, pos).toLowerCase(Locale.ROOT));
+            } else {
+                if (!Character.isWhitespace(c)) {
+                    normal.append(c);
+                }
+                pos++;
+            }
+        }
+        return normal.toString();
+    }
+
+    /**
+     * Fusiona dos operaciones en una sola expresión que equivale a aplicar inner y después
+     * outer: cada x de outer se sustituye por (inner). Ambas se validan antes; la identidad
+     * ("x") desaparece de la composición.
+     *
+     * @throws IllegalArgumentException Si alguna de las dos no es una expresión válida.
+     */
+    public static String compose(String outer, String inner) {
+        CompiledOperation compiledOuter = compile(outer);
+        CompiledOperation compiledInner = compile(inner);
+        if (compiledInner.isIdentity()) {
+            return outer;
+        }
+        if (compiledOuter.isIdentity()) {
+            return inner;
+        }
+        StringBuilder fused = new StringBuilder(outer.length() + inner.length() + 2);
+        int pos = 0;
+        while (pos < outer.length()) {
+            char c = outer.charAt(pos);
+            int start = pos;
+            if (Character.isDigit(c) || c == '.') {
+                // Un número entero, incluido su exponente: la 'e' de "2e3" no es una variable
+                pos = new Parser(outer).skipNumber(pos);
+                fused.append(outer, start, pos);
+            } else if (Character.isLetter(c)) {
+                while (pos < outer.length() && Character.isLetterOrDigit(outer.charAt(pos))) {
+                    pos++;
+                }
+                String name = outer.substring(start, pos);
+                if (name.equalsIgnoreCase("x")) {
+                    fused.append('(').append(inner).append(')');
+                } else {
+                    fused.append(name);
+                }
+            } else {
+                fused.append(c);
+                pos++;
+            }
+        }
+        return fused.toString();
+    }
+
+    /**
+     * Nodo del árbol ya compilado: una constante, la variable x o una función de x.
+     */
+    private static final class Node {
+        static final Node X = new Node(DoubleUnaryOperator.identity(), false, 0.0);
+
+        final DoubleUnaryOperator f;
+        final boolean constant;
+        final double value;
+
+        private Node(DoubleUnaryOperator f, boolean constant, double value) {
+            this.f = f;
+            this.constant = constant;
+            this.value = value;
+        }
+
+        static Node constant(double value) {
+            return new Node(null, true, value);
+        }
+
+        static Node of(DoubleUnaryOperator f) {
+            return new Node(f, false, 0.0);
+        }
+
+        boolean isVariable() {
+            return this == X;
+        }
+
+        DoubleUnaryOperator function() {
+            if (constant) {
+                double c = value;
+                return x -> c;
+            }
+            return f;
+        }
+    }
+
+    /**
+     * Analizador descendente recursivo que compila mientras analiza.
+     */
+    private static final class Parser {
+        private final String text;
+        private int pos;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Node parse() {
+            Node node = condition();
+            skipSpaces();
+            if (pos < text.length()) {
+                throw error("símbolo inesperado '" + text.charAt(pos) + "'");
+            }
+            return node;
+        }
+
+        private Node condition() {
+            Node left = expr();
+            if (accept("<=")) {
+                return binary(left, expr(), (a, b) -> a <= b ? 1.0 : 0.0);
+            } else if (accept(">=")) {
+                return binary(left, expr(), (a, b) -> a >= b ? 1.0 : 0.0);
+            } else if (accept("==")) {
+                return binary(left, expr(), (a, b) -> a == b ? 1.0 : 0.0);
+            } else if (accept("!=")) {
+                return binary(left, expr(), (a, b) -> a != b ? 1.0 : 0.0);
+            } else if (accept('<')) {
+                return binary(left, expr(), (a, b) -> a < b ? 1.0 : 0.0);
+            } else if (accept('>')) {
+                return binary(left, expr(), (a, b) -> a > b ? 1.0 : 0.0);
+            }
+            return left;
+        }
+
+        private Node expr() {
+            Node left = term();
+            while (true) {
+                if (accept('+')) {
+                    left = add(left, term());
+                } else if (accept('-')) {
+                    left = subtract(left, term());
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        private Node term() {
+            Node left = unary();
+            while (true) {
+                if (accept('*')) {
+                    left = multiply(left, unary());
+                } else if (accept('/')) {
+                    left = divide(left, unary());
+                } else if (accept('%')) {
+                    left = binary(left, unary(), (a, b) -> a % b);
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        private Node unary() {
+            if (accept('-')) {
+                Node operand = unary();
+                if (operand.constant) {
+                    return Node.constant(-operand.value);
+                }
+                DoubleUnaryOperator f = operand.f;
+                return Node.of(x -> -f.applyAsDouble(x));
+            }
+            if (accept('+')) {
+                return unary();
+            }
+            return power();
+        }
+
+        private Node power() {
+            Node base = primary();
+            if (!accept('^')) {
+                return base;
+            }
+            Node exponent = unary();
+            if (exponent.constant && !base.constant) {
+                DoubleUnaryOperator f = base.f;
+                if (exponent.value == 1.0) {
+                    return base;
+                }
+                if (exponent.value == 2.0) {
+                    return Node.of(x -> {
+                        double v = f.applyAsDouble(x);
+                        return v * v;
+                    });
+                }
+                if (exponent.value == 3.0) {
+                    return Node.of(x -> {
+                        double v = f.applyAsDouble(x);
+                        return v * v * v;
+                    });
+                }
+            }
+            return binary(base, exponent, Math::pow);
+        }
+
+        private Node primary() {
+            skipSpaces();
+            if (pos >= text.length()) {
+                throw error("falta un operando");
+            }
+            char c = text.charAt(pos);
+            if (accept('(')) {
+                Node inner = condition();
+                expect(')');
+                return inner;
+            }
+            if (Character.isDigit(c) || c == '.') {
+                return Node.constant(number());
+            }
+            if (Character.isLetter(c)) {
+                int start = pos;
+                String name = identifier().toLowerCase(Locale.ROOT);
+                switch (name) {
+                    case "x":
+                        return Node.X;
+                    case "pi":
+                        return Node.constant(Math.PI);
+                    case "e":
+                        return Node.constant(Math.E);
+                    default:
+                        return call(name, start);
+                }
+            }
+            throw error("símbolo inesperado '" + c + "'");
+        }
+
+        private Node call(String name, int start) {
+            DoubleUnaryOperator unaryFunction = unaryFunction(name);
+            DoubleBinaryOperator binaryFunction = unaryFunction == null ? binaryFunction(name) : null;
+            if (unaryFunction == null && binaryFunction == null) {
+                pos = start;
+                throw error("función desconocida '" + name + "'");
+            }
+            expect('(');
+            Node first = condition();
+            Node result;
+            if (unaryFunction != null) {
+                result = apply(unaryFunction, first);
+            } else {
+                expect(',');
+                result = binary(first, condition(), binaryFunction);
+            }
+            expect(')');
+            return result;
+        }
+
+        private static DoubleUnaryOperator unaryFunction(String name) {
+            switch (name) {
+                case "sin":   return Math::sin;
+                case "cos":   return Math::cos;
+                case "tan":   return Math::tan;
+                case "asin":  return Math::asin;
+                case "acos":  return Math::acos;
+                case "atan":  return Math::atan;
+                case "sinh":  return Math::sinh;
+                case "cosh":  return Math::cosh;
+                case "tanh":  return Math::tanh;
+                case "exp":   return Math::exp;
+                case "log":   return Math::log;
+                case "log10": return Math::log10;
+                case "sqrt":  return Math::sqrt;
+                case "abs":   return Math::abs;
+                case "floor": return Math::floor;
+                case "ceil":  return Math::ceil;
+                case "int":   return v -> (int) v;
+                default:      return null;
+            }
+        }
+
+        private static DoubleBinaryOperator binaryFunction(String name) {
+            switch (name) {
+                case "pow":   return Math::pow;
+                case "min":   return Math::min;
+                case "max":   return Math::max;
+                case "atan2": return Math::atan2;
+                default:      return null;
+            }
+        }
+
+        // --- Construcción de nodos: plegado de constantes y lambdas sin anidar de más ---
+
+        private static Node apply(DoubleUnaryOperator function, Node operand) {
+            if (operand.constant) {
+                return Node.constant(function.applyAsDouble(operand.value));
+            }
+            if (operand.isVariable()) {
+                return Node.of(function);
+            }
+            DoubleUnaryOperator f = operand.f;
+            return Node.of(x -> function.applyAsDouble(f.applyAsDouble(x)));
+        }
+
+        private static Node add(Node a, Node b) {
+            if (a.constant && b.constant) {
+                return Node.constant(a.value + b.value);
+            }
+            DoubleUnaryOperator fa = a.function();
+            DoubleUnaryOperator fb = b.function();
+            if (b.constant) {
+                double c = b.value;
+                return Node.of(x -> fa.applyAsDouble(x) + c);
+            }
+            if (a.constant) {
+                double c = a.value;
+                return Node.of(x -> c + fb.applyAsDouble(x));
+            }
+            return Node.of(x -> fa.applyAsDouble(x) + fb.applyAsDouble(x));
+        }
+
+        private static Node subtract(Node a, Node b) {
+            if (a.constant && b.constant) {
+                return Node.constant(a.value - b.value);
+            }
+            DoubleUnaryOperator fa = a.function();
+            DoubleUnaryOperator fb = b.function();
+            if (b.constant) {
+                double c = b.value;
+                return Node.of(x -> fa.applyAsDouble(x) - c);
+            }
+            return Node.of(x -> fa.applyAsDouble(x) - fb.applyAsDouble(x));
+        }
+
+        private static Node multiply(Node a, Node b) {
+            if (a.constant && b.constant) {
+                return Node.constant(a.value * b.value);
+            }
+            DoubleUnaryOperator fa = a.function();
+            DoubleUnaryOperator fb = b.function();
+            if (b.constant) {
+                double c = b.value;
+                return Node.of(x -> fa.applyAsDouble(x) * c);
+            }
+            if (a.constant) {
+                double c = a.value;
+                return Node.of(x -> c * fb.applyAsDouble(x));
+            }
+            if (a.isVariable() && b.isVariable()) {
+                return Node.of(x -> x * x);
+            }
+            return Node.of(x -> fa.applyAsDouble(x) * fb.applyAsDouble(x));
+        }
+
+        private static Node divide(Node a, Node b) {
+            if (a.constant && b.constant) {
+                return Node.constant(a.value / b.value);
+            }
+            DoubleUnaryOperator fa = a.function();
+            DoubleUnaryOperator fb = b.function();
+            if (b.constant) {
+                double c = b.value;
+                return Node.of(x -> fa.applyAsDouble(x) / c);
+            }
+            return Node.of(x -> fa.applyAsDouble(x) / fb.applyAsDouble(x));
+        }
+
+        private static Node binary(Node a, Node b, DoubleBinaryOperator op) {
+            if (a.constant && b.constant) {
+                return Node.constant(op.applyAsDouble(a.value, b.value));
+            }
+            DoubleUnaryOperator fa = a.function();
+            DoubleUnaryOperator fb = b.function();
+            return Node.of(x -> op.applyAsDouble(fa.applyAsDouble(x), fb.applyAsDouble(x)));
+        }
+
+        // --- Léxico ---
+
+        /**
+         * Posición justo después del número que empieza en from (ver number()).
+         */
+        int skipNumber(int from) {
+            pos = from;
+            number();
+            return pos;
+        }
+
+        private double number() {
+            int start = pos;
+            while (pos < text.length() && (Character.isDigit(text.charAt(pos)) || text.charAt(pos) == '.')) {
+                pos++;
+            }
+            if (pos < text.length() && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E')) {
+                int mark = pos++;
+                if (pos < text.length() && (text.charAt(pos) == '+' || text.charAt(pos) == '-')) {
+                    pos++;
+                }
+                if (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                    while (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                        pos++;
+                    }
+                } else {
+                    pos = mark;   // "2e" no es exponente: la 'e' queda para el siguiente símbolo
+                }
+            }
+            try {
+                return Double.parseDouble(text.substring(start, pos));
+            } catch (NumberFormatException e) {
+                pos = start;
+                throw error("número inválido");
+            }
+        }
+
+        private String identifier() {
+            int start = pos;
+            while (pos < text.length() && Character.isLetterOrDigit(text.charAt(pos))) {
+                pos++;
+            }
+            return text.substring(start, pos);
+        }
+
+        private void skipSpaces() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private boolean accept(char c) {
+            skipSpaces();
+            if (pos < text.length() && text.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean accept(String symbol) {
+            skipSpaces();
+            if (text.startsWith(symbol, pos)) {
+                pos += symbol.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!accept(c)) {
+                throw error("se esperaba '" + c + "'");
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Operación inválida \"" + text + "\": " + message
+                    + " en la posición " + pos);
+        }
+    }
+}
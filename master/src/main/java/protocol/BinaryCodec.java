@@ -0,0 +1,218 @@
+package protocol;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * BinaryCodec: Codifica y decodifica tramas binarias con prefijo de longitud para TASK/RESULT.
+ *
+ * Formato de la trama (little-endian):
+ * <pre>
+ *  0  u8   magic (0xDA)
+ *  1  u8   versión
+ *  2  u8   tipo (TASK, RESULT, ERROR)
+ *  3  u8   dtype (NONE, FLOAT64, INT32)
+ *  4  u32  longitud de la cabecera JSON en bytes
+ *  8  u32  longitud del cuerpo en bytes
+ * 12  ...  cabecera JSON UTF-8 (task_id, operation, worker_id, ...)
+ *  .  ...  cuerpo: double[] / int[] crudos en little-endian
+ * </pre>
+ * El primer byte nunca coincide con '{', así que el receptor distingue una trama binaria
+ * de un mensaje JSON mirando sólo el primer byte.
+ */
+public final class BinaryCodec {
+
+    public static final int MAGIC = 0xDA;
+    public static final int VERSION = 1;
+    public static final int PREFIX_SIZE = 12;
+
+    public static final int KIND_TASK = 1;
+    public static final int KIND_RESULT = 2;
+    public static final int KIND_ERROR = 3;
+
+    public static final int DTYPE_NONE = 0;
+    public static final int DTYPE_FLOAT64 = 1;
+    public static final int DTYPE_INT32 = 2;
+    /** double redondeados a float32 (ver Precision). */
+    public static final int DTYPE_FLOAT32 = 3;
+    /** double redondeados a bfloat16: los 16 bits altos de un float32 (ver Precision). */
+    public static final int DTYPE_BFLOAT16 = 4;
+
+    /** Tamaño del bloque usado para volcar el cuerpo sin reservar un buffer del tamaño del array. */
+    private static final int CHUNK_BYTES = 64 * 1024;
+
+    private BinaryCodec() {
+        throw new UnsupportedOperationException("BinaryCodec es una clase de utilidades y no debe ser instanciada.");
+    }
+
+    /**
+     * Escribe una trama TASK con un cuerpo double[].
+     *
+     * @param out       Flujo de salida del socket.
+     * @param taskId    Identificador de la tarea.
+     * @param data      Datos del fragmento.
+     * @param operation Operación a aplicar.
+     */
+    public static void writeTask(OutputStream out, String taskId, double[] data, String operation) throws IOException {
+        Map<String, Object> header = ProtocolHandler.createTaskHeader(taskId, operation);
+        writeFrame(out, KIND_TASK, header, data, 0, data.length);
+    }
+
+    /**
+     * Escribe una trama TASK con un cuerpo int[].
+     */
+    public static void writeTask(OutputStream out, String taskId, int[] data, String operation) throws IOException {
+        Map<String, Object> header = ProtocolHandler.createTaskHeader(taskId, operation);
+        writeFrame(out, KIND_TASK, header, data, 0, data.length);
+    }
+
+    /**
+     * Escribe una trama RESULT con un cuerpo double[].
+     */
+    public static void writeResult(OutputStream out, String taskId, String workerId, double[] result) throws IOException {
+        Map<String, Object> header = ProtocolHandler.createResultHeader(taskId, workerId);
+        writeFrame(out, KIND_RESULT, header, result, 0, result.length);
+    }
+
+    /**
+     * Escribe una trama RESULT con un cuerpo int[].
+     */
+    public static void writeResult(OutputStream out, String taskId, String workerId, int[] result) throws IOException {
+        Map<String, Object> header = ProtocolHandler.createResultHeader(taskId, workerId);
+        writeFrame(out, KIND_RESULT, header, result, 0, result.length);
+    }
+
+    /**
+     * Escribe una trama con cuerpo double[] tomando el rango [offset, offset + length).
+     */
+    public static void writeFrame(OutputStream out, int kind, Map<String, Object> header,
+                                  double[] data, int offset, int length) throws IOException {
+        out.write(encodeHead(kind, DTYPE_FLOAT64, header, (long) length * Double.BYTES));
+
+        int perChunk = CHUNK_BYTES / Double.BYTES;
+        ByteBuffer chunk = ByteBuffer.allocate(Math.min(length, perChunk) * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int pos = 0; pos < length; pos += perChunk) {
+            int n = Math.min(perChunk, length - pos);
+            chunk.clear();
+            chunk.asDoubleBuffer().put(data, offset + pos, n);
+            out.write(chunk.array(), 0, n * Double.BYTES);
+        }
+        out.flush();
+    }
+
+    /**
+     * Escribe una trama con cuerpo int[] tomando el rango [offset, offset + length).
+     */
+    public static void writeFrame(OutputStream out, int kind, Map<String, Object> header,
+                                  int[] data, int offset, int length) throws IOException {
+        out.write(encodeHead(kind, DTYPE_INT32, header, (long) length * Integer.BYTES));
+
+        int perChunk = CHUNK_BYTES / Integer.BYTES;
+        ByteBuffer chunk = ByteBuffer.allocate(Math.min(length, perChunk) * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int pos = 0; pos < length; pos += perChunk) {
+            int n = Math.min(perChunk, length - pos);
+            chunk.clear();
+            chunk.asIntBuffer().put(data, offset + pos, n);
+            out.write(chunk.array(), 0, n * Integer.BYTES);
+        }
+        out.flush();
+    }
+
+    /**
+     * Escribe una trama sin cuerpo (p. ej. ERROR).
+     */
+    public static void writeFrame(OutputStream out, int kind, Map<String, Object> header) throws IOException {
+        out.write(encodeHead(kind, DTYPE_NONE, header, 0));
+        out.flush();
+    }
+
+    /**
+     * Lee una trama completa del flujo.
+     *
+     * @param in Flujo de entrada posicionado al inicio de la trama.
+     * @return Trama decodificada.
+     * @throws IOException Si el flujo se cierra o la trama es inválida.
+     */
+    public static BinaryFrame readFrame(InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        byte[] prefix = new byte[PREFIX_SIZE];
+        try {
+            din.readFully(prefix);
+        } catch (EOFException e) {
+            throw new EOFException("Conexión cerrada antes de recibir una trama completa");
+        }
+
+        ByteBuffer p = ByteBuffer.wrap(prefix).order(ByteOrder.LITTLE_ENDIAN);
+        int magic = p.get() & 0xFF;
+        int version = p.get() & 0xFF;
+        int kind = p.get() & 0xFF;
+        int dtype = p.get() & 0xFF;
+        int headerLength = p.getInt();
+        int bodyLength = p.getInt();
+
+        if (magic != MAGIC) {
+            throw new IOException("Trama inválida: magic 0x" + Integer.toHexString(magic));
+        }
+        if (version != VERSION) {
+            throw new IOException("Versión de trama no soportada: " + version);
+        }
+        if (headerLength < 0 || bodyLength < 0) {
+            throw new IOException("Longitudes de trama inválidas");
+        }
+
+        byte[] headerBytes = new byte[headerLength];
+        din.readFully(headerBytes);
+        byte[] body = new byte[bodyLength];
+        din.readFully(body);
+
+        Map<String, String> header = headerLength == 0
+                ? new HashMap<>()
+                : ProtocolHandler.fromJson(new String(headerBytes, StandardCharsets.UTF_8));
+
+        try {
+            return new BinaryFrame(kind, dtype, header, ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Trama comprimida inválida: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Indica si el primer byte recibido corresponde a una trama binaria.
+     */
+    public static boolean isBinaryFrame(int firstByte) {
+        return firstByte == MAGIC;
+    }
+
+    /**
+     * Codifica el prefijo y la cabecera JSON de una trama; el cuerpo se escribe aparte.
+     *
+     * @param kind       Tipo de trama.
+     * @param dtype      Tipo de los elementos del cuerpo.
+     * @param header     Campos de la cabecera.
+     * @param bodyLength Longitud del cuerpo en bytes.
+     * @return Prefijo seguido de la cabecera.
+     */
+    public static byte[] encodeHead(int kind, int dtype, Map<String, Object> header, long bodyLength) {
+        if (bodyLength > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("El cuerpo de la trama excede 2 GB; divida el array en más fragmentos.");
+        }
+        byte[] headerBytes = ProtocolHandler.toJson(header).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer p = ByteBuffer.allocate(PREFIX_SIZE + headerBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        p.put((byte) MAGIC);
+        p.put((byte) VERSION);
+        p.put((byte) kind);
+        p.put((byte) dtype);
+        p.putInt(headerBytes.length);
+        p.putInt((int) bodyLength);
+        p.put(headerBytes);
+        return p.array();
+    }
+}
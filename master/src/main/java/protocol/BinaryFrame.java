@@ -0,0 +1,140 @@
+package protocol;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * BinaryFrame: Trama binaria ya leída del socket (cabecera JSON + cuerpo crudo little-endian).
+ * Si la cabecera anuncia un cuerpo comprimido ("codec", ver Compression) se descomprime al
+ * crear la trama, así que quien la consume siempre ve el cuerpo crudo.
+ */
+public class BinaryFrame {
+
+    private final int kind;
+    private final int dtype;
+    private final Map<String, String> header;
+    private final ByteBuffer body;
+
+    /**
+     * Crea una trama decodificada.
+     *
+     * @param kind   Tipo de trama (ver BinaryCodec.KIND_*).
+     * @param dtype  Tipo de los elementos del cuerpo (ver BinaryCodec.DTYPE_*).
+     * @param header Cabecera con los campos del mensaje.
+     * @param body   Cuerpo en little-endian, o comprimido según header.
+     * @throws IllegalArgumentException Si el cuerpo comprimido no es válido.
+     */
+    public BinaryFrame(int kind, int dtype, Map<String, String> header, ByteBuffer body) {
+        this.kind = kind;
+        this.dtype = dtype;
+        this.header = header;
+        this.body = Compression.isCompressed(header) ? Compression.inflate(header, dtype, body) : body;
+    }
+
+    public int getKind() {
+        return kind;
+    }
+
+    public int getDtype() {
+        return dtype;
+    }
+
+    public Map<String, String> getHeader() {
+        return header;
+    }
+
+    public ByteBuffer getBody() {
+        return body.duplicate().order(body.order());
+    }
+
+    /**
+     * Número de elementos del cuerpo según su dtype.
+     */
+    public int count() {
+        if (dtype == BinaryCodec.DTYPE_INT32) {
+            return body.remaining() / Integer.BYTES;
+        }
+        Precision precision = Precision.ofDtype(dtype);
+        return precision == null ? 0 : body.remaining() / precision.width();
+    }
+
+    /**
+     * Elemento i del cuerpo como double (los INT32, FLOAT32 y BFLOAT16 se amplían), sin
+     * decodificar el resto.
+     */
+    public double getDouble(int i) {
+        switch (dtype) {
+            case BinaryCodec.DTYPE_INT32:   return body.getInt(body.position() + i * Integer.BYTES);
+            case BinaryCodec.DTYPE_FLOAT64: return body.getDouble(body.position() + i * Double.BYTES);
+            default:                        return Precision.ofDtype(dtype).decode(body, i);
+        }
+    }
+
+    /**
+     * Elemento i de un cuerpo INT32, sin decodificar el resto.
+     *
+     * @throws IllegalStateException Si el cuerpo no es INT32.
+     */
+    public int getInt(int i) {
+        if (dtype != BinaryCodec.DTYPE_INT32) {
+            throw new IllegalStateException("El cuerpo de la trama no es INT32 (dtype=" + dtype + ")");
+        }
+        return body.getInt(body.position() + i * Integer.BYTES);
+    }
+
+    /**
+     * Decodifica el cuerpo como double[] (los cuerpos INT32, FLOAT32 y BFLOAT16 se amplían a double).
+     */
+    public double[] toDoubleArray() {
+        double[] out = new double[count()];
+        copyInto(out, 0);
+        return out;
+    }
+
+    /**
+     * Decodifica el cuerpo como int[].
+     *
+     * @throws IllegalStateException Si el cuerpo no es INT32.
+     */
+    public int[] toIntArray() {
+        int[] out = new int[count()];
+        copyInto(out, 0);
+        return out;
+    }
+
+    /**
+     * Copia un cuerpo INT32 directamente en dest a partir de offset, sin arrays intermedios.
+     *
+     * @throws IllegalStateException Si el cuerpo no es INT32.
+     */
+    public void copyInto(int[] dest, int offset) {
+        if (dtype != BinaryCodec.DTYPE_INT32) {
+            throw new IllegalStateException("El cuerpo de la trama no es INT32 (dtype=" + dtype + ")");
+        }
+        getBody().asIntBuffer().get(dest, offset, count());
+    }
+
+    /**
+     * Copia el cuerpo directamente en dest a partir de offset, sin arrays intermedios.
+     *
+     * @param dest   Array destino.
+     * @param offset Posición inicial en el destino.
+     */
+    public void copyInto(double[] dest, int offset) {
+        if (dtype == BinaryCodec.DTYPE_FLOAT64) {
+            getBody().asDoubleBuffer().get(dest, offset, count());
+        } else if (dtype == BinaryCodec.DTYPE_INT32) {
+            ByteBuffer b = getBody();
+            int n = count();
+            for (int i = 0; i < n; i++) {
+                dest[offset + i] = b.getInt();
+            }
+        } else if (Precision.ofDtype(dtype) != null) {
+            Precision precision = Precision.ofDtype(dtype);
+            int n = count();
+            for (int i = 0; i < n; i++) {
+                dest[offset + i] = precision.decode(body, i);
+            }
+        }
+    }
+}
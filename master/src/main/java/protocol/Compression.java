@@ -0,0 +1,336 @@
+package protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Compression: Codificación comprimida y sin pérdidas de los cuerpos de las tramas TASK y
+ * RESULT (ver shared/communication_protocol.md). Los datos tipo sensor cambian poco de un
+ * elemento al siguiente y ahí se comprimen varias veces:
+ *
+ * - "xor" (FLOAT64, como Gorilla): cada double se guarda como el XOR de sus bits con los del
+ *   anterior; un XOR cero ocupa un bit y el resto sólo sus bits significativos, reutilizando
+ *   la ventana de ceros del anterior cuando cabe.
+ * - "delta" (INT32): diferencia con el anterior (con desbordamiento de int), zigzag y varint
+ *   de 7 bits por byte.
+ *
+ * Una trama comprimida lleva en la cabecera "codec" y "count" (número de elementos); su dtype
+ * sigue siendo el de los datos. Los codecs se acuerdan por conexión en el INIT y sólo se usan
+ * con fragmentos de al menos MIN_ELEMENTS elementos y cuando el cuerpo comprimido ocupa como
+ * mucho 7/8 del original: si no, la trama viaja sin comprimir. El worker Python implementa
+ * los mismos formatos en compression.py.
+ */
+public final class Compression {
+
+    /** Codec de cuerpos FLOAT64. */
+    public static final String XOR = "xor";
+    /** Codec de cuerpos INT32. */
+    public static final String DELTA = "delta";
+
+    /** Elementos por debajo de los cuales no se comprime; configurable con -Ddarraylib.compression.min=N. */
+    public static final int MIN_ELEMENTS = Math.max(1, Integer.getInteger("darraylib.compression.min", 4096));
+
+    static final String CODEC_FIELD = "codec";
+    static final String COUNT_FIELD = "count";
+
+    private Compression() {
+        throw new UnsupportedOperationException("Compression es una clase de utilidades y no debe ser instanciada.");
+    }
+
+    /**
+     * Codec de un dtype (XOR para FLOAT64, DELTA para INT32), o null si no tiene.
+     */
+    public static String codecFor(int dtype) {
+        switch (dtype) {
+            case BinaryCodec.DTYPE_FLOAT64: return XOR;
+            case BinaryCodec.DTYPE_INT32:   return DELTA;
+            default:                        return null;
+        }
+    }
+
+    /**
+     * Comprime values (desde su posición hasta su límite) si son al menos MIN_ELEMENTS y el
+     * resultado compensa; en ese caso anota "codec" y "count" en header.
+     *
+     * @return Cuerpo comprimido, o null si la trama debe viajar sin comprimir.
+     */
+    public static ByteBuffer compress(DoubleBuffer values, Map<String, Object> header) {
+        int count = values.remaining();
+        if (count < MIN_ELEMENTS) {
+            return null;
+        }
+        byte[] body = encodeDoubles(values, budget(count, Double.BYTES));
+        return annotate(body, XOR, count, header);
+    }
+
+    /**
+     * Versión INT32 de compress(DoubleBuffer, Map).
+     */
+    public static ByteBuffer compress(IntBuffer values, Map<String, Object> header) {
+        int count = values.remaining();
+        if (count < MIN_ELEMENTS) {
+            return null;
+        }
+        byte[] body = encodeInts(values, budget(count, Integer.BYTES));
+        return annotate(body, DELTA, count, header);
+    }
+
+    private static int budget(int count, int width) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) count * width * 7 / 8);
+    }
+
+    private static ByteBuffer annotate(byte[] body, String codec, int count, Map<String, Object> header) {
+        if (body == null) {
+            return null;
+        }
+        header.put(CODEC_FIELD, codec);
+        header.put(COUNT_FIELD, count);
+        return ByteBuffer.wrap(body);
+    }
+
+    /**
+     * Indica si la cabecera de una trama recibida anuncia un cuerpo comprimido.
+     */
+    public static boolean isCompressed(Map<String, String> header) {
+        return header.containsKey(CODEC_FIELD);
+    }
+
+    /**
+     * Descomprime el cuerpo de una trama a su forma cruda little-endian.
+     *
+     * @throws IllegalArgumentException Si el codec no corresponde al dtype o el cuerpo no es válido.
+     */
+    public static ByteBuffer inflate(Map<String, String> header, int dtype, ByteBuffer body) {
+        String codec = header.get(CODEC_FIELD);
+        int count;
+        try {
+            count = Integer.parseInt(header.get(COUNT_FIELD));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Trama comprimida sin \"count\" válido: " + header.get(COUNT_FIELD));
+        }
+        if (count < 0 || !codec.equals(codecFor(dtype))) {
+            throw new IllegalArgumentException("Codec " + codec + " inválido para dtype " + dtype + " y " + count + " elementos");
+        }
+        ByteBuffer in = body.duplicate();
+        try {
+            if (dtype == BinaryCodec.DTYPE_FLOAT64) {
+                ByteBuffer out = ByteBuffer.allocate(count * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                decodeDoubles(in, count, out.asDoubleBuffer());
+                return out;
+            }
+            ByteBuffer out = ByteBuffer.allocate(count * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            decodeInts(in, count, out.asIntBuffer());
+            return out;
+        } catch (java.nio.BufferUnderflowException e) {
+            throw new IllegalArgumentException("Cuerpo " + codec + " truncado: faltan datos para " + count + " elementos");
+        }
+    }
+
+    // --- xor (FLOAT64) ---
+
+    /**
+     * Codifica values con "xor".
+     *
+     * @param limit Bytes máximos del resultado.
+     * @return Cuerpo codificado, o null si no cabe en limit.
+     */
+    static byte[] encodeDoubles(DoubleBuffer values, int limit) {
+        int count = values.remaining();
+        int base = values.position();
+        BitWriter out = new BitWriter(Math.min(limit, count * 10 + 16) + 8);
+        if (count == 0) {
+            return new byte[0];
+        }
+        long previous = Double.doubleToRawLongBits(values.get(base));
+        out.write(previous >>> 32, 32);
+        out.write(previous, 32);
+        int windowLead = -1;
+        int windowTrail = 0;
+        for (int i = 1; i < count; i++) {
+            long bits = Double.doubleToRawLongBits(values.get(base + i));
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                out.write(0, 1);
+            } else {
+                int lead = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                int trail = Long.numberOfTrailingZeros(xor);
+                if (windowLead >= 0 && lead >= windowLead && trail >= windowTrail) {
+                    // Cabe en la ventana del anterior: "10" + bits de la ventana
+                    out.write(0b10, 2);
+                    out.writeLong(xor >>> windowTrail, 64 - windowLead - windowTrail);
+                } else {
+                    // Ventana nueva: "11" + ceros a la izquierda (5 bits) + longitud - 1 (6 bits) + bits
+                    int length = 64 - lead - trail;
+                    out.write(0b11, 2);
+                    out.write(lead, 5);
+                    out.write(length - 1, 6);
+                    out.writeLong(xor >>> trail, length);
+                    windowLead = lead;
+                    windowTrail = trail;
+                }
+            }
+            if (out.size() > limit) {
+                return null;
+            }
+        }
+        byte[] body = out.toByteArray();
+        return body.length > limit ? null : body;
+    }
+
+    static void decodeDoubles(ByteBuffer in, int count, DoubleBuffer out) {
+        if (count == 0) {
+            return;
+        }
+        BitReader bits = new BitReader(in);
+        long previous = bits.readLong(64);
+        out.put(Double.longBitsToDouble(previous));
+        int windowLead = 0;
+        int windowTrail = 0;
+        for (int i = 1; i < count; i++) {
+            if (bits.read(1) != 0) {
+                if (bits.read(1) != 0) {
+                    windowLead = (int) bits.read(5);
+                    int length = (int) bits.read(6) + 1;
+                    windowTrail = 64 - windowLead - length;
+                    if (windowTrail < 0) {
+                        throw new IllegalArgumentException("Cuerpo xor inválido en el elemento " + i);
+                    }
+                }
+                previous ^= bits.readLong(64 - windowLead - windowTrail) << windowTrail;
+            }
+            out.put(Double.longBitsToDouble(previous));
+        }
+    }
+
+    // --- delta (INT32) ---
+
+    /**
+     * Codifica values con "delta".
+     *
+     * @param limit Bytes máximos del resultado.
+     * @return Cuerpo codificado, o null si no cabe en limit.
+     */
+    static byte[] encodeInts(IntBuffer values, int limit) {
+        int count = values.remaining();
+        int base = values.position();
+        byte[] out = new byte[Math.min(limit, count * 5) + 5];
+        int pos = 0;
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            int value = values.get(base + i);
+            int delta = value - previous;
+            previous = value;
+            int zigzag = (delta << 1) ^ (delta >> 31);
+            while ((zigzag & ~0x7F) != 0) {
+                out[pos++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            out[pos++] = (byte) zigzag;
+            if (pos > limit) {
+                return null;
+            }
+        }
+        return Arrays.copyOf(out, pos);
+    }
+
+    static void decodeInts(ByteBuffer in, int count, IntBuffer out) {
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            int zigzag = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (shift > 28) {
+                    throw new IllegalArgumentException("Cuerpo delta inválido en el elemento " + i);
+                }
+                int b = in.get();
+                zigzag |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+            }
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            out.put(previous);
+        }
+    }
+
+    // --- Bits, del más significativo al menos significativo de cada byte ---
+
+    private static final class BitWriter {
+        private byte[] buffer;
+        private int pos;
+        private long acc;
+        private int pending;
+
+        BitWriter(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        /** Escribe los n (≤ 32) bits bajos de value. */
+        void write(long value, int n) {
+            acc = (acc << n) | (value & ((1L << n) - 1));
+            pending += n;
+            while (pending >= 8) {
+                if (pos == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                pending -= 8;
+                buffer[pos++] = (byte) (acc >>> pending);
+            }
+        }
+
+        /** Escribe los n (≤ 64) bits bajos de value. */
+        void writeLong(long value, int n) {
+            if (n > 32) {
+                write(value >>> 32, n - 32);
+                write(value, 32);
+            } else {
+                write(value, n);
+            }
+        }
+
+        /** Bytes completos escritos hasta ahora. */
+        int size() {
+            return pos;
+        }
+
+        byte[] toByteArray() {
+            if (pending > 0) {
+                write(0, 8 - pending);
+            }
+            return Arrays.copyOf(buffer, pos);
+        }
+    }
+
+    private static final class BitReader {
+        private final ByteBuffer in;
+        private long acc;
+        private int available;
+
+        BitReader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        /** Lee n (≤ 32) bits. */
+        long read(int n) {
+            while (available < n) {
+                acc = (acc << 8) | (in.get() & 0xFF);
+                available += 8;
+            }
+            available -= n;
+            return (acc >>> available) & ((1L << n) - 1);
+        }
+
+        /** Lee n (≤ 64) bits. */
+        long readLong(int n) {
+            if (n > 32) {
+                long high = read(n - 32);
+                return (high << 32) | read(32);
+            }
+            return read(n);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MessageDecoder: Decodificador incremental de la secuencia de mensajes de una conexión.
+ *
+ * Recibe los bytes en el orden en que llegan del socket (en trozos de cualquier tamaño) y
+ * entrega mensajes completos: tramas binarias como BinaryFrame y líneas JSON como
+ * Map&lt;String, String&gt; (el mismo formato que ProtocolHandler.fromJson).
+ */
+public class MessageDecoder {
+
+    /**
+     * Receptor de los mensajes completos.
+     */
+    public interface Listener {
+        /**
+         * @param message BinaryFrame o Map&lt;String, String&gt;.
+         */
+        void onMessage(Object message) throws IOException;
+    }
+
+    private static final int START = 0;
+    private static final int JSON_LINE = 1;
+    private static final int PREFIX = 2;
+    private static final int HEADER = 3;
+    private static final int BODY = 4;
+
+    private int state = START;
+
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+    private final ByteBuffer prefix = ByteBuffer.allocate(BinaryCodec.PREFIX_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private int kind;
+    private int dtype;
+    private ByteBuffer header;
+    private ByteBuffer body;
+
+    /**
+     * Consume todos los bytes disponibles en in y notifica cada mensaje completo.
+     *
+     * @param in       Bytes recibidos (se consumen por completo).
+     * @param listener Receptor de mensajes.
+     * @throws IOException Si la secuencia de bytes no es un mensaje válido.
+     */
+    public void feed(ByteBuffer in, Listener listener) throws IOException {
+        while (in.hasRemaining()) {
+            switch (state) {
+                case START:
+                    int first = in.get(in.position()) & 0xFF;
+                    if (BinaryCodec.isBinaryFrame(first)) {
+                        prefix.clear();
+                        state = PREFIX;
+                    } else {
+                        line.reset();
+                        state = JSON_LINE;
+                    }
+                    break;
+
+                case JSON_LINE:
+                    readLine(in, listener);
+                    break;
+
+                case PREFIX:
+                    copy(in, prefix);
+                    if (!prefix.hasRemaining()) {
+                        startFrame();
+                    }
+                    break;
+
+                case HEADER:
+                    copy(in, header);
+                    if (!header.hasRemaining()) {
+                        state = BODY;
+                        finishIfComplete(listener);
+                    }
+                    break;
+
+                case BODY:
+                    copy(in, body);
+                    finishIfComplete(listener);
+                    break;
+
+                default:
+                    throw new IllegalStateException("Estado desconocido " + state);
+            }
+        }
+        // Una trama sin cabecera ni cuerpo se completa sin necesitar más bytes.
+        if (state == HEADER && !header.hasRemaining()) {
+            state = BODY;
+            finishIfComplete(listener);
+        }
+    }
+
+    private void readLine(ByteBuffer in, Listener listener) throws IOException {
+        while (in.hasRemaining()) {
+            byte b = in.get();
+            if (b == '\n') {
+                state = START;
+                String json = new String(line.toByteArray(), StandardCharsets.UTF_8).trim();
+                if (!json.isEmpty()) {
+                    try {
+                        listener.onMessage(ProtocolHandler.fromJson(json));
+                    } catch (RuntimeException e) {
+                        throw new IOException("Línea JSON inválida: " + json, e);
+                    }
+                }
+                return;
+            }
+            line.write(b);
+        }
+    }
+
+    private void startFrame() throws IOException {
+        prefix.flip();
+        int magic = prefix.get() & 0xFF;
+        int version = prefix.get() & 0xFF;
+        kind = prefix.get() & 0xFF;
+        dtype = prefix.get() & 0xFF;
+        int headerLength = prefix.getInt();
+        int bodyLength = prefix.getInt();
+
+        if (magic != BinaryCodec.MAGIC || version != BinaryCodec.VERSION) {
+            throw new IOException("Trama inválida (magic=0x" + Integer.toHexString(magic) + ", versión=" + version + ")");
+        }
+        if (headerLength < 0 || bodyLength < 0) {
+            throw new IOException("Longitudes de trama inválidas");
+        }
+        header = ByteBuffer.allocate(headerLength);
+        body = ByteBuffer.allocate(bodyLength).order(ByteOrder.LITTLE_ENDIAN);
+        state = HEADER;
+    }
+
+    private void finishIfComplete(Listener listener) throws IOException {
+        if (body.hasRemaining()) {
+            return;
+        }
+        state = START;
+        Map<String, String> fields = header.capacity() == 0
+                ? new HashMap<>()
+                : ProtocolHandler.fromJson(new String(header.array(), StandardCharsets.UTF_8));
+        body.flip();
+        BinaryFrame frame;
+        try {
+            frame = new BinaryFrame(kind, dtype, fields, body);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Trama comprimida inválida: " + e.getMessage(), e);
+        }
+        header = null;
+        body = null;
+        listener.onMessage(frame);
+    }
+
+    private static void copy(ByteBuffer src, ByteBuffer dst) {
+        int n = Math.min(src.remaining(), dst.remaining());
+        if (n == 0) {
+            return;
+        }
+        ByteBuffer part = src.duplicate();
+        part.limit(part.position() + n);
+        dst.put(part);
+        src.position(src.position() + n);
+    }
+}
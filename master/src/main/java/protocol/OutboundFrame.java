@@ -0,0 +1,164 @@
+package protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * OutboundFrame: Mensaje pendiente de envío que se codifica por partes.
+ *
+ * El transporte no bloqueante llama a fill() cada vez que el socket admite más bytes, así
+ * un fragmento grande se codifica directamente desde el array de origen al buffer de
+ * escritura en bloques, sin reservar nunca una copia completa del mensaje.
+ */
+public class OutboundFrame {
+
+    private final byte[] head;
+    private final long size;
+    private int headPos;
+
+    OutboundFrame(byte[] head, long bodyBytes) {
+        this.head = head;
+        this.size = head.length + bodyBytes;
+    }
+
+    /**
+     * Copia en dst tantos bytes pendientes como quepan.
+     *
+     * @param dst Buffer de escritura.
+     * @return true cuando el mensaje ya se copió por completo.
+     */
+    public boolean fill(ByteBuffer dst) {
+        int n = Math.min(head.length - headPos, dst.remaining());
+        dst.put(head, headPos, n);
+        headPos += n;
+        return headPos == head.length && fillBody(dst);
+    }
+
+    /**
+     * Copia la parte pendiente del cuerpo; el mensaje base no tiene cuerpo.
+     */
+    boolean fillBody(ByteBuffer dst) {
+        return true;
+    }
+
+    /**
+     * Tamaño total del mensaje en bytes (para el control de contrapresión).
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Mensaje JSON terminado en '\n'.
+     */
+    public static OutboundFrame jsonLine(String json) {
+        return new OutboundFrame((json + "\n").getBytes(StandardCharsets.UTF_8), 0);
+    }
+
+    /**
+     * Trama binaria sin cuerpo.
+     */
+    public static OutboundFrame frame(int kind, Map<String, Object> header) {
+        return new OutboundFrame(BinaryCodec.encodeHead(kind, BinaryCodec.DTYPE_NONE, header, 0), 0);
+    }
+
+    /**
+     * Trama binaria con cuerpo double[] tomado del rango [offset, offset + length).
+     */
+    public static OutboundFrame frame(int kind, Map<String, Object> header, double[] data, int offset, int length) {
+        long bodyBytes = (long) length * Double.BYTES;
+        return new Doubles(BinaryCodec.encodeHead(kind, BinaryCodec.DTYPE_FLOAT64, header, bodyBytes),
+                           bodyBytes, data, offset, length);
+    }
+
+    /**
+     * Trama binaria con cuerpo int[] tomado del rango [offset, offset + length).
+     */
+    public static OutboundFrame frame(int kind, Map<String, Object> header, int[] data, int offset, int length) {
+        long bodyBytes = (long) length * Integer.BYTES;
+        return new Ints(BinaryCodec.encodeHead(kind, BinaryCodec.DTYPE_INT32, header, bodyBytes),
+                        bodyBytes, data, offset, length);
+    }
+
+    /**
+     * Trama binaria cuyo cuerpo son los bytes little-endian restantes de body (por ejemplo,
+     * una vista de un almacén fuera del heap); se copian tal cual, sin pasar por un array.
+     *
+     * @param dtype Tipo de los elementos del cuerpo.
+     */
+    public static OutboundFrame frame(int kind, Map<String, Object> header, int dtype, ByteBuffer body) {
+        ByteBuffer src = body.duplicate();
+        return new Bytes(BinaryCodec.encodeHead(kind, dtype, header, src.remaining()), src);
+    }
+
+    private static final class Bytes extends OutboundFrame {
+        private final ByteBuffer body;
+
+        Bytes(byte[] head, ByteBuffer body) {
+            super(head, body.remaining());
+            this.body = body;
+        }
+
+        @Override
+        boolean fillBody(ByteBuffer dst) {
+            int n = Math.min(dst.remaining(), body.remaining());
+            if (n > 0) {
+                int limit = body.limit();
+                body.limit(body.position() + n);
+                dst.put(body);
+                body.limit(limit);
+            }
+            return !body.hasRemaining();
+        }
+    }
+
+    private static final class Doubles extends OutboundFrame {
+        private final double[] data;
+        private final int end;
+        private int next;
+
+        Doubles(byte[] head, long bodyBytes, double[] data, int offset, int length) {
+            super(head, bodyBytes);
+            this.data = data;
+            this.next = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        boolean fillBody(ByteBuffer dst) {
+            int n = Math.min(dst.remaining() / Double.BYTES, end - next);
+            if (n > 0) {
+                dst.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().put(data, next, n);
+                dst.position(dst.position() + n * Double.BYTES);
+                next += n;
+            }
+            return next == end;
+        }
+    }
+
+    private static final class Ints extends OutboundFrame {
+        private final int[] data;
+        private final int end;
+        private int next;
+
+        Ints(byte[] head, long bodyBytes, int[] data, int offset, int length) {
+            super(head, bodyBytes);
+            this.data = data;
+            this.next = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        boolean fillBody(ByteBuffer dst) {
+            int n = Math.min(dst.remaining() / Integer.BYTES, end - next);
+            if (n > 0) {
+                dst.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(data, next, n);
+                dst.position(dst.position() + n * Integer.BYTES);
+                next += n;
+            }
+            return next == end;
+        }
+    }
+}
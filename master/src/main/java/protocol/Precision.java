@@ -0,0 +1,138 @@
+package protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+
+/**
+ * Precision: Precisión con la que viajan los datos double de una tarea y su resultado.
+ *
+ * FLOAT64 (por defecto) es exacta. FLOAT32 y BFLOAT16 reducen a la mitad y a la cuarta
+ * parte los bytes de cada cuerpo a cambio de redondear cada elemento (al float más cercano,
+ * y en BFLOAT16 además a sus 8 bits de mantisa, con empate a par); el maestro los amplía de
+ * nuevo a double al guardarlos. Para trabajos que toleran error, como los que alimentan
+ * visualizaciones (ver MasterServer.setTransportPrecision()).
+ */
+public enum Precision {
+
+    FLOAT64("float64", BinaryCodec.DTYPE_FLOAT64, Double.BYTES),
+    FLOAT32("float32", BinaryCodec.DTYPE_FLOAT32, Float.BYTES),
+    BFLOAT16("bfloat16", BinaryCodec.DTYPE_BFLOAT16, 2);
+
+    private final String wireName;
+    private final int dtype;
+    private final int width;
+
+    Precision(String wireName, int dtype, int width) {
+        this.wireName = wireName;
+        this.dtype = dtype;
+        this.width = width;
+    }
+
+    public String wireName() {
+        return wireName;
+    }
+
+    /** dtype de las tramas con esta precisión (ver BinaryCodec.DTYPE_*). */
+    public int dtype() {
+        return dtype;
+    }
+
+    /** Bytes por elemento en el cuerpo. */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * Precisión de un dtype de coma flotante, o null si no lo es.
+     */
+    public static Precision ofDtype(int dtype) {
+        for (Precision p : values()) {
+            if (p.dtype == dtype) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Valor que queda de v tras viajar con esta precisión.
+     */
+    public double round(double v) {
+        switch (this) {
+            case FLOAT32:  return (float) v;
+            case BFLOAT16: return Float.intBitsToFloat(toBfloat16((float) v) << 16);
+            default:       return v;
+        }
+    }
+
+    /**
+     * Distancia entre v y el siguiente valor representable con esta precisión.
+     */
+    public double ulp(double v) {
+        switch (this) {
+            case FLOAT32:  return Math.ulp((float) v);
+            case BFLOAT16: return Math.ulp((float) v) * (1 << 16);
+            default:       return Math.ulp(v);
+        }
+    }
+
+    /**
+     * Escribe values (desde su posición hasta su límite) en out con esta precisión, en el
+     * orden de bytes de out.
+     *
+     * @return Error absoluto máximo del redondeo (0 si ningún elemento cambió; los valores no
+     *         finitos no cuentan).
+     */
+    public double encode(DoubleBuffer values, ByteBuffer out) {
+        double maxError = 0;
+        int base = values.position();
+        int count = values.remaining();
+        for (int i = 0; i < count; i++) {
+            double v = values.get(base + i);
+            switch (this) {
+                case FLOAT32:
+                    out.putFloat((float) v);
+                    break;
+                case BFLOAT16:
+                    out.putShort((short) toBfloat16((float) v));
+                    break;
+                default:
+                    out.putDouble(v);
+                    break;
+            }
+            maxError = Math.max(maxError, error(v, round(v)));
+        }
+        return maxError;
+    }
+
+    /**
+     * Elemento i de un cuerpo con esta precisión, ampliado a double.
+     */
+    public double decode(ByteBuffer body, int i) {
+        switch (this) {
+            case FLOAT32:  return body.getFloat(body.position() + i * Float.BYTES);
+            case BFLOAT16: return Float.intBitsToFloat((body.getShort(body.position() + i * 2) & 0xFFFF) << 16);
+            default:       return body.getDouble(body.position() + i * Double.BYTES);
+        }
+    }
+
+    /**
+     * Diferencia absoluta entre un valor y su redondeo; 0 si alguno no es finito (un
+     * desbordamiento a infinito o un NaN no tienen un error medible).
+     */
+    public static double error(double exact, double rounded) {
+        double e = Math.abs(exact - rounded);
+        return Double.isFinite(e) ? e : 0;
+    }
+
+    /**
+     * 16 bits altos de f redondeados al más cercano con empate a par; los NaN quedan NaN.
+     */
+    private static int toBfloat16(float f) {
+        int bits = Float.floatToRawIntBits(f);
+        if ((bits & 0x7FFFFFFF) > 0x7F800000) {
+            return (bits >>> 16) | 0x0040;
+        }
+        return (bits + 0x7FFF + ((bits >>> 16) & 1)) >>> 16;
+    }
+}
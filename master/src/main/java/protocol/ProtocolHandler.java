@@ -1,6 +1,11 @@
 package protocol;
 
 import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -9,6 +14,11 @@ import java.util.Map;
  */
 public class ProtocolHandler {
 
+    /** Codificación de texto JSON, siempre disponible como respaldo. */
+    public static final String ENCODING_JSON = "json";
+    /** Codificación binaria con prefijo de longitud (ver BinaryCodec). */
+    public static final String ENCODING_BINARY = "binary";
+
     /**
      * Convierte un mapa en una cadena JSON simple.
      *
@@ -25,13 +35,15 @@ public class ProtocolHandler {
             Object value = entry.getValue();
 
             if (value instanceof String) {
-                sb.append("\"").append(value).append("\"");
+                sb.append(JSONObject.quote((String) value));
             } else if (value instanceof Number) {
                 sb.append(value);
             } else if (value instanceof double[]) {
                 sb.append(arrayToJson((double[]) value));
             } else if (value instanceof int[]) {
                 sb.append(arrayToJson((int[]) value));
+            } else if (value instanceof String[]) {
+                sb.append(arrayToJson((String[]) value));
             } else if (value instanceof Map) {
                 sb.append(toJson((Map<String, Object>) value));
             } else {
@@ -65,6 +77,16 @@ public class ProtocolHandler {
         return sb.toString();
     }
 
+    private static String arrayToJson(String[] array) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < array.length; i++) {
+            sb.append(JSONObject.quote(array[i]));
+            if (i < array.length - 1) sb.append(",");
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+
     public static Map<String, String> fromJson(String json) {
         // Parseamos el texto JSON a un objeto org.json.JSONObject
         JSONObject obj = new JSONObject(json);
@@ -84,6 +106,128 @@ public class ProtocolHandler {
     }
     
 
+    /**
+     * Lee una línea JSON terminada en '\n' directamente de un flujo de bytes, para poder
+     * alternar líneas JSON y tramas binarias sobre la misma conexión.
+     *
+     * @param in Flujo de entrada.
+     * @return La línea sin el salto final, o null si el flujo terminó.
+     */
+    public static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                return line.toString(StandardCharsets.UTF_8.name());
+            }
+            line.write(b);
+        }
+        return line.size() == 0 ? null : line.toString(StandardCharsets.UTF_8.name());
+    }
+
+    /**
+     * Parsea la representación JSON de un array ("[1.0,2.0]") a double[].
+     *
+     * @param arrayStr Texto del array.
+     * @return Array decodificado (vacío si el texto es nulo o vacío).
+     */
+    public static double[] parseDoubleArray(String arrayStr) {
+        String s = (arrayStr == null ? "" : arrayStr.trim());
+        if (s.startsWith("[")) s = s.substring(1);
+        if (s.endsWith("]"))   s = s.substring(0, s.length() - 1);
+
+        if (s.isEmpty()) return new double[0];
+
+        String[] parts = s.split(",");
+        double[] res = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            res[i] = Double.parseDouble(parts[i].trim());
+        }
+        return res;
+    }
+
+    /**
+     * Parsea la representación JSON de un array ("[1,2]") a int[].
+     *
+     * @param arrayStr Texto del array.
+     * @return Array decodificado (vacío si el texto es nulo o vacío).
+     */
+    public static int[] parseIntArray(String arrayStr) {
+        String s = (arrayStr == null ? "" : arrayStr.trim());
+        if (s.startsWith("[")) s = s.substring(1);
+        if (s.endsWith("]"))   s = s.substring(0, s.length() - 1);
+
+        if (s.isEmpty()) return new int[0];
+
+        String[] parts = s.split(",");
+        int[] res = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            res[i] = Integer.parseInt(parts[i].trim());
+        }
+        return res;
+    }
+
+    /**
+     * Mensaje de apertura del handshake: el maestro anuncia las codificaciones que soporta
+     * y el worker responde con su INIT (capabilities) indicando la codificación elegida.
+     *
+     * @param encodings Codificaciones soportadas en orden de preferencia.
+     */
+    public static Map<String, Object> createInitMessage(String... encodings) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", "init");
+        message.put("encodings", encodings);
+        return message;
+    }
+
+    /**
+     * Como createInitMessage(String...), ofreciendo además los codecs de compresión del
+     * maestro (campo "compression", ver Compression); sin codecs el campo no se envía.
+     */
+    public static Map<String, Object> createInitMessage(String[] codecs, String... encodings) {
+        Map<String, Object> message = createInitMessage(encodings);
+        if (codecs.length > 0) {
+            message.put("compression", codecs);
+        }
+        return message;
+    }
+
+    /**
+     * Extrae la codificación acordada de la respuesta INIT del worker.
+     * Si el worker no conoce el handshake (respuesta de error o sin campo) se usa JSON.
+     *
+     * @param reply Respuesta del worker ya parseada.
+     * @return ENCODING_BINARY o ENCODING_JSON.
+     */
+    public static String negotiatedEncoding(Map<String, String> reply) {
+        if (reply == null || !"INIT".equalsIgnoreCase(reply.get("type"))) {
+            return ENCODING_JSON;
+        }
+        return ENCODING_BINARY.equals(reply.get("encoding")) ? ENCODING_BINARY : ENCODING_JSON;
+    }
+
+    /**
+     * Cabecera de una trama TASK binaria (los datos viajan en el cuerpo).
+     */
+    public static Map<String, Object> createTaskHeader(String taskId, String operation) {
+        Map<String, Object> header = new HashMap<>();
+        header.put("type", "task");
+        header.put("task_id", taskId);
+        header.put("operation", operation);
+        return header;
+    }
+
+    /**
+     * Cabecera de una trama RESULT binaria (los datos viajan en el cuerpo).
+     */
+    public static Map<String, Object> createResultHeader(String taskId, String workerId) {
+        Map<String, Object> header = new HashMap<>();
+        header.put("type", "result");
+        header.put("task_id", taskId);
+        header.put("worker_id", workerId);
+        return header;
+    }
+
     public static Map<String, Object> createTaskMessage(String taskId, double[] data, String operation, String sendResultTo) {
         Map<String, Object> message = new HashMap<>();
         message.put("type", "task");
@@ -0,0 +1,161 @@
+package ops;
+
+import handler.Operation;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * VectorKernels: Núcleos SIMD (Vector API) de las operaciones de handler.Operation. Cada uno
+ * recorre el tramo de SPECIES_PREFERRED en SPECIES_PREFERRED carriles y termina la cola con
+ * una máscara, sin bucle escalar aparte.
+ *
+ * En enteros se mantiene la regla de CompiledOperation (calcular en double y convertir con
+ * (int)): las operaciones aritméticas lo hacen directamente con IntVector saturando igual
+ * que la conversión, y el resto amplía los carriles a double (I2D), calcula y los vuelve a
+ * convertir (D2I, que trunca y satura como el (int) de Java).
+ *
+ * Sólo se compila con el perfil "vector" del pom y la carga Kernels por reflexión.
+ */
+final class VectorKernels {
+
+    private static final VectorSpecies<Double> D = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> I = IntVector.SPECIES_PREFERRED;
+
+    private static final int MAX_HALF = Integer.MAX_VALUE / 2;
+    private static final int MIN_HALF = Integer.MIN_VALUE / 2;
+    private static final int MAX_SQUARE_ROOT = 46340;   // 46340² ≤ Integer.MAX_VALUE < 46341²
+
+    /** Cálculo de la operación sobre los carriles de un vector. */
+    private interface Lanes {
+        DoubleVector apply(DoubleVector x);
+    }
+
+    private interface IntLanes {
+        IntVector apply(IntVector x);
+    }
+
+    private VectorKernels() {
+        throw new UnsupportedOperationException("VectorKernels es una clase de utilidades y no debe ser instanciada.");
+    }
+
+    /**
+     * Núcleo de cada operación del catálogo por su texto normalizado (ver Kernels.normalize());
+     * vacío si la máquina no tiene registros vectoriales de al menos dos double.
+     */
+    public static Map<String, BulkKernel> catalog() {
+        Map<String, BulkKernel> kernels = new HashMap<>();
+        if (D.length() < 2) {
+            return kernels;
+        }
+        put(kernels, Operation.IDENTITY, x -> x, x -> x);
+        put(kernels, Operation.ADD_ONE, x -> x.add(1.0), x -> x.min(Integer.MAX_VALUE - 1).add(1));
+        put(kernels, Operation.SUBTRACT_ONE, x -> x.sub(1.0), x -> x.max(Integer.MIN_VALUE + 1).sub(1));
+        put(kernels, Operation.MULTIPLY_TWO, x -> x.mul(2.0), x -> {
+            IntVector clamped = x.max(MIN_HALF).min(MAX_HALF);
+            return clamped.add(clamped).blend(Integer.MAX_VALUE, x.compare(VectorOperators.GT, MAX_HALF));
+        });
+        put(kernels, Operation.SQUARE, x -> x.mul(x), x -> x.mul(x).blend(Integer.MAX_VALUE,
+            x.compare(VectorOperators.GT, MAX_SQUARE_ROOT).or(x.compare(VectorOperators.LT, -MAX_SQUARE_ROOT))));
+        put(kernels, Operation.SQRT, x -> x.abs().sqrt(), null);
+        put(kernels, Operation.SIN, x -> x.lanewise(VectorOperators.SIN), null);
+        put(kernels, Operation.COS, x -> x.lanewise(VectorOperators.COS), null);
+        put(kernels, Operation.TAN, x -> x.lanewise(VectorOperators.TAN), null);
+        put(kernels, Operation.SIN_PLUS_COS,
+            x -> x.lanewise(VectorOperators.SIN).add(x.lanewise(VectorOperators.COS)), null);
+        put(kernels, Operation.SIN_SQUARE_PLUS_COS_SQUARE, x -> {
+            DoubleVector sin = x.lanewise(VectorOperators.SIN);
+            DoubleVector cos = x.lanewise(VectorOperators.COS);
+            return sin.mul(sin).add(cos.mul(cos));
+        }, null);
+        put(kernels, Operation.SIN_PLUS_COS_SQUARE_DIV_SQRT, x -> {
+            DoubleVector sum = x.lanewise(VectorOperators.SIN).add(x.lanewise(VectorOperators.COS));
+            return sum.mul(sum).div(x.abs().sqrt().add(1.0));
+        }, null);
+        put(kernels, Operation.EXPONENTIAL, x -> x.lanewise(VectorOperators.EXP), null);
+        put(kernels, Operation.LOG_NATURAL, x -> x.lanewise(VectorOperators.LOG), null);
+        return kernels;
+    }
+
+    /**
+     * @param intLanes Versión entera directa; null para ampliar a double y convertir.
+     */
+    private static void put(Map<String, BulkKernel> kernels, String expression, Lanes lanes, IntLanes intLanes) {
+        kernels.put(Kernels.normalize(expression), new Kernel(lanes, intLanes));
+    }
+
+    private static final class Kernel implements BulkKernel {
+
+        /** Enteros con tantos carriles como D, para ampliarlos a double y volver sin repartir. */
+        private static final VectorSpecies<Integer> DI =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(D.vectorBitSize() / 2));
+
+        private final Lanes lanes;
+        private final IntLanes intLanes;
+
+        Kernel(Lanes lanes, IntLanes intLanes) {
+            this.lanes = lanes;
+            this.intLanes = intLanes;
+        }
+
+        @Override
+        public void apply(double[] src, int srcOffset, double[] dst, int dstOffset, int count) {
+            int step = D.length();
+            int bound = D.loopBound(count);
+            int i = 0;
+            for (; i < bound; i += step) {
+                lanes.apply(DoubleVector.fromArray(D, src, srcOffset + i)).intoArray(dst, dstOffset + i);
+            }
+            if (i < count) {
+                VectorMask<Double> tail = D.indexInRange(i, count);
+                lanes.apply(DoubleVector.fromArray(D, src, srcOffset + i, tail)).intoArray(dst, dstOffset + i, tail);
+            }
+        }
+
+        @Override
+        public void apply(int[] src, int srcOffset, int[] dst, int dstOffset, int count) {
+            if (intLanes != null) {
+                applyInt(src, srcOffset, dst, dstOffset, count);
+            } else {
+                applyWidened(src, srcOffset, dst, dstOffset, count);
+            }
+        }
+
+        private void applyInt(int[] src, int srcOffset, int[] dst, int dstOffset, int count) {
+            int step = I.length();
+            int bound = I.loopBound(count);
+            int i = 0;
+            for (; i < bound; i += step) {
+                intLanes.apply(IntVector.fromArray(I, src, srcOffset + i)).intoArray(dst, dstOffset + i);
+            }
+            if (i < count) {
+                VectorMask<Integer> tail = I.indexInRange(i, count);
+                intLanes.apply(IntVector.fromArray(I, src, srcOffset + i, tail)).intoArray(dst, dstOffset + i, tail);
+            }
+        }
+
+        private void applyWidened(int[] src, int srcOffset, int[] dst, int dstOffset, int count) {
+            int step = DI.length();
+            int bound = DI.loopBound(count);
+            int i = 0;
+            for (; i < bound; i += step) {
+                widened(IntVector.fromArray(DI, src, srcOffset + i)).intoArray(dst, dstOffset + i);
+            }
+            if (i < count) {
+                VectorMask<Integer> tail = DI.indexInRange(i, count);
+                widened(IntVector.fromArray(DI, src, srcOffset + i, tail)).intoArray(dst, dstOffset + i, tail);
+            }
+        }
+
+        private IntVector widened(IntVector x) {
+            DoubleVector wide = (DoubleVector) x.convertShape(VectorOperators.I2D, D, 0);
+            return (IntVector) lanes.apply(wide).convertShape(VectorOperators.D2I, DI, 0);
+        }
+    }
+}
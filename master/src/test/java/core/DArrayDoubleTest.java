@@ -69,4 +69,70 @@ class DArrayDoubleTest {
         List<Fragment> after = dArray.getFragments();
         assertEquals(before.size(), after.size(), "El número de fragmentos no debe cambiar.");
     }
+
+    @Test
+    void testGetFragmentsWithCountKeepsConfiguredFragmentation() {
+        List<Fragment> parts = dArray.getFragments(4);
+
+        assertEquals(4, parts.size());
+        assertEquals(4, parts.get(3).getStartIndex(), "Los tamaños deben ser 2,1,1,1");
+        assertArrayEquals(new double[]{1.0, 2.0, 3.0, 4.0, 5.0}, dArray.mergeFragments(parts));
+        assertEquals(2, dArray.getFragments().size(), "La fragmentación configurada no cambia");
+        assertEquals(5, dArray.getFragments(10).size(), "Como máximo un fragmento por elemento");
+    }
+
+    @Test
+    void testAppendOnlyRebuildsTailFragment() {
+        List<Fragment> before = dArray.getFragments();
+        dArray.add(6.0);
+        List<Fragment> after = dArray.getFragments();
+
+        assertSame(before.get(0), after.get(0), "Los fragmentos ya repartidos no se tocan");
+        assertArrayEquals(new double[]{4.0, 5.0, 6.0}, after.get(1).getData());
+        assertEquals(3, after.get(1).getStartIndex());
+    }
+
+    @Test
+    void testManyAppendsKeepFragmentsBalancedAndComplete() {
+        DArrayDouble growing = new DArrayDouble(new double[]{0.0}, 4);
+        double[] expected = new double[10_000];
+        for (int i = 1; i < expected.length; i++) {
+            growing.add(i);
+            expected[i] = i;
+            if (i % 97 == 0) {
+                growing.getFragments();   // actualizaciones intermedias
+            }
+        }
+
+        List<Fragment> fragments = growing.getFragments();
+        assertEquals(4, fragments.size());
+        assertEquals(expected.length, growing.size());
+        assertArrayEquals(expected, growing.mergeFragments(fragments));
+        int head = fragments.get(0).size();
+        assertTrue(fragments.get(3).size() <= 2 * head, "El último fragmento no pasa del doble de los demás");
+    }
+
+    @Test
+    void testFragmentCountAndSizedPartitionNeedNoCopies() {
+        DArrayDouble growing = new DArrayDouble(new double[]{0.0, 1.0, 2.0, 3.0}, 2);
+        for (int i = 4; i < 20; i++) {
+            growing.add(i);
+            assertEquals(growing.getFragmentCount(), growing.getFragments().size(), "Con " + (i + 1) + " elementos");
+        }
+
+        List<Fragment> parts = growing.getFragments(new int[]{3, 12, 5});
+        assertSame(parts.get(0).values().array(), parts.get(2).values().array(),
+                "Los fragmentos son tramos del mismo array, sin copias");
+        assertEquals(15, parts.get(2).getStartIndex());
+        assertEquals(16.0, parts.get(2).get(1));
+        assertArrayEquals(new double[]{15, 16, 17, 18, 19}, parts.get(2).getData());
+
+        growing.add(20.0);
+        assertArrayEquals(new double[]{15, 16, 17, 18, 19}, parts.get(2).getData(), "add() no toca los tramos repartidos");
+
+        double[] data = {1.0, 2.0};
+        DArrayDouble single = new DArrayDouble(data, 1);
+        single.getFragments().get(0).getData()[0] = -1.0;
+        assertEquals(1.0, single.getFragments().get(0).get(0), "getData() de un fragmento que cubre todo el array es una copia");
+    }
 }
@@ -0,0 +1,110 @@
+package core;
+
+import handler.Operation;
+import ops.OperationCompiler;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineTest {
+
+    /** Ejecutor que calcula en el acto y anota cada trabajo recibido. */
+    private static final class RecordingRunner implements DoublePipeline.Runner, IntPipeline.Runner {
+        final List<String> jobs = new CopyOnWriteArrayList<>();
+
+        @Override
+        public CompletableFuture<double[]> run(DArrayDouble dArray, String operation) {
+            jobs.add(operation);
+            double[] out = new double[dArray.size()];
+            dArray.applyTo(0, out.length, OperationCompiler.compile(operation), out, 0);
+            return CompletableFuture.completedFuture(out);
+        }
+
+        @Override
+        public CompletableFuture<int[]> run(DArrayInt dArray, String operation) {
+            jobs.add(operation);
+            int[] out = new int[dArray.size()];
+            dArray.applyTo(0, out.length, OperationCompiler.compile(operation), out, 0);
+            return CompletableFuture.completedFuture(out);
+        }
+    }
+
+    @Test
+    void testChainedMapsRunAsOneFusedJob() {
+        double[] data = {0.5, -2.0, 3.0, 10.0};
+        DoublePipeline pipeline = new DArrayDouble(data, 2).map(Operation.SIN).map(Operation.MULTIPLY_TWO).map(Operation.SQRT);
+        RecordingRunner runner = new RecordingRunner();
+
+        double[] result = pipeline.run(runner).join();
+
+        assertEquals(1, runner.jobs.size(), "Tres map() seguidos son un solo trabajo");
+        assertEquals(pipeline.plan(), runner.jobs);
+        for (int i = 0; i < data.length; i++) {
+            assertEquals(Math.sqrt(Math.abs(Math.sin(data[i]) * 2)), result[i], 0.0);
+        }
+    }
+
+    @Test
+    void testFilterSplitsTheChainAndRunsOnTheMaster() {
+        DArrayDouble dArray = new DArrayDouble(new double[]{1, 2, 3, 4, 5, 6}, 3);
+        DoublePipeline pipeline = dArray.map("x * 10").filter(v -> v > 25).map(Operation.ADD_ONE).map(Operation.SQUARE);
+        RecordingRunner runner = new RecordingRunner();
+
+        assertArrayEquals(new double[]{31 * 31, 41 * 41, 51 * 51, 61 * 61}, pipeline.run(runner).join());
+        assertEquals(2, runner.jobs.size());
+        assertArrayEquals(new double[]{2, 4, 6}, dArray.filter(v -> v % 2 == 0).run(runner).join());
+        assertEquals(2, runner.jobs.size(), "Un filtro solo no envía trabajos");
+    }
+
+    @Test
+    void testIntegerFusionKeepsTheCastBetweenOperations() {
+        int[] data = {3, -3, 7, Integer.MAX_VALUE};
+        IntPipeline pipeline = new DArrayInt(data, 2).map("x * 1.5").map(Operation.MULTIPLY_TWO).map("x / 4");
+        RecordingRunner runner = new RecordingRunner();
+
+        int[] result = pipeline.run(runner).join();
+
+        assertEquals(1, runner.jobs.size());
+        for (int i = 0; i < data.length; i++) {
+            int step = (int) (data[i] * 1.5);
+            step = (int) (step * 2.0);
+            assertEquals((int) (step / 4.0), result[i], "x=" + data[i]);
+        }
+    }
+
+    @Test
+    void testVeryLongFusionsAreCutIntoSeveralJobs() {
+        DoublePipeline pipeline = new DArrayDouble(new double[]{1.0, 2.0}, 1).map(Operation.SQUARE);
+        for (int i = 0; i < 12; i++) {
+            pipeline = pipeline.map(Operation.SQUARE);   // "x * x" duplica la expresión en cada paso
+        }
+        assertTrue(pipeline.plan().size() > 1);
+        for (String job : pipeline.plan()) {
+            assertTrue(job.length() <= DoublePipeline.MAX_FUSED_LENGTH);
+        }
+        assertArrayEquals(new double[]{1.0, Double.POSITIVE_INFINITY}, pipeline.run(new RecordingRunner()).join());
+    }
+
+    @Test
+    void testExpressionFilterTravelsWithThePrecedingMaps() {
+        DArrayDouble dArray = new DArrayDouble(new double[]{1, 2, 3, 4, 5, 6}, 3);
+        DoublePipeline pipeline = dArray.map("x * 10").map(Operation.ADD_ONE).filter("x > 25").map("x - 1");
+        RecordingRunner runner = new RecordingRunner();
+        List<String> filtered = new CopyOnWriteArrayList<>();
+        DoublePipeline.Filter filter = (array, operation, predicate) -> {
+            filtered.add(operation + " | " + predicate);
+            return runner.run(array, operation).thenApply(data -> java.util.Arrays.stream(data)
+                .filter(v -> OperationCompiler.isTrue(OperationCompiler.compile(predicate).applyAsDouble(v))).toArray());
+        };
+
+        assertArrayEquals(new double[]{30, 40, 50, 60}, pipeline.run(runner, filter).join());
+        assertEquals(List.of("(x * 10) + 1 | x > 25"), filtered, "map() + filter() son un solo trabajo");
+        assertEquals(2, runner.jobs.size());
+        assertArrayEquals(new double[]{30, 40, 50, 60}, pipeline.run(new RecordingRunner()).join(),
+            "Sin ejecutor de filtros el predicado se evalúa en el maestro");
+    }
+}
@@ -54,4 +54,16 @@ class FragmentTest {
         assertEquals(5, emptyFragment.getStartIndex());
         assertEquals("F1", emptyFragment.getId());
     }
+
+    @Test
+    void testWindowGetDataIsAlwaysAPrivateCopy() {
+        Fragment whole = new Fragment("F0", sampleData, 0, sampleData.length);
+        double[] copy = whole.getData();
+        assertNotSame(sampleData, copy, "Aunque el tramo ocupe todo el array");
+        copy[0] = -1.0;
+        assertEquals(1.1, sampleData[0]);
+        assertEquals(1.1, whole.get(0));
+        assertNotSame(sampleData, whole.asResident("r").getData());
+        assertSame(sampleData, whole.values().array(), "values() sigue sin copiar");
+    }
 }
@@ -0,0 +1,75 @@
+package data;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapDoublesTest {
+
+    @Test
+    void testBulkCopiesCrossMappingWindows() throws Exception {
+        // Ventanas cada 4 elementos: 10 elementos ocupan tres ventanas solapadas
+        try (OffHeapDoubles store = OffHeapDoubles.allocate(10, 4)) {
+            double[] src = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+            store.put(0, src, 0, src.length);
+
+            double[] back = new double[10];
+            store.get(0, back, 0, back.length);
+            assertArrayEquals(src, back);
+            assertEquals(7.0, store.get(6));
+
+            store.set(9, -1.0);
+            assertEquals(-1.0, store.get(9));
+        }
+    }
+
+    @Test
+    void testSliceIsAContiguousViewEvenAcrossWindows() throws Exception {
+        try (OffHeapDoubles store = OffHeapDoubles.allocate(10, 4)) {
+            for (int i = 0; i < 10; i++) {
+                store.set(i, i);
+            }
+            // [3, 7) empieza en la ventana 0 y acaba dentro de la ventana 1
+            ByteBuffer view = store.slice(3, 4);
+            assertEquals(4 * Double.BYTES, view.remaining());
+            assertEquals(3.0, view.getDouble(0));
+            assertEquals(6.0, view.getDouble(3 * Double.BYTES));
+
+            view.putDouble(Double.BYTES, 42.0);
+            assertEquals(42.0, store.get(4), "Los cambios en la vista deben verse en el almacén");
+
+            assertThrows(IllegalArgumentException.class, () -> store.slice(0, 5));
+            assertThrows(IndexOutOfBoundsException.class, () -> store.slice(8, 3));
+        }
+    }
+
+    @Test
+    void testTemporaryFileIsDeletedOnClose() throws Exception {
+        Path file;
+        try (OffHeapDoubles store = OffHeapDoubles.allocate(3)) {
+            file = store.getFile();
+            assertTrue(Files.exists(file));
+        }
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void testFragmentViewsShareTheStore() throws Exception {
+        try (OffHeapDoubles store = OffHeapDoubles.allocate(6, 4)) {
+            store.put(0, new double[]{1, 2, 3, 4, 5, 6}, 0, 6);
+
+            Fragment fragment = new Fragment("f", 2, store.slice(2, 3));
+            assertTrue(fragment.isView());
+            assertEquals(2L, fragment.getOffset());
+            assertEquals(3, fragment.size());
+            assertArrayEquals(new double[]{3, 4, 5}, fragment.getData());
+
+            store.set(3, 40.0);
+            assertEquals(40.0, fragment.getData()[1], "Un fragmento vista no copia los datos");
+        }
+    }
+}
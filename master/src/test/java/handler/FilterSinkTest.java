@@ -0,0 +1,45 @@
+package handler;
+
+import org.junit.jupiter.api.Test;
+import protocol.BinaryCodec;
+import protocol.BinaryFrame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilterSinkTest {
+
+    private static BinaryFrame resultFrame(double[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryCodec.writeResult(out, "T", "w1", data);
+        return BinaryCodec.readFrame(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    void testVariableLengthFragmentsAreCompactedInFragmentOrder() throws IOException {
+        FilterSink sink = new FilterSink(4);
+
+        assertFalse(sink.accept(2, resultFrame(new double[]{7.0})));
+        assertFalse(sink.accept(0, new double[]{1.0, 2.0}));
+        assertFalse(sink.accept(3, resultFrame(new double[0])));
+        assertNull(sink.getResult(), "No debe haber resultado hasta recibir todos los fragmentos");
+        assertTrue(sink.accept(1, resultFrame(new double[]{3.0, 4.0, 5.0})));
+
+        assertArrayEquals(new double[]{1.0, 2.0, 3.0, 4.0, 5.0, 7.0}, sink.getResult());
+        assertSame(sink.getResult(), sink.getResult());
+    }
+
+    @Test
+    void testDuplicateFragmentIsCountedOnce() {
+        FilterSink sink = new FilterSink(2);
+
+        sink.accept(0, new double[]{1.0});
+        sink.accept(0, new double[]{1.0, 9.0});
+        assertEquals(1, sink.receivedCount());
+        assertTrue(sink.accept(1, new double[]{2.0}));
+        assertArrayEquals(new double[]{1.0, 2.0}, sink.getResult());
+    }
+}
@@ -0,0 +1,126 @@
+package handler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FragmentSchedulerTest {
+
+    private final ScheduledExecutorService timer = Executors.newScheduledThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        timer.shutdownNow();
+    }
+
+    /** Completa el fragmento tras delayMillis, o falla si delayMillis es negativo. */
+    private CompletableFuture<Void> after(long delayMillis, BitSet results, int index) {
+        CompletableFuture<Void> f = new CompletableFuture<>();
+        if (delayMillis < 0) {
+            timer.execute(() -> f.completeExceptionally(new RuntimeException("worker caído")));
+        } else {
+            timer.schedule(() -> {
+                synchronized (results) {
+                    results.set(index);
+                }
+                f.complete(null);
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        }
+        return f;
+    }
+
+    @Test
+    void testFasterWorkerTakesMoreFragmentsAndNoneIsLost() {
+        Map<String, Long> delays = Map.of("rápido", 1L, "lento", 40L);
+        BitSet results = new BitSet();
+        FragmentScheduler<String> scheduler = new FragmentScheduler<>(40, 1,
+                (worker, i) -> after(delays.get(worker), results, i), w -> w);
+
+        scheduler.start(List.of("rápido", "lento")).join();
+
+        assertEquals(40, results.cardinality(), "Todos los fragmentos deben tener resultado");
+        Map<String, Integer> completed = scheduler.getCompletedBy();
+        assertTrue(completed.get("rápido") > completed.get("lento"),
+                "El worker rápido debe procesar más fragmentos: " + completed);
+    }
+
+    @Test
+    void testFailedWorkerFragmentsAreRequeued() {
+        Map<String, Long> delays = Map.of("bueno", 2L, "caído", -1L);
+        BitSet results = new BitSet();
+        FragmentScheduler<String> scheduler = new FragmentScheduler<>(10, 2,
+                (worker, i) -> after(delays.get(worker), results, i), w -> w);
+
+        scheduler.start(List.of("caído", "bueno")).join();
+
+        assertEquals(10, results.cardinality());
+        assertEquals(10, scheduler.getCompletedBy().get("bueno"));
+    }
+
+    @Test
+    void testIdleWorkerStealsFromOwnedQueues() {
+        BitSet results = new BitSet();
+        Map<String, Long> delays = Map.of("a", 1L, "b", 30L);
+        FragmentScheduler<String> scheduler = new FragmentScheduler<>(8, 1,
+                (worker, i) -> after(delays.get(worker), results, i), w -> w);
+        scheduler.setSpeculation(0, 0);
+        scheduler.setOwners(List.of("a", "a", "b", "b", "b", "b", "b", "b"));
+
+        scheduler.start(List.of("a", "b")).join();
+
+        assertEquals(8, results.cardinality());
+        assertTrue(scheduler.getCompletedBy().get("a") > 2, "El worker libre debe robar fragmentos de b");
+    }
+
+    @Test
+    void testFailsWhenNoWorkerIsLeft() {
+        FragmentScheduler<String> scheduler = new FragmentScheduler<>(3, 1,
+                (worker, i) -> after(-1, new BitSet(), i), w -> w);
+
+        CompletableFuture<Void> job = scheduler.start(List.of("w1", "w2"));
+
+        assertThrows(CompletionException.class, job::join);
+    }
+
+    @Test
+    void testStragglerIsSpeculativelyReexecuted() {
+        BitSet results = new BitSet();
+        CompletableFuture<Void> stuck = new CompletableFuture<>();
+        FragmentScheduler<String> scheduler = new FragmentScheduler<>(12, 1,
+                (worker, i) -> worker.equals("colgado") && i == 0 ? stuck : after(2, results, i), w -> w);
+        scheduler.setSpeculation(1.5, 10);
+
+        scheduler.start(List.of("colgado", "rápido")).orTimeout(5, TimeUnit.SECONDS).join();
+
+        assertEquals(12, scheduler.getDoneCount());
+        assertTrue(results.get(0), "El fragmento rezagado debe completarse con la copia especulativa");
+        assertEquals(1, scheduler.getSpeculativeLaunches());
+        assertEquals(1, scheduler.getSpeculativeWins());
+        assertTrue(stuck.isCancelled(), "La copia perdedora debe cancelarse");
+    }
+
+    @Test
+    void testSpareOnlyReceivesSpeculativeCopies() {
+        BitSet results = new BitSet();
+        CompletableFuture<Void> stuck = new CompletableFuture<>();
+        FragmentScheduler<String> scheduler = new FragmentScheduler<>(6, 1,
+                (worker, i) -> i == 5 && worker.equals("w1") ? stuck : after(2, results, i), w -> w);
+        scheduler.setSpeculation(1.5, 10);
+        scheduler.addSpare("reserva");
+
+        scheduler.start(List.of("w1")).orTimeout(5, TimeUnit.SECONDS).join();
+
+        assertEquals(Integer.valueOf(1), scheduler.getCompletedBy().get("reserva"));
+        assertEquals(1, scheduler.getSpeculativeWins());
+    }
+}
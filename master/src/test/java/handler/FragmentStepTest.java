@@ -0,0 +1,87 @@
+package handler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FragmentStepTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @Test
+    void testSortedRunsAreMergedIntoOneSortedArray() {
+        Random random = new Random(7);
+        double[] data = new double[200_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextInt(1000) - 500 + (i % 97 == 0 ? -0.0 : 0.5);
+        }
+        data[10] = Double.NaN;
+        data[150_000] = 0.0;
+        double[] expected = data.clone();
+        Arrays.sort(expected);
+
+        // Tramos de tamaños desiguales, uno vacío
+        long[] starts = {0, 1, 50_000, 50_000, 120_000, 199_999};
+        for (int r = 0; r < starts.length; r++) {
+            int to = r + 1 < starts.length ? (int) starts[r + 1] : data.length;
+            FragmentStep.SORT.apply(data, (int) starts[r], to);
+        }
+        FragmentStep.SORT.combine(data, starts, POOL);
+
+        assertArrayEquals(expected, data);
+    }
+
+    @Test
+    void testUnsortedFragmentIsRejected() {
+        double[] sorted = {1, 2, 2, 3};
+        FragmentStep.SORT.verify(0, i -> sorted[i], sorted.length);
+        assertThrows(IllegalStateException.class, () -> FragmentStep.SORT.verify(0, i -> 3 - i, 4));
+    }
+
+    @Test
+    void testScanCarriesTheTotalsOfPreviousRuns() {
+        double[] data = new double[10];
+        Arrays.fill(data, 1.0);
+        long[] starts = {0, 3, 3, 7};
+        for (int r = 0; r < starts.length; r++) {
+            int to = r + 1 < starts.length ? (int) starts[r + 1] : data.length;
+            FragmentStep.SCAN.apply(data, (int) starts[r], to);
+        }
+        FragmentStep.SCAN.combine(data, starts, POOL);
+
+        assertArrayEquals(new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, data);
+    }
+
+    @Test
+    void testIntRunsAreMergedAndScannedWithJavaOverflow() {
+        Random random = new Random(11);
+        int[] data = new int[100_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextInt();
+        }
+        int[] expected = data.clone();
+        Arrays.sort(expected);
+        long[] starts = {0, 1, 30_000, 30_000, 99_999};
+        for (int r = 0; r < starts.length; r++) {
+            int to = r + 1 < starts.length ? (int) starts[r + 1] : data.length;
+            FragmentStep.SORT.apply(data, (int) starts[r], to);
+        }
+        FragmentStep.SORT.combine(data, starts, POOL);
+        assertArrayEquals(expected, data);
+        assertThrows(IllegalStateException.class, () -> FragmentStep.SORT.verifyInts(0, i -> 3 - i, 4));
+
+        int[] ones = {Integer.MAX_VALUE, 1, 1, 1, 1};
+        long[] runs = {0, 2, 4};
+        for (int r = 0; r < runs.length; r++) {
+            int to = r + 1 < runs.length ? (int) runs[r + 1] : ones.length;
+            FragmentStep.SCAN.apply(ones, (int) runs[r], to);
+        }
+        FragmentStep.SCAN.combine(ones, runs, POOL);
+        assertArrayEquals(new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE + 1,
+                                    Integer.MIN_VALUE + 2, Integer.MIN_VALUE + 3}, ones);
+    }
+}
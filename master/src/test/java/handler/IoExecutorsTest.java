@@ -0,0 +1,68 @@
+package handler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IoExecutorsTest {
+
+    @Test
+    void testEveryModeRunsManyBlockedTasksAtOnce() throws Exception {
+        for (IoExecutors.Mode mode : new IoExecutors.Mode[]{IoExecutors.Mode.CACHED, IoExecutors.Mode.VIRTUAL}) {
+            ExecutorService executor = IoExecutors.create(mode, "test-io", 1);
+            try {
+                // 200 tareas bloqueadas a la vez: sólo terminan si ninguna espera a que otra libere hilo
+                int tasks = 200;
+                CountDownLatch allStarted = new CountDownLatch(tasks);
+                List<Future<Boolean>> futures = new ArrayList<>();
+                for (int i = 0; i < tasks; i++) {
+                    futures.add(executor.submit(() -> {
+                        allStarted.countDown();
+                        return allStarted.await(5, TimeUnit.SECONDS);
+                    }));
+                }
+                for (Future<Boolean> f : futures) {
+                    assertTrue(f.get(10, TimeUnit.SECONDS), "Modo " + mode + ": todas las tareas deben correr a la vez");
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    void testFixedModeBoundsConcurrency() throws Exception {
+        ExecutorService executor = IoExecutors.create(IoExecutors.Mode.FIXED, "test-io", 2);
+        try {
+            CountDownLatch threeStarted = new CountDownLatch(3);
+            for (int i = 0; i < 3; i++) {
+                executor.execute(() -> {
+                    threeStarted.countDown();
+                    try {
+                        threeStarted.await(2, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            assertFalse(threeStarted.await(300, TimeUnit.MILLISECONDS), "Con 2 hilos la tercera tarea debe esperar");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testModeNeverReportsVirtualWithoutSupport() {
+        if (!IoExecutors.virtualThreadsAvailable()) {
+            assertNotEquals(IoExecutors.Mode.VIRTUAL, IoExecutors.mode());
+        }
+        assertNotNull(IoExecutors.blockingIo());
+    }
+}
@@ -0,0 +1,96 @@
+package handler;
+
+import core.DArrayDouble;
+import core.DArrayInt;
+import data.OffHeapInts;
+import ops.CompiledOperation;
+import ops.OperationCompiler;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalBackendTest {
+
+    @Test
+    void testComputesEveryChunkInPlace() {
+        int n = LocalBackend.GRAIN * 3 + 17;
+        double[] data = new double[n];
+        for (int i = 0; i < n; i++) {
+            data[i] = i;
+        }
+        CompiledOperation op = OperationCompiler.compile("sqrt(x) + 1");
+        int fragments = LocalBackend.fragments(n);
+        ResultSink sink = new ResultSink(n, fragments);
+        Set<Integer> reported = ConcurrentHashMap.newKeySet();
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            new LocalBackend(pool).run(new DArrayDouble(data, 2), op, sink, reported::add).join();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(4, fragments);
+        assertTrue(sink.isComplete());
+        assertEquals(fragments, reported.size());
+        double[] result = sink.getResult();
+        for (int i = 0; i < n; i++) {
+            assertEquals(Math.sqrt(i) + 1, result[i], 0.0);
+        }
+    }
+
+    @Test
+    void testIntArraysConvertLikeJavaCasts() throws Exception {
+        CompiledOperation op = OperationCompiler.compile("x * 1.5");
+        int[] heap = {1, 3, -3, Integer.MAX_VALUE};
+        ResultSinkInt sink = new ResultSinkInt(heap.length, LocalBackend.fragments(heap.length));
+        new LocalBackend().run(new DArrayInt(heap, 2), op, sink, null).join();
+        assertArrayEquals(op.apply(heap), sink.getResult());
+
+        try (OffHeapInts input = OffHeapInts.allocate(heap.length);
+             OffHeapInts output = OffHeapInts.allocate(heap.length)) {
+            input.put(0, heap, 0, heap.length);
+            ResultSinkInt offHeap = new ResultSinkInt(output, LocalBackend.fragments(heap.length));
+            new LocalBackend().run(new DArrayInt(input, 1), op, offHeap, null).join();
+            assertEquals(-4, output.get(2));
+            assertEquals(Integer.MAX_VALUE, output.get(3));
+        }
+    }
+
+    @Test
+    void testCostModelPrefersLocalForSmallArraysAndWorkersForExpensiveLargeOnes() {
+        CompiledOperation op = OperationCompiler.compile("x + 1");
+        // 1 ms por trabajo remoto, 1 ns/byte, workers 20 veces más lentos, 1 hilo local
+        CostModel model = new CostModel(1e6, 1.0, 20, 1);
+        double perElement = CostModel.nanosPerElement(op);
+
+        assertEquals(CostModel.Backend.LOCAL, model.choose(1000, op, 64, 0));
+        assertEquals(CostModel.Backend.LOCAL, model.choose(1_000_000_000L, op, 0, 0), "Sin workers siempre es local");
+
+        // Con rendimiento medido de los workers manda la medida: muy rápidos ganan con arrays grandes
+        long n = 100_000_000L;
+        double fast = 1000 * 1e9 / perElement;
+        assertEquals(CostModel.Backend.DISTRIBUTED, model.choose(n, op, 4, fast));
+        assertEquals(CostModel.Backend.LOCAL, model.choose(n, op, 4, 1.0));
+    }
+
+    @Test
+    void testLateResultsCannotReachASortBeingMerged() {
+        ResultSink sink = new ResultSink(6, 2);
+        assertFalse(sink.accept(0, 0, 3, new double[]{1, 4, 6}));
+        assertTrue(sink.accept(1, 3, 3, new double[]{2, 3, 5}));
+
+        CompletableFuture<double[]> merged = new LocalBackend().combine(FragmentStep.SORT, sink);
+        // Una copia especulativa tardía de cada fragmento, mientras se mezcla o ya mezclado
+        sink.accept(1, 3, 3, new double[]{9, 9, 9});
+        assertArrayEquals(new double[]{1, 2, 3, 4, 5, 6}, merged.join());
+        sink.accept(0, 0, 3, new double[]{-1, -1, -1});
+        assertTrue(sink.fill(0, 0, 3, (dst, offset, count) -> Arrays.fill(dst, offset, offset + count, 7)));
+        assertArrayEquals(new double[]{1, 2, 3, 4, 5, 6}, merged.join());
+    }
+}
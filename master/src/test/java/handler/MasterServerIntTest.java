@@ -0,0 +1,144 @@
+package handler;
+
+import core.DArrayInt;
+import data.FragmentInt;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MasterServerIntTest {
+
+    /**
+     * Worker falso que calcula cada fragmento en el propio hilo, con el paso pedido, y anota
+     * los pasos que recibió.
+     */
+    private static WorkerConnectionInt computingWorker(String id, Set<String> steps) {
+        return new WorkerConnectionInt(id, "", 0) {
+            @Override
+            boolean connect() {
+                return true;
+            }
+
+            @Override
+            CompletableFuture<Boolean> sendTask(FragmentInt fragment, int fragmentIndex, String taskId,
+                                                String operation, FragmentStep step, ResultSinkInt sink) {
+                int[] result = ops.OperationCompiler.compile(operation).apply(fragment.getData());
+                if (step != null) {
+                    step.apply(result, 0, result.length);
+                    steps.add(step.wireName());
+                }
+                return CompletableFuture.completedFuture(
+                    sink.accept(fragmentIndex, fragment.getOffset(), fragment.size(), result));
+            }
+
+            @Override
+            public <R> CompletableFuture<R> reduce(FragmentInt fragment, String taskId, String operation,
+                                                   Reducer<R> reducer) {
+                int[] result = ops.OperationCompiler.compile(operation).apply(fragment.getData());
+                steps.add("reduce");
+                return CompletableFuture.completedFuture(
+                    reducer.partial(Arrays.stream(result).asDoubleStream().toArray(), 0, result.length));
+            }
+        };
+    }
+
+    private static MasterServerInt master(DArrayInt dArray, WorkerConnectionInt... workers) {
+        MasterServerInt master = new MasterServerInt(0, dArray, dArray.getFragmentCount());
+        master.registerWorkers(List.of(workers));
+        master.setBackend(CostModel.Backend.DISTRIBUTED);
+        return master;
+    }
+
+    @Test
+    void testSortAndScanMergeTheFragmentsTheWorkersPrepared() {
+        Set<String> steps = ConcurrentHashMap.newKeySet();
+        int[] data = new int[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (i * 7919) % 1000;
+        }
+        DArrayInt dArray = new DArrayInt(data, 4);
+        MasterServerInt master = master(dArray, computingWorker("a", steps), computingWorker("b", steps));
+
+        int[] sorted = master.sort("x - 500").join();
+        for (int i = 0; i < sorted.length; i++) {
+            assertEquals(i - 500, sorted[i]);
+        }
+        int[] prefix = master.scan("1").join();
+        for (int i = 0; i < prefix.length; i++) {
+            assertEquals(i + 1, prefix[i]);
+        }
+        assertEquals(Set.of("sort", "scan"), steps);
+
+        master.setBackend(CostModel.Backend.LOCAL);
+        assertArrayEquals(sorted, master.sort("x - 500").join());
+        assertArrayEquals(prefix, master.scan("1").join());
+    }
+
+    @Test
+    void testReduceSummarisesTheIntResults() {
+        Set<String> steps = ConcurrentHashMap.newKeySet();
+        int[] data = new int[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i;
+        }
+        DArrayInt dArray = new DArrayInt(data, 4);
+        MasterServerInt master = master(dArray, computingWorker("a", steps), computingWorker("b", steps));
+
+        // x / 2 se trunca a int antes de resumir: 2 * (0 + 1 + … + 499)
+        Stats stats = master.reduce("x / 2", Reducer.stats()).join();
+        assertEquals(1000, stats.getCount());
+        assertEquals(249500.0, stats.getSum());
+        assertEquals(Set.of("reduce"), steps);
+
+        master.setBackend(CostModel.Backend.LOCAL);
+        Stats local = master.reduce("x / 2", Reducer.stats()).join();
+        assertEquals(stats.getCount(), local.getCount());
+        assertEquals(stats.getSum(), local.getSum());
+        assertEquals(stats.getMean(), local.getMean(), 1e-9);
+    }
+
+    @Test
+    void testIntScanOverflowsLikeJava() {
+        int[] data = new int[64];
+        Arrays.fill(data, Integer.MAX_VALUE / 16);
+        DArrayInt dArray = new DArrayInt(data, 4);
+        int[] expected = new int[data.length];
+        int sum = 0;
+        for (int i = 0; i < data.length; i++) {
+            sum += data[i];
+            expected[i] = sum;
+        }
+        MasterServerInt master = master(dArray, computingWorker("a", ConcurrentHashMap.newKeySet()),
+                                        computingWorker("b", ConcurrentHashMap.newKeySet()));
+        assertArrayEquals(expected, master.scan("x").join());
+    }
+
+    @Test
+    void testUnsortedFragmentIsNotMerged() {
+        WorkerConnectionInt lazy = new WorkerConnectionInt("lazy", "", 0) {
+            @Override
+            boolean connect() {
+                return true;
+            }
+
+            @Override
+            CompletableFuture<Boolean> sendTask(FragmentInt fragment, int fragmentIndex, String taskId,
+                                                String operation, FragmentStep step, ResultSinkInt sink) {
+                // Devuelve el fragmento sin ordenar
+                int[] result = fragment.getData();
+                return CompletableFuture.completedFuture(
+                    sink.accept(fragmentIndex, fragment.getOffset(), fragment.size(), result));
+            }
+        };
+        MasterServerInt master = master(new DArrayInt(new int[]{5, 4, 3, 2, 1, 0}, 2), lazy);
+        CompletionException failure = assertThrows(CompletionException.class, () -> master.sort("x").join());
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+    }
+}
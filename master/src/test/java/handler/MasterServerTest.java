@@ -2,12 +2,19 @@ package handler;
 
 import core.DArrayDouble;
 import data.Fragment;
+import data.OffHeapDoubles;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -60,6 +67,8 @@ class MasterServerTest {
         );
         // Definimos la operación (no tiene efecto en los fakeWorkers, pero para mantener la API)
         masterServer.setOperation("((sin(x) + cos(x))^2) / (sqrt(abs(x)) + 1)");
+        // Estos arrays son tan pequeños que CostModel los calcularía en el maestro
+        masterServer.setBackend(CostModel.Backend.DISTRIBUTED);
     }
 
     @Test
@@ -78,4 +87,295 @@ class MasterServerTest {
             "El resultado final debe ser [1.0, 2.0, 3.0, 4.0]"
         );
     }
+
+    @Test
+    void testSubmitCompletesFutureAndReportsEachFragment() {
+        DArrayDouble dArray = new DArrayDouble(new double[]{5.0, 6.0, 7.0, 8.0, 9.0}, 2);
+        List<Integer> completed = new CopyOnWriteArrayList<>();
+        Set<Integer> fragments = ConcurrentHashMap.newKeySet();
+        AtomicInteger totals = new AtomicInteger();
+
+        CompletableFuture<double[]> job = masterServer.submit(dArray, Operation.IDENTITY,
+            (index, workerId, done, total) -> {
+                fragments.add(index);
+                completed.add(done);
+                totals.set(total);
+            });
+
+        assertArrayEquals(new double[]{5.0, 6.0, 7.0, 8.0, 9.0}, job.join());
+        assertEquals(completed.size(), fragments.size(), "Cada fragmento se notifica una sola vez");
+        assertEquals(totals.get(), fragments.size(), "Se notifican todos los fragmentos del trabajo");
+        assertTrue(completed.contains(totals.get()), "La última notificación llega con todos terminados");
+    }
+
+    @Test
+    void testOffHeapArrayIsProcessedIntoOffHeapOutput() throws Exception {
+        try (OffHeapDoubles input = OffHeapDoubles.allocate(7);
+             OffHeapDoubles output = OffHeapDoubles.allocate(7)) {
+            double[] data = {1, 2, 3, 4, 5, 6, 7};
+            input.put(0, data, 0, data.length);
+            DArrayDouble dArray = new DArrayDouble(input, 2);
+            assertTrue(dArray.isOffHeap());
+
+            assertSame(output, masterServer.submit(dArray, Operation.IDENTITY, output, null).join());
+            double[] back = new double[7];
+            output.get(0, back, 0, back.length);
+            assertArrayEquals(data, back);
+        }
+    }
+
+    private static WorkerConnection computingWorker(String id, double offset) {
+        return new WorkerConnection(id, "", 0) {
+            @Override
+            public Map<String, String> sendTaskAndGetResult(Fragment fragment, String taskId, String operation) {
+                double[] result = ops.OperationCompiler.compile(operation).apply(fragment.getData());
+                for (int i = 0; i < result.length; i++) {
+                    result[i] += offset;
+                }
+                return Map.of("type", "result", "task_id", taskId, "result", Arrays.toString(result));
+            }
+        };
+    }
+
+    @Test
+    void testValidationRejectsWrongResultsAndRecomputesElsewhere() {
+        double[] data = new double[40];
+        double[] expected = new double[data.length];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i;
+            expected[i] = i * 2 + 1;
+        }
+        DArrayDouble dArray = new DArrayDouble(data, 2);
+        MasterServer master = new MasterServer(dArray,
+            List.of(computingWorker("honest", 0), computingWorker("liar", 100)));
+        master.setValidationSamples(3);
+        master.setBackend(CostModel.Backend.DISTRIBUTED);
+
+        assertArrayEquals(expected, master.submit(dArray, "x * 2 + 1").join());
+    }
+
+    @Test
+    void testInvalidOperationFailsBeforeSending() {
+        CompletableFuture<double[]> job = masterServer.submit(new DArrayDouble(new double[]{1.0}, 1), "x +* 2");
+        Throwable cause = assertThrows(java.util.concurrent.CompletionException.class, job::join).getCause();
+        assertInstanceOf(IllegalArgumentException.class, cause);
+    }
+
+    @Test
+    void testSmallJobRunsLocallyWithoutContactingWorkers() {
+        WorkerConnection untouchable = new WorkerConnection("untouchable", "localhost", 0) {
+            @Override
+            String negotiate() {
+                throw new AssertionError("Un trabajo local no debe conectar con los workers");
+            }
+        };
+        DArrayDouble dArray = new DArrayDouble(new double[]{1.0, 2.0, 3.0}, 1);
+        MasterServer master = new MasterServer(dArray, List.of(untouchable));
+        List<String> reporters = new CopyOnWriteArrayList<>();
+
+        double[] result = master.submit(dArray, "x * 2 + 1",
+            (index, workerId, completed, total) -> reporters.add(workerId)).join();
+
+        assertArrayEquals(new double[]{3.0, 5.0, 7.0}, result);
+        assertEquals(CostModel.Backend.LOCAL, master.getLastBackend());
+        assertEquals(List.of(MasterServer.LOCAL_WORKER_ID), reporters);
+    }
+
+    @Test
+    void testForcedLocalBackendWorksWithoutWorkers() throws Exception {
+        try (OffHeapDoubles input = OffHeapDoubles.allocate(5);
+             OffHeapDoubles output = OffHeapDoubles.allocate(5)) {
+            for (int i = 0; i < 5; i++) {
+                input.set(i, i);
+            }
+            MasterServer master = new MasterServer(new DArrayDouble(input, 2), List.of());
+            master.setBackend(CostModel.Backend.LOCAL);
+            master.submit(new DArrayDouble(input, 2), "x ^ 2", output, null).join();
+            for (int i = 0; i < 5; i++) {
+                assertEquals((double) i * i, output.get(i));
+            }
+        }
+    }
+
+    @Test
+    void testPipelineShipsEachFragmentOncePerFusedChain() {
+        AtomicInteger tasks = new AtomicInteger();
+        WorkerConnection counting = new WorkerConnection("counting", "", 0) {
+            @Override
+            public Map<String, String> sendTaskAndGetResult(Fragment fragment, String taskId, String operation) {
+                tasks.incrementAndGet();
+                double[] result = ops.OperationCompiler.compile(operation).apply(fragment.getData());
+                return Map.of("type", "result", "task_id", taskId, "result", Arrays.toString(result));
+            }
+        };
+        DArrayDouble dArray = new DArrayDouble(new double[]{1.0, 4.0, 9.0, 16.0}, 2);
+        MasterServer master = new MasterServer(dArray, List.of(counting));
+        master.setBackend(CostModel.Backend.DISTRIBUTED);
+
+        double[] result = master.submit(dArray.map(Operation.SQRT).map(Operation.ADD_ONE).map(Operation.MULTIPLY_TWO)).join();
+
+        assertArrayEquals(new double[]{4.0, 6.0, 8.0, 10.0}, result);
+        assertEquals(FragmentScheduler.FRAGMENTS_PER_WORKER, tasks.get(), "Un envío por fragmento, no uno por operación");
+    }
+
+    @Test
+    void testReductionShipsPartialStatesAndMatchesLocalResult() {
+        List<Integer> replySizes = new CopyOnWriteArrayList<>();
+        WorkerConnection reducing = new WorkerConnection("reducing", "", 0) {
+            @Override
+            public Map<String, String> sendTaskAndGetResult(Fragment fragment, String taskId, String operation,
+                                                            Map<String, Object> fields) {
+                double[] values = ops.OperationCompiler.compile(operation).apply(fragment.getData());
+                double[] partial = "stats".equals(fields.get("reduce"))
+                    ? Stats.of(values, 0, values.length).toWire()
+                    : Histogram.of(values, 0, values.length, (Integer) fields.get("bins"),
+                                   (Double) fields.get("lo"), (Double) fields.get("hi")).toWire();
+                replySizes.add(partial.length);
+                return Map.of("type", "result", "task_id", taskId, "result", Arrays.toString(partial));
+            }
+        };
+        double[] data = new double[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i + 1;
+        }
+        DArrayDouble dArray = new DArrayDouble(data, 3);
+        MasterServer master = new MasterServer(dArray, List.of(reducing));
+        master.setBackend(CostModel.Backend.DISTRIBUTED);
+
+        Stats stats = master.reduce(dArray, "x * 2", Reducer.stats()).join();
+        assertEquals(1000, stats.getCount());
+        assertEquals(1001000.0, stats.getSum());
+        assertEquals(2.0, stats.getMin());
+        assertEquals(2000.0, stats.getMax());
+        assertEquals(1001.0, stats.getMean(), 1e-9);
+        assertEquals(4 * (1000.0 * 1000 - 1) / 12, stats.getVariance(), 1e-6);
+        assertTrue(replySizes.stream().allMatch(n -> n == 5), "Cada fragmento vuelve como 5 double");
+
+        Histogram histogram = master.reduce(dArray, "x", Reducer.histogram(4, 0.5, 800.5)).join();
+        assertArrayEquals(new long[]{200, 200, 200, 200}, histogram.getCounts());
+        assertEquals(200, histogram.getOverflow());
+        assertEquals(0, histogram.getUnderflow());
+
+        master.setBackend(CostModel.Backend.LOCAL);
+        Stats local = master.reduce(dArray, "x * 2", Reducer.stats()).join();
+        assertEquals(stats.getSum(), local.getSum());
+        assertEquals(stats.getVariance(), local.getVariance(), 1e-6);
+    }
+
+    @Test
+    void testFilterShipsBackOnlyMatchingElementsInOrder() {
+        AtomicInteger shipped = new AtomicInteger();
+        WorkerConnection filtering = new WorkerConnection("filtering", "", 0) {
+            @Override
+            public Map<String, String> sendTaskAndGetResult(Fragment fragment, String taskId, String operation,
+                                                            Map<String, Object> fields) {
+                ops.CompiledOperation predicate = ops.OperationCompiler.compile((String) fields.getOrDefault("filter", "1"));
+                double[] kept = Arrays.stream(ops.OperationCompiler.compile(operation).apply(fragment.getData()))
+                    .filter(v -> ops.OperationCompiler.isTrue(predicate.applyAsDouble(v))).toArray();
+                shipped.addAndGet(kept.length);
+                return Map.of("type", "result", "task_id", taskId, "result", Arrays.toString(kept));
+            }
+        };
+        double[] data = new double[100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i;
+        }
+        DArrayDouble dArray = new DArrayDouble(data, 4);
+        MasterServer master = new MasterServer(dArray, List.of(filtering));
+        master.setBackend(CostModel.Backend.DISTRIBUTED);
+
+        double[] result = master.filter(dArray, "x / 2", "x % 5 == 0").join();
+        assertArrayEquals(new double[]{0, 5, 10, 15, 20, 25, 30, 35, 40, 45}, result);
+        assertEquals(result.length, shipped.get(), "Sólo vuelven los elementos que pasan el filtro");
+
+        assertArrayEquals(result, master.submit(dArray.filter("x % 10 == 0").map("x / 2")).join());
+
+        master.setBackend(CostModel.Backend.LOCAL);
+        assertArrayEquals(result, master.filter(dArray, "x / 2", "x % 5 == 0").join());
+        assertTrue(master.filter(dArray, "x", "x > 1000").join().length == 0);
+    }
+
+    @Test
+    void testSortAndScanMergeTheFragmentsTheWorkersPrepared() {
+        Set<String> steps = ConcurrentHashMap.newKeySet();
+        WorkerConnection stepping = new WorkerConnection("stepping", "", 0) {
+            @Override
+            public Map<String, String> sendTaskAndGetResult(Fragment fragment, String taskId, String operation,
+                                                            Map<String, Object> fields) {
+                double[] result = ops.OperationCompiler.compile(operation).apply(fragment.getData());
+                FragmentStep step = "sort".equals(fields.get("post")) ? FragmentStep.SORT : FragmentStep.SCAN;
+                step.apply(result, 0, result.length);
+                steps.add((String) fields.get("post"));
+                return Map.of("type", "result", "task_id", taskId, "result", Arrays.toString(result));
+            }
+        };
+        double[] data = new double[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (i * 7919) % 1000;
+        }
+        DArrayDouble dArray = new DArrayDouble(data, 4);
+        MasterServer master = new MasterServer(dArray, List.of(stepping));
+        master.setBackend(CostModel.Backend.DISTRIBUTED);
+
+        double[] sorted = master.sort(dArray, "x - 500").join();
+        for (int i = 0; i < sorted.length; i++) {
+            assertEquals(i - 500, sorted[i]);
+        }
+        double[] prefix = master.scan(dArray, "1").join();
+        for (int i = 0; i < prefix.length; i++) {
+            assertEquals(i + 1, prefix[i]);
+        }
+        assertEquals(Set.of("sort", "scan"), steps);
+
+        master.setBackend(CostModel.Backend.LOCAL);
+        assertArrayEquals(sorted, master.sort(dArray, "x - 500").join());
+        assertArrayEquals(prefix, master.scan(dArray, "1").join());
+    }
+
+    @Test
+    void testResultCacheServesRepeatedJobsWithoutTheWorkers() {
+        AtomicInteger tasks = new AtomicInteger();
+        List<WorkerConnection> workers = new ArrayList<>();
+        for (int w = 0; w < 2; w++) {
+            // Uno de los dos es más lento: el reparto medido del primer trabajo no es el inicial
+            long delay = w;
+            workers.add(new WorkerConnection("counting" + w, "", 0) {
+                @Override
+                public Map<String, String> sendTaskAndGetResult(Fragment fragment, String taskId, String operation) {
+                    tasks.incrementAndGet();
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    double[] result = ops.OperationCompiler.compile(operation).apply(fragment.getData());
+                    return Map.of("type", "result", "task_id", taskId, "result", Arrays.toString(result));
+                }
+            });
+        }
+        double[] data = new double[10_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i;
+        }
+        DArrayDouble dArray = new DArrayDouble(data, 4);
+        MasterServer master = new MasterServer(dArray, workers);
+        master.setBackend(CostModel.Backend.DISTRIBUTED);
+        ResultCache cache = new ResultCache(1 << 20);
+        master.setResultCache(cache);
+
+        double[] first = master.submit(dArray, "x * 2").join();
+        int sent = tasks.get();
+        assertEquals(sent, cache.size(), "Cada fragmento calculado queda en la caché");
+
+        Set<String> from = ConcurrentHashMap.newKeySet();
+        double[] second = master.submit(dArray, " X*2.0 ", (index, workerId, completed, total) -> from.add(workerId)).join();
+        assertArrayEquals(first, second);
+        assertEquals(sent, tasks.get(), "La misma operación sobre los mismos datos no sale del maestro");
+        assertEquals(Set.of(MasterServer.CACHE_WORKER_ID), from);
+        assertEquals(sent, cache.getHits());
+        assertEquals(sent, cache.getMisses());
+
+        master.submit(dArray, "x * 3").join();
+        assertEquals(2 * sent, tasks.get());
+    }
 }
@@ -0,0 +1,61 @@
+package handler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReduceSinkTest {
+
+    @Test
+    void testTreeCombinationMatchesSinglePassInAnyArrivalOrder() {
+        Random random = new Random(7);
+        double[] data = new double[10_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = 1e9 + random.nextGaussian();
+        }
+        int fragments = 13;
+        int size = data.length / fragments + 1;
+        ReduceSink<Stats> sink = new ReduceSink<>(Reducer.stats(), fragments);
+        for (int k = 0; k < fragments; k++) {
+            int index = (k * 5) % fragments;
+            int from = index * size;
+            int count = Math.min(size, data.length - from);
+            assertEquals(k == fragments - 1, sink.accept(index, Stats.fromWire(Stats.of(data, from, count).toWire())));
+        }
+
+        Stats whole = Stats.of(data, 0, data.length);
+        Stats combined = sink.getResult();
+        assertEquals(whole.getCount(), combined.getCount());
+        assertEquals(whole.getMin(), combined.getMin());
+        assertEquals(whole.getMax(), combined.getMax());
+        assertEquals(whole.getMean(), combined.getMean(), 1e-4);
+        assertEquals(1.0, combined.getVariance(), 0.05, "Sin cancelación aunque la media sea 1e9");
+        assertEquals(whole.getVariance(), combined.getVariance(), 1e-6);
+    }
+
+    @Test
+    void testDuplicatePartialIsCountedOnce() {
+        ReduceSink<Histogram> sink = new ReduceSink<>(Reducer.histogram(2, 0, 1), 2);
+        double[] values = {0.1, 0.7, 1.0, -3, Double.NaN};
+
+        assertFalse(sink.accept(0, Histogram.of(values, 0, values.length, 2, 0, 1)));
+        assertFalse(sink.accept(0, Histogram.of(values, 0, values.length, 2, 0, 1)));
+        assertEquals(1, sink.receivedCount());
+        assertTrue(sink.accept(1, Histogram.of(values, 0, 2, 2, 0, 1)));
+
+        Histogram histogram = sink.getResult();
+        assertArrayEquals(new long[]{2, 3}, histogram.getCounts());
+        assertEquals(1, histogram.getUnderflow());
+        assertEquals(6, histogram.getTotal(), "Los NaN no cuentan");
+    }
+
+    @Test
+    void testMalformedPartialIsRejected() {
+        assertThrows(IllegalStateException.class, () -> Stats.fromWire(new double[]{1, 2, 3}));
+        assertThrows(IllegalStateException.class, () -> Reducer.histogram(2, 0, 1).decode(new double[]{0, 1.5, 0, 0}));
+        assertThrows(IllegalArgumentException.class, () -> Reducer.histogram(2, 1, 1));
+        assertTrue(Double.isNaN(new ReduceSink<>(Reducer.stats(), 1).getResult().getMean()));
+    }
+}
@@ -0,0 +1,55 @@
+package handler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultCacheTest {
+
+    private static double[] result(int n) {
+        return new double[n];
+    }
+
+    @Test
+    void testHitsMissesAndByteBound() {
+        ResultCache cache = new ResultCache(4 * Double.BYTES);
+
+        assertNull(cache.get("a"));
+        assertTrue(cache.put("a", result(2)));
+        assertNotNull(cache.get("a"));
+        assertFalse(cache.put("big", result(5)), "Un resultado mayor que la capacidad no se guarda");
+
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2 * Double.BYTES, cache.getBytes());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvictedWhenTheNewcomerIsMoreFrequent() {
+        ResultCache cache = new ResultCache(4 * Double.BYTES);
+        cache.get("a");
+        cache.put("a", result(2));
+        cache.get("b");
+        cache.put("b", result(2));
+        cache.get("a");                       // "b" queda como el menos reciente
+
+        cache.get("c");
+        assertFalse(cache.put("c", result(2)), "Pedido una vez, no desplaza a \"b\"");
+        assertEquals(1, cache.getRejections());
+
+        cache.get("c");
+        assertTrue(cache.put("c", result(2)));
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertEquals(4 * Double.BYTES, cache.getBytes());
+    }
+
+    @Test
+    void testKeySeparatesContentSizeAndOperation() {
+        assertNotEquals(ResultCache.key("h", 2, "x*2.0"), ResultCache.key("h", 2, "x*3.0"));
+        assertNotEquals(ResultCache.key("h", 2, "x"), ResultCache.key("h", 3, "x"));
+    }
+}
@@ -7,6 +7,9 @@ import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+// ResultManager está obsoleto en favor de ResultSink, pero sigue siendo API pública: se prueba
+// hasta que se elimine, así que el aviso de uso obsoleto es esperado aquí.
+@SuppressWarnings("deprecation")
 class ResultManagerTest {
 
     private ResultManager resultManager;
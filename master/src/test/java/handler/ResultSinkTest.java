@@ -0,0 +1,96 @@
+package handler;
+
+import data.OffHeapDoubles;
+import org.junit.jupiter.api.Test;
+import protocol.BinaryCodec;
+import protocol.BinaryFrame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultSinkTest {
+
+    private static BinaryFrame resultFrame(double[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryCodec.writeResult(out, "T", "w1", data);
+        return BinaryCodec.readFrame(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    void testFramesAreDecodedIntoTheirSlices() throws IOException {
+        ResultSink sink = new ResultSink(5, 2);
+
+        assertFalse(sink.accept(1, 3, 2, resultFrame(new double[]{4.0, 5.0})));
+        assertNull(sink.getResult(), "No debe haber resultado hasta recibir todos los fragmentos");
+
+        assertTrue(sink.accept(0, 0, 3, resultFrame(new double[]{1.0, 2.0, 3.0})));
+        assertArrayEquals(new double[]{1.0, 2.0, 3.0, 4.0, 5.0}, sink.getResult());
+        assertSame(sink.getResult(), sink.getResult(), "getResult() no debe copiar ni reensamblar");
+    }
+
+    @Test
+    void testDuplicateFragmentIsCountedOnce() {
+        ResultSink sink = new ResultSink(4, 2);
+
+        sink.accept(0, 0, 2, new double[]{1.0, 2.0});
+        sink.accept(0, 0, 2, new double[]{1.5, 2.5});
+        assertEquals(1, sink.receivedCount());
+        assertFalse(sink.isComplete());
+
+        sink.accept(1, 2, 2, new double[]{3.0, 4.0});
+        assertArrayEquals(new double[]{1.0, 2.0, 3.0, 4.0}, sink.getResult(), "El primer resultado gana");
+    }
+
+    @Test
+    void testStaleAttemptAfterTheWinnerDoesNotTouchTheDeliveredResult() throws IOException {
+        ResultSink sink = new ResultSink(4, 2);
+        assertFalse(sink.accept(0, 0, 2, resultFrame(new double[]{1.0, 2.0})));
+        assertTrue(sink.accept(1, 2, 2, resultFrame(new double[]{3.0, 4.0})));
+        double[] delivered = sink.getResult();
+
+        // La copia especulativa perdedora responde cuando el trabajo ya entregó su resultado
+        assertTrue(sink.accept(1, 2, 2, resultFrame(new double[]{-3.0, -4.0})));
+        assertTrue(sink.accept(0, 0, 2, new double[]{-1.0, -2.0}));
+        assertArrayEquals(new double[]{1.0, 2.0, 3.0, 4.0}, delivered);
+        assertEquals(2, sink.receivedCount());
+    }
+
+    @Test
+    void testSliceOutOfRangeIsRejected() {
+        ResultSink sink = new ResultSink(3, 2);
+
+        assertThrows(IllegalArgumentException.class, () -> sink.accept(1, 2, 2, new double[]{1.0, 2.0}));
+        assertThrows(IllegalArgumentException.class, () -> sink.accept(2, 0, 1, new double[]{1.0}));
+    }
+
+    @Test
+    void testShortResultIsRejectedInsteadOfLeavingZeros() throws IOException {
+        ResultSink sink = new ResultSink(4, 2);
+        assertThrows(IllegalStateException.class, () -> sink.accept(0, 0, 2, resultFrame(new double[]{1.0})));
+        assertThrows(IllegalStateException.class, () -> sink.accept(1, 2, 2, new double[]{3.0}));
+        assertEquals(0, sink.receivedCount(), "Un resultado corto no cuenta como recibido");
+
+        ResultSinkInt ints = new ResultSinkInt(4, 2);
+        assertThrows(IllegalStateException.class, () -> ints.accept(1, 2, 2, new int[]{3, 4, 5}));
+        assertFalse(ints.isReceived(1));
+    }
+
+    @Test
+    void testFramesAreCopiedIntoOffHeapStorage() throws IOException {
+        try (OffHeapDoubles storage = OffHeapDoubles.allocate(5)) {
+            ResultSink sink = new ResultSink(storage, 2);
+
+            assertFalse(sink.accept(1, 3, 2, resultFrame(new double[]{4.0, 5.0})));
+            assertTrue(sink.accept(0, 0, 3, new double[]{1.0, 2.0, 3.0}));
+
+            assertNull(sink.getResult(), "Con destino fuera del heap no hay array en el heap");
+            assertSame(storage, sink.getStorage());
+            double[] back = new double[5];
+            storage.get(0, back, 0, 5);
+            assertArrayEquals(new double[]{1.0, 2.0, 3.0, 4.0, 5.0}, back);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package handler;
+
+import data.FragmentInt;
+import ops.CompiledOperation;
+import ops.OperationCompiler;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultValidatorTest {
+
+    private static void check(String operation, int input, int actual) {
+        CompiledOperation compiled = OperationCompiler.compile(operation);
+        ResultValidator.check(compiled, new FragmentInt("F0", 0, new int[]{input}), i -> actual, 1, 1, 0);
+    }
+
+    @Test
+    void testIntArithmeticMustMatchExactly() {
+        check(Operation.ADD_ONE, 1, 2);
+        check(Operation.MULTIPLY_TWO, -7, -14);
+        // Un worker que devuelve x sin calcular queda a una unidad y no debe pasar
+        for (String operation : new String[]{Operation.ADD_ONE, Operation.SUBTRACT_ONE, Operation.MULTIPLY_TWO}) {
+            assertThrows(IllegalStateException.class, () -> check(operation, 1, 1), operation);
+        }
+    }
+
+    @Test
+    void testOneUnitIsAllowedOnlyAcrossANearbyIntegerBoundary() {
+        // 3 * 0.1 * 10 = 3.0000000000000004: otra biblioteca podría dejarlo en 2.999… y truncar a 2
+        check("x * 0.1 * 10", 3, 3);
+        check("x * 0.1 * 10", 3, 2);
+        assertThrows(IllegalStateException.class, () -> check("x * 0.1 * 10", 3, 4));
+        // 2.5 está lejos de cualquier entero: sólo vale 2
+        assertThrows(IllegalStateException.class, () -> check("x / 2", 5, 3));
+        assertThrows(IllegalStateException.class, () -> check("x / 2", 5, 1));
+    }
+}
@@ -0,0 +1,68 @@
+package handler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeightedPartitionerTest {
+
+    private final Map<String, Integer> cores = Map.of("chico", 2, "grande", 16);
+
+    private static int shareOf(WeightedPartitioner.Plan<String> plan, String worker) {
+        int[] sizes = plan.getSizes();
+        int total = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            if (worker.equals(plan.getOwners().get(i))) {
+                total += sizes[i];
+            }
+        }
+        return total;
+    }
+
+    @Test
+    void testInitialPlanFollowsAdvertisedCores() {
+        WeightedPartitioner<String> partitioner = new WeightedPartitioner<>(cores::get);
+
+        WeightedPartitioner.Plan<String> plan = partitioner.plan(1800, List.of("chico", "grande"), 4, 1);
+
+        assertEquals(8, plan.size());
+        assertEquals(1800, Arrays.stream(plan.getSizes()).sum());
+        assertEquals(200, shareOf(plan, "chico"));
+        assertEquals(1600, shareOf(plan, "grande"));
+    }
+
+    @Test
+    void testMeasuredThroughputOverridesCores() {
+        WeightedPartitioner<String> partitioner = new WeightedPartitioner<>(cores::get, 1.0);
+        // El worker "grande" resulta ser igual de rápido que el "chico"
+        partitioner.record("chico", 1000, 1_000_000_000L);
+        partitioner.record("grande", 1000, 1_000_000_000L);
+
+        WeightedPartitioner.Plan<String> plan = partitioner.plan(1000, List.of("chico", "grande"), 2, 1);
+
+        assertEquals(500, shareOf(plan, "chico"));
+        assertEquals(500, shareOf(plan, "grande"));
+    }
+
+    @Test
+    void testUnmeasuredWorkerIsEstimatedFromThroughputPerCore() {
+        WeightedPartitioner<String> partitioner = new WeightedPartitioner<>(cores::get);
+        partitioner.record("chico", 2000, 1_000_000_000L);   // 1000 elem/s por núcleo
+
+        assertEquals(16000.0, partitioner.weight("grande", List.of("chico", "grande")), 1e-9);
+    }
+
+    @Test
+    void testFragmentsAreNeverEmpty() {
+        WeightedPartitioner<String> partitioner = new WeightedPartitioner<>(cores::get);
+
+        WeightedPartitioner.Plan<String> plan = partitioner.plan(5, List.of("chico", "grande"), 4, 1);
+
+        assertEquals(5, Arrays.stream(plan.getSizes()).sum());
+        assertTrue(Arrays.stream(plan.getSizes()).allMatch(s -> s > 0));
+    }
+}
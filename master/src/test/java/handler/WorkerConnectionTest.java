@@ -0,0 +1,325 @@
+package handler;
+
+import data.Fragment;
+import data.OffHeapDoubles;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import protocol.BinaryCodec;
+import protocol.BinaryFrame;
+import protocol.Precision;
+import protocol.ProtocolHandler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prueba la conexión persistente y multiplexada contra un worker mínimo en Java que
+ * responde las tareas en orden inverso (x * 10).
+ */
+class WorkerConnectionTest {
+
+    private ServerSocket server;
+    private final AtomicInteger accepted = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new ServerSocket(0);
+        Thread t = new Thread(this::serve);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    private void serve() {
+        try {
+            while (true) {
+                Socket s = server.accept();
+                accepted.incrementAndGet();
+                BufferedInputStream in = new BufferedInputStream(s.getInputStream());
+                OutputStream out = new BufferedOutputStream(s.getOutputStream());
+
+                ProtocolHandler.readLine(in);
+                out.write("{\"type\":\"INIT\",\"encoding\":\"binary\",\"capabilities\":{\"cores\":8}}\n"
+                        .getBytes(StandardCharsets.UTF_8));
+                out.flush();
+
+                // Acumula 4 tareas y responde en orden inverso.
+                List<BinaryFrame> batch = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    batch.add(BinaryCodec.readFrame(in));
+                }
+                for (int i = batch.size() - 1; i >= 0; i--) {
+                    BinaryFrame f = batch.get(i);
+                    double[] data = f.toDoubleArray();
+                    for (int j = 0; j < data.length; j++) data[j] *= 10;
+                    Map<String, Object> header = new HashMap<>(ProtocolHandler.createResultHeader(f.getHeader().get("task_id"), "fake"));
+                    header.put("request_id", Integer.parseInt(f.getHeader().get("request_id")));
+                    BinaryCodec.writeFrame(out, BinaryCodec.KIND_RESULT, header, data, 0, data.length);
+                }
+            }
+        } catch (IOException ignored) {
+            // servidor cerrado
+        }
+    }
+
+    @Test
+    void testOutOfOrderResultsOnSingleSocket() {
+        WorkerConnection wc = new WorkerConnection("w1", "localhost", server.getLocalPort());
+
+        List<CompletableFuture<double[]>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Fragment f = new Fragment("F" + i, i, new double[]{i, i + 0.5});
+            assertEquals(ProtocolHandler.ENCODING_BINARY, wc.negotiate());
+            futures.add(wc.executeAsync(f, "T" + i, Operation.IDENTITY));
+        }
+
+        for (int i = 0; i < 4; i++) {
+            assertArrayEquals(new double[]{i * 10.0, (i + 0.5) * 10}, futures.get(i).join(),
+                    "Cada resultado debe volver a la petición que lo originó");
+        }
+        assertEquals(1, accepted.get(), "Todas las tareas deben compartir un único socket");
+        assertEquals(8, wc.getCores());
+        assertEquals(0, wc.getInFlight());
+        wc.close();
+    }
+
+    @Test
+    void testResidentFragmentTravelsOnceAndIsResentWhenMissing() throws IOException {
+        Map<String, double[]> cache = new ConcurrentHashMap<>();
+        List<Integer> bodies = new CopyOnWriteArrayList<>();
+        try (ServerSocket caching = new ServerSocket(0)) {
+            Thread t = new Thread(() -> serveCaching(caching, cache, bodies));
+            t.setDaemon(true);
+            t.start();
+            WorkerConnection wc = new WorkerConnection("w1", "localhost", caching.getLocalPort());
+            Fragment fragment = new Fragment("F0", 0, new double[]{1, 2, 3}).asResident("a:0+3");
+
+            assertArrayEquals(new double[]{10, 20, 30}, wc.execute(fragment, "T0", Operation.IDENTITY));
+            assertArrayEquals(new double[]{10, 20, 30}, wc.execute(fragment, "T1", Operation.IDENTITY));
+            assertEquals(List.of(3, 0), bodies, "La segunda tarea sólo cita el fragmento");
+            assertEquals(1, wc.getResidentHits());
+
+            // El worker lo perdió (p. ej. se reinició): responde fragment_missing y se reenvía entero
+            cache.clear();
+            assertArrayEquals(new double[]{10, 20, 30}, wc.execute(fragment, "T2", Operation.IDENTITY));
+            assertEquals(List.of(3, 0, 0, 3), bodies);
+
+            // Mismo id con otros datos: la huella cambia y viaja de nuevo
+            Fragment changed = new Fragment("F0", 0, new double[]{4, 5, 6}).asResident("a:0+3");
+            assertNotEquals(fragment.contentHash(), changed.contentHash());
+            assertArrayEquals(new double[]{40, 50, 60}, wc.execute(changed, "T3", Operation.IDENTITY));
+            assertEquals(List.of(3, 0, 0, 3, 3), bodies);
+            wc.close();
+        }
+    }
+
+    @Test
+    void testResponsesAreDeliveredOutsideTheNioLoops() {
+        WorkerConnection wc = new WorkerConnection("w1", "localhost", server.getLocalPort());
+        List<CompletableFuture<Boolean>> inLoop = new ArrayList<>();
+        assertEquals(ProtocolHandler.ENCODING_BINARY, wc.negotiate());
+        for (int i = 0; i < 4; i++) {
+            Fragment f = new Fragment("F" + i, i, new double[]{i});
+            inLoop.add(wc.executeAsync(f, "T" + i, Operation.IDENTITY).thenApply(r -> NioEventLoop.inAnyLoop()));
+        }
+        // Una continuación que bloquea (p. ej. al reconectar) no debe ocupar un loop
+        for (CompletableFuture<Boolean> f : inLoop) {
+            assertFalse(f.join());
+        }
+        wc.close();
+    }
+
+    @Test
+    void testReducedPrecisionTaskIsUpcastAndItsRoundingIsRecorded() throws IOException {
+        List<Integer> dtypes = new CopyOnWriteArrayList<>();
+        try (ServerSocket reduced = new ServerSocket(0)) {
+            Thread t = new Thread(() -> serveReduced(reduced, dtypes));
+            t.setDaemon(true);
+            t.start();
+            WorkerConnection wc = new WorkerConnection("w1", "localhost", reduced.getLocalPort());
+            double[] data = {0.1, 1.5, -2.25, 1e-3, Double.NaN};
+            ResultSink sink = new ResultSink(data.length, 1);
+
+            assertTrue(wc.submit(new Fragment("F0", 0, data), 0, "T0", Operation.IDENTITY, null, Precision.FLOAT32, sink).join());
+            assertEquals(List.of(BinaryCodec.DTYPE_FLOAT32), dtypes, "Los datos viajan en float32");
+            double inputError = 0;
+            double resultError = 0;
+            for (int i = 0; i < data.length; i++) {
+                double computed = (double) (float) data[i] * 10;
+                assertEquals((float) computed, sink.getResult()[i], "El resultado se amplía a double");
+                inputError = Math.max(inputError, Precision.error(data[i], (float) data[i]));
+                resultError = Math.max(resultError, Precision.error(computed, (float) computed));
+            }
+            assertTrue(inputError > 0 && resultError > 0);
+            assertEquals(inputError, sink.getMaxInputError());
+            assertEquals(resultError, sink.getMaxResultError());
+            wc.close();
+        }
+    }
+
+    @Test
+    void testLargeFragmentsStreamAsChunksWrittenIntoTheSink() throws IOException {
+        List<String> chunks = new CopyOnWriteArrayList<>();
+        try (ServerSocket streaming = new ServerSocket(0);
+             OffHeapDoubles storage = OffHeapDoubles.allocate(10)) {
+            Thread t = new Thread(() -> serveStreaming(streaming, chunks));
+            t.setDaemon(true);
+            t.start();
+            WorkerConnection wc = new WorkerConnection("w1", "localhost", streaming.getLocalPort());
+            wc.setStreaming(true);
+            double[] data = new double[10];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = i;
+                storage.set(i, 100 + i);
+            }
+            ResultSink sink = new ResultSink(20, 2);
+
+            assertFalse(wc.submit(new Fragment("F0", 0, data), 0, "T0", Operation.IDENTITY, sink).join());
+            assertTrue(wc.submit(new Fragment("F1", 10L, storage.slice(0, 10)), 1, "T1", Operation.IDENTITY, sink).join());
+            // El worker anuncia trozos de 4 elementos y los responde en orden inverso
+            assertEquals(List.of("T0:0/3:4", "T0:1/3:4", "T0:2/3:2", "T1:0/3:4", "T1:1/3:4", "T1:2/3:2"), chunks);
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i * 10, sink.getResult()[i]);
+                assertEquals((100 + i) * 10, sink.getResult()[10 + i]);
+            }
+            assertEquals(2, wc.getStreamedTasks());
+
+            // Un fragmento que cabe en un trozo viaja entero
+            assertTrue(wc.submit(new Fragment("F2", 0, new double[]{1, 2}), 0, "T2", Operation.IDENTITY, new ResultSink(2, 1)).join());
+            assertEquals("T2:null/null:2", chunks.get(chunks.size() - 1));
+            wc.close();
+        }
+    }
+
+    /**
+     * Worker mínimo que anuncia trozos de 4 elementos, espera a tener todos los trozos de
+     * un fragmento y los responde en orden inverso (x * 10); una tarea sin trozos se responde
+     * al momento.
+     */
+    private static void serveStreaming(ServerSocket streaming, List<String> chunks) {
+        try (Socket s = streaming.accept()) {
+            BufferedInputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = new BufferedOutputStream(s.getOutputStream());
+            ProtocolHandler.readLine(in);
+            out.write("{\"type\":\"INIT\",\"encoding\":\"binary\",\"capabilities\":{\"cores\":1,\"stream_chunk\":4}}\n"
+                    .getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            while (true) {
+                List<BinaryFrame> batch = new ArrayList<>();
+                do {
+                    BinaryFrame f = BinaryCodec.readFrame(in);
+                    Map<String, String> task = f.getHeader();
+                    chunks.add(task.get("task_id") + ":" + task.get("chunk") + "/" + task.get("chunks") + ":" + f.count());
+                    batch.add(f);
+                } while (batch.get(0).getHeader().get("chunks") != null
+                        && batch.size() < Integer.parseInt(batch.get(0).getHeader().get("chunks")));
+                for (int i = batch.size() - 1; i >= 0; i--) {
+                    BinaryFrame f = batch.get(i);
+                    double[] result = f.toDoubleArray();
+                    for (int j = 0; j < result.length; j++) result[j] *= 10;
+                    Map<String, Object> header = new HashMap<>(ProtocolHandler.createResultHeader(f.getHeader().get("task_id"), "fake"));
+                    header.put("request_id", Integer.parseInt(f.getHeader().get("request_id")));
+                    BinaryCodec.writeFrame(out, BinaryCodec.KIND_RESULT, header, result, 0, result.length);
+                }
+                out.flush();
+            }
+        } catch (IOException ignored) {
+            // servidor cerrado
+        }
+    }
+
+    /**
+     * Worker mínimo que responde cada tarea con x * 10 en el dtype de la tarea y anota el
+     * error de redondeo del resultado en "max_error".
+     */
+    private static void serveReduced(ServerSocket reduced, List<Integer> dtypes) {
+        try (Socket s = reduced.accept()) {
+            BufferedInputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = new BufferedOutputStream(s.getOutputStream());
+            ProtocolHandler.readLine(in);
+            out.write("{\"type\":\"INIT\",\"encoding\":\"binary\",\"capabilities\":{\"cores\":1}}\n"
+                    .getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            while (true) {
+                BinaryFrame f = BinaryCodec.readFrame(in);
+                dtypes.add(f.getDtype());
+                double[] result = f.toDoubleArray();
+                for (int j = 0; j < result.length; j++) result[j] *= 10;
+                Precision precision = Precision.ofDtype(f.getDtype());
+                ByteBuffer body = ByteBuffer.allocate(result.length * precision.width()).order(ByteOrder.LITTLE_ENDIAN);
+                Map<String, Object> header = new HashMap<>(ProtocolHandler.createResultHeader(f.getHeader().get("task_id"), "fake"));
+                header.put("request_id", Integer.parseInt(f.getHeader().get("request_id")));
+                header.put("max_error", precision.encode(DoubleBuffer.wrap(result), body));
+                out.write(BinaryCodec.encodeHead(BinaryCodec.KIND_RESULT, precision.dtype(), header, body.capacity()));
+                out.write(body.array());
+                out.flush();
+            }
+        } catch (IOException ignored) {
+            // servidor cerrado
+        }
+    }
+
+    /**
+     * Worker mínimo con caché de fragmentos residentes que responde cada tarea al momento (x * 10).
+     */
+    private static void serveCaching(ServerSocket caching, Map<String, double[]> cache, List<Integer> bodies) {
+        try (Socket s = caching.accept()) {
+            BufferedInputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = new BufferedOutputStream(s.getOutputStream());
+            ProtocolHandler.readLine(in);
+            out.write("{\"type\":\"INIT\",\"encoding\":\"binary\",\"capabilities\":{\"cores\":1,\"fragment_cache\":1024}}\n"
+                    .getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            while (true) {
+                BinaryFrame f = BinaryCodec.readFrame(in);
+                Map<String, String> task = f.getHeader();
+                double[] data = f.toDoubleArray();
+                bodies.add(data.length);
+                String key = task.get("fragment_id") + "/" + task.get("hash");
+                Map<String, Object> header = new HashMap<>(ProtocolHandler.createResultHeader(task.get("task_id"), "fake"));
+                header.put("request_id", Integer.parseInt(task.get("request_id")));
+                if (task.get("cached") != null) {
+                    data = cache.get(key);
+                    if (data == null) {
+                        header.put("type", "error");
+                        header.put("code", WorkerConnection.FRAGMENT_MISSING);
+                        BinaryCodec.writeFrame(out, BinaryCodec.KIND_ERROR, header);
+                        out.flush();
+                        continue;
+                    }
+                } else if (task.get("fragment_id") != null) {
+                    cache.put(key, data.clone());
+                }
+                double[] result = data.clone();
+                for (int j = 0; j < result.length; j++) result[j] *= 10;
+                BinaryCodec.writeFrame(out, BinaryCodec.KIND_RESULT, header, result, 0, result.length);
+                out.flush();
+            }
+        } catch (IOException ignored) {
+            // servidor cerrado
+        }
+    }
+}
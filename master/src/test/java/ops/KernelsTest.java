@@ -0,0 +1,101 @@
+package ops;
+
+import handler.Operation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class KernelsTest {
+
+    private static final String[] CATALOG = {
+        Operation.IDENTITY, Operation.ADD_ONE, Operation.SUBTRACT_ONE, Operation.MULTIPLY_TWO, Operation.SQUARE,
+        Operation.SQRT, Operation.SIN, Operation.COS, Operation.TAN, Operation.SIN_PLUS_COS,
+        Operation.SIN_SQUARE_PLUS_COS_SQUARE, Operation.SIN_PLUS_COS_SQUARE_DIV_SQRT,
+        Operation.EXPONENTIAL, Operation.LOG_NATURAL
+    };
+
+    @AfterEach
+    void restoreMode() {
+        Kernels.configure(Kernels.Mode.AUTO);
+    }
+
+    private static double[] doubles() {
+        double[] data = new double[1000 + 13];   // cola que no llena un vector
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (i - 500) * 0.731;
+        }
+        double[] edges = {0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                          Double.MAX_VALUE, -Double.MIN_VALUE, 1e300, -1e-300};
+        System.arraycopy(edges, 0, data, data.length - edges.length, edges.length);
+        return data;
+    }
+
+    private static int[] ints() {
+        int[] data = new int[1000 + 13];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (i - 500) * 4099;
+        }
+        int[] edges = {Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE - 1, Integer.MIN_VALUE + 1,
+                       1 << 30, (1 << 30) - 1, -(1 << 30), -(1 << 30) - 1, 46340, 46341, -46340, -46341, 0};
+        System.arraycopy(edges, 0, data, data.length - edges.length, edges.length);
+        return data;
+    }
+
+    @Test
+    void testVectorKernelsMatchScalarPath() {
+        assumeTrue(Kernels.vectorAvailable(), "JVM sin --add-modules jdk.incubator.vector");
+        double[] doubles = doubles();
+        int[] ints = ints();
+        for (String expression : CATALOG) {
+            CompiledOperation op = OperationCompiler.compile(expression);
+
+            Kernels.configure(Kernels.Mode.SCALAR);
+            assertFalse(op.isVectorized());
+            double[] expected = new double[doubles.length];
+            op.apply(doubles, 0, expected, 0, doubles.length);
+            int[] expectedInts = op.apply(ints);
+
+            Kernels.configure(Kernels.Mode.VECTOR);
+            assertTrue(op.isVectorized(), expression);
+            double[] actual = new double[doubles.length + 3];
+            op.apply(doubles, 0, actual, 3, doubles.length);
+            int[] actualInts = op.apply(ints);
+
+            for (int i = 0; i < doubles.length; i++) {
+                assertTrue(CompiledOperation.matches(expected[i], actual[i + 3]),
+                    expression + " con x=" + doubles[i] + ": " + expected[i] + " frente a " + actual[i + 3]);
+            }
+            for (int i = 0; i < ints.length; i++) {
+                // El último bit de sin/cos del núcleo vectorial puede mover el truncado en una unidad
+                assertTrue(Math.abs((long) expectedInts[i] - actualInts[i]) <= 1,
+                    expression + " con x=" + ints[i] + ": " + expectedInts[i] + " frente a " + actualInts[i]);
+            }
+        }
+    }
+
+    @Test
+    void testIntegerArithmeticSaturatesExactlyLikeTheCast() {
+        assumeTrue(Kernels.vectorAvailable(), "JVM sin --add-modules jdk.incubator.vector");
+        Kernels.configure(Kernels.Mode.VECTOR);
+        int[] data = ints();
+        for (String expression : new String[]{Operation.ADD_ONE, Operation.SUBTRACT_ONE, Operation.MULTIPLY_TWO, Operation.SQUARE}) {
+            CompiledOperation op = OperationCompiler.compile(expression);
+            int[] actual = op.apply(data);
+            for (int i = 0; i < data.length; i++) {
+                assertEquals(op.applyAsInt(data[i]), actual[i], expression + " con x=" + data[i]);
+            }
+        }
+    }
+
+    @Test
+    void testOperationsOutsideTheCatalogStayScalar() {
+        assertFalse(OperationCompiler.compile("x * 3 + 1").isVectorized());
+        Kernels.configure(Kernels.Mode.SCALAR);
+        assertFalse(OperationCompiler.compile(Operation.SQUARE).isVectorized());
+        if (!Kernels.vectorAvailable()) {
+            assertThrows(IllegalStateException.class, () -> Kernels.configure(Kernels.Mode.VECTOR));
+        }
+    }
+}
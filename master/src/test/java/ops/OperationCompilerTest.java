@@ -0,0 +1,105 @@
+package ops;
+
+import handler.Operation;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OperationCompilerTest {
+
+    private static double eval(String expression, double x) {
+        return OperationCompiler.compile(expression).applyAsDouble(x);
+    }
+
+    @Test
+    void testPredefinedOperationsMatchHandWrittenFormulas() {
+        for (double x : new double[]{0.0, 1.0, -1.0, 3.1415, 1e6}) {
+            double expected = Math.pow(Math.sin(x) + Math.cos(x), 2) / (Math.sqrt(Math.abs(x)) + 1);
+            assertEquals(expected, eval(Operation.SIN_PLUS_COS_SQUARE_DIV_SQRT, x), 1e-12);
+            assertEquals(x + 1, eval(Operation.ADD_ONE, x));
+            assertEquals(x * x, eval(Operation.SQUARE, x));
+            assertEquals(Math.sqrt(Math.abs(x)), eval(Operation.SQRT, x));
+            assertEquals(1.0, eval(Operation.SIN_SQUARE_PLUS_COS_SQUARE, x), 1e-12);
+        }
+        assertTrue(OperationCompiler.compile(Operation.IDENTITY).isIdentity());
+        assertFalse(OperationCompiler.compile(Operation.ADD_ONE).isIdentity());
+    }
+
+    @Test
+    void testPrecedenceAndAssociativity() {
+        assertEquals(7.0, eval("1 + 2 * 3", 0));
+        assertEquals(512.0, eval("2^3^2", 0), "^ es asociativo por la derecha");
+        assertEquals(-9.0, eval("-x^2", 3), "El menos unario va después de la potencia");
+        assertEquals(1.0, eval("10 - 4 - 5", 0), "La resta es asociativa por la izquierda");
+        assertEquals(-1.0, eval("-7 % 3", 0), "% conserva el signo del dividendo");
+        assertEquals(2000.0, eval("2e3", 0));
+        assertEquals(Math.PI * 2, eval("pi * x", 2));
+        assertEquals(3.0, eval("max(min(x, 3), atan2(0, 1))", 5));
+    }
+
+    @Test
+    void testArithmeticFollowsIeee754() {
+        assertEquals(Double.POSITIVE_INFINITY, eval("1 / x", 0));
+        assertEquals(Double.NEGATIVE_INFINITY, eval("log(x)", 0));
+        assertTrue(Double.isNaN(eval("sqrt(x)", -1)));
+        assertEquals(0, OperationCompiler.compile("sqrt(x)").applyAsInt(-1), "NaN convierte a 0 como (int)");
+        assertEquals(Integer.MAX_VALUE, OperationCompiler.compile("x * 1e10").applyAsInt(5), "Satura como (int)");
+    }
+
+    @Test
+    void testNormalizeIgnoresSpacingCaseAndNumberSpelling() {
+        assertEquals("sin(x)*2.0+1.0", OperationCompiler.normalize(" SIN( X ) * 2 + 1.0 "));
+        assertEquals(OperationCompiler.normalize("x*2e0"), OperationCompiler.normalize("x * 2."));
+        assertEquals("log10(x)", OperationCompiler.normalize("log10(x)"));
+        assertNotEquals(OperationCompiler.normalize("x*2"), OperationCompiler.normalize("2*x"));
+        assertThrows(IllegalArgumentException.class, () -> OperationCompiler.normalize("x +"));
+    }
+
+    @Test
+    void testComparisonsYieldOneOrZero() {
+        assertEquals(1.0, eval("x > 0.5", 1));
+        assertEquals(0.0, eval("x <= 0.5", 1));
+        assertEquals(1.0, eval("(x >= 2) * (x != 3)", 2));
+        assertEquals(0.0, eval("min(x > 1, x < 5)", 7));
+        assertEquals(1.0, eval("x + 1 == 2 * x", 1), "La comparación tiene la menor precedencia");
+        assertEquals(0.0, eval("x == x", Double.NaN), "Con NaN sólo se cumple !=");
+        assertEquals(1.0, eval("x != x", Double.NaN));
+        assertFalse(OperationCompiler.isTrue(eval("sqrt(x)", -1)));
+        assertThrows(IllegalArgumentException.class, () -> OperationCompiler.compile("x = 1"));
+        assertThrows(IllegalArgumentException.class, () -> OperationCompiler.compile("x < 1 < 2"));
+    }
+
+    @Test
+    void testSameTextReturnsCachedInstance() {
+        assertSame(OperationCompiler.compile("x * 2 + 1"), OperationCompiler.compile("x * 2 + 1"));
+    }
+
+    @Test
+    void testInvalidExpressionsReportPosition() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> OperationCompiler.compile("x +"));
+        assertTrue(e.getMessage().contains("posición 3"), e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> OperationCompiler.compile("foo(x)"));
+        assertThrows(IllegalArgumentException.class, () -> OperationCompiler.compile("(x"));
+        assertThrows(IllegalArgumentException.class, () -> OperationCompiler.compile("sin x"));
+        assertThrows(IllegalArgumentException.class, () -> OperationCompiler.compile(Operation.CUSTOM_PLACEHOLDER));
+    }
+
+    @Test
+    void testArraysAreTransformedInPlace() {
+        double[] data = {1.0, 2.0, 3.0};
+        OperationCompiler.compile("x * 2").apply(data, 0, data, 0, data.length);
+        assertArrayEquals(new double[]{2.0, 4.0, 6.0}, data);
+        assertArrayEquals(new int[]{1, 4, -4}, OperationCompiler.compile("x * 1.5").apply(new int[]{1, 3, -3}));
+    }
+
+    @Test
+    void testComposeSubstitutesTheVariableOnly() {
+        assertEquals("(sin(x)) * 2", OperationCompiler.compose("x * 2", "sin(x)"));
+        assertEquals("2e3 + max((x + 1), exp(1))", OperationCompiler.compose("2e3 + max(X, exp(1))", "x + 1"));
+        assertEquals("x + 1", OperationCompiler.compose("x", "x + 1"));
+        assertEquals("x * 2", OperationCompiler.compose("x * 2", "x"));
+        assertEquals(-16.0, eval(OperationCompiler.compose("-x^2", "x * 2"), 2), "(x * 2) se sustituye entre paréntesis");
+        assertEquals(-2.0, eval("int(x)", -2.9));
+        assertThrows(IllegalArgumentException.class, () -> OperationCompiler.compose("x +", "x"));
+    }
+}
@@ -0,0 +1,73 @@
+package protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryCodecTest {
+
+    @Test
+    void testDoubleTaskRoundTrip() throws IOException {
+        double[] data = {1.5, -2.25, 0.0, Double.MAX_VALUE};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryCodec.writeTask(out, "T7", data, "sin(x)");
+
+        byte[] bytes = out.toByteArray();
+        assertEquals(BinaryCodec.MAGIC, bytes[0] & 0xFF, "El primer byte debe ser el magic");
+
+        BinaryFrame frame = BinaryCodec.readFrame(new ByteArrayInputStream(bytes));
+        assertEquals(BinaryCodec.KIND_TASK, frame.getKind());
+        assertEquals(BinaryCodec.DTYPE_FLOAT64, frame.getDtype());
+        assertEquals("T7", frame.getHeader().get("task_id"));
+        assertEquals("sin(x)", frame.getHeader().get("operation"));
+        assertArrayEquals(data, frame.toDoubleArray());
+    }
+
+    @Test
+    void testIntResultRoundTrip() throws IOException {
+        int[] data = {1, -2, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryCodec.writeResult(out, "T1", "w1", data);
+
+        BinaryFrame frame = BinaryCodec.readFrame(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(BinaryCodec.KIND_RESULT, frame.getKind());
+        assertEquals("w1", frame.getHeader().get("worker_id"));
+        assertArrayEquals(data, frame.toIntArray());
+    }
+
+    @Test
+    void testBodyIsLittleEndian() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryCodec.writeResult(out, "T1", "w1", new int[]{1});
+
+        byte[] bytes = out.toByteArray();
+        int bodyStart = bytes.length - Integer.BYTES;
+        assertEquals(1, bytes[bodyStart]);
+        assertEquals(0, bytes[bodyStart + 3]);
+    }
+
+    @Test
+    void testCopyIntoWritesAtOffset() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryCodec.writeResult(out, "T1", "w1", new double[]{3.0, 4.0});
+
+        double[] dest = new double[4];
+        BinaryCodec.readFrame(new ByteArrayInputStream(out.toByteArray())).copyInto(dest, 2);
+        assertArrayEquals(new double[]{0.0, 0.0, 3.0, 4.0}, dest);
+    }
+
+    @Test
+    void testTruncatedFrameFails() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertDoesNotThrow(() -> BinaryCodec.writeResult(out, "T1", "w1", new double[]{1.0, 2.0}));
+        byte[] bytes = out.toByteArray();
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 3);
+
+        assertThrows(IOException.class, () -> BinaryCodec.readFrame(new ByteArrayInputStream(truncated)));
+    }
+}
@@ -0,0 +1,100 @@
+package protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionTest {
+
+    private static BinaryFrame frame(int dtype, Map<String, Object> header, ByteBuffer body) {
+        Map<String, String> fields = new HashMap<>();
+        header.forEach((k, v) -> fields.put(k, String.valueOf(v)));
+        return new BinaryFrame(BinaryCodec.KIND_RESULT, dtype, fields, body.order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    @Test
+    void testSensorLikeDoublesShrinkAndRoundTripBitExactly() {
+        // Lecturas de sensor: una décima de resolución, con valores repetidos y especiales
+        double[] data = new double[Compression.MIN_ELEMENTS * 2];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = Math.round(200 + 30 * Math.sin(i / 500.0)) / 10.0;
+        }
+        data[7] = Double.NaN;
+        data[8] = -0.0;
+        data[9] = Double.NEGATIVE_INFINITY;
+        data[10] = Double.MIN_VALUE;
+
+        Map<String, Object> header = new HashMap<>();
+        ByteBuffer packed = Compression.compress(DoubleBuffer.wrap(data), header);
+        assertNotNull(packed, "Datos tan repetitivos deben comprimirse");
+        assertEquals(Compression.XOR, header.get("codec"));
+        assertTrue(packed.remaining() * 4 < data.length * Double.BYTES,
+            "Se esperaba al menos 4x, ocupa " + packed.remaining() + " bytes");
+
+        double[] back = frame(BinaryCodec.DTYPE_FLOAT64, header, packed).toDoubleArray();
+        assertEquals(data.length, back.length);
+        for (int i = 0; i < data.length; i++) {
+            assertEquals(Double.doubleToRawLongBits(data[i]), Double.doubleToRawLongBits(back[i]), "posición " + i);
+        }
+    }
+
+    @Test
+    void testDeltaRoundTripsWrappingIntsAndMatchesTheWorkerFormat() {
+        int[] data = new int[Compression.MIN_ELEMENTS];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = 1000 + i / 3;
+        }
+        data[1] = Integer.MAX_VALUE;
+        data[2] = Integer.MIN_VALUE;
+
+        Map<String, Object> header = new HashMap<>();
+        ByteBuffer packed = Compression.compress(IntBuffer.wrap(data), header);
+        assertNotNull(packed);
+        assertEquals(Compression.DELTA, header.get("codec"));
+        assertArrayEquals(data, frame(BinaryCodec.DTYPE_INT32, header, packed).toIntArray());
+
+        // Mismos bytes que produce compression.py (tests/test_compression.py)
+        assertArrayEquals(new byte[]{(byte) 0xd0, 0x0f, 0x02, 0x01, (byte) 0x81, 0x01},
+            Compression.encodeInts(IntBuffer.wrap(new int[]{1000, 1001, 1000, 935}), 100));
+        assertEquals("3ff00000000000006c02",
+            hex(Compression.encodeDoubles(DoubleBuffer.wrap(new double[]{1.0, 1.0, 1.5}), 100)));
+    }
+
+    @Test
+    void testSmallOrIncompressibleBodiesTravelRaw() {
+        Map<String, Object> header = new HashMap<>();
+        assertNull(Compression.compress(DoubleBuffer.wrap(new double[]{1, 1, 1}), header), "Fragmento pequeño");
+
+        java.util.Random random = new java.util.Random(42);
+        double[] noise = new double[Compression.MIN_ELEMENTS];
+        for (int i = 0; i < noise.length; i++) {
+            noise[i] = random.nextDouble();
+        }
+        assertNull(Compression.compress(DoubleBuffer.wrap(noise), header), "Ruido: no compensa");
+        assertTrue(header.isEmpty(), "Sin compresión la cabecera no cambia");
+
+        // Un cuerpo truncado o un codec de otro dtype se rechazan
+        Map<String, Object> bad = new HashMap<>();
+        bad.put("codec", Compression.XOR);
+        bad.put("count", 3);
+        assertThrows(IllegalArgumentException.class,
+            () -> frame(BinaryCodec.DTYPE_FLOAT64, bad, ByteBuffer.wrap(new byte[]{0x3f, (byte) 0xf0})));
+        assertThrows(IllegalArgumentException.class,
+            () -> frame(BinaryCodec.DTYPE_INT32, bad, ByteBuffer.allocate(0)));
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b & 0xFF));
+        }
+        return sb.toString();
+    }
+}
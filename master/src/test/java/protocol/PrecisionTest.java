@@ -0,0 +1,50 @@
+package protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrecisionTest {
+
+    @Test
+    void testBfloat16RoundsToNearestEvenAndKeepsSpecialValues() {
+        Precision bf16 = Precision.BFLOAT16;
+        assertEquals(1.0, bf16.round(1.0));
+        assertEquals(1.0, bf16.round(1 + 0x1p-8), "Empate: queda la mantisa par");
+        assertEquals(1 + 0x1p-6, bf16.round(1 + 3 * 0x1p-8), "Empate: queda la mantisa par");
+        assertEquals(1 + 0x1p-7, bf16.round(1 + 0x1p-7 + 0x1p-10));
+        assertTrue(Double.isNaN(bf16.round(Double.NaN)));
+        assertEquals(Double.NEGATIVE_INFINITY, bf16.round(Double.NEGATIVE_INFINITY));
+        assertEquals(Double.POSITIVE_INFINITY, Precision.FLOAT32.round(1e300), "Fuera de rango desborda a infinito");
+        assertEquals(0.1f, Precision.FLOAT32.round(0.1));
+    }
+
+    @Test
+    void testReducedBodiesAreUpcastByTheFrameAndReportTheirRounding() {
+        double[] data = {0.1, -2.5, 1e-3, 1e300, Double.NaN};
+        for (Precision precision : new Precision[]{Precision.FLOAT32, Precision.BFLOAT16}) {
+            ByteBuffer body = ByteBuffer.allocate(data.length * precision.width()).order(ByteOrder.LITTLE_ENDIAN);
+            double maxError = precision.encode(DoubleBuffer.wrap(data), body);
+            body.flip();
+
+            BinaryFrame frame = new BinaryFrame(BinaryCodec.KIND_RESULT, precision.dtype(), new HashMap<>(), body);
+            assertEquals(data.length, frame.count());
+            double[] back = frame.toDoubleArray();
+            double expectedError = 0;
+            for (int i = 0; i < data.length; i++) {
+                assertEquals(precision.round(data[i]), back[i], precision + " posición " + i);
+                assertEquals(back[i], frame.getDouble(i));
+                expectedError = Math.max(expectedError, Precision.error(data[i], back[i]));
+            }
+            assertEquals(expectedError, maxError, "El desbordamiento y el NaN no cuentan como error");
+            assertTrue(maxError > 0 && maxError < 0.01);
+            assertSame(precision, Precision.ofDtype(precision.dtype()));
+        }
+        assertNull(Precision.ofDtype(BinaryCodec.DTYPE_INT32));
+    }
+}
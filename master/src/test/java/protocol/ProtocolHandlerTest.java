@@ -0,0 +1,28 @@
+package protocol;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProtocolHandlerTest {
+
+    @Test
+    void testStringsAreEscapedInsideAndOutsideArrays() {
+        String tricky = "a\"b\\c\nd";
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("op", tricky);
+        map.put("list", new String[]{"ok", tricky});
+
+        JSONObject obj = new JSONObject(ProtocolHandler.toJson(map));
+        assertEquals(tricky, obj.getString("op"));
+        JSONArray list = obj.getJSONArray("list");
+        assertEquals(2, list.length());
+        assertEquals("ok", list.getString(0));
+        assertEquals(tricky, list.getString(1));
+    }
+}
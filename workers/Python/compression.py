@@ -0,0 +1,195 @@
+import os
+from array import array
+
+# Codecs de los cuerpos comprimidos (ver protocol.Compression en el maestro)
+XOR = "xor"      # float64, como Gorilla
+DELTA = "delta"  # int32: delta + zigzag + varint
+SUPPORTED_CODECS = [XOR, DELTA]
+_TYPECODES = {XOR: "d", DELTA: "i"}
+
+# Elementos por debajo de los cuales no se comprime (DARRAY_COMPRESSION_MIN)
+MIN_ELEMENTS = max(1, int(os.environ.get("DARRAY_COMPRESSION_MIN", "4096")))
+
+
+class CompressionError(ValueError):
+    """Cuerpo comprimido inválido o codec que no corresponde al tipo de los datos."""
+
+
+class _BitWriter:
+    """Escribe bits del más significativo al menos significativo de cada byte."""
+
+    def __init__(self):
+        self.out = bytearray()
+        self.acc = 0
+        self.pending = 0
+
+    def write(self, value, n):
+        self.acc = (self.acc << n) | (value & ((1 << n) - 1))
+        self.pending += n
+        while self.pending >= 8:
+            self.pending -= 8
+            self.out.append((self.acc >> self.pending) & 0xFF)
+        self.acc &= (1 << self.pending) - 1
+
+    def getvalue(self):
+        if self.pending:
+            self.write(0, 8 - self.pending)
+        return bytes(self.out)
+
+
+class _BitReader:
+    def __init__(self, data):
+        self.data = data
+        self.pos = 0
+        self.acc = 0
+        self.available = 0
+
+    def read(self, n):
+        while self.available < n:
+            if self.pos >= len(self.data):
+                raise CompressionError("cuerpo comprimido truncado")
+            self.acc = (self.acc << 8) | self.data[self.pos]
+            self.pos += 1
+            self.available += 8
+        self.available -= n
+        value = self.acc >> self.available
+        self.acc &= (1 << self.available) - 1
+        return value
+
+
+def _nlz64(x):
+    return 64 - x.bit_length()
+
+
+def _ntz64(x):
+    return (x & -x).bit_length() - 1
+
+
+def encode_xor(values, limit=None):
+    """
+    Codifica doubles con "xor": el primero con sus 64 bits y cada uno de los siguientes como
+    el XOR con el anterior ('0' si es cero, '10' + bits si cabe en la ventana anterior,
+    '11' + ceros a la izquierda (5 bits) + longitud - 1 (6 bits) + bits si no).
+    Devuelve None si el resultado ocupa más de limit bytes.
+    """
+    bits = array("Q", array("d", values).tobytes())
+    out = _BitWriter()
+    if not bits:
+        return b""
+    previous = bits[0]
+    out.write(previous, 64)
+    window_lead, window_trail = -1, 0
+    for i in range(1, len(bits)):
+        current = bits[i]
+        xor = current ^ previous
+        previous = current
+        if xor == 0:
+            out.write(0, 1)
+        else:
+            lead = min(_nlz64(xor), 31)
+            trail = _ntz64(xor)
+            if window_lead >= 0 and lead >= window_lead and trail >= window_trail:
+                out.write(0b10, 2)
+                out.write(xor >> window_trail, 64 - window_lead - window_trail)
+            else:
+                length = 64 - lead - trail
+                out.write(0b11, 2)
+                out.write(lead, 5)
+                out.write(length - 1, 6)
+                out.write(xor >> trail, length)
+                window_lead, window_trail = lead, trail
+        if limit is not None and len(out.out) > limit:
+            return None
+    body = out.getvalue()
+    return None if limit is not None and len(body) > limit else body
+
+
+def decode_xor(data, count):
+    """Decodifica count doubles "xor" en un array.array('d')."""
+    bits = array("Q", bytes(8 * count))
+    if count:
+        reader = _BitReader(data)
+        previous = reader.read(64)
+        bits[0] = previous
+        lead, trail = 0, 0
+        for i in range(1, count):
+            if reader.read(1):
+                if reader.read(1):
+                    lead = reader.read(5)
+                    trail = 64 - lead - (reader.read(6) + 1)
+                    if trail < 0:
+                        raise CompressionError(f"cuerpo xor inválido en el elemento {i}")
+                previous ^= reader.read(64 - lead - trail) << trail
+            bits[i] = previous
+    return array("d", bits.tobytes())
+
+
+def encode_delta(values, limit=None):
+    """
+    Codifica int32 con "delta": diferencia con el anterior (con desbordamiento de 32 bits),
+    zigzag y varint de 7 bits por byte. Devuelve None si ocupa más de limit bytes.
+    """
+    out = bytearray()
+    previous = 0
+    for value in values:
+        delta = ((value - previous + 0x80000000) & 0xFFFFFFFF) - 0x80000000
+        previous = value
+        zigzag = ((delta << 1) ^ (delta >> 31)) & 0xFFFFFFFF
+        while zigzag > 0x7F:
+            out.append((zigzag & 0x7F) | 0x80)
+            zigzag >>= 7
+        out.append(zigzag)
+        if limit is not None and len(out) > limit:
+            return None
+    return bytes(out)
+
+
+def decode_delta(data, count):
+    """Decodifica count enteros "delta" en un array.array('i')."""
+    out = array("i", bytes(4 * count))
+    pos = 0
+    previous = 0
+    for i in range(count):
+        zigzag = 0
+        shift = 0
+        while True:
+            if shift > 28:
+                raise CompressionError(f"cuerpo delta inválido en el elemento {i}")
+            if pos >= len(data):
+                raise CompressionError("cuerpo comprimido truncado")
+            b = data[pos]
+            pos += 1
+            zigzag |= (b & 0x7F) << shift
+            if not b & 0x80:
+                break
+            shift += 7
+        delta = (zigzag >> 1) ^ -(zigzag & 1)
+        previous = ((previous + delta + 0x80000000) & 0xFFFFFFFF) - 0x80000000
+        out[i] = previous
+    return out
+
+
+_ENCODERS = {XOR: encode_xor, DELTA: encode_delta}
+_DECODERS = {XOR: decode_xor, DELTA: decode_delta}
+
+
+def compress(codec, values):
+    """
+    Cuerpo comprimido de values, o None si son menos de MIN_ELEMENTS o el resultado ocupa
+    más de 7/8 del cuerpo sin comprimir (entonces se envían tal cual).
+    """
+    if len(values) < MIN_ELEMENTS:
+        return None
+    width = array(_TYPECODES[codec]).itemsize
+    return _ENCODERS[codec](values, len(values) * width * 7 // 8)
+
+
+def inflate(codec, body, count, typecode):
+    """
+    Datos de un cuerpo comprimido como array.array de typecode.
+
+    :raises CompressionError: si el codec no corresponde a typecode o el cuerpo no es válido.
+    """
+    if _TYPECODES.get(codec) != typecode or not isinstance(count, int) or count < 0:
+        raise CompressionError(f"codec {codec!r} inválido para {typecode!r} y {count!r} elementos")
+    return _DECODERS[codec](bytes(body), count)
@@ -0,0 +1,67 @@
+import os
+import threading
+from collections import OrderedDict
+
+
+class FragmentCache:
+    """
+    Fragmentos residentes del worker (ver WorkerConnection en el maestro): id -> (huella,
+    datos). Los comparten todas las conexiones. Se expulsan los usados hace más tiempo hasta
+    que los datos guardados caben en capacity bytes; un fragmento mayor que la capacidad no
+    se guarda.
+    """
+
+    def __init__(self, capacity):
+        self.capacity = capacity
+        self._entries = OrderedDict()
+        self._used = 0
+        self._lock = threading.Lock()
+        self.hits = 0
+        self.misses = 0
+        self.evictions = 0
+
+    @staticmethod
+    def _size(values):
+        return len(values) * values.itemsize
+
+    def put(self, fragment_id, digest, values):
+        """Guarda (o sustituye) los datos de un fragmento, ya decodificados en un array.array."""
+        size = self._size(values)
+        with self._lock:
+            old = self._entries.pop(fragment_id, None)
+            if old is not None:
+                self._used -= self._size(old[1])
+            if size > self.capacity:
+                return
+            self._entries[fragment_id] = (digest, values)
+            self._used += size
+            while self._used > self.capacity:
+                _, (_, victim) = self._entries.popitem(last=False)
+                self._used -= self._size(victim)
+                self.evictions += 1
+
+    def get(self, fragment_id, digest, typecode):
+        """
+        Datos del fragmento si están guardados con esa huella y ese tipo, o None. Los datos
+        se comparten entre tareas: no se deben modificar.
+        """
+        with self._lock:
+            entry = self._entries.get(fragment_id)
+            if entry is None or entry[0] != digest or entry[1].typecode != typecode:
+                self.misses += 1
+                return None
+            self._entries.move_to_end(fragment_id)
+            self.hits += 1
+            return entry[1]
+
+    def used(self):
+        with self._lock:
+            return self._used
+
+    def __len__(self):
+        with self._lock:
+            return len(self._entries)
+
+
+# Capacidad configurable con DARRAY_FRAGMENT_CACHE_MB (0 la desactiva)
+FRAGMENT_CACHE = FragmentCache(int(os.environ.get("DARRAY_FRAGMENT_CACHE_MB", "256")) << 20)
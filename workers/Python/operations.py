@@ -0,0 +1,309 @@
+"""
+Compilación de las operaciones que pide el maestro (campo "operation" de cada TASK).
+
+Entiende la misma gramática que ops.OperationCompiler en Java:
+
+    cond    := expr (('<' | '<=' | '>' | '>=' | '==' | '!=') expr)?
+    expr    := term (('+' | '-') term)*
+    term    := unary (('*' | '/' | '%') unary)*
+    unary   := ('-' | '+') unary | power
+    power   := primary ('^' unary)?            (por la derecha: -x^2 = -(x^2))
+    primary := número | x | pi | e | '(' cond ')' | función '(' cond (',' cond)? ')'
+
+Funciones: sin cos tan asin acos atan sinh cosh tanh exp log log10 sqrt abs floor ceil e
+int (el (int) de Java: trunca hacia cero, satura y da 0 con nan); pow min max atan2.
+Una comparación vale 1.0 si se cumple y 0.0 si no (con nan sólo se cumple '!='); así se
+escriben los predicados de los filtros (ver is_true()).
+
+La expresión se analiza una sola vez y se traduce a una lambda de Python (caché por texto).
+La aritmética sigue IEEE 754 como en Java: dividir por cero, sqrt o log de negativos,
+desbordamientos, etc. dan inf o nan en vez de lanzar excepciones, para que maestro y
+worker calculen lo mismo.
+"""
+import math
+from functools import lru_cache
+
+# Fórmula que el worker aplicaba siempre; la usan los clientes antiguos que no envían una
+# expresión (operación vacía, "math_formula" o "custom").
+DEFAULT_OPERATION = "((sin(x) + cos(x))^2) / (sqrt(abs(x)) + 1)"
+LEGACY_OPERATIONS = {"", "math_formula", "custom"}
+
+INF = math.inf
+NAN = math.nan
+
+
+def _div(a, b):
+    if b == 0.0:
+        if a == 0.0 or a != a:
+            return NAN
+        return math.copysign(INF, a) * math.copysign(1.0, b)
+    return a / b
+
+
+def _mod(a, b):
+    try:
+        return math.fmod(a, b)
+    except ValueError:        # b == 0 o a infinito
+        return NAN
+
+
+def _pow(a, b):
+    try:
+        return math.pow(a, b)
+    except OverflowError:
+        odd = b == int(b) and int(b) % 2 == 1 if not math.isinf(b) else False
+        return -INF if a < 0 and odd else INF
+    except ValueError:        # 0 elevado a negativo o base negativa con exponente no entero
+        if a == 0.0:
+            odd = b == int(b) and int(b) % 2 == 1
+            return math.copysign(INF, a) if odd else INF
+        return NAN
+
+
+def _domain(fn):
+    """Envuelve una función de math para devolver nan fuera de dominio e inf al desbordar."""
+    def wrapped(v):
+        try:
+            return fn(v)
+        except ValueError:
+            return NAN
+        except OverflowError:
+            return math.copysign(INF, v) if fn is math.sinh else INF
+    return wrapped
+
+
+def _log(v):
+    if v == 0.0:
+        return -INF
+    return NAN if v < 0 else math.log(v)
+
+
+def _log10(v):
+    if v == 0.0:
+        return -INF
+    return NAN if v < 0 else math.log10(v)
+
+
+def _rounding(fn):
+    def wrapped(v):
+        if math.isinf(v) or v != v:
+            return v
+        return float(fn(v))
+    return wrapped
+
+
+def _min(a, b):
+    return NAN if a != a or b != b else min(a, b)
+
+
+def _max(a, b):
+    return NAN if a != a or b != b else max(a, b)
+
+
+def _int(v):
+    return float(to_int32(v))
+
+
+def _sq(v):
+    return v * v
+
+
+def _cube(v):
+    return v * v * v
+
+
+UNARY = {
+    "sin": _domain(math.sin), "cos": _domain(math.cos), "tan": _domain(math.tan),
+    "asin": _domain(math.asin), "acos": _domain(math.acos), "atan": math.atan,
+    "sinh": _domain(math.sinh), "cosh": _domain(math.cosh), "tanh": math.tanh,
+    "exp": _domain(math.exp), "log": _log, "log10": _log10,
+    "sqrt": _domain(math.sqrt), "abs": abs,
+    "floor": _rounding(math.floor), "ceil": _rounding(math.ceil),
+    "int": _int,
+}
+BINARY = {"pow": _pow, "min": _min, "max": _max, "atan2": math.atan2}
+
+_NAMESPACE = {"__builtins__": {}, "_div": _div, "_mod": _mod, "_pow": _pow, "_sq": _sq, "_cube": _cube,
+              "inf": INF}
+for _name, _fn in list(UNARY.items()) + list(BINARY.items()):
+    _NAMESPACE["_f_" + _name] = _fn
+
+
+class OperationError(ValueError):
+    """La operación no es una expresión válida."""
+
+
+class _Parser:
+    """Analizador descendente recursivo que genera el código Python de la expresión."""
+
+    def __init__(self, text):
+        self.text = text
+        self.pos = 0
+
+    def parse(self):
+        code = self.cond()
+        self.skip()
+        if self.pos < len(self.text):
+            raise self.error(f"símbolo inesperado '{self.text[self.pos]}'")
+        return code
+
+    def cond(self):
+        left = self.expr()
+        for symbol in ("<=", ">=", "==", "!=", "<", ">"):
+            if self.accept(symbol):
+                return f"(1.0 if {left} {symbol} {self.expr()} else 0.0)"
+        return left
+
+    def expr(self):
+        left = self.term()
+        while True:
+            if self.accept("+"):
+                left = f"({left} + {self.term()})"
+            elif self.accept("-"):
+                left = f"({left} - {self.term()})"
+            else:
+                return left
+
+    def term(self):
+        left = self.unary()
+        while True:
+            if self.accept("*"):
+                left = f"({left} * {self.unary()})"
+            elif self.accept("/"):
+                left = f"_div({left}, {self.unary()})"
+            elif self.accept("%"):
+                left = f"_mod({left}, {self.unary()})"
+            else:
+                return left
+
+    def unary(self):
+        if self.accept("-"):
+            return f"(-{self.unary()})"
+        if self.accept("+"):
+            return self.unary()
+        return self.power()
+
+    def power(self):
+        base = self.primary()
+        if not self.accept("^"):
+            return base
+        exponent = self.unary()
+        special = {"1.0": "{}", "2.0": "_sq({})", "3.0": "_cube({})"}
+        if exponent in special:
+            return special[exponent].format(base)
+        return f"_pow({base}, {exponent})"
+
+    def primary(self):
+        self.skip()
+        if self.pos >= len(self.text):
+            raise self.error("falta un operando")
+        c = self.text[self.pos]
+        if self.accept("("):
+            inner = self.cond()
+            self.expect(")")
+            return inner
+        if c.isdigit() or c == ".":
+            return self.number()
+        if c.isalpha():
+            start = self.pos
+            name = self.identifier().lower()
+            if name == "x":
+                return "x"
+            if name == "pi":
+                return repr(math.pi)
+            if name == "e":
+                return repr(math.e)
+            return self.call(name, start)
+        raise self.error(f"símbolo inesperado '{c}'")
+
+    def call(self, name, start):
+        if name not in UNARY and name not in BINARY:
+            self.pos = start
+            raise self.error(f"función desconocida '{name}'")
+        self.expect("(")
+        first = self.cond()
+        if name in UNARY:
+            code = f"_f_{name}({first})"
+        else:
+            self.expect(",")
+            code = f"_f_{name}({first}, {self.cond()})"
+        self.expect(")")
+        return code
+
+    def number(self):
+        text, start = self.text, self.pos
+        while self.pos < len(text) and (text[self.pos].isdigit() or text[self.pos] == "."):
+            self.pos += 1
+        if self.pos < len(text) and text[self.pos] in "eE":
+            mark = self.pos
+            self.pos += 1
+            if self.pos < len(text) and text[self.pos] in "+-":
+                self.pos += 1
+            if self.pos < len(text) and text[self.pos].isdigit():
+                while self.pos < len(text) and text[self.pos].isdigit():
+                    self.pos += 1
+            else:
+                self.pos = mark   # "2e" no es exponente
+        try:
+            value = float(text[start:self.pos])
+        except ValueError:
+            self.pos = start
+            raise self.error("número inválido") from None
+        return repr(value) if math.isfinite(value) else "inf"
+
+    def identifier(self):
+        start = self.pos
+        while self.pos < len(self.text) and self.text[self.pos].isalnum():
+            self.pos += 1
+        return self.text[start:self.pos]
+
+    def skip(self):
+        while self.pos < len(self.text) and self.text[self.pos].isspace():
+            self.pos += 1
+
+    def accept(self, c):
+        self.skip()
+        if self.text.startswith(c, self.pos):
+            self.pos += len(c)
+            return True
+        return False
+
+    def expect(self, c):
+        if not self.accept(c):
+            raise self.error(f"se esperaba '{c}'")
+
+    def error(self, message):
+        return OperationError(f'Operación inválida "{self.text}": {message} en la posición {self.pos}')
+
+
+@lru_cache(maxsize=1024)
+def compile_operation(operation):
+    """Devuelve una función float -> float para la operación (ver la gramática arriba)."""
+    text = DEFAULT_OPERATION if operation.strip() in LEGACY_OPERATIONS else operation
+    code = _Parser(text).parse()
+    fn = eval(f"lambda x: {code}", _NAMESPACE)   # código generado por _Parser, no el texto recibido
+    return fn
+
+
+def to_int32(v):
+    """Convierte como el (int) de Java: trunca hacia cero, satura y da 0 con nan."""
+    if v != v:
+        return 0
+    if v >= 2147483647:
+        return 2147483647
+    if v <= -2147483648:
+        return -2147483648
+    return int(v)
+
+
+def is_true(value):
+    """Criterio de los filtros: un predicado se cumple si su valor no es 0 ni nan."""
+    return value != 0 and value == value
+
+
+def apply_operation(operation, data, as_int=False):
+    """Aplica la operación a cada elemento; con as_int el resultado se convierte como en Java."""
+    fn = compile_operation(operation)
+    if as_int:
+        return [to_int32(fn(float(v))) for v in data]
+    return [fn(float(v)) for v in data]
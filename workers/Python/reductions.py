@@ -0,0 +1,82 @@
+"""
+Reducciones de una TASK (campo "reduce" de la cabecera, ver shared/communication_protocol.md).
+
+En lugar del fragmento transformado, el worker devuelve un estado parcial pequeño que el
+maestro combina con los del resto de fragmentos (handler.Reducer en Java):
+
+    stats      [count, sum, m2, min, max]   m2 = suma de (v - media)^2 del fragmento
+    histogram  [por debajo, c0 .. c(bins-1), por encima]   bins iguales en [lo, hi]
+
+Los nan no cuentan en ninguna de las dos. El reparto en bins usa la misma fórmula que Java,
+así que un valor cae en el mismo bin lo calcule el maestro o el worker.
+"""
+
+import math
+
+REDUCTIONS = ("stats", "histogram")
+
+
+class ReductionError(ValueError):
+    """Cabecera de reducción inválida."""
+
+
+def check_reduction(header):
+    """Valida los campos de la reducción pedida; devuelve su nombre o None si no hay."""
+    kind = header.get("reduce")
+    if kind is None:
+        return None
+    if kind not in REDUCTIONS:
+        raise ReductionError(f'Reducción desconocida "{kind}" (se esperaba una de {", ".join(REDUCTIONS)})')
+    if kind == "histogram":
+        bins, lo, hi = header.get("bins"), header.get("lo"), header.get("hi")
+        if not isinstance(bins, int) or bins < 1:
+            raise ReductionError(f"histogram necesita bins >= 1 (recibido {bins!r})")
+        if not all(isinstance(v, (int, float)) and math.isfinite(v) for v in (lo, hi)) or not lo < hi:
+            raise ReductionError(f"histogram necesita lo < hi finitos (recibido {lo!r}, {hi!r})")
+    return kind
+
+
+def reduce_values(header, values):
+    """Estado parcial (lista de float) de la reducción de la cabecera sobre values."""
+    kind = check_reduction(header)
+    if kind == "stats":
+        return partial_stats(values)
+    return partial_histogram(values, header["bins"], float(header["lo"]), float(header["hi"]))
+
+
+def _sum(values):
+    """
+    Suma exacta con math.fsum; si hay inf y -inf (ValueError) o la suma pasa de DBL_MAX
+    (OverflowError), la suma normal, que da nan o inf según IEEE como Stats.of() en Java.
+    """
+    try:
+        return math.fsum(values)
+    except (ValueError, OverflowError):
+        return sum(values, 0.0)
+
+
+def partial_stats(values):
+    """[count, sum, m2, min, max] en dos pasadas (la media primero) para no perder precisión."""
+    kept = [v for v in values if v == v]
+    if not kept:
+        return [0.0, 0.0, 0.0, math.inf, -math.inf]
+    total = _sum(kept)
+    mean = total / len(kept)
+    m2 = _sum([(v - mean) * (v - mean) for v in kept])
+    return [float(len(kept)), total, m2, min(kept), max(kept)]
+
+
+def partial_histogram(values, bins, lo, hi):
+    """[por debajo de lo, bins contadores, por encima de hi]; hi cae en el último bin."""
+    counts = [0] * (bins + 2)
+    scale = bins / (hi - lo)
+    for v in values:
+        if v != v:
+            continue
+        if v < lo:
+            counts[0] += 1
+        elif v > hi:
+            counts[-1] += 1
+        else:
+            counts[1 + min(int((v - lo) * scale), bins - 1)] += 1
+    return [float(c) for c in counts]
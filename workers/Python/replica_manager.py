@@ -20,26 +20,48 @@ class ReplicaManager(threading.Thread):
         self.heartbeat_interval = heartbeat_interval
         self.heartbeat_timeout  = heartbeat_timeout
         self._running = True
+        self._sock = None
+        self._reader = None
 
     def run(self):
         # Arranca el proceso de réplica
         logger.info(f"ReplicaManager arranca réplica: {' '.join(self.backup_cmd)}")
         self.backup_proc = subprocess.Popen(self.backup_cmd)
 
-        # Ciclo de heartbeats
+        # Ciclo de heartbeats sobre una única conexión persistente
         while self._running:
             try:
-                with socket.create_connection((self.primary_host, self.primary_port),
-                                              timeout=self.heartbeat_timeout) as s:
-                    msg = {"type": "heartbeat", "data": [], "operation": ""}
-                    s.sendall((json.dumps(msg) + "\n").encode())
-                    logger.debug("Heartbeat enviado al primario")
-                    # opcional: leer ACK si quieres validar
+                self._send_heartbeat()
+                logger.debug("Heartbeat enviado al primario")
             except Exception as e:
                 logger.error(f"Heartbeat falló: {e}")
+                self._close_socket()
             time.sleep(self.heartbeat_interval)
 
+    def _send_heartbeat(self):
+        """Envía un latido y espera su ACK; reconecta sólo si la conexión no existe."""
+        if self._sock is None:
+            self._sock = socket.create_connection((self.primary_host, self.primary_port),
+                                                  timeout=self.heartbeat_timeout)
+            self._reader = self._sock.makefile("rb")
+        msg = {"type": "heartbeat", "data": [], "operation": ""}
+        self._sock.sendall((json.dumps(msg) + "\n").encode())
+        ack = self._reader.readline()
+        if not ack:
+            raise ConnectionError("el primario cerró la conexión")
+
+    def _close_socket(self):
+        if self._sock is not None:
+            try:
+                self._reader.close()
+                self._sock.close()
+            except OSError:
+                pass
+        self._sock = None
+        self._reader = None
+
     def stop(self):
         self._running = False
+        self._close_socket()
         if hasattr(self, "backup_proc"):
             self.backup_proc.terminate()
@@ -0,0 +1,49 @@
+# tests/test_compression.py
+
+import sys, os
+sys.path.insert(0, os.path.abspath(os.path.join(os.path.dirname(__file__), '..')))
+
+import math
+import random
+import struct
+
+import pytest
+
+from compression import (MIN_ELEMENTS, CompressionError, compress, decode_delta, decode_xor,
+                         encode_delta, encode_xor, inflate)
+
+
+def _bits(values):
+    return [struct.pack("<d", v) for v in values]
+
+
+def test_xor_round_trips_bit_exactly_and_matches_the_master_format():
+    data = [round(200 + 30 * math.sin(i / 500.0)) / 10.0 for i in range(2 * MIN_ELEMENTS)]
+    data[7:11] = [float("nan"), -0.0, float("-inf"), 5e-324]
+    body = compress("xor", data)
+    assert body is not None and len(body) * 4 < len(data) * 8
+    assert _bits(inflate("xor", body, len(data), "d")) == _bits(data)
+
+    # Mismos bytes que produce protocol.Compression (CompressionTest)
+    assert encode_xor([1.0, 1.0, 1.5]).hex() == "3ff00000000000006c02"
+    assert list(decode_xor(bytes.fromhex("3ff00000000000006c02"), 3)) == [1.0, 1.0, 1.5]
+
+
+def test_delta_round_trips_wrapping_ints():
+    data = [1000 + i // 3 for i in range(MIN_ELEMENTS)]
+    data[1:3] = [2 ** 31 - 1, -2 ** 31]
+    body = compress("delta", data)
+    assert body is not None
+    assert list(inflate("delta", body, len(data), "i")) == data
+    assert encode_delta([1000, 1001, 1000, 935]) == bytes([0xd0, 0x0f, 0x02, 0x01, 0x81, 0x01])
+    assert list(decode_delta(bytes([0xd0, 0x0f, 0x02, 0x01, 0x81, 0x01]), 4)) == [1000, 1001, 1000, 935]
+
+
+def test_small_or_incompressible_bodies_are_not_compressed():
+    assert compress("xor", [1.0, 1.0, 1.0]) is None
+    rng = random.Random(42)
+    assert compress("xor", [rng.random() for _ in range(MIN_ELEMENTS)]) is None
+    with pytest.raises(CompressionError):
+        inflate("xor", bytes.fromhex("3ff0"), 3, "d")
+    with pytest.raises(CompressionError):
+        inflate("xor", b"", 0, "i")
@@ -0,0 +1,34 @@
+# tests/test_fragment_cache.py
+
+import sys, os
+sys.path.insert(0, os.path.abspath(os.path.join(os.path.dirname(__file__), '..')))
+
+from array import array
+
+from fragment_cache import FragmentCache
+
+
+def test_least_recently_used_fragment_is_evicted_first():
+    cache = FragmentCache(capacity=3 * 8 * 2)
+    cache.put("a", "h1", array("d", [1, 2, 3]))
+    cache.put("b", "h2", array("d", [4, 5, 6]))
+    assert cache.get("a", "h1", "d") is not None      # "a" pasa a ser el más reciente
+    cache.put("c", "h3", array("d", [7, 8, 9]))
+    assert cache.get("b", "h2", "d") is None
+    assert list(cache.get("a", "h1", "d")) == [1, 2, 3]
+    assert cache.evictions == 1 and cache.used() == 48 and len(cache) == 2
+
+
+def test_other_version_or_type_is_a_miss():
+    cache = FragmentCache(capacity=1024)
+    cache.put("a", "h1", array("d", [1.0]))
+    assert cache.get("a", "h2", "d") is None
+    assert cache.get("a", "h1", "i") is None
+    cache.put("a", "h2", array("d", [2.0]))
+    assert list(cache.get("a", "h2", "d")) == [2.0] and cache.used() == 8
+
+
+def test_fragment_larger_than_capacity_is_not_kept():
+    cache = FragmentCache(capacity=8)
+    cache.put("a", "h1", array("d", [1.0, 2.0]))
+    assert cache.get("a", "h1", "d") is None and cache.used() == 0
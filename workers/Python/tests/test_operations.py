@@ -0,0 +1,68 @@
+# tests/test_operations.py
+
+import sys, os
+sys.path.insert(0, os.path.abspath(os.path.join(os.path.dirname(__file__), '..')))
+
+import math
+import pytest
+
+from operations import OperationError, apply_operation, compile_operation, is_true, to_int32
+
+
+def evaluate(expression, x):
+    return compile_operation(expression)(float(x))
+
+
+def test_default_formula_matches_historic_worker():
+    for x in [0.0, 1.0, -1.0, 3.1415]:
+        expected = (math.sin(x) + math.cos(x)) ** 2 / (math.sqrt(abs(x)) + 1)
+        assert evaluate("((sin(x) + cos(x))^2) / (sqrt(abs(x)) + 1)", x) == pytest.approx(expected)
+        assert evaluate("", x) == pytest.approx(expected)
+        assert evaluate("math_formula", x) == pytest.approx(expected)
+
+
+def test_precedence_and_associativity():
+    assert evaluate("1 + 2 * 3", 0) == 7.0
+    assert evaluate("2^3^2", 0) == 512.0
+    assert evaluate("-x^2", 3) == -9.0
+    assert evaluate("10 - 4 - 5", 0) == 1.0
+    assert evaluate("-7 % 3", 0) == -1.0
+    assert evaluate("2e3", 0) == 2000.0
+    assert evaluate("max(min(x, 3), atan2(0, 1))", 5) == 3.0
+
+
+def test_ieee_semantics_like_java():
+    assert evaluate("1 / x", 0) == math.inf
+    assert evaluate("log(x)", 0) == -math.inf
+    assert math.isnan(evaluate("sqrt(x)", -1))
+    assert math.isnan(evaluate("sin(x)", math.inf))
+    assert evaluate("exp(x)", 1e6) == math.inf
+    assert to_int32(math.nan) == 0
+    assert to_int32(1e20) == 2147483647
+    assert apply_operation("x * 1.5", [1, 3, -3], as_int=True) == [1, 4, -4]
+
+
+def test_int_function_truncates_like_java_cast():
+    assert evaluate("int(x)", -2.7) == -2.0
+    assert evaluate("int(x)", math.nan) == 0.0
+    assert evaluate("int(x * 1e10)", 5) == 2147483647.0
+    # Dos operaciones enteras fusionadas por el maestro: (int)((int)(x * 1.5) * 2)
+    assert apply_operation("(int(x * 1.5)) * 2", [3, -3], as_int=True) == [8, -8]
+
+
+def test_invalid_expressions_are_rejected():
+    for bad in ["x +", "foo(x)", "(x", "sin x", "x $ 2", "__import__('os')"]:
+        with pytest.raises(OperationError):
+            compile_operation(bad)
+
+
+def test_comparisons_are_one_or_zero_like_java():
+    assert evaluate("x > 0.5", 1) == 1.0
+    assert evaluate("x <= 0.5", 1) == 0.0
+    assert evaluate("(x >= 2) * (x != 3)", 2) == 1.0
+    assert evaluate("min(x > 1, x < 5)", 7) == 0.0
+    assert evaluate("x == x", math.nan) == 0.0
+    assert evaluate("x != x", math.nan) == 1.0
+    assert not is_true(evaluate("sqrt(x)", -1))
+    with pytest.raises(OperationError):
+        compile_operation("x = 1")
@@ -0,0 +1,49 @@
+# tests/test_reductions.py
+
+import sys, os
+sys.path.insert(0, os.path.abspath(os.path.join(os.path.dirname(__file__), '..')))
+
+import math
+import pytest
+
+from reductions import ReductionError, check_reduction, partial_histogram, partial_stats, reduce_values
+
+
+def test_stats_partial_is_count_sum_m2_min_max():
+    count, total, m2, lo, hi = partial_stats([1.0, 2.0, 3.0, 4.0, math.nan])
+    assert (count, total, lo, hi) == (4.0, 10.0, 1.0, 4.0)
+    assert m2 == 5.0
+
+
+def test_empty_stats_partial_is_neutral():
+    assert partial_stats([math.nan]) == [0.0, 0.0, 0.0, math.inf, -math.inf]
+
+
+def test_stats_partial_follows_ieee_where_fsum_raises():
+    # fsum no admite inf con -inf (ValueError) ni sumas por encima de DBL_MAX (OverflowError)
+    count, total, m2, lo, hi = partial_stats([1.0, math.inf, -math.inf])
+    assert count == 3.0 and math.isnan(total) and math.isnan(m2)
+    assert (lo, hi) == (-math.inf, math.inf)
+    count, total, m2, lo, hi = partial_stats([1e308, 1e308])
+    assert count == 2.0 and total == math.inf and m2 == math.inf
+    assert (lo, hi) == (1e308, 1e308)
+
+
+def test_histogram_counts_out_of_range_apart_and_hi_in_last_bin():
+    counts = partial_histogram([-1.0, 0.0, 0.5, 2.5, 4.0, 7.0, math.nan], 4, 0.0, 4.0)
+    assert counts == [1.0, 2.0, 0.0, 1.0, 1.0, 1.0]
+
+
+def test_reduce_values_uses_header_fields():
+    header = {"reduce": "histogram", "bins": 2, "lo": 0, "hi": 1}
+    assert reduce_values(header, [0.1, 0.9, 0.6]) == [0.0, 1.0, 2.0, 0.0]
+    assert check_reduction({"operation": "x"}) is None
+
+
+def test_invalid_reductions_are_rejected():
+    with pytest.raises(ReductionError):
+        check_reduction({"reduce": "median"})
+    with pytest.raises(ReductionError):
+        check_reduction({"reduce": "histogram", "bins": 0, "lo": 0, "hi": 1})
+    with pytest.raises(ReductionError):
+        check_reduction({"reduce": "histogram", "bins": 4, "lo": 1, "hi": 1})
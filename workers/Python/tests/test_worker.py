@@ -68,3 +68,170 @@ def test_mixed_extreme_values():
     resp = send_and_receive(msg)
     assert resp["type"] == "result"
     assert all(v is not None for v in resp["result"])
+
+def test_init_handshake_negotiates_binary():
+    msg = {"type": "init", "encodings": ["binary", "json"]}
+    resp = send_and_receive(msg)
+    assert resp["type"] == "INIT"
+    assert resp["encoding"] == "binary"
+    assert resp["capabilities"]["cores"] >= 1
+
+def test_binary_task_returns_binary_result():
+    from worker_threading import (encode_frame, read_frame, decode_body,
+                                  KIND_TASK, KIND_RESULT, DTYPE_FLOAT64)
+    data = [0.0, 1.0, -1.0, 3.1415]
+    frame = encode_frame(KIND_TASK, {"type": "task", "task_id": "T1", "operation": ""},
+                         DTYPE_FLOAT64, data)
+    with socket.create_connection((HOST, PORT), timeout=1) as sock:
+        sock.sendall(frame)
+        kind, header, dtype, body = read_frame(sock)
+    assert kind == KIND_RESULT
+    assert header["task_id"] == "T1"
+    assert len(decode_body(dtype, body)) == len(data)
+
+def test_task_applies_requested_operation():
+    msg = {"type": "task", "data": [1.0, 2.5, -3.0], "operation": "x * 2 + 1"}
+    resp = send_and_receive(msg)
+    assert resp["type"] == "result"
+    assert resp["result"] == [3.0, 6.0, -5.0]
+
+def test_invalid_operation_returns_error():
+    msg = {"type": "task", "data": [1.0], "operation": "x +* 2"}
+    resp = send_and_receive(msg)
+    assert resp["type"] == "error"
+    assert "posición" in resp["message"]
+
+def test_reduce_task_returns_partial_state():
+    from worker_threading import (encode_frame, read_frame, decode_body,
+                                  KIND_TASK, KIND_RESULT, DTYPE_FLOAT64, DTYPE_INT32)
+    header = {"type": "task", "task_id": "T2", "operation": "x * 2", "reduce": "stats"}
+    frame = encode_frame(KIND_TASK, header, DTYPE_INT32, [1, 2, 3])
+    with socket.create_connection((HOST, PORT), timeout=1) as sock:
+        sock.sendall(frame)
+        kind, resp, dtype, body = read_frame(sock)
+    assert kind == KIND_RESULT and dtype == DTYPE_FLOAT64
+    assert list(decode_body(dtype, body)) == [3.0, 12.0, 8.0, 2.0, 6.0]
+
+    msg = {"type": "task", "data": [1.0], "operation": "x", "reduce": "histogram", "bins": 0, "lo": 0, "hi": 1}
+    assert send_and_receive(msg)["type"] == "error"
+
+def test_filter_task_returns_only_matching_results():
+    from worker_threading import (encode_frame, read_frame, decode_body,
+                                  KIND_TASK, KIND_RESULT, DTYPE_INT32)
+    header = {"type": "task", "task_id": "T3", "operation": "x * 3", "filter": "x % 2 == 0"}
+    frame = encode_frame(KIND_TASK, header, DTYPE_INT32, [1, 2, 3, 4])
+    with socket.create_connection((HOST, PORT), timeout=1) as sock:
+        sock.sendall(frame)
+        kind, resp, dtype, body = read_frame(sock)
+    assert kind == KIND_RESULT and dtype == DTYPE_INT32
+    assert list(decode_body(dtype, body)) == [6, 12]
+
+    msg = {"type": "task", "data": [0.2, 0.9, -1.0], "operation": "x", "filter": "x > 0.5"}
+    assert send_and_receive(msg)["result"] == [0.9]
+
+def test_sort_and_scan_tasks_post_process_the_fragment():
+    from worker_threading import (encode_frame, read_frame, decode_body, post_process,
+                                  KIND_TASK, KIND_RESULT, DTYPE_FLOAT64, DTYPE_INT32)
+    header = {"type": "task", "task_id": "T4", "operation": "x * 2", "post": "sort"}
+    for dtype_in, data, expected in ((DTYPE_FLOAT64, [3.0, -1.0, 2.0], [-2.0, 4.0, 6.0]),
+                                     (DTYPE_INT32, [3, -1, 2], [-2, 4, 6])):
+        frame = encode_frame(KIND_TASK, header, dtype_in, data)
+        with socket.create_connection((HOST, PORT), timeout=1) as sock:
+            sock.sendall(frame)
+            kind, resp, dtype, body = read_frame(sock)
+        assert kind == KIND_RESULT and dtype == dtype_in
+        assert list(decode_body(dtype, body)) == expected
+
+    msg = {"type": "task", "data": [1.0, 2.0, 3.5], "operation": "x", "post": "scan"}
+    assert send_and_receive(msg)["result"] == [1.0, 3.0, 6.5]
+    msg = {"type": "task", "data": [1.0], "operation": "x", "post": "shuffle"}
+    assert send_and_receive(msg)["type"] == "error"
+
+    # Mismo orden que Arrays.sort de Java y desbordamiento de int en el scan int32
+    nan = float("nan")
+    ordered = post_process("sort", [nan, 0.0, 1.0, -0.0, -2.0])
+    assert ordered[:3] == [-2.0, -0.0, 0.0] and str(ordered[2]) == "0.0"
+    assert str(ordered[1]) == "-0.0" and ordered[3] == 1.0 and ordered[4] != ordered[4]
+    assert post_process("scan", [2**31 - 1, 1], as_int=True) == [2**31 - 1, -2**31]
+
+def test_resident_fragment_is_cited_without_data():
+    from worker_threading import (encode_frame, read_frame, decode_body,
+                                  KIND_TASK, KIND_RESULT, KIND_ERROR, DTYPE_FLOAT64)
+    header = {"type": "task", "task_id": "T5", "operation": "x + 1", "fragment_id": "r:0+3", "hash": "abc"}
+    cited = {**header, "operation": "x * 2", "cached": 1}
+    with socket.create_connection((HOST, PORT), timeout=1) as sock:
+        sock.sendall(encode_frame(KIND_TASK, header, DTYPE_FLOAT64, [1.0, 2.0, 3.0]))
+        kind, _, dtype, body = read_frame(sock)
+        assert kind == KIND_RESULT and list(decode_body(dtype, body)) == [2.0, 3.0, 4.0]
+
+        sock.sendall(encode_frame(KIND_TASK, cited, DTYPE_FLOAT64, []))
+        kind, _, dtype, body = read_frame(sock)
+        assert kind == KIND_RESULT and list(decode_body(dtype, body)) == [2.0, 4.0, 6.0]
+
+        sock.sendall(encode_frame(KIND_TASK, {**cited, "hash": "otra"}, DTYPE_FLOAT64, []))
+        kind, resp, _, _ = read_frame(sock)
+        assert kind == KIND_ERROR and resp["code"] == "fragment_missing"
+
+
+def test_negotiated_compression_applies_to_task_and_result_bodies():
+    from worker_threading import (encode_frame, read_frame, decode_body,
+                                  KIND_TASK, KIND_RESULT, DTYPE_FLOAT64)
+    from compression import MIN_ELEMENTS
+    data = [20.5] * MIN_ELEMENTS
+    with socket.create_connection((HOST, PORT), timeout=1) as sock:
+        sock.sendall((json.dumps({"type": "init", "encodings": ["binary"], "compression": ["xor", "zstd"]}) + "\n").encode())
+        line = b""
+        while not line.endswith(b"\n"):
+            line += sock.recv(1)
+        assert json.loads(line)["compression"] == ["xor"]
+
+        frame = encode_frame(KIND_TASK, {"type": "task", "task_id": "T6", "operation": "x + 1"},
+                             DTYPE_FLOAT64, data, codecs=("xor",))
+        assert len(frame) < len(data)
+        sock.sendall(frame)
+        kind, header, dtype, body = read_frame(sock)
+    assert kind == KIND_RESULT and header["codec"] == "xor" and len(body) < len(data) // 4
+    assert list(decode_body(dtype, body, header)) == [21.5] * MIN_ELEMENTS
+
+def test_reduced_precision_task_returns_reduced_result_with_its_rounding_error():
+    from worker_threading import (encode_frame, read_frame, decode_body, _to_bfloat16, reduced_precision,
+                                  KIND_TASK, KIND_RESULT, DTYPE_FLOAT32, DTYPE_BFLOAT16)
+    # Mismos bits que Precision.BFLOAT16 en el maestro (PrecisionTest)
+    assert list(_to_bfloat16([1.0, 1 + 2 ** -8, 1 + 3 * 2 ** -8, float("nan"), 1e300])) == \
+        [0x3F80, 0x3F80, 0x3F82, 0x7FC0, 0x7F80]
+
+    for dtype, size in ((DTYPE_FLOAT32, 4), (DTYPE_BFLOAT16, 2)):
+        header = {"type": "task", "task_id": "T7", "operation": "x * 10"}
+        with socket.create_connection((HOST, PORT), timeout=1) as sock:
+            sock.sendall(encode_frame(KIND_TASK, header, dtype, [0.1, 1.5, -2.25]))
+            kind, resp, rdtype, body = read_frame(sock)
+        assert kind == KIND_RESULT and rdtype == dtype and len(body) == 3 * size
+        exact = decode_body(dtype, reduced_precision(dtype, [0.1])[0].tobytes())[0] * 10
+        result = decode_body(rdtype, body)
+        assert list(result)[1:] == [15.0, -22.5]
+        assert resp["max_error"] == abs(exact - result[0]) > 0
+
+
+def test_streamed_chunks_are_computed_and_answered_one_by_one():
+    from worker_threading import (encode_frame, read_frame, decode_body, init_reply, STREAM_CHUNK,
+                                  KIND_TASK, KIND_RESULT, KIND_ERROR, DTYPE_FLOAT64)
+    assert init_reply({"encodings": ["binary"]})["capabilities"]["stream_chunk"] == STREAM_CHUNK
+    chunks = [[1.0, 2.0], [3.0, 4.0], [5.0]]
+    with socket.create_connection((HOST, PORT), timeout=1) as sock:
+        # Los trozos se envían seguidos, sin esperar respuesta; cada uno vuelve por su cuenta
+        for k, chunk in enumerate(chunks):
+            header = {"type": "task", "task_id": "T8", "operation": "x * 10",
+                      "request_id": k + 1, "chunk": k, "chunks": len(chunks)}
+            sock.sendall(encode_frame(KIND_TASK, header, DTYPE_FLOAT64, chunk))
+        results = {}
+        for _ in chunks:
+            kind, header, dtype, body = read_frame(sock)
+            assert kind == KIND_RESULT and header["request_id"] == header["chunk"] + 1
+            results[header["chunk"]] = list(decode_body(dtype, body))
+
+        sock.sendall(encode_frame(KIND_TASK, {"type": "task", "task_id": "T9", "operation": "x",
+                                              "post": "scan", "chunk": 0, "chunks": 2},
+                                  DTYPE_FLOAT64, [1.0]))
+        kind, _, _, _ = read_frame(sock)
+    assert results == {0: [10.0, 20.0], 1: [30.0, 40.0], 2: [50.0]}
+    assert kind == KIND_ERROR
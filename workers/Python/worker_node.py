@@ -17,5 +17,9 @@ def serve_once(host="0.0.0.0", port=8000):
         if msg["type"] == "heartbeat":
             conn.send(json.dumps({"type": "heartbeat_ack"}).encode())
         elif msg["type"] == "task":
-            result = process_data(msg["data"])
+            try:
+                result = process_data(msg["data"], msg["operation"])
+            except ValueError as e:
+                conn.send(json.dumps({"type": "error", "message": str(e)}).encode())
+                return
             conn.send(json.dumps({"type": "result", "result": result}).encode())
\ No newline at end of file
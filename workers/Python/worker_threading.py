@@ -1,8 +1,20 @@
 import socketserver
+import socket
 import json
-import math
+import os
+import struct
+import sys
 import logging
+import threading
+import math
+from itertools import accumulate
+from concurrent.futures import ThreadPoolExecutor
+from array import array
 from jsonschema import validate, ValidationError
+from operations import OperationError, apply_operation, compile_operation, is_true
+from reductions import ReductionError, check_reduction, reduce_values
+from fragment_cache import FRAGMENT_CACHE
+from compression import SUPPORTED_CODECS, CompressionError, compress, inflate
 
 # Schema que valida el task_id, type, data y operation
 TASK_SCHEMA = {
@@ -10,58 +22,469 @@ TASK_SCHEMA = {
     "properties": {
         "type":      {"type": "string", "enum": ["task", "heartbeat"]},
         "task_id":   {"type": "string"},
+        "request_id": {"type": "integer"},
         "data":      {"type": "array",  "items": {"type": "number"}},
-        "operation": {"type": "string"}
+        "operation": {"type": "string"},
+        "filter":    {"type": "string"},
+        "post":      {"type": "string", "enum": ["sort", "scan"]},
+        "reduce":    {"type": "string"},
+        "bins":      {"type": "integer"},
+        "lo":        {"type": "number"},
+        "hi":        {"type": "number"}
     },
     "required": ["type", "data", "operation"]  # task_id es opcional para heartbeat
 }
 
-def process_data(data):
-    """Aplica la fórmula ((sin(x)+cos(x))^2)/(sqrt(abs(x))+1) a cada elemento."""
-    out = []
-    for x in data:
-        num = (math.sin(x) + math.cos(x)) ** 2
-        den = math.sqrt(abs(x)) + 1
-        out.append(num/den)
-    return out
+def process_data(data, operation="", as_int=False):
+    """
+    Aplica la operación pedida a cada elemento (ver operations.py). Sin operación se usa
+    la fórmula histórica ((sin(x)+cos(x))^2)/(sqrt(abs(x))+1).
+    """
+    return apply_operation(operation, data, as_int)
+
+def process_task(task, data, as_int=False):
+    """
+    Calcula una TASK completa: la operación, el filtro "filter" (sólo quedan los resultados
+    que cumplen el predicado, así que la respuesta puede ser más corta que el fragmento), el
+    paso "post" (ver post_process()) y la reducción "reduce" (ver reductions.py), en ese orden.
+    """
+    result = process_data(data, task.get("operation", ""), as_int)
+    if "filter" in task:
+        predicate = compile_operation(task["filter"])
+        result = [v for v in result if is_true(predicate(float(v)))]
+    if "post" in task:
+        result = post_process(task["post"], result, as_int)
+    if "reduce" in task:
+        result = reduce_values(task, result)
+    return result
+
+POST_STEPS = ("sort", "scan")
+
+def _wrap_int32(v):
+    return (v + 0x80000000) % 0x100000000 - 0x80000000
+
+def post_process(step, values, as_int=False):
+    """
+    Paso final sobre el fragmento ya calculado, para los trabajos sort() y scan() del maestro:
+    "sort" lo ordena como Arrays.sort de Java (-0.0 antes que 0.0 y los NaN al final) y
+    "scan" lo sustituye por sus sumas prefijas inclusivas, en orden, con el desbordamiento
+    de int de Java si el fragmento es int32. El maestro mezcla los tramos ordenados o les
+    suma el acarreo de los fragmentos anteriores.
+    """
+    if step == "sort":
+        if as_int:
+            return sorted(values)
+        return sorted(values, key=lambda v: (v != v, v, math.copysign(1.0, v)))
+    if step == "scan":
+        if as_int:
+            return list(accumulate(values, lambda a, b: _wrap_int32(a + b)))
+        return list(accumulate(float(v) for v in values))
+    raise OperationError(f"Paso final desconocido: {step!r}")
 
 # Logger configurado en worker_main.py, aquí sólo obtenemos el logger
 logger = logging.getLogger()
 
+# --- Tramas binarias (ver shared/communication_protocol.md) ---
+MAGIC = 0xDA
+VERSION = 1
+PREFIX = struct.Struct("<BBBBII")   # magic, versión, tipo, dtype, len cabecera, len cuerpo
+
+KIND_TASK, KIND_RESULT, KIND_ERROR = 1, 2, 3
+DTYPE_NONE, DTYPE_FLOAT64, DTYPE_INT32, DTYPE_FLOAT32, DTYPE_BFLOAT16 = 0, 1, 2, 3, 4
+# bfloat16 viaja como los 16 bits altos de un float32 ("H") y se amplía a float32 al leerlo
+_TYPECODES = {DTYPE_FLOAT64: "d", DTYPE_INT32: "i", DTYPE_FLOAT32: "f", DTYPE_BFLOAT16: "H"}
+_CODECS = {DTYPE_FLOAT64: "xor", DTYPE_INT32: "delta"}
+
+SUPPORTED_ENCODINGS = ["binary", "json"]
+
+# Elementos por trozo que se anuncian al maestro para el modo streaming (DARRAY_STREAM_CHUNK):
+# cada trozo es una TASK que se calcula y se responde en cuanto llega
+STREAM_CHUNK = max(1, int(os.environ.get("DARRAY_STREAM_CHUNK", "65536")))
+
+
+def decode_body(dtype, body, header=None):
+    """
+    Convierte el cuerpo little-endian de una trama en un array.array, descomprimiéndolo si
+    la cabecera trae "codec" (ver compression.py).
+    """
+    if header is not None and "codec" in header:
+        return inflate(header["codec"], body, header.get("count"), _TYPECODES[dtype])
+    values = array(_TYPECODES[dtype])
+    values.frombytes(body)
+    if sys.byteorder == "big":
+        values.byteswap()
+    if dtype == DTYPE_BFLOAT16:
+        return array("f", array("I", [h << 16 for h in values]).tobytes())
+    return values
+
+
+def _to_bfloat16(values):
+    """16 bits altos de cada float32, redondeados al más cercano con empate a par."""
+    halves = array("H")
+    for bits in array("I", array("f", values).tobytes()):
+        if bits & 0x7FFFFFFF > 0x7F800000:
+            halves.append((bits >> 16) | 0x0040)      # NaN sigue siendo NaN
+        else:
+            halves.append((bits + 0x7FFF + ((bits >> 16) & 1)) >> 16)
+    return halves
+
+
+def reduced_precision(dtype, values):
+    """
+    Valores en float32 o bfloat16 para una trama de ese dtype y el error absoluto máximo del
+    redondeo (los valores no finitos no cuentan).
+    """
+    if dtype == DTYPE_BFLOAT16:
+        arr = _to_bfloat16(values)
+        rounded = array("f", array("I", [h << 16 for h in arr]).tobytes())
+    else:
+        arr = rounded = array("f", values)
+    max_error = 0.0
+    for exact, r in zip(values, rounded):
+        e = abs(exact - r)
+        if e > max_error and e != math.inf:
+            max_error = e
+    return arr, max_error
+
+
+def task_data(header, dtype, body):
+    """
+    Datos de una TASK binaria. Con "fragment_id" y "hash" el fragmento es residente: si trae
+    datos se guardan en FRAGMENT_CACHE y, si la TASK lleva "cached", no trae datos y se
+    toman de la caché; entonces devuelve None si no están (expulsados o de otra versión).
+    """
+    if "fragment_id" not in header:
+        return decode_body(dtype, body, header)
+    if header.get("cached"):
+        return FRAGMENT_CACHE.get(header["fragment_id"], header.get("hash"), _TYPECODES[dtype])
+    data = decode_body(dtype, body, header)
+    FRAGMENT_CACHE.put(header["fragment_id"], header.get("hash"), data)
+    return data
+
+
+def encode_frame(kind, header, dtype=DTYPE_NONE, values=(), codecs=()):
+    """
+    Construye una trama binaria completa: prefijo + cabecera JSON + cuerpo. Si el codec del
+    dtype está en codecs (los acordados con la conexión) y compensa, el cuerpo va comprimido;
+    con dtype float32 o bfloat16 la cabecera lleva "max_error", el error del redondeo.
+    """
+    body = b""
+    packed = compress(_CODECS[dtype], values) if _CODECS.get(dtype) in codecs else None
+    if packed is not None:
+        header = {**header, "codec": _CODECS[dtype], "count": len(values)}
+        body = packed
+    elif dtype in (DTYPE_FLOAT32, DTYPE_BFLOAT16):
+        arr, max_error = reduced_precision(dtype, values)
+        header = {**header, "max_error": max_error}
+        if sys.byteorder == "big":
+            arr.byteswap()
+        body = arr.tobytes()
+    elif dtype != DTYPE_NONE:
+        arr = array(_TYPECODES[dtype], values)
+        if sys.byteorder == "big":
+            arr.byteswap()
+        body = arr.tobytes()
+    head = json.dumps(header).encode()
+    return PREFIX.pack(MAGIC, VERSION, kind, dtype, len(head), len(body)) + head + body
+
+
+def recv_exact(sock, n, initial=b""):
+    """Lee exactamente n bytes del socket (partiendo de los ya recibidos)."""
+    buf = bytearray(initial)
+    while len(buf) < n:
+        chunk = sock.recv(min(1 << 20, n - len(buf)))
+        if not chunk:
+            raise ConnectionError("conexión cerrada a mitad de trama")
+        buf += chunk
+    return bytes(buf)
+
+
+def read_frame(sock, initial=b""):
+    """Lee una trama binaria; devuelve (tipo, cabecera, dtype, cuerpo)."""
+    prefix = recv_exact(sock, PREFIX.size, initial[:PREFIX.size])
+    magic, version, kind, dtype, head_len, body_len = PREFIX.unpack(prefix)
+    if magic != MAGIC or version != VERSION:
+        raise ValueError(f"trama inválida (magic={magic:#x}, versión={version})")
+    rest = recv_exact(sock, head_len + body_len, initial[PREFIX.size:])
+    header = json.loads(rest[:head_len].decode()) if head_len else {}
+    return kind, header, dtype, rest[head_len:]
+
+
+def init_reply(msg):
+    """
+    Respuesta INIT del handshake: capacidades, codificación elegida y, si el maestro ofreció
+    compresión, los codecs aceptados.
+    """
+    offered = msg.get("encodings") or ["json"]
+    chosen = next((e for e in offered if e in SUPPORTED_ENCODINGS), "json")
+    reply = {
+        "type": "INIT",
+        "worker_id": f"worker_{os.getpid()}",
+        "capabilities": {
+            "cores": os.cpu_count() or 1,
+            "language": "python",
+            "encodings": SUPPORTED_ENCODINGS,
+            "fragment_cache": FRAGMENT_CACHE.capacity,
+            "stream_chunk": STREAM_CHUNK,
+        },
+        "encoding": chosen,
+    }
+    codecs = [c for c in msg.get("compression") or [] if c in SUPPORTED_CODECS]
+    if codecs:
+        reply["compression"] = codecs
+    return reply
+
+class MessageReader:
+    """
+    Lee mensajes consecutivos de una conexión persistente: tramas binarias (primer byte
+    MAGIC) o líneas JSON. Una línea JSON sin '\n' se acepta si ya es JSON válido o si el
+    emisor deja de enviar durante IDLE_FLUSH segundos (clientes antiguos sin salto de línea).
+    """
+    IDLE_FLUSH = 0.3
+
+    def __init__(self, sock):
+        self.sock = sock
+        self.buf = bytearray()
+
+    def _recv(self, timeout):
+        self.sock.settimeout(timeout)
+        try:
+            chunk = self.sock.recv(1 << 16)
+        except socket.timeout:
+            return None
+        finally:
+            self.sock.settimeout(None)
+        if not chunk:
+            raise EOFError
+        self.buf += chunk
+        return chunk
+
+    def _take_frame(self):
+        magic, version, kind, dtype, head_len, body_len = PREFIX.unpack_from(self.buf)
+        if magic != MAGIC or version != VERSION:
+            raise ValueError(f"trama inválida (magic={magic:#x}, versión={version})")
+        total = PREFIX.size + head_len + body_len
+        # El cuerpo se recibe directamente en un buffer de su tamaño final.
+        frame = bytearray(total)
+        have = min(len(self.buf), total)
+        frame[:have] = self.buf[:have]
+        del self.buf[:have]
+        view = memoryview(frame)
+        while have < total:
+            n = self.sock.recv_into(view[have:], min(1 << 20, total - have))
+            if n == 0:
+                raise ConnectionError("conexión cerrada a mitad de trama")
+            have += n
+        start = PREFIX.size
+        header = json.loads(bytes(frame[start:start + head_len]).decode()) if head_len else {}
+        return ("binary", kind, header, dtype, view[start + head_len:])
+
+    def next(self):
+        """Devuelve el siguiente mensaje o None si el peer cerró la conexión."""
+        while True:
+            if self.buf:
+                if self.buf[0] == MAGIC:
+                    if len(self.buf) >= PREFIX.size:
+                        return self._take_frame()
+                else:
+                    nl = self.buf.find(b"\n")
+                    if nl >= 0:
+                        line = bytes(self.buf[:nl])
+                        del self.buf[:nl + 1]
+                        if line.strip():
+                            return ("json", line)
+                        continue
+            partial_json = bool(self.buf) and self.buf[0] != MAGIC
+            try:
+                chunk = self._recv(self.IDLE_FLUSH if partial_json else None)
+            except (EOFError, ConnectionResetError):
+                return ("json", self._drain()) if partial_json else None
+            if chunk is None:
+                # Sin '\n' y sin más datos: el emisor dio el mensaje por terminado.
+                return ("json", self._drain())
+            if self.buf[0] != MAGIC and b"\n" not in chunk and self._is_complete_json():
+                return ("json", self._drain())
+
+    def _is_complete_json(self):
+        data = self.buf.rstrip()
+        if not data.endswith(b"}"):
+            return False
+        try:
+            json.loads(data.decode())
+            return True
+        except (ValueError, UnicodeDecodeError):
+            return False
+
+    def _drain(self):
+        line = bytes(self.buf).strip()
+        self.buf.clear()
+        return line
+
+
+# Hilos compartidos para calcular tareas; las respuestas salen en orden de finalización.
+TASK_POOL = ThreadPoolExecutor(max_workers=os.cpu_count() or 1, thread_name_prefix="task")
+
+
 class ThreadedTCPRequestHandler(socketserver.BaseRequestHandler):
+    """
+    Atiende una conexión persistente: lee mensajes en bucle, calcula las tareas en
+    TASK_POOL y responde con el mismo request_id, posiblemente fuera de orden.
+    """
+
+    def setup(self):
+        self.send_lock = threading.Lock()
+        # Codecs de compresión acordados en el INIT de esta conexión
+        self.codecs = ()
+
+    def send(self, payload):
+        with self.send_lock:
+            self.request.sendall(payload)
+
+    def send_json(self, resp):
+        # Enviar con newline para que Java lo lea como una línea
+        self.send((json.dumps(resp) + "\n").encode())
+
     def handle(self):
         # Conexión recibida
         logger.info(f"[Handler] conexión de {self.client_address}")
+        reader = MessageReader(self.request)
+
+        while True:
+            try:
+                message = reader.next()
+            except (ValueError, ConnectionError) as e:
+                logger.error(f"[Handler] trama inválida: {e}")
+                self.send(encode_frame(KIND_ERROR, {"type": "error", "message": str(e)}))
+                return
+            if message is None:
+                logger.info(f"[Handler] {self.client_address} cerró la conexión")
+                return
+
+            if message[0] == "binary":
+                self.handle_binary(*message[1:])
+            else:
+                self.handle_json(message[1])
 
-        # Leer bytes (hasta 8192) y strip
-        raw = self.request.recv(8192).strip()
-        logger.debug(f"[Handler] raw recibidos: {raw!r}")
+    def handle_json(self, raw):
+        logger.debug(f"[Handler] raw recibidos: {raw[:200]!r}")
 
         # Parsear JSON y validar schema
         try:
             msg = json.loads(raw.decode())
-            logger.debug(f"[Handler] parsed JSON: {msg}")
+            if isinstance(msg, dict) and msg.get("type") == "init":
+                reply = init_reply(msg)
+                self.codecs = tuple(reply.get("compression", ()))
+                self.send_json(reply)
+                return
             validate(msg, TASK_SCHEMA)
-        except (json.JSONDecodeError, ValidationError) as e:
+        except (json.JSONDecodeError, UnicodeDecodeError, ValidationError) as e:
             logger.error(f"[Handler] mensaje inválido: {e}")
-            resp = {"type": "error", "message": str(e)}
-            self.request.sendall((json.dumps(resp) + "\n").encode())
+            self.send_json({"type": "error", "message": str(e)})
             return
 
+        tag = {"request_id": msg["request_id"]} if "request_id" in msg else {}
+
         # Responder según tipo
         if msg["type"] == "heartbeat":
-            resp = {"type": "heartbeat_ack"}
             logger.debug(f"[Handler] enviando HEARTBEAT_ACK")
-        else:  # "task"
-            task_id = msg.get("task_id", "")
-            data    = msg["data"]
-            logger.debug(f"[Handler] procesando TASK id={task_id} data={data}")
-            result = process_data(data)
-            resp = {"type": "result", "task_id": task_id, "result": result}
-            logger.debug(f"[Handler] enviando RESPONSE: {resp}")
-
-        # Enviar con newline para que Java lo lea con readLine()
-        self.request.sendall((json.dumps(resp) + "\n").encode())
+            self.send_json({"type": "heartbeat_ack", **tag})
+            return
+
+        task_id = msg.get("task_id", "")
+        data    = msg["data"]
+        operation = msg["operation"]
+        if not self._check_operation(operation, msg, tag, False):
+            return
+        logger.debug(f"[Handler] procesando TASK id={task_id} n={len(data)} op={operation!r}")
+
+        def run():
+            result = process_task(msg, data)
+            self.send_json({"type": "result", "task_id": task_id, "result": result, **tag})
+
+        TASK_POOL.submit(self._guarded, run, tag, False)
+
+    def handle_binary(self, kind, header, dtype, body):
+        """
+        Procesa una trama TASK binaria y responde con una trama RESULT del mismo dtype (más
+        corta si hay filtro), o float64 con el estado parcial si la TASK pide una reducción.
+        """
+        tag = {"request_id": header["request_id"]} if "request_id" in header else {}
+        if kind != KIND_TASK or dtype not in _TYPECODES:
+            message = f"trama no soportada (tipo={kind}, dtype={dtype})"
+            logger.error(f"[Handler] {message}")
+            self.send(encode_frame(KIND_ERROR, {"type": "error", "message": message, **tag}))
+            return
+
+        task_id = header.get("task_id", "")
+        operation = header.get("operation", "")
+        if not self._check_operation(operation, header, tag, True):
+            return
+        try:
+            data = task_data(header, dtype, body)
+        except CompressionError as e:
+            logger.error(f"[Handler] {e}")
+            self.send(encode_frame(KIND_ERROR, {"type": "error", "message": str(e), **tag}))
+            return
+        if data is None:
+            message = f"fragmento {header['fragment_id']!r} no residente"
+            logger.debug(f"[Handler] {message}")
+            self.send(encode_frame(KIND_ERROR, {"type": "error", "code": "fragment_missing",
+                                                "message": message, **tag}))
+            return
+        logger.debug(f"[Handler] procesando TASK binaria id={task_id} n={len(data)} op={operation!r}"
+                     + (f" trozo={header['chunk']}/{header.get('chunks')}" if "chunk" in header else ""))
+
+        def run():
+            result = process_task(header, data, as_int=(dtype == DTYPE_INT32))
+            resp = {"type": "result", "task_id": task_id, **tag}
+            if "chunk" in header:
+                resp["chunk"] = header["chunk"]
+            out_dtype = DTYPE_FLOAT64 if "reduce" in header else dtype
+            self.send(encode_frame(KIND_RESULT, resp, out_dtype, result, self.codecs))
+
+        TASK_POOL.submit(self._guarded, run, tag, True)
+
+    def _check_operation(self, operation, task, tag, binary):
+        """
+        Compila la operación y el filtro (quedan en caché) y valida el paso final y la
+        reducción pedidos, si los hay; si no son válidos responde ERROR y devuelve False.
+        """
+        try:
+            compile_operation(operation)
+            if "filter" in task:
+                compile_operation(task["filter"])
+            if task.get("post", "sort") not in POST_STEPS:
+                raise OperationError(f"Paso final desconocido: {task['post']!r}")
+            if "post" in task and "chunk" in task:
+                # Ordenar o acumular un trozo suelto no da el tramo del fragmento
+                raise OperationError("El paso final no admite trozos (chunk)")
+            check_reduction(task)
+            return True
+        except (OperationError, ReductionError) as e:
+            logger.error(f"[Handler] {e}")
+            err = {"type": "error", "message": str(e), **tag}
+            if binary:
+                self.send(encode_frame(KIND_ERROR, err))
+            else:
+                self.send_json(err)
+            return False
+
+    def _guarded(self, run, tag, binary):
+        """Ejecuta una tarea y, si falla, responde ERROR al mismo request_id."""
+        try:
+            run()
+        except OSError as e:
+            logger.error(f"[Handler] no se pudo responder: {e}")
+        except Exception as e:
+            logger.exception("[Handler] error procesando tarea")
+            err = {"type": "error", "message": str(e), **tag}
+            try:
+                if binary:
+                    self.send(encode_frame(KIND_ERROR, err))
+                else:
+                    self.send_json(err)
+            except OSError:
+                pass
 
 class ThreadedTCPServer(socketserver.ThreadingMixIn, socketserver.TCPServer):
     daemon_threads = True